@@ -19,6 +19,8 @@
  */
 package org.neo4j.cypher.javacompat;
 
+import java.util.Map;
+
 import org.neo4j.cypher.SyntaxException;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.cypher.commands.Query;
@@ -50,4 +52,34 @@ public class ExecutionEngine
     {
         return new ExecutionResult(inner.execute( query ));
     }
+
+    /**
+     * Executes a query and returns an iterable that contains the result set.
+     * The parsed queries of recently executed query texts are cached, so
+     * executing the same text again doesn't parse it again.
+     * @param query The text of the query to execute
+     * @return A ExecutionResult that contains the result set
+     * @throws org.neo4j.cypher.SyntaxException If the query contains errors,
+     * a SyntaxException exception might be thrown
+     */
+    public ExecutionResult execute( String query ) throws SyntaxException
+    {
+        return new ExecutionResult( inner.execute( query ) );
+    }
+
+    /**
+     * Executes a query with parameters and returns an iterable that contains
+     * the result set. The {name} placeholders of the query are replaced by the
+     * parameter with the same name, so a query which only differs in its
+     * parameters is parsed once.
+     * @param query The text of the query to execute
+     * @param params The parameters of the query, by name
+     * @return A ExecutionResult that contains the result set
+     * @throws org.neo4j.cypher.SyntaxException If the query contains errors,
+     * a SyntaxException exception might be thrown
+     */
+    public ExecutionResult execute( String query, Map<String, Object> params ) throws SyntaxException
+    {
+        return new ExecutionResult( inner.execute( query, params ) );
+    }
 }
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.management;
+
+import org.neo4j.jmx.Description;
+import org.neo4j.jmx.ManagementInterface;
+
+@ManagementInterface( name = CypherQueryCache.NAME )
+@Description( "Statistics about the parsed Cypher queries cached for this Neo4j instance" )
+public interface CypherQueryCache
+{
+    final String NAME = "Cypher query cache";
+
+    @Description( "The number of executed query texts that were found in the cache" )
+    long getHits();
+
+    @Description( "The number of executed query texts that had to be parsed" )
+    long getMisses();
+
+    @Description( "The number of queries in the cache" )
+    int getSize();
+
+    @Description( "The max number of queries in the cache" )
+    int getMaxSize();
+
+    @Description( "Removes all queries from the cache" )
+    void clear();
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.management.impl;
+
+import javax.management.NotCompliantMBeanException;
+
+import org.neo4j.cypher.QueryCache;
+import org.neo4j.cypher.management.CypherQueryCache;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.helpers.Service;
+import org.neo4j.jmx.impl.ManagementBeanProvider;
+import org.neo4j.jmx.impl.ManagementData;
+import org.neo4j.jmx.impl.Neo4jMBean;
+
+@Service.Implementation( ManagementBeanProvider.class )
+public final class CypherQueryCacheBean extends ManagementBeanProvider
+{
+    public CypherQueryCacheBean()
+    {
+        super( CypherQueryCache.class );
+    }
+
+    @Override
+    protected Neo4jMBean createMBean( ManagementData management ) throws NotCompliantMBeanException
+    {
+        return new CypherQueryCacheImpl( management );
+    }
+
+    private static class CypherQueryCacheImpl extends Neo4jMBean implements CypherQueryCache
+    {
+        CypherQueryCacheImpl( ManagementData management ) throws NotCompliantMBeanException
+        {
+            super( management );
+            this.graphDb = management.getKernelData().graphDatabase();
+        }
+
+        private final GraphDatabaseService graphDb;
+
+        // The cache is created with the first execution engine of the database
+        private QueryCache cache()
+        {
+            return QueryCache.ofDatabase( graphDb );
+        }
+
+        public long getHits()
+        {
+            QueryCache cache = cache();
+            return cache != null ? cache.getHits() : 0;
+        }
+
+        public long getMisses()
+        {
+            QueryCache cache = cache();
+            return cache != null ? cache.getMisses() : 0;
+        }
+
+        public int getSize()
+        {
+            QueryCache cache = cache();
+            return cache != null ? cache.getSize() : 0;
+        }
+
+        public int getMaxSize()
+        {
+            QueryCache cache = cache();
+            return cache != null ? cache.getMaxSize() : 0;
+        }
+
+        public void clear()
+        {
+            QueryCache cache = cache();
+            if ( cache != null )
+            {
+                cache.clear();
+            }
+        }
+    }
+}
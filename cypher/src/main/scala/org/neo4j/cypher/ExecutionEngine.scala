@@ -24,14 +24,51 @@ import pipes._
 import scala.collection.JavaConverters._
 import org.neo4j.graphdb._
 import collection.Seq
-import java.lang.{Error, Iterable}
+import java.lang.Error
+import parser.CypherParser
+
+/**
+ * Executes queries against the graph. Queries are aggregated on
+ * aggregationThreads threads, see AggregationPipe. The parsed queries are
+ * cached per database, see QueryCache, with the queryCacheSize of the first
+ * engine created for it. Likewise the aggregation threads are shared by the
+ * engines of a database, see AggregationThreads.
+ */
+class ExecutionEngine(graph: GraphDatabaseService, queryCacheSize: Int, aggregationThreads: Int) {
+  def this(graph: GraphDatabaseService, queryCacheSize: Int) = this(graph, queryCacheSize, 1)
+
+  def this(graph: GraphDatabaseService) = this(graph, ExecutionEngine.DEFAULT_QUERY_CACHE_SIZE)
 
-class ExecutionEngine(graph: GraphDatabaseService) {
   checkScalaVersion()
 
+  val queryCache = QueryCache.forDatabase(graph, queryCacheSize)
+
+  private val threads =
+    if (aggregationThreads > 1) AggregationThreads.forDatabase(graph, aggregationThreads) else new AggregationThreads(1)
+
+  @throws(classOf[SyntaxException])
+  def execute(query: String): ExecutionResult = execute(query, Map[String, Any]())
+
+  /**
+   * Executes the query with the text, which is only parsed if it isn't in
+   * the query cache. The {name} placeholders of the query are bound to the
+   * values of the parameters with the same names.
+   */
+  @throws(classOf[SyntaxException])
+  def execute(query: String, params: Map[String, Any]): ExecutionResult =
+    execute(queryCache.getOrParse(query, (text) => new CypherParser().parse(text)), params)
+
+  @throws(classOf[SyntaxException])
+  def execute(query: String, params: java.util.Map[String, AnyRef]): ExecutionResult =
+    execute(query, params.asScala.toMap[String, Any])
 
   @throws(classOf[SyntaxException])
-  def execute(query: Query): ExecutionResult = query match {
+  def execute(query: Query): ExecutionResult = execute(query, Map[String, Any]())
+
+  // The pipes keep the state of an execution, like the bound pattern nodes and the parameter
+  // values of the start items, so a new plan is built for every execution of a cached query
+  @throws(classOf[SyntaxException])
+  def execute(query: Query, params: Map[String, Any]): ExecutionResult = bind(query, params) match {
     case Query(returns, start, matching, where, aggregation, sort, slice) => {
       var pipe = createSourcePumps(start).reduceLeft(_ ++ _)
 
@@ -54,14 +91,19 @@ class ExecutionEngine(graph: GraphDatabaseService) {
       aggregation match {
         case None =>
         case Some(aggr) => {
-          pipe = new AggregationPipe(pipe, returns.returnItems, aggr.aggregationItems)
+          pipe = new AggregationPipe(pipe, returns.returnItems, aggr.aggregationItems,
+            AggregationPipe.DEFAULT_MAX_GROUPS_IN_MEMORY, threads)
         }
       }
 
       sort match {
         case None =>
         case Some(s) => {
-          pipe = new SortPipe(pipe, s.sortItems.toList)
+          // With a limit, only the rows up to the end of the slice need to be kept while sorting
+          pipe = slice match {
+            case Some(Slice(skip, Some(limit))) => new TopPipe(pipe, s.sortItems.toList, skip.getOrElse(0) + limit)
+            case _ => new SortPipe(pipe, s.sortItems.toList)
+          }
         }
       }
 
@@ -81,23 +123,62 @@ class ExecutionEngine(graph: GraphDatabaseService) {
   private def createSourcePumps(from: Start): Seq[Pipe] =
     from.startItems.map((item) => {
       item match {
-        case NodeByIndex(varName, idxName, key, value) => {
-          val indexHits: Iterable[Node] = graph.index.forNodes(idxName).get(key, value)
-          new StartPipe(varName, indexHits.asScala.toList)
-        }
-        case NodeByIndexQuery(varName, idxName, query) => {
-          val indexHits: Iterable[Node] = graph.index.forNodes(idxName).query(query)
-          new StartPipe(varName, indexHits.asScala.toList)
-        }
-        case NodeById(varName, ids@_*) => new StartPipe(varName, ids.map(graph.getNodeById))
-        case RelationshipById(varName, ids@_*) => new StartPipe(varName, ids.map(graph.getRelationshipById))
+        case NodeByIndex(varName, idxName, key, value) =>
+          new StartPipe[Node](varName, indexHits(graph.index.forNodes(idxName).get(key, value)))
+        case NodeByIndexQuery(varName, idxName, query) =>
+          new StartPipe[Node](varName, indexHits(graph.index.forNodes(idxName).query(query)))
+        case NodeById(varName, ids@_*) => new StartPipe[Node](varName, ids.map(graph.getNodeById))
+        case RelationshipById(varName, ids@_*) => new StartPipe[Relationship](varName, ids.map(graph.getRelationshipById))
       }
     })
 
+  private def bind(query: Query, params: Map[String, Any]): Query = {
+    def param(name: String): Any =
+      params.getOrElse(name, throw new ParameterNotFoundException("Expected a parameter named " + name))
+
+    def bindValue(value: Value): Value = value match {
+      case ParameterValue(name) => Literal(param(name))
+      case _ => value
+    }
+
+    def bindIndexValue(value: Any): Any = value match {
+      case ParameterValue(name) => param(name)
+      case _ => value
+    }
+
+    val startItems = query.start.startItems.map((item) => item match {
+      case NodeByParameter(varName, name) => NodeById(varName, ids(param(name)): _*)
+      case RelationshipByParameter(varName, name) => RelationshipById(varName, ids(param(name)): _*)
+      case NodeByIndex(varName, idxName, key, value) => NodeByIndex(varName, idxName, key, bindIndexValue(value))
+      case NodeByIndexQuery(varName, idxName, value) => NodeByIndexQuery(varName, idxName, bindIndexValue(value))
+      case RelationshipByIndex(varName, idxName, key, value) => RelationshipByIndex(varName, idxName, key, bindIndexValue(value))
+      case _ => item
+    })
+
+    query.copy(start = Start(startItems: _*), where = query.where.map(_.rewrite(bindValue)))
+  }
+
+  private def ids(value: Any): Seq[Long] = value match {
+    case n: Number => Seq(n.longValue)
+    case n: Node => Seq(n.getId)
+    case r: Relationship => Seq(r.getId)
+    case i: java.lang.Iterable[_] => i.asScala.toSeq.flatMap(ids)
+    case t: Traversable[_] => t.toSeq.flatMap(ids)
+    case a: Array[_] => a.toSeq.flatMap(ids)
+    case _ => throw new SyntaxException("Expected ids, nodes or relationships as parameter but got " + value)
+  }
+
+  // IndexHits is both an Iterator and an Iterable, and is read lazily when iterated over
+  private def indexHits(hits: java.lang.Iterable[Node]): Iterable[Node] = hits.asScala
+
   def checkScalaVersion() {
     if (util.Properties.versionString.matches("^version 2.9.0")) {
       throw new Error("Cypher can only run with Scala 2.9.0. It looks like the Scala version is: " +
         util.Properties.versionString)
     }
   }
+}
+
+object ExecutionEngine {
+  val DEFAULT_QUERY_CACHE_SIZE = 100
 }
\ No newline at end of file
@@ -22,9 +22,9 @@ package org.neo4j.cypher
 
 import scala.collection.JavaConverters._
 import org.neo4j.graphdb.{PropertyContainer, Relationship, NotFoundException, Node}
-import collection.Traversable
+import collection.Iterable
 
-trait ExecutionResult extends Traversable[Map[String, Any]] with StringExtras {
+trait ExecutionResult extends Iterable[Map[String, Any]] with StringExtras {
   val symbols:SymbolTable
 
   val columns: List[String] = symbols.identifiers.map(_.name).toList
@@ -34,13 +34,13 @@ trait ExecutionResult extends Traversable[Map[String, Any]] with StringExtras {
   def javaColumnAs[T](column: String) = columnAs[T](column).asJava
 
   def columnAs[T](column: String): Iterator[T] = {
-    this.map((map) => {
+    iterator.map((map) => {
       val item: Any = map.getOrElse(column, throw new NotFoundException("No column named '" + column + "' was found."))
       item.asInstanceOf[T]
-    }).toIterator
+    })
   }
 
-  def javaIterator: java.util.Iterator[java.util.Map[String, Any]] = this.map((m) => m.asJava).toIterator.asJava
+  def javaIterator: java.util.Iterator[java.util.Map[String, Any]] = iterator.map((m) => m.asJava).asJava
 
   def calculateColumnSizes: Map[String, Int] = {
     val columnSizes = new scala.collection.mutable.HashMap[String, Int] ++ columns.map( name => name -> name.size)
@@ -66,7 +66,7 @@ trait ExecutionResult extends Traversable[Map[String, Any]] with StringExtras {
     val lineWidth: Int = headerLine.length - 2
     val --- = "+" + repeat("-", lineWidth) + "+"
 
-    val resultLines: Traversable[String] = map(createString(columns, columnSizes, _))
+    val resultLines: Iterable[String] = map(createString(columns, columnSizes, _))
     val timeTaken = System.currentTimeMillis() - start
     val footer = "%d rows, %d ms".format(resultLines.size, timeTaken)
 
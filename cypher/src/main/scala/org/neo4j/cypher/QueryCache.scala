@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+import commands.Query
+import java.util.concurrent.atomic.AtomicLong
+import java.util.{Map => JavaMap, LinkedHashMap, WeakHashMap}
+import org.neo4j.graphdb.GraphDatabaseService
+import org.neo4j.kernel.AbstractGraphDatabase
+
+/**
+ * The parsed queries of the latest query texts, so that a query which is
+ * executed again, with the same or other parameters, isn't parsed again.
+ * When full, the least recently used query is evicted.
+ */
+class QueryCache(maxSize: Int) {
+  private val queries = new LinkedHashMap[String, Query](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: JavaMap.Entry[String, Query]): Boolean = size() > maxSize
+  }
+  private val hits = new AtomicLong()
+  private val misses = new AtomicLong()
+
+  /**
+   * @return the cached query of the text, or the query parse gives for it,
+   * which is cached if parsing succeeds.
+   */
+  def getOrParse(queryText: String, parse: String => Query): Query = {
+    val cached = queries.synchronized {
+      queries.get(queryText)
+    }
+    if (cached != null) {
+      hits.incrementAndGet()
+      cached
+    } else {
+      // Parsing is done outside of the lock, two threads missing the same text at once both parse it
+      misses.incrementAndGet()
+      val query = parse(queryText)
+      queries.synchronized {
+        queries.put(queryText, query)
+      }
+      query
+    }
+  }
+
+  def getHits: Long = hits.get
+
+  def getMisses: Long = misses.get
+
+  def getSize: Int = queries.synchronized {
+    queries.size()
+  }
+
+  def getMaxSize: Int = maxSize
+
+  def clear() {
+    queries.synchronized {
+      queries.clear()
+    }
+  }
+}
+
+/**
+ * The query caches of the databases, shared by all execution engines of a
+ * database. With the JMX module present, the statistics of the cache of a
+ * database are published as its "Cypher query cache" bean.
+ */
+object QueryCache {
+  private val caches = new WeakHashMap[AnyRef, QueryCache]()
+
+  // Databases wrapping another one, like the ImpermanentGraphDatabase, share its config
+  private[cypher] def key(graph: GraphDatabaseService): AnyRef = graph match {
+    case db: AbstractGraphDatabase => db.getConfig
+    case _ => graph
+  }
+
+  /**
+   * @return the query cache of the database, created with maxSize if this
+   * is the first execution engine of the database.
+   */
+  def forDatabase(graph: GraphDatabaseService, maxSize: Int): QueryCache = caches.synchronized {
+    var cache = caches.get(key(graph))
+    if (cache == null) {
+      cache = new QueryCache(maxSize)
+      caches.put(key(graph), cache)
+    }
+    cache
+  }
+
+  /**
+   * @return the query cache of the database, or null if no execution engine
+   * has been created for it.
+   */
+  def ofDatabase(graph: GraphDatabaseService): QueryCache = caches.synchronized {
+    caches.get(key(graph))
+  }
+}
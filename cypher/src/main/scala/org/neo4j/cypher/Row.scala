@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The slots of the rows of a pipe. Every identifier of the pipe gets a fixed
+ * slot when the pipe is created, so that rows can be arrays and pipes can
+ * find values by slot instead of by name.
+ */
+class RowLayout(val names: IndexedSeq[String]) {
+  private val slots: Map[String, Int] = names.zipWithIndex.toMap
+  private val mappings = new ConcurrentHashMap[RowLayout, Array[Int]]()
+
+  def size = names.size
+
+  /**
+   * The slot of an identifier, or -1 if it doesn't have one.
+   */
+  def slotOf(name: String): Int = slots.getOrElse(name, -1)
+
+  def emptyValues: Array[Any] = {
+    val values = new Array[Any](size)
+    java.util.Arrays.fill(values.asInstanceOf[Array[AnyRef]], Row.Absent)
+    values
+  }
+
+  /**
+   * Copies the values of a row into the slots of this layout. Values
+   * without a slot here are left out.
+   */
+  def fill(values: Array[Any], row: Map[String, Any]) {
+    row match {
+      case r: Row => {
+        val mapping = slotsFor(r.layout)
+        var i = 0
+        while (i < mapping.length) {
+          val value = r.slotValues(i)
+          if (mapping(i) >= 0 && !Row.isAbsent(value)) {
+            values(mapping(i)) = value
+          }
+          i += 1
+        }
+      }
+      case _ => row.foreach {
+        case (name, value) => {
+          val slot = slotOf(name)
+          if (slot >= 0) {
+            values(slot) = value
+          }
+        }
+      }
+    }
+  }
+
+  def row(values: Array[Any]): Row = new Row(this, values)
+
+  /**
+   * @return the slot here of every slot of the other layout.
+   */
+  private def slotsFor(other: RowLayout): Array[Int] = {
+    var mapping = mappings.get(other)
+    if (mapping == null) {
+      mapping = other.names.map(slotOf).toArray
+      mappings.put(other, mapping)
+    }
+    mapping
+  }
+}
+
+object Row {
+  /**
+   * The value of a slot the row has no value for, which isn't the same as
+   * a value of null.
+   */
+  object Absent
+
+  def isAbsent(value: Any): Boolean = value.asInstanceOf[AnyRef] eq Absent
+}
+
+/**
+ * A row of a query, with the values in an array indexed by the slots of its
+ * layout. It's still a Map from identifier to value for the code that finds
+ * values by name, but pipes which know the layout use valueAt instead.
+ */
+class Row(val layout: RowLayout, val slotValues: Array[Any]) extends Map[String, Any] {
+  def valueAt(slot: Int): Any = slotValues(slot)
+
+  def get(key: String): Option[Any] = {
+    val slot = layout.slotOf(key)
+    if (slot < 0 || Row.isAbsent(slotValues(slot))) None else Some(slotValues(slot))
+  }
+
+  def iterator: Iterator[(String, Any)] =
+    layout.names.iterator.zip(slotValues.iterator).filter((kv) => !Row.isAbsent(kv._2))
+
+  def +[B1 >: Any](kv: (String, B1)): Map[String, B1] = {
+    val slot = layout.slotOf(kv._1)
+    if (slot < 0) {
+      Map[String, B1]() ++ this + kv
+    } else {
+      val copy = slotValues.clone()
+      copy(slot) = kv._2
+      new Row(layout, copy)
+    }
+  }
+
+  def -(key: String): Map[String, Any] = {
+    val slot = layout.slotOf(key)
+    if (slot < 0 || Row.isAbsent(slotValues(slot))) {
+      this
+    } else {
+      val copy = slotValues.clone()
+      copy(slot) = Row.Absent
+      new Row(layout, copy)
+    }
+  }
+}
@@ -36,6 +36,11 @@ class SymbolTable(val identifiers: Set[Identifier]) {
 
   def add(idents: Seq[Identifier]) = this ++ new SymbolTable(idents)
 
+  /**
+   * The slots of the rows with these identifiers, assigned in name order.
+   */
+  lazy val layout: RowLayout = new RowLayout(identifiers.toIndexedSeq.map((id: Identifier) => id.name).distinct.sorted)
+
   def get(name: String): Option[Identifier] = identifiers.find(_.name == name)
 
   def merge(other: SymbolTable) : Set[Identifier] = {
@@ -25,22 +25,35 @@ abstract class Clause {
   def ++(other: Clause): Clause = And(this, other)
 
   def isMatch(m: Map[String, Any]): Boolean
+
+  /**
+   * @return this clause with every value replaced by f of it.
+   */
+  def rewrite(f: Value => Value): Clause
 }
 
 case class And(a: Clause, b: Clause) extends Clause {
   def isMatch(m: Map[String, Any]): Boolean = a.isMatch(m) && b.isMatch(m)
+
+  def rewrite(f: Value => Value): Clause = And(a.rewrite(f), b.rewrite(f))
 }
 
 case class Or(a: Clause, b: Clause) extends Clause {
   def isMatch(m: Map[String, Any]): Boolean = a.isMatch(m) || b.isMatch(m)
+
+  def rewrite(f: Value => Value): Clause = Or(a.rewrite(f), b.rewrite(f))
 }
 
 case class Not(a: Clause) extends Clause {
   def isMatch(m: Map[String, Any]): Boolean = !a.isMatch(m)
+
+  def rewrite(f: Value => Value): Clause = Not(a.rewrite(f))
 }
 
 case class True() extends Clause {
   def isMatch(m: Map[String, Any]): Boolean = true
+
+  def rewrite(f: Value => Value): Clause = this
 }
 
 case class Has(property: PropertyValue) extends Clause {
@@ -50,6 +63,8 @@ case class Has(property: PropertyValue) extends Clause {
       propContainer.hasProperty(propertyName)
     }
   }
+
+  def rewrite(f: Value => Value): Clause = this
 }
 
 case class RegularExpression(a: Value, str: String) extends Clause {
@@ -57,4 +72,6 @@ case class RegularExpression(a: Value, str: String) extends Clause {
     val value = a.value(m).asInstanceOf[String]
     str.r.pattern.matcher(value).matches()
   }
+
+  def rewrite(f: Value => Value): Clause = RegularExpression(f(a), str)
 }
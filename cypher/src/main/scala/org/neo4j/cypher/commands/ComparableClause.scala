@@ -37,20 +37,30 @@ abstract sealed class ComparableClause(a: Value, b: Value) extends Clause with C
 
 case class Equals(a: Value, b: Value) extends ComparableClause(a, b) {
   def compare(comparisonResult: Int) = comparisonResult == 0
+
+  def rewrite(f: Value => Value): Clause = Equals(f(a), f(b))
 }
 
 case class LessThan(a: Value, b: Value) extends ComparableClause(a, b) {
   def compare(comparisonResult: Int) = comparisonResult < 0
+
+  def rewrite(f: Value => Value): Clause = LessThan(f(a), f(b))
 }
 
 case class GreaterThan(a: Value, b: Value) extends ComparableClause(a, b) {
   def compare(comparisonResult: Int) = comparisonResult > 0
+
+  def rewrite(f: Value => Value): Clause = GreaterThan(f(a), f(b))
 }
 
 case class LessThanOrEqual(a: Value, b: Value) extends ComparableClause(a, b) {
   def compare(comparisonResult: Int) = comparisonResult <= 0
+
+  def rewrite(f: Value => Value): Clause = LessThanOrEqual(f(a), f(b))
 }
 
 case class GreaterThanOrEqual(a: Value, b: Value) extends ComparableClause(a, b) {
   def compare(comparisonResult: Int) = comparisonResult >= 0
+
+  def rewrite(f: Value => Value): Clause = GreaterThanOrEqual(f(a), f(b))
 }
\ No newline at end of file
@@ -32,4 +32,8 @@ case class NodeByIndexQuery(varName:String, idxName: String, query: Any) extends
 
 case class RelationshipByIndex(varName:String, idxName: String, key:String, value: Any) extends RelationshipStartItem(varName)
 
-case class NodeById(varName:String, id: Long*) extends NodeStartItem(varName)
\ No newline at end of file
+case class NodeById(varName:String, id: Long*) extends NodeStartItem(varName)
+
+case class NodeByParameter(varName:String, parameterName: String) extends NodeStartItem(varName)
+
+case class RelationshipByParameter(varName:String, parameterName: String) extends RelationshipStartItem(varName)
\ No newline at end of file
@@ -20,7 +20,7 @@
 package org.neo4j.cypher.commands
 
 import org.neo4j.graphdb.{NotFoundException, Relationship, PropertyContainer}
-import org.neo4j.cypher.{SyntaxException, SymbolTable}
+import org.neo4j.cypher.{ParameterNotFoundException, SyntaxException, SymbolTable}
 import org.neo4j.cypher.pipes.aggregation.{CountFunction, AggregationFunction}
 
 abstract sealed class Value {
@@ -87,6 +87,19 @@ case class RelationshipTypeValue(relationship: String) extends Value {
   }
 }
 
+/**
+ * A value given as a parameter when the query is executed. Parameters are
+ * bound before the query runs, so a query can be parsed once and executed
+ * with different parameters.
+ */
+case class ParameterValue(parameterName: String) extends Value {
+  def value(m: Map[String, Any]): Any = throw new ParameterNotFoundException("Expected a parameter named " + parameterName)
+
+  def identifier: Identifier = LiteralIdentifier("{" + parameterName + "}")
+
+  def checkAvailable(symbols: SymbolTable) {}
+}
+
 case class EntityValue(entityName:String) extends Value {
   def value(m: Map[String, Any]): Any = m.getOrElse(entityName, throw new NotFoundException)
 
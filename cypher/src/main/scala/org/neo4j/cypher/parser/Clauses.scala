@@ -40,31 +40,33 @@ trait Clauses extends JavaTokenParsers with Tokens with Values {
     case prop => Has(prop.asInstanceOf[PropertyValue])
   }
 
+  def operand: Parser[Value] = (value | parameter)
+
   def parens: Parser[Clause] = "(" ~> clause <~ ")"
 
-  def equals: Parser[Clause] = value ~ "=" ~ value ^^ {
+  def equals: Parser[Clause] = operand ~ "=" ~ operand ^^ {
     case l ~ "=" ~ r => Equals(l, r)
   }
 
-  def notEquals: Parser[Clause] = value ~ ("!=" | "<>") ~ value ^^ {
+  def notEquals: Parser[Clause] = operand ~ ("!=" | "<>") ~ operand ^^ {
     case l ~ wut ~ r => Not(Equals(l, r))
   }
 
   def orderedComparison: Parser[Clause] = (lessThanOrEqual | greaterThanOrEqual | lessThan | greaterThan)
 
-  def lessThan: Parser[Clause] = value ~ "<" ~ value ^^ {
+  def lessThan: Parser[Clause] = operand ~ "<" ~ operand ^^ {
     case l ~ "<" ~ r => LessThan(l, r)
   }
 
-  def greaterThan: Parser[Clause] = value ~ ">" ~ value ^^ {
+  def greaterThan: Parser[Clause] = operand ~ ">" ~ operand ^^ {
     case l ~ ">" ~ r => GreaterThan(l, r)
   }
 
-  def lessThanOrEqual: Parser[Clause] = value ~ "<=" ~ value ^^ {
+  def lessThanOrEqual: Parser[Clause] = operand ~ "<=" ~ operand ^^ {
     case l ~ "<=" ~ r => LessThanOrEqual(l, r)
   }
 
-  def greaterThanOrEqual: Parser[Clause] = value ~ ">=" ~ value ^^ {
+  def greaterThanOrEqual: Parser[Clause] = operand ~ ">=" ~ operand ^^ {
     case l ~ ">=" ~ r => GreaterThanOrEqual(l, r)
   }
 
@@ -21,18 +21,26 @@ package org.neo4j.cypher.parser
  */
 import org.neo4j.cypher.commands._
 import scala.util.parsing.combinator._
-trait StartClause extends JavaTokenParsers with Tokens {
-  def start: Parser[Start] = ignoreCase("start") ~> repsep(nodeByIds | nodeByIndex | nodeByIndexQuery | relsByIds | relsByIndex, ",") ^^ (Start(_: _*))
+trait StartClause extends JavaTokenParsers with Tokens with Values {
+  def start: Parser[Start] = ignoreCase("start") ~> repsep(nodeByIds | nodeByParameter | nodeByIndex | nodeByIndexQuery | relsByIds | relsByParameter | relsByIndex, ",") ^^ (Start(_: _*))
+
+  // Index values and queries can be parameters, which are bound when the query is executed.
+  // Strings are tried last, so that a missing value is reported as a missing string literal.
+  def indexValue: Parser[Any] = (parameter | string)
 
   def nodeByIds = identity ~ "=" ~ "(" ~ rep1sep(wholeNumber, ",") ~ ")" ^^ {
     case varName ~ "=" ~ "(" ~ id ~ ")" => NodeById(varName, id.map(_.toLong).toSeq: _*)
   }
 
-  def nodeByIndex = identity ~ "=" ~ "(" ~ identity ~ "," ~ identity ~ "," ~ string ~ ")" ^^ {
+  def nodeByParameter = identity ~ "=" ~ "(" ~ parameterName ~ ")" ^^ {
+    case varName ~ "=" ~ "(" ~ param ~ ")" => NodeByParameter(varName, param)
+  }
+
+  def nodeByIndex = identity ~ "=" ~ "(" ~ identity ~ "," ~ identity ~ "," ~ indexValue ~ ")" ^^ {
     case varName ~ "=" ~ "(" ~ index ~ "," ~ key ~ "," ~ value ~ ")" => NodeByIndex(varName, index, key, value)
   }
 
-  def nodeByIndexQuery = identity ~ "=" ~ "(" ~ identity ~ "," ~ string ~ ")" ^^ {
+  def nodeByIndexQuery = identity ~ "=" ~ "(" ~ identity ~ "," ~ indexValue ~ ")" ^^ {
     case varName ~ "=" ~ "(" ~ index ~ "," ~ query ~ ")" => NodeByIndexQuery(varName, index, query)
   }
 
@@ -40,7 +48,11 @@ trait StartClause extends JavaTokenParsers with Tokens {
     case varName ~ "=" ~ "<" ~ id ~ ">" => RelationshipById(varName, id.map(_.toLong).toSeq: _*)
   }
 
-  def relsByIndex = identity ~ "=" ~ "<" ~ identity ~ "," ~ identity ~ "," ~ string ~ ">" ^^ {
+  def relsByParameter = identity ~ "=" ~ "<" ~ parameterName ~ ">" ^^ {
+    case varName ~ "=" ~ "<" ~ param ~ ">" => RelationshipByParameter(varName, param)
+  }
+
+  def relsByIndex = identity ~ "=" ~ "<" ~ identity ~ "," ~ identity ~ "," ~ indexValue ~ ">" ^^ {
     case varName ~ "=" ~ "<" ~ index ~ "," ~ key ~ "," ~ value ~ ">" => RelationshipByIndex(varName, index, key, value)
   }
 }
@@ -47,6 +47,10 @@ trait Values extends JavaTokenParsers with Tokens {
 
   def relationshipType: Parser[Value] = identity <~ "~TYPE" ^^ {  case v => RelationshipTypeValue(v) }
 
+  def parameterName: Parser[String] = "{" ~> identity <~ "}"
+
+  def parameter: Parser[Value] = parameterName ^^ { case name => ParameterValue(name) }
+
 }
 
 
@@ -22,29 +22,252 @@ package org.neo4j.cypher.pipes
 import aggregation.AggregationFunction
 import org.neo4j.cypher.SymbolTable
 import org.neo4j.cypher.commands.{AggregationItem, ReturnItem}
+import collection.mutable.ArrayBuffer
+import collection.JavaConverters._
+import java.util.HashMap
+import java.io.Closeable
+import java.util.concurrent.{ConcurrentLinkedQueue, Semaphore, Executor}
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Groups the rows of the source by the values of the return items and
+ * aggregates each group, keeping the aggregation functions of the groups in
+ * a hash table.
+ * <p>
+ * At most maxGroupsInMemory groups are kept in the table. Rows of other
+ * groups are written to disk in partitions by the hash of their group, and
+ * each partition is aggregated on its own when the groups in memory have
+ * been returned.
+ * <p>
+ * With more than one thread the groups are partitioned by hash between the
+ * threads as well, which are taken from the aggregation threads shared by
+ * all executions. The rows are read on the thread pulling from this pipe
+ * and each thread aggregates the groups of its partition, so the results of
+ * the threads don't need to be merged. The aggregation threads don't take
+ * part in the transaction of the caller, so they only see committed data.
+ */
+class AggregationPipe(source: Pipe, returnItems: Seq[ReturnItem], aggregations: Seq[AggregationItem],
+                      maxGroupsInMemory: Int, aggregationThreads: AggregationThreads) extends Pipe {
+  def this(source: Pipe, returnItems: Seq[ReturnItem], aggregations: Seq[AggregationItem]) =
+    this(source, returnItems, aggregations, AggregationPipe.DEFAULT_MAX_GROUPS_IN_MEMORY, new AggregationThreads(1))
 
-class AggregationPipe(source: Pipe, returnItems: Seq[ReturnItem], aggregations: Seq[AggregationItem]) extends Pipe {
   val symbols: SymbolTable = source.symbols.add(aggregations.map(_.identifier))
 
   aggregations.foreach(_.assertDependencies(source))
 
-  def foreach[U](f: Map[String, Any] => U) {
-    val result = collection.mutable.Map[Seq[Any], Seq[AggregationFunction]]()
-    val valueNames = returnItems.map(_.columnName)
-    val aggregationNames = aggregations.map(_.identifier.name)
+  private val valueNames = returnItems.map(_.columnName)
+  private val aggregationNames = aggregations.map(_.identifier.name)
+  private val threads = aggregationThreads.count
+
+  // The spilled rows are closed when the groups have been read, reading them fails or they are closed before the end
+  def iterator: Iterator[Map[String, Any]] = {
+    val spills = new Spills()
+    new ClosingIterator(if (threads > 1) aggregateInParallel(spills) else aggregate(source.iterator, 0, spills).rows, Seq(spills))
+  }
+
+  /**
+   * The key of the group of the row. With one return item it's the value
+   * itself, which saves creating a sequence for every row.
+   */
+  private def groupKey(row: Map[String, Any]): Any =
+    if (valueNames.size == 1) row(valueNames.head) else valueNames.map(row(_))
+
+  private def groupValues(key: Any): Seq[Any] =
+    if (valueNames.size == 1) Seq(key) else key.asInstanceOf[Seq[Any]]
+
+  private def aggregate(rows: Iterator[Map[String, Any]], depth: Int, spills: Spills): Groups = {
+    val groups = new Groups(depth, spills)
+    ClosingIterator.readAll(rows)(groups.add)
+    groups
+  }
+
+  private class Groups(depth: Int, spills: Spills) {
+    private val table = new HashMap[Any, Array[AggregationFunction]]()
+    private var partitions: Array[SpilledRows] = null
+
+    def add(row: Map[String, Any]) {
+      val key = groupKey(row)
+      var functions = table.get(key)
+      if (functions == null && (table.size < maxGroupsInMemory || depth >= AggregationPipe.MAX_SPILL_DEPTH)) {
+        functions = aggregations.map(_.createAggregationFunction).toArray
+        table.put(key, functions)
+      }
+
+      if (functions != null) {
+        var i = 0
+        while (i < functions.length) {
+          functions(i)(row)
+          i += 1
+        }
+      } else {
+        if (partitions == null) {
+          partitions = Array.fill(AggregationPipe.SPILL_PARTITIONS)(spills.create())
+        }
+        partitions(AggregationPipe.spillPartition(key, depth)).add(row)
+      }
+    }
+
+    /**
+     * The aggregated groups in memory, followed by those of the spilled
+     * partitions, which are aggregated one at a time as they are needed.
+     */
+    def rows: Iterator[Map[String, Any]] = {
+      val inMemory = table.entrySet.iterator.asScala.map((entry) => result(entry.getKey, entry.getValue))
+      if (partitions == null) {
+        inMemory
+      } else {
+        val spilled = partitions
+        inMemory ++ spilled.iterator.flatMap((partition) => aggregate(partition.iterator, depth + 1, spills).rows)
+      }
+    }
+  }
+
+  private lazy val layout = symbols.layout
+  private lazy val valueSlots = valueNames.map(layout.slotOf(_)).toArray
+  private lazy val aggregationSlots = aggregationNames.map(layout.slotOf(_)).toArray
+
+  // Return items which the symbols of the source don't know of have no slots, those rows stay maps
+  private lazy val allSlotted = valueSlots.forall(_ >= 0) && aggregationSlots.forall(_ >= 0)
+
+  private def result(key: Any, functions: Array[AggregationFunction]): Map[String, Any] =
+    if (allSlotted) {
+      val values = layout.emptyValues
+      groupValues(key).zipWithIndex.foreach {
+        case (value, i) => values(valueSlots(i)) = value
+      }
+      var i = 0
+      while (i < functions.length) {
+        values(aggregationSlots(i)) = functions(i).result
+        i += 1
+      }
+      layout.row(values)
+    } else {
+      (valueNames.zip(groupValues(key)) ++ aggregationNames.zip(functions.map(_.result))).toMap
+    }
 
-    source.foreach(m => {
-      val groupValues = valueNames.map(m(_))
-      val functions = result.getOrElseUpdate(groupValues, aggregations.map(_.createAggregationFunction))
-      functions.foreach(func => func(m))
+  private def aggregateInParallel(spills: Spills): Iterator[Map[String, Any]] = {
+    val inFlight = new Semaphore(threads * AggregationPipe.QUEUED_BATCHES)
+    val partitions = (0 until threads).map((i) => new Partition(aggregationThreads.executor, spills, inFlight))
+
+    val batches = partitions.map((partition) => new ArrayBuffer[Map[String, Any]]())
+    try {
+      ClosingIterator.readAll(source.iterator)((row) => {
+        val thread = AggregationPipe.threadPartition(groupKey(row), threads)
+        batches(thread) += row
+        if (batches(thread).size == AggregationPipe.BATCH_SIZE) {
+          inFlight.acquire()
+          partitions(thread).add(batches(thread).toList)
+          batches(thread).clear()
+        }
+      })
+      partitions.zip(batches).foreach {
+        case (partition, batch) => if (!batch.isEmpty) {
+          inFlight.acquire()
+          partition.add(batch.toList)
+        }
+      }
+    } finally {
+      // Even when reading the rows has failed, so that no thread is still spilling rows when they are closed
+      inFlight.acquireUninterruptibly(threads * AggregationPipe.QUEUED_BATCHES)
+    }
+
+    partitions.foreach((partition) => if (partition.failure != null) {
+      throw partition.failure
     })
+    partitions.iterator.flatMap(_.groups.rows)
+  }
+
+  /**
+   * The groups of the rows of a partition, aggregated from the batches added
+   * to it in order by at most one thread at a time. A thread takes batches
+   * until there are none left instead of waiting for more, so the threads
+   * aren't held by an execution which is slow to read its rows, and any
+   * number of executions can share them. A permit of inFlight is released
+   * for every batch which has been aggregated.
+   */
+  private class Partition(executor: Executor, spills: Spills, inFlight: Semaphore) extends Runnable {
+    val groups = new Groups(0, spills)
+    @volatile var failure: Throwable = null
+
+    private val batches = new ConcurrentLinkedQueue[Seq[Map[String, Any]]]()
+    private val scheduled = new AtomicBoolean()
+
+    def add(batch: Seq[Map[String, Any]]) {
+      batches.add(batch)
+      schedule()
+    }
+
+    private def schedule() {
+      if (!batches.isEmpty && scheduled.compareAndSet(false, true)) {
+        executor.execute(this)
+      }
+    }
 
-    result.foreach {
-      case (key, value: Seq[AggregationFunction]) => {
-        val elems = valueNames.zip(key) ++ aggregationNames.zip(value.map(_.result))
-        f(elems.toMap)
+    def run() {
+      try {
+        var batch = batches.poll()
+        while (batch != null) {
+          // After a failure the rest of the batches are only taken, the failure is thrown by the reading thread
+          if (failure == null) {
+            try {
+              batch.foreach(groups.add)
+            } catch {
+              case e => failure = e
+            }
+          }
+          inFlight.release()
+          batch = batches.poll()
+        }
+      } finally {
+        scheduled.set(false)
+        // A batch added after the last one was taken, but before we were done, is taken by another run
+        schedule()
       }
     }
+  }
+
+  /**
+   * The spilled rows of an execution, including those of partitions which are
+   * spilled again while they are aggregated, so that all of them can be
+   * closed when the execution ends before they have been read.
+   */
+  private class Spills extends Closeable {
+    private val spilled = new ArrayBuffer[SpilledRows]()
+
+    def create(): SpilledRows = synchronized {
+      val rows = new SpilledRows()
+      spilled += rows
+      rows
+    }
+
+    def close() {
+      synchronized {
+        spilled.foreach(_.close())
+        spilled.clear()
+      }
+    }
+  }
+}
+
+object AggregationPipe {
+  val DEFAULT_MAX_GROUPS_IN_MEMORY = 1000000
 
+  private val SPILL_PARTITIONS = 16
+  private val MAX_SPILL_DEPTH = 3
+  private val BATCH_SIZE = 1024
+  private val QUEUED_BATCHES = 4
+
+  private def mix(hash: Int): Int = {
+    var h = hash
+    h ^= h >>> 16
+    h *= 0x85ebca6b
+    h ^= h >>> 13
+    h *= 0xc2b2ae35
+    h ^ (h >>> 16)
   }
-}
\ No newline at end of file
+
+  // Every level of spilling partitions by other bits of the hash, so that a partition is split up further
+  private def spillPartition(key: Any, depth: Int): Int = (mix(key.##) >>> (depth * 4)) & (SPILL_PARTITIONS - 1)
+
+  private def threadPartition(key: Any, threads: Int): Int = ((mix(key.##) >>> 16) & 0x7fff) % threads
+}
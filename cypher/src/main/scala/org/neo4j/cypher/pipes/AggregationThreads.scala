@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import java.util.WeakHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ThreadFactory, LinkedBlockingQueue, TimeUnit, ThreadPoolExecutor, ExecutorService}
+import org.neo4j.cypher.QueryCache
+import org.neo4j.graphdb.GraphDatabaseService
+
+/**
+ * The threads which groups are aggregated on, see AggregationPipe. At most
+ * count threads are created, and they are shared by all executions, so
+ * executing many queries at once doesn't create more of them. The threads
+ * end when they have been idle for a while, so nothing needs to shut them
+ * down when the database is.
+ */
+class AggregationThreads(val count: Int) {
+  lazy val executor: ExecutorService = {
+    val pool = new ThreadPoolExecutor(count, count, AggregationThreads.KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      new LinkedBlockingQueue[Runnable](), AggregationThreads.threadFactory)
+    pool.allowCoreThreadTimeOut(true)
+    pool
+  }
+}
+
+/**
+ * The aggregation threads of the databases, shared by all execution engines
+ * of a database.
+ */
+object AggregationThreads {
+  private val KEEP_ALIVE_SECONDS = 60
+  private val threadIds = new AtomicInteger()
+  private val threads = new WeakHashMap[AnyRef, AggregationThreads]()
+
+  private val threadFactory = new ThreadFactory {
+    def newThread(runnable: Runnable): Thread = {
+      val thread = new Thread(runnable, "Cypher aggregation-" + threadIds.incrementAndGet())
+      thread.setDaemon(true)
+      thread
+    }
+  }
+
+  /**
+   * @return the aggregation threads of the database, created with count
+   * threads if this is the first execution engine of the database.
+   */
+  def forDatabase(graph: GraphDatabaseService, count: Int): AggregationThreads = threads.synchronized {
+    var forGraph = threads.get(QueryCache.key(graph))
+    if (forGraph == null) {
+      forGraph = new AggregationThreads(count)
+      threads.put(QueryCache.key(graph), forGraph)
+    }
+    forGraph
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import java.io.Closeable
+
+/**
+ * Rows which hold on to resources, like the files of spilled rows, until they
+ * have been read to the end. The resources are closed then, when reading the
+ * rows fails, or when the rows are closed before the end, like when the LIMIT
+ * of a query has been reached. The rows are created when they are first
+ * asked for, so a failure to create them closes the resources too.
+ */
+class ClosingIterator(createRows: => Iterator[Map[String, Any]], resources: Seq[Closeable])
+  extends Iterator[Map[String, Any]] with Closeable {
+  private lazy val rows = createRows
+  private var closed = false
+
+  def hasNext: Boolean = !closed && {
+    val more = guard(rows.hasNext)
+    if (!more) {
+      close()
+    }
+    more
+  }
+
+  def next(): Map[String, Any] = if (closed) throw new NoSuchElementException() else guard(rows.next())
+
+  def close() {
+    if (!closed) {
+      closed = true
+      resources.foreach(_.close())
+    }
+  }
+
+  private def guard[T](read: => T): T = try {
+    read
+  } catch {
+    case e => {
+      close()
+      throw e
+    }
+  }
+}
+
+object ClosingIterator {
+  /**
+   * Closes the rows if they hold on to resources.
+   */
+  def close(rows: Iterator[Map[String, Any]]) {
+    rows match {
+      case closeable: Closeable => closeable.close()
+      case _ =>
+    }
+  }
+
+  /**
+   * Calls f with all of the rows. If that fails the rows won't be read to
+   * the end, so they are closed.
+   */
+  def readAll(rows: Iterator[Map[String, Any]])(f: Map[String, Any] => Unit) {
+    try {
+      rows.foreach(f)
+    } catch {
+      case e => {
+        close(rows)
+        throw e
+      }
+    }
+  }
+}
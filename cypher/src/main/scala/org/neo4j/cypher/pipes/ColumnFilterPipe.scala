@@ -30,12 +30,13 @@ class ColumnFilterPipe(source: Pipe, returnItems: Seq[ReturnItem]) extends Pipe
     new SymbolTable(returnItemNames.map( name => mergedSymbols.get(name).getOrElse(throw new SyntaxException("Unbound Symbol "+name))))
   }
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    source.foreach(row => {
-      val filtered = row.filter((kv) => kv match {
-        case (name, _) => returnItemNames.exists(_ == name)
-      })
-      f.apply(filtered)
+  // Only the return items have slots in the layout, so filling it leaves out the other values
+  def iterator: Iterator[Map[String, Any]] = {
+    val layout = symbols.layout
+    source.iterator.map(row => {
+      val values = layout.emptyValues
+      layout.fill(values, row)
+      layout.row(values)
     })
   }
 }
\ No newline at end of file
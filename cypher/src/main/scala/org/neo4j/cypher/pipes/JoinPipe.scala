@@ -25,10 +25,17 @@ import org.neo4j.cypher.SymbolTable
 class JoinPipe(a: Pipe, b: Pipe) extends Pipe {
   val symbols: SymbolTable = a.symbols ++ b.symbols
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    a.foreach((aMap) => {
-      b.foreach((bMap) => {
-        f.apply(aMap ++ bMap)
+  def iterator: Iterator[Map[String, Any]] = {
+    // The rows of b are pulled once, when the first row of a needs them, and kept for the other rows of a
+    lazy val bRows: Stream[Map[String, Any]] = b.iterator.toStream
+
+    val layout = symbols.layout
+    a.iterator.flatMap((aMap) => {
+      bRows.iterator.map((bMap) => {
+        val values = layout.emptyValues
+        layout.fill(values, aMap)
+        layout.fill(values, bMap)
+        layout.row(values)
       })
     })
   }
@@ -33,13 +33,25 @@ class PatternPipe(source: Pipe, matching: Match) extends Pipe {
 
   val symbols: SymbolTable = patternContext.symbolTable
 
-  def foreach[U](f: Map[String, Any] => U) {
+  private lazy val layout = symbols.layout
+
+  private lazy val nodeSlots: Seq[(Int, PatternNode)] = patternContext.nodes.toSeq.map {
+    case (name, node) => (layout.slotOf(name), node)
+  }
+
+  private lazy val relSlots: Seq[(Int, PatternRelationship)] = patternContext.rels.toSeq.map {
+    case (name, rel) => (layout.slotOf(name), rel)
+  }
+
+  def iterator: Iterator[Map[String, Any]] = {
     patternContext.validatePattern(source.symbols)
 
-    source.foreach((row) => {
+    // The start points of a row are bound when the matches of the row are
+    // asked for, after the matches of the row before have all been pulled
+    source.iterator.flatMap((row) => {
       row.foreach(bindStartPoint(_))
 
-      getPatternMatches(row).map(f)
+      getPatternMatches(row)
     })
   }
 
@@ -50,21 +62,20 @@ class PatternPipe(source: Pipe, matching: Match) extends Pipe {
     }
   }
 
-  def getPatternMatches(fromRow: Map[String, Any]): Iterable[Map[String, Any]] = {
+  def getPatternMatches(fromRow: Map[String, Any]): Iterator[Map[String, Any]] = {
     val startKey = fromRow.keys.head
     val startPNode = patternContext.nodes(startKey)
     val startNode = fromRow(startKey).asInstanceOf[Node]
     val matches = PatternMatcher.getMatcher.`match`(startPNode, startNode)
-    matches.map(patternMatch => {
-      val nodesMap = patternContext.nodes.map {
-        case (name: String, node: PatternNode) => name -> patternMatch.getNodeFor(node)
+    matches.iterator.map(patternMatch => {
+      val values = layout.emptyValues
+      nodeSlots.foreach {
+        case (slot, node) => values(slot) = patternMatch.getNodeFor(node)
       }
-
-      val relsMap = patternContext.rels.map {
-        case (name: String, rel: PatternRelationship) => name -> patternMatch.getRelationshipFor(rel)
+      relSlots.foreach {
+        case (slot, rel) => values(slot) = patternMatch.getRelationshipFor(rel)
       }
-
-      (nodesMap ++ relsMap).toMap[String, Any]
+      layout.row(values)
     })
   }
 
@@ -27,8 +27,14 @@ import org.neo4j.cypher.SymbolTable
  * wrap another pipe. StartPipes are the only exception to this.
  * Pipes are combined to form an execution plan, and when iterated over,
  * the execute the query.
+ *
+ * Pipes are pulled from: every pipe creates an iterator which asks the
+ * iterator of the pipe it wraps for rows as they are needed, so a pipe which
+ * doesn't need all rows, like the one for LIMIT, stops the work upstream too.
+ * Only pipes which need all their input before they can produce a row, like
+ * sorting and aggregation, keep rows in memory.
  */
-abstract class Pipe extends Traversable[Map[String, Any]] {
+abstract class Pipe extends Iterable[Map[String, Any]] {
 
   def ++(other: Pipe): Pipe = new JoinPipe(this, other)
   val symbols:SymbolTable
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import org.neo4j.cypher.{Row, Comparer}
+import scala.math.signum
+import org.neo4j.cypher.commands.SortItem
+import java.util.Comparator
+
+/**
+ * The ordering of the rows of a pipe by the items of an ORDER BY.
+ */
+trait RowOrdering extends Comparer {
+  this: Pipe =>
+
+  private lazy val layout = symbols.layout
+
+  // The rows of the source are usually laid out like our symbols, so the sort keys can be read by slot
+  private def valueOf(row: Map[String, Any], key: String): Any = row match {
+    case r: Row if (r.layout eq layout) && layout.slotOf(key) >= 0 => {
+      val value = r.valueAt(layout.slotOf(key))
+      if (Row.isAbsent(value)) r(key) else value
+    }
+    case _ => row(key)
+  }
+
+  /**
+   * @return less than zero if a comes before b, more than zero if b comes
+   * before a and zero if they are equal in the order.
+   */
+  def compareRows(a: Map[String, Any], b: Map[String, Any], order: List[SortItem]): Int = order match {
+    case Nil => 0
+    case head :: tail => {
+      val key = head.returnItem.identifier.name
+      val comparison = signum(compare(valueOf(a, key), valueOf(b, key)))
+      if (comparison == 0) {
+        compareRows(a, b, tail)
+      } else if (head.ascending) {
+        comparison
+      } else {
+        -comparison
+      }
+    }
+  }
+
+  def compareBy(a: Map[String, Any], b: Map[String, Any], order: List[SortItem]): Boolean =
+    compareRows(a, b, order) < 0
+
+  def rowComparator(order: List[SortItem]): Comparator[Map[String, Any]] = new Comparator[Map[String, Any]] {
+    def compare(a: Map[String, Any], b: Map[String, Any]): Int = compareRows(a, b, order)
+  }
+}
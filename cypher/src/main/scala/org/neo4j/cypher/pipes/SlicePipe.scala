@@ -20,18 +20,26 @@
 package org.neo4j.cypher.pipes
 
 import org.neo4j.cypher.SymbolTable
+import java.io.Closeable
 
 class SlicePipe(source:Pipe, skip:Option[Int], limit:Option[Int]) extends Pipe {
   val symbols: SymbolTable = source.symbols
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    val slicedResult = (skip, limit) match {
-      case (None, None) => source
-      case (Some(x), None) => source.drop(x)
-      case (None, Some(x)) => source.take(x)
-      case (Some(startAt), Some(count)) => source.slice(startAt, startAt + count)
+  // Iterator.take stops pulling from the source when the limit is reached, and
+  // whatever the source holds on to for the rows after it is closed then
+  def iterator: Iterator[Map[String, Any]] = {
+    val rows = source.iterator
+    val skipped = skip match {
+      case None => rows
+      case Some(x) => rows.drop(x)
     }
 
-    slicedResult.foreach(f)
+    limit match {
+      case None => skipped
+      case Some(x) => rows match {
+        case closeable: Closeable => new ClosingIterator(skipped.take(x), Seq(closeable))
+        case _ => skipped.take(x)
+      }
+    }
   }
 }
\ No newline at end of file
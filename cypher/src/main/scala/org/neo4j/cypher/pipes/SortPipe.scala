@@ -19,30 +19,77 @@
  */
 package org.neo4j.cypher.pipes
 
-import org.neo4j.cypher.{Comparer, SymbolTable}
-import scala.math.signum
+import org.neo4j.cypher.SymbolTable
 import org.neo4j.cypher.commands.SortItem
+import collection.mutable.ArrayBuffer
+import java.util.{Comparator, PriorityQueue}
+
+/**
+ * Sorts all rows of the source. At most maxRowsInMemory rows are sorted in
+ * memory at a time, larger inputs are sorted in runs which are spilled to
+ * disk and merged when the rows are pulled. The rows are read from the
+ * source when the first sorted row is asked for.
+ */
+class SortPipe(source: Pipe, sortDescription: List[SortItem], maxRowsInMemory: Int) extends Pipe with RowOrdering {
+  def this(source: Pipe, sortDescription: List[SortItem]) = this(source, sortDescription, SortPipe.DEFAULT_MAX_ROWS_IN_MEMORY)
 
-class SortPipe(source: Pipe,sortDescription: List[SortItem]) extends Pipe with Comparer {
   val symbols: SymbolTable = source.symbols
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    val sorted = source.toList.sortWith((a, b) => compareBy (a,b,sortDescription))
+  // The runs are closed when the rows have been read, reading them fails or they are closed before the end
+  def iterator: Iterator[Map[String, Any]] = {
+    val runs = new ArrayBuffer[SpilledRows]()
+    new ClosingIterator(sortInRuns(runs), runs)
+  }
+
+  private def sortInRuns(runs: ArrayBuffer[SpilledRows]): Iterator[Map[String, Any]] = {
+    val buffer = new ArrayBuffer[Map[String, Any]]()
+
+    ClosingIterator.readAll(source.iterator)((row) => {
+      buffer += row
+      if (buffer.size >= maxRowsInMemory) {
+        runs += new SpilledRows(sort(buffer))
+        buffer.clear()
+      }
+    })
 
-    sorted.foreach(f)
+    if (runs.isEmpty) {
+      sort(buffer).iterator
+    } else {
+      merge(runs.map(_.iterator) :+ sort(buffer).iterator)
+    }
   }
 
-  def compareBy(a:Map[String, Any], b:Map[String, Any], order:Seq[SortItem]):Boolean = order match {
-    case Nil => false
-    case head :: tail => {
-      val key = head.returnItem.identifier.name
-      val aVal = a(key)
-      val bVal = b(key)
-      signum(compare(aVal, bVal)) match {
-        case 1 => !head.ascending
-        case -1 => head.ascending
-        case 0 => compareBy(a,b,tail)
+  private def sort(rows: Seq[Map[String, Any]]): List[Map[String, Any]] =
+    rows.toList.sortWith((a, b) => compareBy(a, b, sortDescription))
+
+  // Rows which are equal in the order are taken from the earlier run first, which keeps the sort stable
+  private def merge(runs: Seq[Iterator[Map[String, Any]]]): Iterator[Map[String, Any]] = {
+    val comparator = new Comparator[(BufferedIterator[Map[String, Any]], Int)] {
+      def compare(a: (BufferedIterator[Map[String, Any]], Int), b: (BufferedIterator[Map[String, Any]], Int)): Int = {
+        val comparison = compareRows(a._1.head, b._1.head, sortDescription)
+        if (comparison != 0) comparison else a._2 - b._2
+      }
+    }
+    val heads = new PriorityQueue[(BufferedIterator[Map[String, Any]], Int)](runs.size, comparator)
+    runs.zipWithIndex.foreach {
+      case (run, index) => if (run.hasNext) heads.add((run.buffered, index))
+    }
+
+    new Iterator[Map[String, Any]] {
+      def hasNext: Boolean = !heads.isEmpty
+
+      def next(): Map[String, Any] = {
+        val (run, index) = heads.poll()
+        val row = run.next()
+        if (run.hasNext) {
+          heads.add((run, index))
+        }
+        row
       }
     }
   }
-}
\ No newline at end of file
+}
+
+object SortPipe {
+  val DEFAULT_MAX_ROWS_IN_MEMORY = 100000
+}
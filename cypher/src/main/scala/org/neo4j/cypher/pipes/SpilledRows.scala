@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import java.io._
+import org.neo4j.graphdb.{GraphDatabaseService, Relationship, Node}
+
+/**
+ * Rows written to a temporary file, to be read back once in the order they
+ * were added. Nodes and relationships are written as their ids and looked
+ * up again when read. The file is deleted when the last row has been read
+ * or when the rows are closed, and at the latest when rows which were
+ * neither are garbage collected.
+ */
+class SpilledRows extends Iterable[Map[String, Any]] with Closeable {
+  private val file = File.createTempFile("cypher-rows", ".tmp")
+
+  private var out = new RowOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))
+  private var in: RowInputStream = null
+  private var rowCount = 0
+  private var graph: GraphDatabaseService = null
+  private var closed = false
+
+  def this(rows: Seq[Map[String, Any]]) = {
+    this()
+    try {
+      rows.foreach(add)
+    } catch {
+      case e => {
+        close()
+        throw e
+      }
+    }
+  }
+
+  /**
+   * Writes the row to the file. Rows can't be added after the rows have
+   * been iterated over or closed.
+   */
+  def add(row: Map[String, Any]) {
+    if (out == null) {
+      throw new IllegalStateException("The rows have already been read")
+    }
+    out.writeInt(row.size)
+    row.foreach {
+      case (name, value) => {
+        out.writeUTF(name)
+        out.writeObject(value)
+      }
+    }
+    // The written objects aren't needed for references to them by later rows, so let go of them
+    out.reset()
+    rowCount += 1
+  }
+
+  private def finishWriting() {
+    if (out != null) {
+      out.close()
+      graph = out.graph
+      out = null
+    }
+  }
+
+  def iterator: Iterator[Map[String, Any]] = {
+    finishWriting()
+    if (closed || in != null) {
+      throw new IllegalStateException("The rows can only be read once")
+    }
+    in = new RowInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16), graph)
+
+    new Iterator[Map[String, Any]] with Closeable {
+      private var left = rowCount
+
+      if (left == 0) {
+        close()
+      }
+
+      def hasNext: Boolean = left > 0 && !closed
+
+      def next(): Map[String, Any] = {
+        if (!hasNext) {
+          throw new NoSuchElementException()
+        }
+        val size = in.readInt()
+        val row = (1 to size).map((i) => in.readUTF() -> in.readObject()).toMap[String, Any]
+        left -= 1
+        if (left == 0) {
+          close()
+        }
+        row
+      }
+
+      def close() {
+        SpilledRows.this.close()
+      }
+    }
+  }
+
+  /**
+   * Closes the file and deletes it, whether the rows have been read or not.
+   */
+  def close() {
+    if (!closed) {
+      closed = true
+      try {
+        if (out != null) {
+          out.close()
+          out = null
+        }
+        if (in != null) {
+          in.close()
+        }
+      } finally {
+        file.delete()
+      }
+    }
+  }
+
+  // Rows of a result which is abandoned before it has been read to the end don't leave their file behind
+  override protected def finalize() {
+    close()
+    super.finalize()
+  }
+}
+
+private case class NodeReference(id: Long) extends Serializable
+
+private case class RelationshipReference(id: Long) extends Serializable
+
+private class RowOutputStream(out: OutputStream) extends ObjectOutputStream(out) {
+  var graph: GraphDatabaseService = null
+
+  enableReplaceObject(true)
+
+  override def replaceObject(obj: AnyRef): AnyRef = obj match {
+    case node: Node => {
+      graph = node.getGraphDatabase
+      NodeReference(node.getId)
+    }
+    case rel: Relationship => {
+      graph = rel.getGraphDatabase
+      RelationshipReference(rel.getId)
+    }
+    case _ => obj
+  }
+}
+
+private class RowInputStream(in: InputStream, graph: GraphDatabaseService) extends ObjectInputStream(in) {
+  enableResolveObject(true)
+
+  override def resolveObject(obj: AnyRef): AnyRef = obj match {
+    case NodeReference(id) => graph.getNodeById(id)
+    case RelationshipReference(id) => graph.getRelationshipById(id)
+    case _ => obj
+  }
+}
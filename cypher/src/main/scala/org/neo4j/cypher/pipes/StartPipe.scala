@@ -20,20 +20,22 @@
 package org.neo4j.cypher.pipes
 
 import org.neo4j.cypher.SymbolTable
-import org.neo4j.graphdb.{Relationship, Node, PropertyContainer}
+import org.neo4j.graphdb.{Relationship, PropertyContainer}
 import org.neo4j.cypher.commands.{Identifier, RelationshipIdentifier, NodeIdentifier}
 
-class StartPipe[T <: PropertyContainer](name: String, source: Iterable[T]) extends Pipe {
-  val symbolType: Identifier = source match {
-    case nodes: Iterable[Node] => NodeIdentifier(name)
-    case rels: Iterable[Relationship] => RelationshipIdentifier(name)
-  }
+/**
+ * The source of the rows of a query. The entities are looked up again every
+ * time the pipe is iterated over, and pulled one at a time, so index hits
+ * aren't read further than the query needs.
+ */
+class StartPipe[T <: PropertyContainer](name: String, createSource: => Iterable[T])(implicit manifest: Manifest[T]) extends Pipe {
+  val symbolType: Identifier =
+    if (classOf[Relationship].isAssignableFrom(manifest.erasure)) RelationshipIdentifier(name) else NodeIdentifier(name)
 
   val symbols: SymbolTable = new SymbolTable(List(symbolType))
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    source.foreach((x) => {
-      f(Map(name -> x))
-    })
-  }
+  def iterator: Iterator[Map[String, Any]] = createSource.iterator.map((x) => {
+    val row: Map[String, Any] = symbols.layout.row(Array[Any](x))
+    row
+  })
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import org.neo4j.cypher.SymbolTable
+import org.neo4j.cypher.commands.SortItem
+import java.util.{Comparator, PriorityQueue}
+
+/**
+ * Returns the first count rows of the source in sorted order, for an ORDER BY
+ * with a LIMIT. Only count rows are kept in memory while the source is read,
+ * in a heap with the last of them on top, so a row which doesn't make it
+ * into the top rows is thrown away right away.
+ */
+class TopPipe(source: Pipe, sortDescription: List[SortItem], count: Int) extends Pipe with RowOrdering {
+  val symbols: SymbolTable = source.symbols
+
+  def iterator: Iterator[Map[String, Any]] = {
+    if (count <= 0) {
+      return Iterator.empty
+    }
+
+    // Rows which are equal in the order keep the order of the source, like they do when sorting
+    val comparator = new Comparator[(Map[String, Any], Long)] {
+      def compare(a: (Map[String, Any], Long), b: (Map[String, Any], Long)): Int = {
+        val comparison = compareRows(a._1, b._1, sortDescription)
+        if (comparison != 0) comparison else java.lang.Long.signum(a._2 - b._2)
+      }
+    }
+    val lastFirst = java.util.Collections.reverseOrder(comparator)
+    val top = new PriorityQueue[(Map[String, Any], Long)](math.min(count, 1024) + 1, lastFirst)
+
+    var position = 0L
+    ClosingIterator.readAll(source.iterator)((row) => {
+      val ranked = (row, position)
+      position += 1
+      if (top.size < count) {
+        top.add(ranked)
+      } else if (comparator.compare(ranked, top.peek) < 0) {
+        top.poll()
+        top.add(ranked)
+      }
+    })
+
+    // The heap gives the rows last first
+    var sorted = List[Map[String, Any]]()
+    while (!top.isEmpty) {
+      sorted = top.poll()._1 :: sorted
+    }
+    sorted.iterator
+  }
+}
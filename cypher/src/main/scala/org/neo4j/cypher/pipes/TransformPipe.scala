@@ -32,11 +32,14 @@ class TransformPipe(source: Pipe, returnItems: Seq[ReturnItem]) extends Pipe {
 
   returnItems.foreach(_.assertDependencies(source))
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    source.foreach(row => {
-      val projection = returnItems.map(_(row)).foldLeft(Map[String,Any]())(_ ++ _)
-      f.apply(projection ++ row)
+  def iterator: Iterator[Map[String, Any]] = {
+    val layout = symbols.layout
+    source.iterator.map(row => {
+      val values = layout.emptyValues
+      returnItems.foreach((item) => layout.fill(values, item(row)))
+      // Values already in the row win over the projected ones
+      layout.fill(values, row)
+      layout.row(values)
     })
   }
-}
-
+}
\ No newline at end of file
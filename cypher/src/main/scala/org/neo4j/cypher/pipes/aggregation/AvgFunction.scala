@@ -22,11 +22,11 @@ package org.neo4j.cypher.pipes.aggregation
 import org.neo4j.cypher.commands.ReturnItem
 import org.neo4j.cypher.SyntaxException
 
-class AvgFunction(returnItem: ReturnItem) extends AggregationFunction with Plus {
+class AvgFunction(returnItem: ReturnItem) extends AggregationFunction {
   private var count: Int = 0
-  private var sofar: Any = 0
+  private val sofar = new SumAccumulator
 
-  def result: Any = divide(sofar, count)
+  def result: Any = sofar.average(count)
 
   def apply(data: Map[String, Any]) {
     val value = returnItem(data)(returnItem.columnName)
@@ -35,7 +35,7 @@ class AvgFunction(returnItem: ReturnItem) extends AggregationFunction with Plus
       case null =>
       case number: Number => {
         count = count + 1
-        sofar = plus(sofar, number)
+        sofar.add(number)
       }
       case _ => throw new SyntaxException("AVG can only handle values of Number type, or null.")
     }
@@ -20,17 +20,16 @@
 package org.neo4j.cypher.pipes.aggregation
 
 import org.neo4j.cypher.commands.ReturnItem
-import org.neo4j.cypher.{SyntaxException, Comparer}
-import java.lang.Boolean
+import org.neo4j.cypher.SyntaxException
 
-trait MinMax extends AggregationFunction with Comparer {
+trait MinMax extends AggregationFunction {
   val returnItem: ReturnItem
 
   def keep(comparisonResult: Int): Boolean
 
-  private var biggestSeen: Any = null
+  private val kept = new MinMaxAccumulator(keep)
 
-  def result: Any = biggestSeen
+  def result: Any = kept.value
 
   def apply(data: Map[String, Any]) {
     val value = returnItem(data)(returnItem.columnName)
@@ -38,21 +37,13 @@ trait MinMax extends AggregationFunction with Comparer {
     try {
       value match {
         case null =>
-        case x: Comparable[_] => checkIfLargest(value)
+        case x: Comparable[_] => kept.add(x)
         case _ => throw new SyntaxException("MIN/MAX can only handle values of Comparable type, or null.")
       }
     } catch {
       case error => throw new SyntaxException("Identifier: %s - %s".format(returnItem.columnName, error.getMessage))
     }
   }
-
-  private def checkIfLargest(value: Any) {
-    if (biggestSeen == null) {
-      biggestSeen = value
-    } else if (keep(compare(biggestSeen, value))) {
-      biggestSeen = value
-    }
-  }
 }
 
 class MaxFunction(val returnItem: ReturnItem) extends AggregationFunction with MinMax {
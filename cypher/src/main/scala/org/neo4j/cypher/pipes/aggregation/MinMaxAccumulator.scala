@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes.aggregation
+
+import org.neo4j.cypher.Comparer
+
+/**
+ * Keeps the value which keep prefers over all others added, by the result
+ * of comparing the value kept so far with each added one. While numbers of
+ * the same type as the kept one are added, like in a column of numbers, they
+ * are compared as primitives with a copy of the kept number, instead of
+ * going through the comparison of any two values for every number added.
+ * Other values are compared like Comparer does.
+ */
+class MinMaxAccumulator(keep: Int => Boolean) extends Comparer {
+  private var kept: AnyRef = null
+  private var keptClass: Class[_] = null
+  private var keptType = MinMaxAccumulator.OTHER
+  private var keptIntegral: Long = 0
+  private var keptFloating: Double = 0
+
+  def value: Any = kept
+
+  def add(value: AnyRef) {
+    if (kept == null || keep(compareWithKept(value))) {
+      kept = value
+      keptClass = value.getClass
+      keptType = MinMaxAccumulator.typeOf(value)
+      if (keptType == MinMaxAccumulator.INTEGRAL) {
+        keptIntegral = value.asInstanceOf[Number].longValue
+      } else if (keptType == MinMaxAccumulator.FLOATING) {
+        keptFloating = value.asInstanceOf[Number].doubleValue
+      }
+    }
+  }
+
+  // Comparing the primitives gives the same as compareTo on numbers of the same type
+  private def compareWithKept(value: AnyRef): Int =
+    if (value.getClass ne keptClass) {
+      compare(kept, value)
+    } else if (keptType == MinMaxAccumulator.INTEGRAL) {
+      val integral = value.asInstanceOf[Number].longValue
+      if (keptIntegral < integral) -1 else if (keptIntegral > integral) 1 else 0
+    } else if (keptType == MinMaxAccumulator.FLOATING) {
+      java.lang.Double.compare(keptFloating, value.asInstanceOf[Number].doubleValue)
+    } else {
+      compare(kept, value)
+    }
+}
+
+object MinMaxAccumulator {
+  private val OTHER = 0
+  private val INTEGRAL = 1
+  private val FLOATING = 2
+
+  private def typeOf(value: AnyRef): Int = value match {
+    case _: java.lang.Integer | _: java.lang.Long | _: java.lang.Short | _: java.lang.Byte => INTEGRAL
+    case _: java.lang.Double | _: java.lang.Float => FLOATING
+    case _ => OTHER
+  }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes.aggregation
+
+/**
+ * Sums numbers in primitive fields, so that the sum so far isn't boxed for
+ * every number added. The sum has the type of the widest number added, like
+ * adding the numbers one by one does: Int for bytes, shorts and ints, then
+ * Long, Float and Double.
+ */
+class SumAccumulator {
+  private var integral: Long = 0
+  private var floating: Double = 0
+  private var widest = SumAccumulator.INT
+
+  def add(number: Number) {
+    number match {
+      case _: java.lang.Integer | _: java.lang.Short | _: java.lang.Byte => integral += number.longValue
+      case _: java.lang.Long => {
+        integral += number.longValue
+        widen(SumAccumulator.LONG)
+      }
+      case _: java.lang.Float => {
+        floating += number.doubleValue
+        widen(SumAccumulator.FLOAT)
+      }
+      case _ => {
+        floating += number.doubleValue
+        widen(SumAccumulator.DOUBLE)
+      }
+    }
+  }
+
+  private def widen(numberType: Int) {
+    if (numberType > widest) {
+      widest = numberType
+    }
+  }
+
+  def sum: Any =
+    if (widest == SumAccumulator.INT) {
+      integral.toInt
+    } else if (widest == SumAccumulator.LONG) {
+      integral
+    } else if (widest == SumAccumulator.FLOAT) {
+      (integral + floating).toFloat
+    } else {
+      integral + floating
+    }
+
+  /**
+   * The sum divided by count. Like for sums of values of the types
+   * themselves, the average of longs is a long and the average of floats a
+   * float, but the average of ints is a double.
+   */
+  def average(count: Int): Any =
+    if (widest == SumAccumulator.INT) {
+      integral.toDouble / count
+    } else if (widest == SumAccumulator.LONG) {
+      integral / count
+    } else if (widest == SumAccumulator.FLOAT) {
+      ((integral + floating) / count).toFloat
+    } else {
+      (integral + floating) / count
+    }
+}
+
+object SumAccumulator {
+  private val INT = 0
+  private val LONG = 1
+  private val FLOAT = 2
+  private val DOUBLE = 3
+}
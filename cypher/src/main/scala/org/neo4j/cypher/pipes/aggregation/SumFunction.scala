@@ -22,21 +22,18 @@ package org.neo4j.cypher.pipes.aggregation
 import org.neo4j.cypher.SyntaxException
 import org.neo4j.cypher.commands.ReturnItem
 
-class SumFunction(returnItem:ReturnItem) extends AggregationFunction with Plus {
-  private var soFar: Any = null
+class SumFunction(returnItem:ReturnItem) extends AggregationFunction {
+  private val soFar = new SumAccumulator
 
-  def result: Any = soFar match {
-    case null => 0
-    case _ => soFar
-  }
+  def result: Any = soFar.sum
 
   def apply(data: Map[String, Any]) {
     val value = returnItem(data)(returnItem.columnName)
 
-    if(value != null && !value.isInstanceOf[Number]) {
-      throw new SyntaxException("Sum can only handle values of Number type, or null.")
+    value match {
+      case null =>
+      case number: Number => soFar.add(number)
+      case _ => throw new SyntaxException("Sum can only handle values of Number type, or null.")
     }
-
-    soFar = plus(soFar, value)
   }
-}
\ No newline at end of file
+}
@@ -559,4 +559,23 @@ class CypherParserTest extends JUnitSuite {
       executionTree)
   }
 
+  @Test def shouldParseStartParameters() {
+    testQuery(
+      "start a = ({ids}), b = (index, key, {value}), c = <{rels}> return a",
+      Query(
+        Return(ValueReturnItem(EntityValue("a"))),
+        Start(NodeByParameter("a", "ids"), NodeByIndex("b", "index", "key", ParameterValue("value")),
+          RelationshipByParameter("c", "rels"))))
+  }
+
+  @Test def shouldParseParametersInWhere() {
+    testQuery(
+      "start a = (0) where a.name = {name} and {age} < a.age return a",
+      Query(
+        Return(ValueReturnItem(EntityValue("a"))),
+        Start(NodeById("a", 0)),
+        And(Equals(PropertyValue("a", "name"), ParameterValue("name")),
+          LessThan(ParameterValue("age"), PropertyValue("a", "age")))))
+  }
+
 }
@@ -24,9 +24,11 @@ import org.junit.Assert._
 import java.lang.String
 import org.junit.{Ignore, Test}
 import parser.CypherParser
+import pipes.{FakePipe, SortPipe}
 import scala.collection.JavaConverters._
 import org.junit.matchers.JUnitMatchers._
 import org.neo4j.graphdb.{Relationship, Direction, Node}
+import org.neo4j.cypher.management.CypherQueryCache
 
 class ExecutionEngineTest extends ExecutionEngineTestBase {
 
@@ -456,6 +458,15 @@ class ExecutionEngineTest extends ExecutionEngineTestBase {
     assertEquals(nodes.slice(2, 4).toList, result.columnAs[Node]("start").toList)
   }
 
+  @Test def shouldLookUpNodesSpilledBySorting() {
+    val nodes = createNodes("A", "B", "C", "D", "E")
+    val rows = nodes.reverse.map((n) => Map[String, Any]("n" -> n, "name" -> n.getProperty("name")))
+
+    val sortPipe = new SortPipe(new FakePipe(rows), List(SortItem(ValueReturnItem(EntityValue("name")), true)), 2)
+
+    assertEquals(nodes, sortPipe.toList.map(_("n")))
+  }
+
   @Test def shouldSortOnAggregatedFunction() {
     val n1 = createNode(Map("name" -> "andres", "divison" -> "Sweden", "age" -> 33))
     val n2 = createNode(Map("name" -> "michael", "divison" -> "Germany", "age" -> 22))
@@ -619,6 +630,69 @@ class ExecutionEngineTest extends ExecutionEngineTestBase {
     }
   }
 
+  @Test def shouldBindParameters() {
+    val n1 = createNode(Map("name" -> "Andres"))
+    val n2 = createNode(Map("name" -> "Jim"))
+    val n3 = createNode(Map("name" -> "Jim"))
+
+    val query = "start n = ({ids}) where n.name = {name} return n"
+    val result = engine.execute(query, Map("ids" -> List(n1.getId, n2, n3.getId), "name" -> "Jim"))
+
+    assertEquals(List(n2, n3), result.columnAs[Node]("n").toList)
+  }
+
+  @Test def shouldParseCachedQueriesOnce() {
+    val n1 = createNode()
+    val n2 = createNode()
+    val query = "start n = ({id}) return n"
+
+    assertEquals(List(n1), engine.execute(query, Map("id" -> n1.getId)).columnAs[Node]("n").toList)
+    assertEquals(List(n2), engine.execute(query, Map("id" -> n2.getId)).columnAs[Node]("n").toList)
+
+    assertEquals(1, engine.queryCache.getMisses)
+    assertEquals(1, engine.queryCache.getHits)
+  }
+
+  @Test(expected = classOf[ParameterNotFoundException]) def shouldComplainAboutMissingParameters() {
+    engine.execute("start n = (0) where n.name = {name} return n").toList
+  }
+
+  @Test def queryCacheShouldEvictLeastRecentlyUsed() {
+    val cache = new QueryCache(2)
+    val parser = new CypherParser()
+    def parse(text: String) = cache.getOrParse(text, (t) => parser.parse(t))
+
+    parse("start a = (0) return a")
+    parse("start b = (0) return b")
+    parse("start a = (0) return a")
+    parse("start c = (0) return c")
+    parse("start b = (0) return b")
+
+    assertEquals(2, cache.getSize)
+    assertEquals(1, cache.getHits)
+    assertEquals(4, cache.getMisses)
+  }
+
+  @Test def enginesOfADatabaseShareItsQueryCache() {
+    val other = new ExecutionEngine(graph)
+    other.execute("start n = (0) return n").toList
+    engine.execute("start n = (0) return n").toList
+
+    assertSame(engine.queryCache, other.queryCache)
+    assertEquals(1, engine.queryCache.getMisses)
+    assertEquals(1, engine.queryCache.getHits)
+  }
+
+  @Test def queryCacheStatisticsArePublishedAsManagementBean() {
+    engine.execute("start n = (0) return n").toList
+    engine.execute("start n = (0) return n").toList
+
+    val bean = graph.getManagementBean(classOf[CypherQueryCache])
+    assertEquals(1, bean.getMisses)
+    assertEquals(1, bean.getHits)
+    assertEquals(1, bean.getSize)
+  }
+
   private def parseAndExecute(q: String): ExecutionResult = {
     val query = new CypherParser().parse(q)
     execute(query)
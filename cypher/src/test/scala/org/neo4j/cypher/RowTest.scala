@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+import org.junit.Test
+import org.junit.Assert._
+import org.scalatest.junit.JUnitSuite
+
+class RowTest extends JUnitSuite {
+  val layout = new RowLayout(IndexedSeq("a", "b", "c"))
+
+  private def row(values: Any*): Row = {
+    val array = layout.emptyValues
+    values.zipWithIndex.foreach { case (value, slot) => array(slot) = value }
+    layout.row(array)
+  }
+
+  @Test def shouldFindValuesByNameAndSlot() {
+    val r = row(1, "x", null)
+
+    assertEquals(Some(1), r.get("a"))
+    assertEquals(Some(null), r.get("c"))
+    assertEquals(None, r.get("d"))
+    assertEquals("x", r.valueAt(layout.slotOf("b")))
+  }
+
+  @Test def absentSlotsAreNotPartOfTheRow() {
+    val r = row(1)
+
+    assertEquals(None, r.get("b"))
+    assertEquals(Map("a" -> 1), r)
+    assertEquals(Set("a"), r.keySet)
+  }
+
+  @Test def addingAndRemovingLeavesTheRowAsItWas() {
+    val r = row(1, 2)
+
+    assertEquals(Map("a" -> 1, "b" -> 2, "c" -> 3), r + ("c" -> 3))
+    assertEquals(Map("a" -> 1, "b" -> 2, "d" -> 4), r + ("d" -> 4))
+    assertEquals(Map("b" -> 2), r - "a")
+    assertEquals(Map("a" -> 1, "b" -> 2), r)
+  }
+
+  @Test def shouldFillFromRowsWithOtherLayouts() {
+    val other = new RowLayout(IndexedSeq("b", "d"))
+    val values = layout.emptyValues
+
+    layout.fill(values, other.row(Array[Any]("x", "y")))
+    layout.fill(values, Map("c" -> 3, "e" -> 5))
+
+    assertEquals(Map("b" -> "x", "c" -> 3), layout.row(values))
+  }
+}
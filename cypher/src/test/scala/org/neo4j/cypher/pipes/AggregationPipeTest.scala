@@ -23,6 +23,7 @@ import org.junit.Test
 import org.junit.Assert._
 import org.junit.matchers.JUnitMatchers._
 import scala.collection.JavaConverters._
+import java.util.concurrent.ThreadPoolExecutor
 import org.neo4j.cypher.commands._
 import org.neo4j.cypher.{SyntaxException, SymbolTable}
 import org.scalatest.junit.JUnitSuite
@@ -78,4 +79,97 @@ class AggregationPipeTest extends JUnitSuite {
     assertEquals(List(Map("count(name)" -> 3)), aggregationPipe.toList)
   }
 
+  @Test def shouldAggregateGroupsSpilledToDisk() {
+    val aggregationPipe = new AggregationPipe(manyGroups, List(ValueReturnItem(EntityValue("x"))),
+      List(CountStar(), Sum(ValueReturnItem(EntityValue("y")))), 10, new AggregationThreads(1))
+
+    assertEquals(expectedGroups, aggregationPipe.toSet)
+  }
+
+  @Test def shouldAggregateOnSeveralThreads() {
+    val aggregationPipe = new AggregationPipe(manyGroups, List(ValueReturnItem(EntityValue("x"))),
+      List(CountStar(), Sum(ValueReturnItem(EntityValue("y")))), 10, new AggregationThreads(3))
+
+    assertEquals(expectedGroups, aggregationPipe.toSet)
+  }
+
+  @Test def shouldShareTheAggregationThreadsBetweenExecutions() {
+    val threads = new AggregationThreads(3)
+    (1 to 5).foreach((i) => {
+      val aggregationPipe = new AggregationPipe(manyGroups, List(ValueReturnItem(EntityValue("x"))),
+        List(CountStar(), Sum(ValueReturnItem(EntityValue("y")))), 10, threads)
+
+      assertEquals(expectedGroups, aggregationPipe.toSet)
+    })
+    assertTrue(threads.executor.asInstanceOf[ThreadPoolExecutor].getLargestPoolSize <= 3)
+  }
+
+  @Test def shouldAggregateConcurrentExecutionsOnTheSameThreads() {
+    val threads = new AggregationThreads(2)
+    // Enough rows for every execution to have more batches in flight than the threads can take at once
+    val rows = (0 until 50000).map((i) => Map[String, Any]("x" -> i % 100, "y" -> 1))
+    val results = new java.util.concurrent.ConcurrentHashMap[Int, Set[Map[String, Any]]]()
+    val executions = (0 until 4).map((i) => new Thread(new Runnable {
+      def run() {
+        val aggregationPipe = new AggregationPipe(new FakePipe(rows, xAndY), List(ValueReturnItem(EntityValue("x"))),
+          List(CountStar()), 1000, threads)
+        results.put(i, aggregationPipe.toSet)
+      }
+    }))
+    executions.foreach(_.start())
+    executions.foreach(_.join(60000))
+
+    val expected = (0 until 100).map((x) => Map[String, Any]("x" -> x, "count(*)" -> 500)).toSet
+    assertEquals(4, results.size)
+    results.values.asScala.foreach((result) => assertEquals(expected, result))
+  }
+
+  @Test def shouldFailOnFailuresInAggregationThreads() {
+    val source = new FakePipe((1 to 5000).map((i) => Map[String, Any]("x" -> i % 7, "y" -> "not a number")), xAndY)
+    val aggregationPipe = new AggregationPipe(source, List(ValueReturnItem(EntityValue("x"))),
+      List(Sum(ValueReturnItem(EntityValue("y")))), 10, new AggregationThreads(3))
+
+    try {
+      aggregationPipe.toList
+      fail("Expected the failure of an aggregation thread")
+    } catch {
+      case e: SyntaxException => {
+        assertEquals("Sum can only handle values of Number type, or null.", e.getMessage)
+        // Thrown by Sum on a thread of the pool and passed on to the reading thread
+        assertTrue(e.getStackTrace.exists(_.getClassName.startsWith(classOf[ThreadPoolExecutor].getName)))
+      }
+    }
+  }
+
+  @Test def shouldDeleteSpilledGroupsWhenAggregationFails() {
+    val source = new FakePipe((1 to 5000).map((i) => Map[String, Any]("x" -> i % 100, "y" -> (if (i < 4000) i else "not a number"))), xAndY)
+    val aggregationPipe = new AggregationPipe(source, List(ValueReturnItem(EntityValue("x"))),
+      List(Sum(ValueReturnItem(EntityValue("y")))), 10, new AggregationThreads(1))
+    val files = SpilledFiles.count
+
+    try {
+      aggregationPipe.toList
+      fail("Expected the failure of the aggregation")
+    } catch {
+      case e: SyntaxException =>
+    }
+    assertEquals(files, SpilledFiles.count)
+  }
+
+  @Test def shouldDeleteSpilledGroupsWhenLimitIsReached() {
+    val aggregationPipe = new AggregationPipe(manyGroups, List(ValueReturnItem(EntityValue("x"))),
+      List(CountStar(), Sum(ValueReturnItem(EntityValue("y")))), 10, new AggregationThreads(3))
+    val files = SpilledFiles.count
+
+    assertEquals(5, new SlicePipe(aggregationPipe, None, Some(5)).toList.size)
+    assertEquals(files, SpilledFiles.count)
+  }
+
+  // 100 groups of 50 rows, with y from 0 to 49 in each
+  private def manyGroups = new FakePipe((0 until 5000).map((i) => Map[String, Any]("x" -> i % 100, "y" -> i / 100)), xAndY)
+
+  private def xAndY = new SymbolTable(List(NodeIdentifier("x"), NodeIdentifier("y")))
+
+  private def expectedGroups = (0 until 100).map((x) => Map[String, Any]("x" -> x, "count(*)" -> 50, "sum(y)" -> 1225)).toSet
+
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import org.junit.Test
+import org.junit.Assert._
+import org.neo4j.cypher.SymbolTable
+import org.scalatest.junit.JUnitSuite
+
+class SlicePipeTest extends JUnitSuite {
+  @Test def skipAndLimit() {
+    val source = new FakePipe((1 to 10).map(x => Map[String, Any]("x" -> x)))
+    val slicePipe = new SlicePipe(source, Some(2), Some(3))
+
+    assertEquals(List(Map("x" -> 3), Map("x" -> 4), Map("x" -> 5)), slicePipe.toList)
+  }
+
+  @Test def limitStopsPullingFromSource() {
+    val source = new CountingPipe(1000)
+    val slicePipe = new SlicePipe(source, None, Some(10))
+
+    assertEquals(10, slicePipe.toList.size)
+    assertEquals(10, source.pulled)
+  }
+}
+
+/**
+ * A pipe with a number of rows, which counts how many of them have been pulled.
+ */
+class CountingPipe(rows: Int) extends Pipe {
+  val symbols = new SymbolTable()
+  var pulled = 0
+
+  def iterator: Iterator[Map[String, Any]] = (1 to rows).iterator.map(x => {
+    pulled += 1
+    Map[String, Any]("x" -> x)
+  })
+}
@@ -20,6 +20,7 @@
 package org.neo4j.cypher.pipes
 
 import org.junit.Test
+import java.io.File
 import org.junit.Assert._
 import org.neo4j.graphdb._
 import org.neo4j.cypher.SymbolTable
@@ -73,6 +74,44 @@ class SortPipeTest extends JUnitSuite{
       Map("x" -> "B", "y" -> 10)), sortPipe.toList)
   }
 
+  @Test def shouldMergeRunsSpilledToDisk() {
+    val rows = (1 to 100).map((i) => Map[String, Any]("x" -> (i * 37) % 10, "y" -> i))
+    val sortItems = List(SortItem(ValueReturnItem(EntityValue("x")), true))
+
+    val inMemory = new SortPipe(new FakePipe(rows), sortItems)
+    val spilled = new SortPipe(new FakePipe(rows), sortItems, 7)
+
+    assertEquals(inMemory.toList, spilled.toList)
+  }
+
+  @Test def shouldDeleteSpilledRunsWhenLimitIsReached() {
+    val rows = (1 to 100).map((i) => Map[String, Any]("x" -> (i * 37) % 10, "y" -> i))
+    val files = SpilledFiles.count
+
+    val slicePipe = new SlicePipe(new SortPipe(new FakePipe(rows), List(SortItem(ValueReturnItem(EntityValue("x")), true)), 7), None, Some(3))
+
+    assertEquals(3, slicePipe.toList.size)
+    assertEquals(files, SpilledFiles.count)
+  }
+
+  @Test def shouldDeleteSpilledRunsWhenSourceFails() {
+    val rows = (1 to 100).map((i) => Map[String, Any]("x" -> i))
+    val source = new Pipe {
+      val symbols = new SymbolTable()
+
+      def iterator = rows.iterator ++ Iterator.continually[Map[String, Any]](throw new IllegalStateException("Source failed"))
+    }
+    val files = SpilledFiles.count
+
+    try {
+      new SortPipe(source, List(SortItem(ValueReturnItem(EntityValue("x")), true)), 7).toList
+      fail("Expected the failure of the source")
+    } catch {
+      case e: IllegalStateException => assertEquals("Source failed", e.getMessage)
+    }
+    assertEquals(files, SpilledFiles.count)
+  }
+
   @Test def shouldHandleSortingWithNullValues() {
     val source = new FakePipe(List(
       Map("y" -> 1),
@@ -92,7 +131,9 @@ class SortPipeTest extends JUnitSuite{
 class FakePipe(data: Seq[Map[String, Any]], val symbols: SymbolTable) extends Pipe {
   def this(data: Seq[Map[String, Any]]) = this (data, new SymbolTable())
 
-  def foreach[U](f: (Map[String, Any]) => U) {
-    data.foreach(f(_))
-  }
-}
\ No newline at end of file
+  def iterator: Iterator[Map[String, Any]] = data.iterator
+}
+
+object SpilledFiles {
+  def count: Int = new File(System.getProperty("java.io.tmpdir")).list().count(_.startsWith("cypher-rows"))
+}
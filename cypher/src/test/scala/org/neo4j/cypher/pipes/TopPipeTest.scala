@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.pipes
+
+import org.junit.Test
+import org.junit.Assert._
+import org.scalatest.junit.JUnitSuite
+import org.neo4j.cypher.commands.{EntityValue, ValueReturnItem, SortItem}
+import scala.util.Random
+
+class TopPipeTest extends JUnitSuite {
+  val byXThenY = List(
+    SortItem(ValueReturnItem(EntityValue("x")), true),
+    SortItem(ValueReturnItem(EntityValue("y")), false))
+
+  @Test def emptyInIsEmptyOut() {
+    val topPipe = new TopPipe(new FakePipe(List()), byXThenY, 5)
+
+    assertEquals(List(), topPipe.toList)
+  }
+
+  @Test def zeroRowsAreZeroRows() {
+    val topPipe = new TopPipe(new FakePipe(List(Map("x" -> 1, "y" -> 1))), byXThenY, 0)
+
+    assertEquals(List(), topPipe.toList)
+  }
+
+  @Test def shouldReturnTheSameRowsAsSortingAndSlicing() {
+    val random = new Random(1234)
+    val rows = (1 to 1000).map((i) => Map[String, Any]("x" -> random.nextInt(20), "y" -> random.nextInt(5), "i" -> i))
+
+    for (count <- List(1, 7, 100, 999, 1000, 2000)) {
+      val sorted = new SortPipe(new FakePipe(rows), byXThenY).toList.take(count)
+      val top = new TopPipe(new FakePipe(rows), byXThenY, count).toList
+
+      assertEquals(sorted, top)
+    }
+  }
+}
@@ -78,6 +78,18 @@ class MaxFunctionTest extends JUnitSuite {
     maxOn(1, "wut")
   }
 
+  @Test def numbersOfTheSameTypeAreComparedLikeCompareToDoes() {
+    assertEquals(Long.MaxValue, maxOn(3L, Long.MaxValue, Long.MinValue))
+    assertTrue(java.lang.Double.isNaN(maxOn(1.0d, Double.NaN, 2.0d).asInstanceOf[Double]))
+  }
+
+  @Test def numberOfAnotherTypeIsComparedByValue() {
+    val result = maxOn(1, 2, 3L, 2.5d)
+
+    assertEquals(3L, result)
+    assertTrue(result.isInstanceOf[Long])
+  }
+
   def maxOn(values: Any*): Any = {
     val func = new MaxFunction(ValueReturnItem(EntityValue("x")))
 
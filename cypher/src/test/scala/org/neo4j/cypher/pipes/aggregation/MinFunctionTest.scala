@@ -62,6 +62,11 @@ class MinFunctionTest extends JUnitSuite {
     minOn(1, "wut")
   }
 
+  @Test def numbersOfTheSameTypeAreComparedLikeCompareToDoes() {
+    assertEquals(Long.MinValue, minOn(3L, Long.MaxValue, Long.MinValue))
+    assertEquals(-0.0d, minOn(0.0d, -0.0d, 1.0d))
+  }
+
   def minOn(values: Any*): Any = {
     val func = new MinFunction(ValueReturnItem(EntityValue("x")))
 
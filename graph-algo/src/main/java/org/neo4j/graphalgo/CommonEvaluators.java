@@ -19,10 +19,15 @@
  */
 package org.neo4j.graphalgo;
 
+import org.neo4j.graphalgo.impl.util.CompactGraph;
 import org.neo4j.graphalgo.impl.util.DoubleEvaluator;
 import org.neo4j.graphalgo.impl.util.DoubleEvaluatorWithDefault;
 import org.neo4j.graphalgo.impl.util.GeoEstimateEvaluator;
 import org.neo4j.graphalgo.impl.util.IntegerEvaluator;
+import org.neo4j.graphalgo.impl.util.LandmarkEstimateEvaluator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
 
 /**
  * Factory for common evaluators used by some graph algos, f.ex
@@ -52,4 +57,18 @@ public abstract class CommonEvaluators
     {
         return new GeoEstimateEvaluator( latitudePropertyKey, longitudePropertyKey );
     }
+
+    /**
+     * Returns an {@link EstimateEvaluator} for A* which uses precomputed
+     * distances to {@code numberOfLandmarks} landmarks among {@code nodes},
+     * see {@link LandmarkEstimateEvaluator}. The relationships, direction and
+     * costs should be the same as the ones the search uses.
+     */
+    public static LandmarkEstimateEvaluator landmarkEstimateEvaluator( Iterable<Node> nodes,
+            Direction direction, CostEvaluator<Double> costEvaluator, int numberOfLandmarks,
+            RelationshipType... relationshipTypes )
+    {
+        return LandmarkEstimateEvaluator.build( CompactGraph.load( nodes, direction,
+                costEvaluator, relationshipTypes ), numberOfLandmarks );
+    }
 }
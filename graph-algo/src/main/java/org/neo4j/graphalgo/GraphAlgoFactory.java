@@ -23,6 +23,8 @@ import org.neo4j.graphalgo.impl.path.AStar;
 import org.neo4j.graphalgo.impl.path.AllPaths;
 import org.neo4j.graphalgo.impl.path.AllSimplePaths;
 import org.neo4j.graphalgo.impl.path.Dijkstra;
+import org.neo4j.graphalgo.impl.path.PrimitiveAStar;
+import org.neo4j.graphalgo.impl.path.PrimitiveDijkstra;
 import org.neo4j.graphalgo.impl.path.ShortestPath;
 import org.neo4j.graphalgo.impl.util.DoubleEvaluator;
 import org.neo4j.graphdb.Node;
@@ -198,4 +200,49 @@ public abstract class GraphAlgoFactory
     {
         return dijkstra( expander, new DoubleEvaluator( relationshipPropertyRepresentingCost ) );
     }
+
+    /**
+     * See {@link #aStar(RelationshipExpander, CostEvaluator, EstimateEvaluator)}.
+     * 
+     * Finds the same path, but keeps the state of the search in primitive
+     * arrays indexed through node ids and uses an indexed binary heap, so that
+     * searches which visit many nodes create much less garbage.
+     * 
+     * @see PrimitiveAStar
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param lengthEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @param estimateEvaluator evaluator that returns an (optimistic)
+     * estimation of the cost to get from the current node (in the traversal)
+     * to the end node.
+     * @return an algorithm which finds the cheapest path between two nodes
+     * using the A* algorithm.
+     */
+    public static PathFinder<WeightedPath> primitiveAStar( RelationshipExpander expander,
+            CostEvaluator<Double> lengthEvaluator, EstimateEvaluator<Double> estimateEvaluator )
+    {
+        return new PrimitiveAStar( expander, lengthEvaluator, estimateEvaluator );
+    }
+
+    /**
+     * See {@link #dijkstra(RelationshipExpander, CostEvaluator)}.
+     * 
+     * Finds the same paths, but keeps the state of the search in primitive
+     * arrays indexed through node ids and uses an indexed binary heap, so that
+     * searches which visit many nodes create much less garbage.
+     * 
+     * @see PrimitiveDijkstra
+     * @param expander the {@link RelationshipExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param costEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @return an algorithm which finds the cheapest path between two nodes
+     * using the Dijkstra algorithm.
+     */
+    public static PathFinder<WeightedPath> primitiveDijkstra( RelationshipExpander expander,
+            CostEvaluator<Double> costEvaluator )
+    {
+        return new PrimitiveDijkstra( expander, costEvaluator );
+    }
 }
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import org.neo4j.graphalgo.impl.shortestpath.CompactSingleSourceShortestPath;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+
+/**
+ * {@link BetweennessCentrality} on a {@link CompactGraph}, giving the same
+ * values. The dependencies of the nodes are accumulated in the reverse order
+ * the shortest path search settled them in, as described by Ulrik Brandes in
+ * "A Faster Algorithm for Betweenness Centrality", instead of recursively over
+ * maps of predecessors.
+ * @complexity O(n * m) without costs and O(n^2 * log(n) + n * m) with costs,
+ *             where nothing but arrays are used.
+ */
+public class CompactBetweennessCentrality
+{
+    protected CompactGraph graph;
+    protected double[] centralities;
+    protected boolean doneCalculation = false;
+
+    /**
+     * @param graph
+     *            The projection to calculate centralities for, the shortest
+     *            paths follow its steps.
+     */
+    public CompactBetweennessCentrality( CompactGraph graph )
+    {
+        this.graph = graph;
+    }
+
+    /**
+     * This resets the calculation if we for some reason would like to redo it.
+     */
+    public void reset()
+    {
+        doneCalculation = false;
+    }
+
+    /**
+     * @param node
+     * @return the centrality of the node, or null if it isn't in the
+     *         projection.
+     */
+    public Double getCentrality( Node node )
+    {
+        int index = graph.indexOf( node );
+        return index < 0 ? null : getCentrality( index );
+    }
+
+    /**
+     * @param index
+     * @return the centrality of the node with the given index.
+     */
+    public double getCentrality( int index )
+    {
+        calculate();
+        return centralities[index];
+    }
+
+    /**
+     * Runs the calculation, done automatically when a result is asked for.
+     */
+    public void calculate()
+    {
+        if ( doneCalculation )
+        {
+            return;
+        }
+        doneCalculation = true;
+        // Every path is found from both ends when going both ways
+        double globalFactor = graph.getDirection() == Direction.BOTH ? 0.5 : 1.0;
+        centralities = new double[graph.nodeCount()];
+        double[] dependencies = new double[graph.nodeCount()];
+        CompactSingleSourceShortestPath shortestPaths = new CompactSingleSourceShortestPath(
+            graph );
+        for ( int start = 0; start < graph.nodeCount(); start++ )
+        {
+            shortestPaths.calculate( start );
+            for ( int order = shortestPaths.getSettledCount() - 1; order > 0; order-- )
+            {
+                int node = shortestPaths.getSettled( order );
+                double cost = shortestPaths.getCost( node );
+                double paths = shortestPaths.getNumberOfPaths( node );
+                double dependency = 0;
+                for ( int step = graph.firstStep( node ), end = graph.firstStep( node + 1 ); step < end; step++ )
+                {
+                    int successor = graph.target( step );
+                    if ( successor != start
+                         && shortestPaths.getCost( successor ) == cost + graph.cost( step ) )
+                    {
+                        dependency += (dependencies[successor] + 1) * paths
+                                      / shortestPaths.getNumberOfPaths( successor );
+                    }
+                }
+                dependencies[node] = dependency;
+                centralities[node] += dependency * globalFactor;
+            }
+        }
+    }
+}
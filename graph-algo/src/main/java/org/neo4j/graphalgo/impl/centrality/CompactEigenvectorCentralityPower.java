@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Node;
+
+/**
+ * {@link EigenvectorCentralityPower} on a {@link CompactGraph}. Every
+ * iteration multiplies a vector of doubles indexed by node index with the
+ * adjacency matrix of the projection, weighted by the costs of its steps (1
+ * for a projection without costs), so no maps or relationships are involved.
+ * Unlike {@link EigenvectorCentralityPower}, nodes which no step leads to get
+ * the value 0 rather than none.
+ * @complexity O(i(n + m)) when i iterations are done.
+ */
+public class CompactEigenvectorCentralityPower implements EigenvectorCentrality
+{
+    protected CompactGraph graph;
+    protected double precision = 0.001;
+    protected boolean doneCalculation = false;
+    protected double[] values;
+    protected int totalIterations = 0;
+    private int maxIterations = Integer.MAX_VALUE;
+
+    /**
+     * @param graph
+     *            The projection to calculate centralities for.
+     * @param precision
+     *            Precision factor (ex. 0.01 for 1% error). Note that this is
+     *            not the error from the correct values, but the amount of
+     *            change tolerated in one iteration.
+     */
+    public CompactEigenvectorCentralityPower( CompactGraph graph, double precision )
+    {
+        this.graph = graph;
+        this.precision = precision;
+    }
+
+    /**
+     * @param node
+     * @return the centrality of the node, or null if it isn't in the
+     *         projection.
+     */
+    public Double getCentrality( Node node )
+    {
+        int index = graph.indexOf( node );
+        return index < 0 ? null : getCentrality( index );
+    }
+
+    /**
+     * @param index
+     * @return the centrality of the node with the given index.
+     */
+    public double getCentrality( int index )
+    {
+        calculate();
+        return values[index];
+    }
+
+    /**
+     * This resets the calculation if we for some reason would like to redo it.
+     */
+    public void reset()
+    {
+        doneCalculation = false;
+    }
+
+    /**
+     * Internal calculate method that will do the calculation. This can however
+     * be called externally to manually trigger the calculation.
+     */
+    public void calculate()
+    {
+        if ( doneCalculation )
+        {
+            return;
+        }
+        doneCalculation = true;
+        values = new double[graph.nodeCount()];
+        totalIterations = 0;
+        Random random = new Random( System.currentTimeMillis() );
+        for ( int i = 0; i < values.length; i++ )
+        {
+            values[i] = random.nextDouble();
+        }
+        normalize( values );
+        runIterations( maxIterations );
+    }
+
+    /**
+     * Runs iterations until enough precision has been reached, but at most
+     * {@code maxNrIterations}. See
+     * {@link EigenvectorCentralityPower#runIterations(int)}.
+     * @param maxNrIterations
+     *            The maximum number of iterations to run.
+     * @return the number of iterations performed.
+     */
+    public int runIterations( int maxNrIterations )
+    {
+        if ( maxNrIterations <= 0 )
+        {
+            return 0;
+        }
+        int localIterations = 0;
+        double[] newValues = new double[values.length];
+        while ( true )
+        {
+            ++localIterations;
+            ++totalIterations;
+            Arrays.fill( newValues, 0 );
+            // "matrix multiplication"
+            for ( int node = 0; node < values.length; node++ )
+            {
+                double value = values[node];
+                for ( int step = graph.firstStep( node ), end = graph.firstStep( node + 1 ); step < end; step++ )
+                {
+                    newValues[graph.target( step )] += value * graph.cost( step );
+                }
+            }
+            normalize( newValues );
+            boolean timeToStop = timeToStop( values, newValues );
+            double[] oldValues = values;
+            values = newValues;
+            newValues = oldValues;
+            if ( timeToStop || localIterations >= maxNrIterations )
+            {
+                break;
+            }
+        }
+        // If the first value is negative (possibly the whole vector), negate
+        // the whole vector
+        if ( values.length > 0 && values[0] < 0 )
+        {
+            for ( int i = 0; i < values.length; i++ )
+            {
+                values[i] = -values[i];
+            }
+        }
+        return localIterations;
+    }
+
+    private boolean timeToStop( double[] oldValues, double[] newValues )
+    {
+        for ( int i = 0; i < oldValues.length; i++ )
+        {
+            if ( oldValues[i] == 0.0 )
+            {
+                if ( Math.abs( newValues[i] ) > precision )
+                {
+                    return false;
+                }
+                continue;
+            }
+            double factor = Math.abs( newValues[i] / oldValues[i] );
+            if ( factor - precision > 1.0 || factor + precision < 1.0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected void normalize( double[] vector )
+    {
+        double sum = 0;
+        for ( double d : vector )
+        {
+            sum += d * d;
+        }
+        sum = Math.sqrt( sum );
+        if ( sum > 0.0 )
+        {
+            for ( int i = 0; i < vector.length; i++ )
+            {
+                vector[i] /= sum;
+            }
+        }
+    }
+
+    /**
+     * @return the number of iterations made.
+     */
+    public int getTotalIterations()
+    {
+        return totalIterations;
+    }
+
+    /**
+     * @return the maxIterations
+     */
+    public int getMaxIterations()
+    {
+        return maxIterations;
+    }
+
+    /**
+     * Limit the maximum number of iterations to run. Per default, the maximum
+     * iterations are set to Integer.MAX_VALUE, which should be limited to
+     * 50-100 normally.
+     * @param maxIterations
+     *            the maxIterations to set
+     */
+    public void setMaxIterations( int maxIterations )
+    {
+        this.maxIterations = maxIterations;
+    }
+}
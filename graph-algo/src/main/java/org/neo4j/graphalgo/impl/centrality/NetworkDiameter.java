@@ -65,8 +65,12 @@ public class NetworkDiameter<ShortestPathCostType> extends
             singleSourceShortestPath, zeroValue, nodeSet, distanceComparator );
     }
 
+    /*
+     * Synchronized since the diameter is kept in a single field, so that this can
+     * be part of a parallel calculation.
+     */
     @Override
-    public void processShortestPaths( Node node,
+    public synchronized void processShortestPaths( Node node,
         SingleSourceShortestPath<ShortestPathCostType> singleSourceShortestPath )
     {
         eccentricity.processShortestPaths( node, singleSourceShortestPath );
@@ -63,8 +63,12 @@ public class NetworkRadius<ShortestPathCostType> extends
             singleSourceShortestPath, zeroValue, nodeSet, distanceComparator );
     }
 
+    /*
+     * Synchronized since the radius is kept in a single field, so that this can
+     * be part of a parallel calculation.
+     */
     @Override
-    public void processShortestPaths( Node node,
+    public synchronized void processShortestPaths( Node node,
         SingleSourceShortestPath<ShortestPathCostType> singleSourceShortestPath )
     {
         eccentricity.processShortestPaths( node, singleSourceShortestPath );
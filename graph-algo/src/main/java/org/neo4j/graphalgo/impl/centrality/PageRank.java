@@ -0,0 +1,528 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.centrality;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Node;
+import org.neo4j.kernel.impl.util.PrimitiveLongIntMap;
+
+/**
+ * PageRank by power iteration on a {@link CompactGraph}. The rank of a node
+ * flows along its steps, split by their costs (evenly for a projection
+ * without costs), and every iteration computes
+ * {@code rank(v) = (1 - d) / n + d * (sum of flows into v + dangling / n)}
+ * where d is the damping factor and dangling is the rank of the nodes
+ * without steps, which is spread over all nodes. The ranks sum to 1. With a
+ * damping factor of 1 it's the power iteration for the principal
+ * eigenvector of the transition matrix.
+ * <p>
+ * The ranks are kept in double arrays indexed by node index. Every thread
+ * computes the new ranks of a range of nodes, the ranges being chosen so
+ * that they have about as many steps into them each, by pulling the ranks
+ * over the steps into the nodes of its range. The threads don't write to the
+ * same places, so no synchronization is needed except waiting for all of them
+ * at the end of every iteration. Iterations are run until the sum of the
+ * changes of all ranks is less than the precision, or the maximum number of
+ * iterations have been run.
+ * <p>
+ * With a checkpoint file, see {@link #setCheckpoint(File, int)}, the ranks
+ * are written to the file every few iterations and a calculation starts from
+ * the ranks in the file if it exists, so that a long calculation can go on
+ * where it was stopped.
+ * @complexity O(i(n + m)) when i iterations are done.
+ */
+public class PageRank implements EigenvectorCentrality
+{
+    // "PAGERNK1"
+    private static final long CHECKPOINT_FORMAT = 0x50414745524e4b31L;
+    private static final int CHECKPOINT_HEADER_SIZE = 8 + 4 + 4;
+
+    protected CompactGraph incoming;
+    protected double dampingFactor;
+    protected double precision;
+    protected int numberOfThreads;
+    protected boolean doneCalculation = false;
+    protected double[] values;
+    protected int totalIterations = 0;
+    private final double[] outShares;
+    private final int[] ranges;
+    private int maxIterations = Integer.MAX_VALUE;
+    private File checkpointFile;
+    private int checkpointInterval;
+
+    /**
+     * @param graph
+     *            The projection to calculate ranks for, the rank flows in
+     *            the direction of its steps. It isn't used after the
+     *            constructor, which keeps a reversed copy instead.
+     * @param dampingFactor
+     *            The probability of following a step rather than jumping to
+     *            any node, 0.85 is common.
+     * @param precision
+     *            The sum of the changes of the ranks in an iteration at which
+     *            to stop.
+     * @param numberOfThreads
+     *            The number of threads to do the calculation on.
+     */
+    public PageRank( CompactGraph graph, double dampingFactor, double precision,
+        int numberOfThreads )
+    {
+        if ( dampingFactor < 0 || dampingFactor > 1 )
+        {
+            throw new IllegalArgumentException( "Damping factor must be between 0 and 1, not "
+                + dampingFactor );
+        }
+        if ( numberOfThreads < 1 )
+        {
+            throw new IllegalArgumentException( "Number of threads must be at least 1, not "
+                + numberOfThreads );
+        }
+        this.incoming = graph.reverse();
+        this.dampingFactor = dampingFactor;
+        this.precision = precision;
+        this.numberOfThreads = numberOfThreads;
+        this.outShares = outShares( incoming );
+        this.ranges = ranges( incoming, numberOfThreads );
+    }
+
+    /**
+     * @return for every node the share of its rank to flow over each unit of
+     *         cost of its steps, or 0 if it has no steps.
+     */
+    private static double[] outShares( CompactGraph incoming )
+    {
+        double[] shares = new double[incoming.nodeCount()];
+        for ( int node = 0; node < shares.length; node++ )
+        {
+            for ( int step = incoming.firstStep( node ), end = incoming.firstStep( node + 1 ); step < end; step++ )
+            {
+                shares[incoming.target( step )] += incoming.cost( step );
+            }
+        }
+        for ( int node = 0; node < shares.length; node++ )
+        {
+            shares[node] = shares[node] == 0 ? 0 : 1 / shares[node];
+        }
+        return shares;
+    }
+
+    /**
+     * @return the first node index of the range of every thread, and the
+     *         node count last.
+     */
+    private static int[] ranges( CompactGraph incoming, int numberOfThreads )
+    {
+        int nodeCount = incoming.nodeCount();
+        int[] ranges = new int[numberOfThreads + 1];
+        // Count the nodes themselves too, so that nodes without steps into
+        // them are spread out as well
+        long total = (long) incoming.stepCount() + nodeCount;
+        int node = 0;
+        for ( int range = 1; range < numberOfThreads; range++ )
+        {
+            long limit = total * range / numberOfThreads;
+            while ( node < nodeCount && (long) incoming.firstStep( node ) + node < limit )
+            {
+                node++;
+            }
+            ranges[range] = node;
+        }
+        ranges[numberOfThreads] = nodeCount;
+        return ranges;
+    }
+
+    /**
+     * Makes the calculation write the ranks to a file every
+     * {@code interval} iterations and when it's done, and start from the
+     * ranks in the file if it exists. The ranks are written to a temporary
+     * file first which then replaces the checkpoint, so that it's never
+     * half written. Nodes are matched by id, so the projection may have
+     * changed since the checkpoint was written, nodes which weren't in it
+     * start with the same rank as in a calculation without checkpoint.
+     * @param file
+     *            The checkpoint file.
+     * @param interval
+     *            The number of iterations between checkpoints.
+     */
+    public void setCheckpoint( File file, int interval )
+    {
+        if ( interval < 1 )
+        {
+            throw new IllegalArgumentException( "Checkpoint interval must be at least 1, not "
+                + interval );
+        }
+        this.checkpointFile = file;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * @param node
+     * @return the rank of the node, or null if it isn't in the projection.
+     */
+    public Double getCentrality( Node node )
+    {
+        int index = incoming.indexOf( node );
+        return index < 0 ? null : getCentrality( index );
+    }
+
+    /**
+     * @param index
+     * @return the rank of the node with the given index.
+     */
+    public double getCentrality( int index )
+    {
+        calculate();
+        return values[index];
+    }
+
+    /**
+     * This resets the calculation if we for some reason would like to redo it.
+     */
+    public void reset()
+    {
+        doneCalculation = false;
+    }
+
+    /**
+     * Internal calculate method that will do the calculation. This can however
+     * be called externally to manually trigger the calculation.
+     */
+    public void calculate()
+    {
+        if ( doneCalculation )
+        {
+            return;
+        }
+        doneCalculation = true;
+        int nodeCount = incoming.nodeCount();
+        values = new double[nodeCount];
+        totalIterations = 0;
+        Arrays.fill( values, 1.0 / nodeCount );
+        if ( checkpointFile != null && checkpointFile.exists() )
+        {
+            readCheckpoint();
+        }
+        runIterations( maxIterations );
+    }
+
+    /**
+     * Runs iterations until enough precision has been reached, but at most
+     * {@code maxNrIterations}.
+     * @param maxNrIterations
+     *            The maximum number of iterations to run.
+     * @return the number of iterations performed.
+     */
+    public int runIterations( int maxNrIterations )
+    {
+        if ( maxNrIterations <= 0 )
+        {
+            return 0;
+        }
+        ExecutorService executor = numberOfThreads > 1 ?
+            Executors.newFixedThreadPool( numberOfThreads ) : null;
+        try
+        {
+            return iterate( maxNrIterations, executor );
+        }
+        finally
+        {
+            if ( executor != null )
+            {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private int iterate( int maxNrIterations, ExecutorService executor )
+    {
+        final double[] newValues = new double[values.length];
+        int localIterations = 0;
+        while ( true )
+        {
+            ++localIterations;
+            ++totalIterations;
+            final double[] oldValues = values;
+            double dangling = 0;
+            for ( int node = 0; node < oldValues.length; node++ )
+            {
+                if ( outShares[node] == 0 )
+                {
+                    dangling += oldValues[node];
+                }
+            }
+            final double base = (1 - dampingFactor + dampingFactor * dangling) / oldValues.length;
+            double change = 0;
+            if ( executor == null )
+            {
+                change = iterate( oldValues, newValues, base, 0, oldValues.length );
+            }
+            else
+            {
+                List<Future<Double>> workers = new ArrayList<Future<Double>>();
+                for ( int range = 0; range < numberOfThreads; range++ )
+                {
+                    final int first = ranges[range];
+                    final int last = ranges[range + 1];
+                    workers.add( executor.submit( new Callable<Double>()
+                    {
+                        public Double call()
+                        {
+                            return iterate( oldValues, newValues, base, first, last );
+                        }
+                    } ) );
+                }
+                change = sum( workers );
+            }
+            System.arraycopy( newValues, 0, values, 0, values.length );
+            boolean timeToStop = change < precision;
+            if ( checkpointFile != null
+                 && (timeToStop || localIterations >= maxNrIterations || totalIterations
+                     % checkpointInterval == 0) )
+            {
+                writeCheckpoint();
+            }
+            if ( timeToStop || localIterations >= maxNrIterations )
+            {
+                break;
+            }
+        }
+        return localIterations;
+    }
+
+    /**
+     * Computes the new ranks of the nodes from {@code first} up to, but not
+     * including, {@code last}.
+     * @return the sum of the changes of the ranks.
+     */
+    private double iterate( double[] oldValues, double[] newValues, double base, int first,
+        int last )
+    {
+        double change = 0;
+        for ( int node = first; node < last; node++ )
+        {
+            double flow = 0;
+            for ( int step = incoming.firstStep( node ), end = incoming.firstStep( node + 1 ); step < end; step++ )
+            {
+                int source = incoming.target( step );
+                flow += oldValues[source] * outShares[source] * incoming.cost( step );
+            }
+            double value = base + dampingFactor * flow;
+            change += Math.abs( value - oldValues[node] );
+            newValues[node] = value;
+        }
+        return change;
+    }
+
+    private double sum( List<Future<Double>> workers )
+    {
+        double sum = 0;
+        try
+        {
+            for ( Future<Double> worker : workers )
+            {
+                sum += worker.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted during page rank calculation", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if ( e.getCause() instanceof Error )
+            {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+        return sum;
+    }
+
+    private void writeCheckpoint()
+    {
+        File temporaryFile = new File( checkpointFile.getPath() + ".tmp" );
+        try
+        {
+            RandomAccessFile raf = new RandomAccessFile( temporaryFile, "rw" );
+            try
+            {
+                FileChannel channel = raf.getChannel();
+                channel.truncate( 0 );
+                ByteBuffer buffer = ByteBuffer.allocate( CHECKPOINT_HEADER_SIZE );
+                buffer.putLong( CHECKPOINT_FORMAT ).putInt( values.length ).putInt( totalIterations );
+                write( channel, buffer );
+                // Node ids and ranks a chunk of nodes at a time
+                buffer = ByteBuffer.allocate( 16 * 8192 );
+                for ( int node = 0; node < values.length; node++ )
+                {
+                    if ( !buffer.hasRemaining() )
+                    {
+                        write( channel, buffer );
+                    }
+                    buffer.putLong( incoming.nodeId( node ) ).putDouble( values[node] );
+                }
+                write( channel, buffer );
+                channel.force( false );
+            }
+            finally
+            {
+                raf.close();
+            }
+            if ( !temporaryFile.renameTo( checkpointFile ) )
+            {
+                // Can't rename over an existing file on some platforms
+                checkpointFile.delete();
+                if ( !temporaryFile.renameTo( checkpointFile ) )
+                {
+                    throw new IOException( "Couldn't rename " + temporaryFile + " to "
+                        + checkpointFile );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "Couldn't write checkpoint " + checkpointFile, e );
+        }
+    }
+
+    private static void write( FileChannel channel, ByteBuffer buffer ) throws IOException
+    {
+        buffer.flip();
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+        buffer.clear();
+    }
+
+    private void readCheckpoint()
+    {
+        try
+        {
+            RandomAccessFile raf = new RandomAccessFile( checkpointFile, "r" );
+            try
+            {
+                FileChannel channel = raf.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate( CHECKPOINT_HEADER_SIZE );
+                read( channel, buffer );
+                if ( buffer.getLong() != CHECKPOINT_FORMAT )
+                {
+                    throw new IOException( checkpointFile + " isn't a page rank checkpoint" );
+                }
+                int nodeCount = buffer.getInt();
+                totalIterations = buffer.getInt();
+                buffer = ByteBuffer.allocate( 16 * 8192 );
+                buffer.flip();
+                for ( int i = 0; i < nodeCount; i++ )
+                {
+                    if ( !buffer.hasRemaining() )
+                    {
+                        buffer.clear();
+                        buffer.limit( Math.min( buffer.capacity(), (nodeCount - i) * 16 ) );
+                        read( channel, buffer );
+                    }
+                    int node = incoming.indexOf( buffer.getLong() );
+                    double value = buffer.getDouble();
+                    if ( node != PrimitiveLongIntMap.NO_VALUE )
+                    {
+                        values[node] = value;
+                    }
+                }
+                // Nodes added or removed since the checkpoint make the sum differ from 1
+                double sum = 0;
+                for ( double value : values )
+                {
+                    sum += value;
+                }
+                for ( int node = 0; node < values.length; node++ )
+                {
+                    values[node] /= sum;
+                }
+            }
+            finally
+            {
+                raf.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "Couldn't read checkpoint " + checkpointFile, e );
+        }
+    }
+
+    private static void read( FileChannel channel, ByteBuffer buffer ) throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            if ( channel.read( buffer ) == -1 )
+            {
+                throw new IOException( "Unexpected end of checkpoint" );
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * @return the number of iterations made, including the ones before the
+     *         checkpoint the calculation started from.
+     */
+    public int getTotalIterations()
+    {
+        return totalIterations;
+    }
+
+    /**
+     * @return the maxIterations
+     */
+    public int getMaxIterations()
+    {
+        return maxIterations;
+    }
+
+    /**
+     * Limit the maximum number of iterations to run. Per default, the maximum
+     * iterations are set to Integer.MAX_VALUE.
+     * @param maxIterations
+     *            the maxIterations to set
+     */
+    public void setMaxIterations( int maxIterations )
+    {
+        this.maxIterations = maxIterations;
+    }
+}
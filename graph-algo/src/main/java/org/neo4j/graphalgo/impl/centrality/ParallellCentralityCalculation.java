@@ -19,11 +19,18 @@
  */
 package org.neo4j.graphalgo.impl.centrality;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPath;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPathFactory;
 import org.neo4j.graphdb.Node;
 
 /**
@@ -33,6 +40,13 @@ import org.neo4j.graphdb.Node;
  * instead of re-running it for each centrality measure. We do it by collecting
  * a number of {@link ShortestPathBasedCentrality} and then running the
  * {@link SingleSourceShortestPath} for every node.
+ * <p>
+ * When created with a {@link SingleSourceShortestPathFactory} the start nodes
+ * are processed by several threads, each with its own
+ * {@link SingleSourceShortestPath}. The centrality values each thread
+ * contributes are merged when all threads are done. Since sums of doubles
+ * depend on the order they are added in, values may differ in the least
+ * significant bits from a calculation on one thread.
  * @complexity The sum of the complexities of the centrality measures to
  *             compute, except that all the n*A terms implode into one single
  *             n*A term.
@@ -48,6 +62,8 @@ public class ParallellCentralityCalculation<ShortestPathCostType>
     protected Set<Node> nodeSet;
     List<ShortestPathBasedCentrality<?,ShortestPathCostType>> calculations = new LinkedList<ShortestPathBasedCentrality<?,ShortestPathCostType>>();
     protected boolean doneCalculation = false;
+    protected SingleSourceShortestPathFactory<ShortestPathCostType> singleSourceShortestPathFactory;
+    protected int numberOfThreads = 1;
 
     /**
      * Default constructor.
@@ -66,6 +82,33 @@ public class ParallellCentralityCalculation<ShortestPathCostType>
         this.nodeSet = nodeSet;
     }
 
+    /**
+     * Constructor for a calculation processing the start nodes on several
+     * threads.
+     * @param singleSourceShortestPathFactory
+     *            Creates the underlying singleSourceShortestPath of every
+     *            thread.
+     * @param nodeSet
+     *            A set containing the nodes for which centrality values should
+     *            be computed.
+     * @param numberOfThreads
+     *            The number of threads to do the calculation on.
+     */
+    public ParallellCentralityCalculation(
+        SingleSourceShortestPathFactory<ShortestPathCostType> singleSourceShortestPathFactory,
+        Set<Node> nodeSet, int numberOfThreads )
+    {
+        this( singleSourceShortestPathFactory.newSingleSourceShortestPath(),
+            nodeSet );
+        if ( numberOfThreads < 1 )
+        {
+            throw new IllegalArgumentException( "Number of threads must be at least 1, not "
+                + numberOfThreads );
+        }
+        this.singleSourceShortestPathFactory = singleSourceShortestPathFactory;
+        this.numberOfThreads = numberOfThreads;
+    }
+
     /**
      * This adds a centrality measure to be included in the calculation.
      * @param shortestPathBasedCentrality
@@ -95,6 +138,11 @@ public class ParallellCentralityCalculation<ShortestPathCostType>
             return;
         }
         doneCalculation = true;
+        if ( numberOfThreads > 1 )
+        {
+            calculateInParallel();
+            return;
+        }
         // For all nodes...
         for ( Node startNode : nodeSet )
         {
@@ -109,4 +157,115 @@ public class ParallellCentralityCalculation<ShortestPathCostType>
             }
         }
     }
+
+    private void calculateInParallel()
+    {
+        final StartNodes startNodes = new StartNodes( nodeSet.iterator() );
+        ExecutorService executor = Executors.newFixedThreadPool( numberOfThreads );
+        try
+        {
+            List<Future<?>> workers = new ArrayList<Future<?>>();
+            for ( int i = 0; i < numberOfThreads; i++ )
+            {
+                workers.add( executor.submit( new Runnable()
+                {
+                    public void run()
+                    {
+                        processStartNodes( startNodes );
+                    }
+                } ) );
+            }
+            for ( Future<?> worker : workers )
+            {
+                worker.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted during centrality calculation", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if ( e.getCause() instanceof Error )
+            {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+        finally
+        {
+            startNodes.exhaust();
+            executor.shutdown();
+        }
+        for ( ShortestPathBasedCentrality<?,ShortestPathCostType> calculation : calculations )
+        {
+            calculation.mergeContributions();
+        }
+    }
+
+    private void processStartNodes( StartNodes startNodes )
+    {
+        SingleSourceShortestPath<ShortestPathCostType> threadShortestPath = singleSourceShortestPathFactory
+            .newSingleSourceShortestPath();
+        for ( ShortestPathBasedCentrality<?,ShortestPathCostType> calculation : calculations )
+        {
+            calculation.collectContributions();
+        }
+        try
+        {
+            for ( Node startNode = startNodes.next(); startNode != null; startNode = startNodes
+                .next() )
+            {
+                threadShortestPath.reset();
+                threadShortestPath.setStartNode( startNode );
+                for ( ShortestPathBasedCentrality<?,ShortestPathCostType> calculation : calculations )
+                {
+                    calculation.processShortestPaths( startNode,
+                        threadShortestPath );
+                }
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            // No point in the other threads going on
+            startNodes.exhaust();
+            throw e;
+        }
+        finally
+        {
+            for ( ShortestPathBasedCentrality<?,ShortestPathCostType> calculation : calculations )
+            {
+                calculation.stopCollectingContributions();
+            }
+        }
+    }
+
+    /**
+     * Hands out the start nodes to the threads of a parallel calculation.
+     */
+    private static class StartNodes
+    {
+        private final Iterator<Node> nodes;
+        private boolean exhausted;
+
+        StartNodes( Iterator<Node> nodes )
+        {
+            this.nodes = nodes;
+        }
+
+        synchronized Node next()
+        {
+            return !exhausted && nodes.hasNext() ? nodes.next() : null;
+        }
+
+        synchronized void exhaust()
+        {
+            exhausted = true;
+        }
+    }
 }
@@ -19,7 +19,9 @@
  */
 package org.neo4j.graphalgo.impl.centrality;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -57,6 +59,12 @@ public abstract class ShortestPathBasedCentrality<CentralityType,ShortestPathCos
      * addCentralityToNode.
      */
     protected Map<Node,CentralityType> centralities = null;
+    /*
+     * While a parallel calculation runs, every thread adds and sets its
+     * values in its own contributions, merged into centralities afterwards.
+     */
+    private final ThreadLocal<Contributions<CentralityType>> threadContributions = new ThreadLocal<Contributions<CentralityType>>();
+    private final List<Contributions<CentralityType>> collectedContributions = new ArrayList<Contributions<CentralityType>>();
 
     /**
      * Default constructor.
@@ -106,13 +114,20 @@ public abstract class ShortestPathBasedCentrality<CentralityType,ShortestPathCos
      */
     protected void addCentralityToNode( Node node, CentralityType value )
     {
-        CentralityType centrality = centralities.get( node );
+        Contributions<CentralityType> contributions = threadContributions.get();
+        addCentrality( contributions == null ? centralities
+            : contributions.added, node, value );
+    }
+
+    private void addCentrality( Map<Node,CentralityType> target, Node node,
+        CentralityType value )
+    {
+        CentralityType centrality = target.get( node );
         if ( centrality == null )
         {
             centrality = zeroValue;
         }
-        centralities.put( node, centralityAccumulator.addCosts( centrality,
-            value ) );
+        target.put( node, centralityAccumulator.addCosts( centrality, value ) );
     }
 
     /**
@@ -123,7 +138,56 @@ public abstract class ShortestPathBasedCentrality<CentralityType,ShortestPathCos
      */
     protected void setCentralityForNode( Node node, CentralityType value )
     {
-        centralities.put( node, value );
+        Contributions<CentralityType> contributions = threadContributions.get();
+        ( contributions == null ? centralities : contributions.set ).put( node,
+            value );
+    }
+
+    /**
+     * Makes the values added and set by the current thread go to a separate
+     * set of contributions, until {@link #stopCollectingContributions()} is
+     * called. Used by {@link ParallellCentralityCalculation} to let threads
+     * process shortest paths from different start nodes at the same time.
+     */
+    void collectContributions()
+    {
+        Contributions<CentralityType> contributions = new Contributions<CentralityType>();
+        threadContributions.set( contributions );
+        synchronized ( collectedContributions )
+        {
+            collectedContributions.add( contributions );
+        }
+    }
+
+    void stopCollectingContributions()
+    {
+        threadContributions.remove();
+    }
+
+    /**
+     * Merges the contributions of all threads into the centralities, adding
+     * added values and overwriting with set values.
+     */
+    void mergeContributions()
+    {
+        synchronized ( collectedContributions )
+        {
+            for ( Contributions<CentralityType> contributions : collectedContributions )
+            {
+                for ( Map.Entry<Node,CentralityType> entry : contributions.added.entrySet() )
+                {
+                    addCentrality( centralities, entry.getKey(), entry.getValue() );
+                }
+                centralities.putAll( contributions.set );
+            }
+            collectedContributions.clear();
+        }
+    }
+
+    private static class Contributions<CentralityType>
+    {
+        final Map<Node,CentralityType> added = new HashMap<Node,CentralityType>();
+        final Map<Node,CentralityType> set = new HashMap<Node,CentralityType>();
     }
 
     /**
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipExpander;
+
+/**
+ * Finds the same path as {@link AStar}, but keeps the state of the search in
+ * primitive arrays indexed through node ids instead of in maps of nodes, with
+ * an indexed binary heap for the nodes to visit next. The estimate of a node
+ * is only asked for once.
+ */
+public class PrimitiveAStar extends PrimitiveBestFirst
+{
+    private final EstimateEvaluator<Double> estimateEvaluator;
+
+    public PrimitiveAStar( RelationshipExpander expander,
+            CostEvaluator<Double> lengthEvaluator, EstimateEvaluator<Double> estimateEvaluator )
+    {
+        super( expander, lengthEvaluator );
+        this.estimateEvaluator = estimateEvaluator;
+    }
+
+    @Override
+    protected double estimate( Node node, Node end )
+    {
+        return estimateEvaluator.getCost( node, end );
+    }
+
+    @Override
+    protected boolean findsAllPaths()
+    {
+        return false;
+    }
+}
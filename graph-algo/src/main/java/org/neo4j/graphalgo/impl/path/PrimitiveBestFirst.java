@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.IndexedDoubleHeap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipExpander;
+import org.neo4j.kernel.impl.util.PrimitiveLongIntMap;
+
+/**
+ * Best first search for the cheapest paths between two nodes, keeping all its
+ * state in primitive arrays. Every node the search reaches gets a slot, found
+ * through a map from node id to slot, and the cost, heap position and
+ * predecessors of a node are kept in arrays indexed by slot. Nodes and
+ * relationships are only looked at while a node is expanded, and looked up
+ * again when the found paths are built.
+ */
+abstract class PrimitiveBestFirst implements PathFinder<WeightedPath>
+{
+    private static final int NO_ENTRY = -1;
+
+    private final RelationshipExpander expander;
+    private final CostEvaluator<Double> costEvaluator;
+
+    PrimitiveBestFirst( RelationshipExpander expander, CostEvaluator<Double> costEvaluator )
+    {
+        this.expander = expander;
+        this.costEvaluator = costEvaluator;
+    }
+
+    /**
+     * @return an optimistic estimate of the cost from {@code node} to
+     *         {@code end}, 0 for plain Dijkstra.
+     */
+    protected abstract double estimate( Node node, Node end );
+
+    /**
+     * @return true if all the cheapest paths should be found rather than one.
+     */
+    protected abstract boolean findsAllPaths();
+
+    public WeightedPath findSinglePath( Node start, Node end )
+    {
+        List<WeightedPath> paths = new Search( start, end ).run();
+        return paths.isEmpty() ? null : paths.get( 0 );
+    }
+
+    public Iterable<WeightedPath> findAllPaths( Node start, Node end )
+    {
+        return new Search( start, end ).run();
+    }
+
+    private class Search
+    {
+        private final GraphDatabaseService graphDb;
+        private final Node start;
+        private final Node end;
+        private final PrimitiveLongIntMap slots = new PrimitiveLongIntMap();
+        private final IndexedDoubleHeap heap = new IndexedDoubleHeap( 64 );
+        private int slotCount;
+        // Per slot
+        private long[] nodeIds = new long[64];
+        private double[] costs = new double[64];
+        private double[] estimates = new double[64];
+        private boolean[] settled = new boolean[64];
+        private int[] firstEntries = new int[64];
+        // The predecessors of the slots, as linked lists of entries
+        private int entryCount;
+        private int[] entrySlots = new int[64];
+        private long[] entryRelationships = new long[64];
+        private int[] nextEntries = new int[64];
+
+        Search( Node start, Node end )
+        {
+            this.graphDb = start.getGraphDatabase();
+            this.start = start;
+            this.end = end;
+        }
+
+        List<WeightedPath> run()
+        {
+            int startSlot = slot( start.getId() );
+            costs[startSlot] = 0;
+            estimates[startSlot] = estimate( start, end );
+            heap.offer( startSlot, estimates[startSlot] );
+            int endSlot = NO_ENTRY;
+            while ( !heap.isEmpty() )
+            {
+                int slot = heap.poll();
+                settled[slot] = true;
+                if ( nodeIds[slot] == end.getId() )
+                {
+                    endSlot = slot;
+                    break;
+                }
+                expand( slot );
+            }
+            if ( endSlot == NO_ENTRY )
+            {
+                return Collections.emptyList();
+            }
+            List<WeightedPath> paths = new ArrayList<WeightedPath>();
+            addPaths( paths, costs[endSlot], endSlot, new LinkedList<Relationship>() );
+            return paths;
+        }
+
+        private void expand( int slot )
+        {
+            Node node = graphDb.getNodeById( nodeIds[slot] );
+            double cost = costs[slot];
+            for ( Relationship relationship : expander.expand( node ) )
+            {
+                Node otherNode = relationship.getOtherNode( node );
+                int otherSlot = slot( otherNode.getId() );
+                if ( settled[otherSlot] )
+                {
+                    continue;
+                }
+                double newCost = cost + costEvaluator.getCost( relationship, Direction.OUTGOING );
+                boolean reached = heap.contains( otherSlot );
+                if ( !reached || newCost < costs[otherSlot] )
+                {
+                    if ( !reached )
+                    {
+                        // The estimate of a node doesn't change, so it's only
+                        // asked for once
+                        estimates[otherSlot] = estimate( otherNode, end );
+                    }
+                    costs[otherSlot] = newCost;
+                    firstEntries[otherSlot] = NO_ENTRY;
+                    addEntry( otherSlot, slot, relationship.getId() );
+                    heap.offer( otherSlot, newCost + estimates[otherSlot] );
+                }
+                else if ( newCost == costs[otherSlot] && findsAllPaths() )
+                {
+                    addEntry( otherSlot, slot, relationship.getId() );
+                }
+            }
+        }
+
+        private int slot( long nodeId )
+        {
+            int slot = slots.get( nodeId );
+            if ( slot != PrimitiveLongIntMap.NO_VALUE )
+            {
+                return slot;
+            }
+            slot = slotCount++;
+            if ( slot == nodeIds.length )
+            {
+                int length = slot * 2;
+                nodeIds = Arrays.copyOf( nodeIds, length );
+                costs = Arrays.copyOf( costs, length );
+                estimates = Arrays.copyOf( estimates, length );
+                settled = Arrays.copyOf( settled, length );
+                firstEntries = Arrays.copyOf( firstEntries, length );
+            }
+            slots.put( nodeId, slot );
+            nodeIds[slot] = nodeId;
+            firstEntries[slot] = NO_ENTRY;
+            return slot;
+        }
+
+        private void addEntry( int slot, int predecessorSlot, long relationshipId )
+        {
+            int entry = entryCount++;
+            if ( entry == entrySlots.length )
+            {
+                int length = entry * 2;
+                entrySlots = Arrays.copyOf( entrySlots, length );
+                entryRelationships = Arrays.copyOf( entryRelationships, length );
+                nextEntries = Arrays.copyOf( nextEntries, length );
+            }
+            entrySlots[entry] = predecessorSlot;
+            entryRelationships[entry] = relationshipId;
+            nextEntries[entry] = firstEntries[slot];
+            firstEntries[slot] = entry;
+        }
+
+        /**
+         * Follows the predecessors of {@code slot} back to the start node,
+         * adding a path for every way there.
+         */
+        private void addPaths( List<WeightedPath> paths, double weight, int slot,
+            LinkedList<Relationship> relationships )
+        {
+            if ( firstEntries[slot] == NO_ENTRY )
+            {
+                PathImpl.Builder builder = new PathImpl.Builder( start );
+                for ( Relationship relationship : relationships )
+                {
+                    builder = builder.push( relationship );
+                }
+                paths.add( new WeightedPathImpl( weight, builder.build() ) );
+                return;
+            }
+            for ( int entry = firstEntries[slot]; entry != NO_ENTRY; entry = nextEntries[entry] )
+            {
+                relationships.addFirst( graphDb.getRelationshipById( entryRelationships[entry] ) );
+                addPaths( paths, weight, entrySlots[entry], relationships );
+                relationships.removeFirst();
+                if ( !findsAllPaths() )
+                {
+                    return;
+                }
+            }
+        }
+    }
+}
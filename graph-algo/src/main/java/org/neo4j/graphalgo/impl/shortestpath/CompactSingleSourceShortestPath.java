@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.shortestpath;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphalgo.impl.util.IndexedDoubleHeap;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * Single source shortest paths on a {@link CompactGraph}. Dijkstra is used if
+ * the projection has costs, a breadth first search otherwise. All costs and
+ * predecessors are kept in arrays indexed by node index, so the same instance
+ * can be reused for many start nodes without allocating anything. The number
+ * of shortest paths to every node is counted too, for centrality measures
+ * like {@link org.neo4j.graphalgo.impl.centrality.CompactBetweennessCentrality}.
+ * @complexity O(m + n * log(n)) with costs, O(m + n) without.
+ */
+public class CompactSingleSourceShortestPath
+{
+    private static final int NO_STEP = -1;
+
+    protected CompactGraph graph;
+    protected int startIndex = -1;
+    protected double[] costs;
+    protected int[] predecessorSteps;
+    protected int[] predecessorNodes;
+    protected double[] pathCounts;
+    protected int[] settled;
+    protected int settledCount;
+    private final IndexedDoubleHeap heap;
+
+    /**
+     * @param graph
+     *            The projection to find paths in.
+     */
+    public CompactSingleSourceShortestPath( CompactGraph graph )
+    {
+        this.graph = graph;
+        this.costs = new double[graph.nodeCount()];
+        this.predecessorSteps = new int[graph.nodeCount()];
+        this.predecessorNodes = new int[graph.nodeCount()];
+        this.pathCounts = new double[graph.nodeCount()];
+        this.settled = new int[graph.nodeCount()];
+        this.heap = graph.hasCosts() ? new IndexedDoubleHeap( graph.nodeCount() ) : null;
+    }
+
+    /**
+     * Finds the shortest paths from a node to all other nodes.
+     * @param startNode
+     *            The start node, which must be in the projection.
+     */
+    public void setStartNode( Node startNode )
+    {
+        int index = graph.indexOf( startNode );
+        if ( index < 0 )
+        {
+            throw new IllegalArgumentException( startNode + " isn't in the projection" );
+        }
+        calculate( index );
+    }
+
+    /**
+     * Finds the shortest paths from the node with the given index to all
+     * other nodes.
+     * @param index
+     *            The index of the start node.
+     */
+    public void calculate( int index )
+    {
+        startIndex = index;
+        Arrays.fill( costs, Double.POSITIVE_INFINITY );
+        Arrays.fill( predecessorSteps, NO_STEP );
+        Arrays.fill( pathCounts, 0 );
+        costs[index] = 0;
+        pathCounts[index] = 1;
+        settledCount = 0;
+        if ( heap != null )
+        {
+            dijkstra( index );
+        }
+        else
+        {
+            breadthFirst( index );
+        }
+    }
+
+    private void dijkstra( int index )
+    {
+        heap.clear();
+        heap.offer( index, 0 );
+        while ( !heap.isEmpty() )
+        {
+            int node = heap.poll();
+            settled[settledCount++] = node;
+            double cost = costs[node];
+            for ( int step = graph.firstStep( node ), end = graph.firstStep( node + 1 ); step < end; step++ )
+            {
+                int target = graph.target( step );
+                double newCost = cost + graph.cost( step );
+                if ( newCost < costs[target] )
+                {
+                    costs[target] = newCost;
+                    predecessorSteps[target] = step;
+                    predecessorNodes[target] = node;
+                    pathCounts[target] = pathCounts[node];
+                    heap.offer( target, newCost );
+                }
+                else if ( newCost == costs[target] && target != index )
+                {
+                    pathCounts[target] += pathCounts[node];
+                }
+            }
+        }
+    }
+
+    private void breadthFirst( int index )
+    {
+        // The settled nodes are the queue of the search
+        int head = 0;
+        settled[settledCount++] = index;
+        while ( head < settledCount )
+        {
+            int node = settled[head++];
+            double cost = costs[node] + 1;
+            for ( int step = graph.firstStep( node ), end = graph.firstStep( node + 1 ); step < end; step++ )
+            {
+                int target = graph.target( step );
+                if ( costs[target] == Double.POSITIVE_INFINITY )
+                {
+                    costs[target] = cost;
+                    predecessorSteps[target] = step;
+                    predecessorNodes[target] = node;
+                    pathCounts[target] = pathCounts[node];
+                    settled[settledCount++] = target;
+                }
+                else if ( costs[target] == cost )
+                {
+                    pathCounts[target] += pathCounts[node];
+                }
+            }
+        }
+    }
+
+    /**
+     * @param index
+     * @return the cost of the shortest path to the node with the given index,
+     *         {@link Double#POSITIVE_INFINITY} if there is no path to it.
+     */
+    public double getCost( int index )
+    {
+        return costs[index];
+    }
+
+    /**
+     * @param index
+     * @return the number of shortest paths to the node with the given index.
+     */
+    public double getNumberOfPaths( int index )
+    {
+        return pathCounts[index];
+    }
+
+    /**
+     * @return the number of nodes there are paths to, including the start
+     *         node.
+     */
+    public int getSettledCount()
+    {
+        return settledCount;
+    }
+
+    /**
+     * @param order
+     * @return the index of a node there is a path to. Nodes are settled in
+     *         order of increasing cost, the start node first.
+     */
+    public int getSettled( int order )
+    {
+        return settled[order];
+    }
+
+    /**
+     * @param targetNode
+     * @return the cost of the shortest path to the node, or null if there is
+     *         no path to it.
+     */
+    public Double getCost( Node targetNode )
+    {
+        int index = targetIndex( targetNode );
+        return index < 0 || costs[index] == Double.POSITIVE_INFINITY ? null : costs[index];
+    }
+
+    /**
+     * @param targetNode
+     * @return the nodes of one of the shortest paths to the node, or null if
+     *         there is no path to it.
+     */
+    public List<Node> getPathAsNodes( Node targetNode )
+    {
+        int index = targetIndex( targetNode );
+        if ( index < 0 || costs[index] == Double.POSITIVE_INFINITY )
+        {
+            return null;
+        }
+        LinkedList<Node> nodes = new LinkedList<Node>();
+        nodes.addFirst( graph.getNode( index ) );
+        while ( predecessorSteps[index] != NO_STEP )
+        {
+            index = predecessorNodes[index];
+            nodes.addFirst( graph.getNode( index ) );
+        }
+        return nodes;
+    }
+
+    /**
+     * @param targetNode
+     * @return the relationships of one of the shortest paths to the node, or
+     *         null if there is no path to it.
+     */
+    public List<Relationship> getPathAsRelationships( Node targetNode )
+    {
+        int index = targetIndex( targetNode );
+        if ( index < 0 || costs[index] == Double.POSITIVE_INFINITY )
+        {
+            return null;
+        }
+        LinkedList<Relationship> relationships = new LinkedList<Relationship>();
+        while ( predecessorSteps[index] != NO_STEP )
+        {
+            relationships.addFirst( graph.getRelationship( predecessorSteps[index] ) );
+            index = predecessorNodes[index];
+        }
+        return relationships;
+    }
+
+    private int targetIndex( Node targetNode )
+    {
+        if ( startIndex < 0 )
+        {
+            throw new IllegalStateException( "No start node defined" );
+        }
+        return graph.indexOf( targetNode );
+    }
+}
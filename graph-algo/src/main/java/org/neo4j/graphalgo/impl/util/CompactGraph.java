@@ -0,0 +1,440 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.kernel.impl.util.PrimitiveLongIntMap;
+
+/**
+ * A projection of a part of the graph into compressed sparse row form, for
+ * algorithms that go over the same relationships many times. The nodes get
+ * dense int indexes, in the order they were given, and the steps from every
+ * node are stored next to each other in primitive arrays, with their costs if
+ * a {@link CostEvaluator} was given. A step from one node to another follows a
+ * relationship in the direction of the projection, so with
+ * {@link Direction#BOTH} every relationship gives one step each way, like the
+ * algorithms which take a {@link Direction} do. Only relationships between
+ * nodes in the projection are included.
+ * <p>
+ * The projection is a snapshot and isn't updated when the graph changes.
+ * Loading it goes through the relationships once or twice, after that nothing but the arrays is
+ * used until {@link #getNode(int)} or {@link #getRelationship(int)} is called.
+ */
+public class CompactGraph
+{
+    private final GraphDatabaseService graphDb;
+    private final Direction direction;
+    private final long[] nodeIds;
+    private final PrimitiveLongIntMap nodeIndexes;
+    private final int[] offsets;
+    private final int[] targets;
+    private final long[] relationshipIds;
+    private final double[] costs;
+
+    private CompactGraph( GraphDatabaseService graphDb, Direction direction,
+        long[] nodeIds, PrimitiveLongIntMap nodeIndexes, int[] offsets,
+        int[] targets, long[] relationshipIds, double[] costs )
+    {
+        this.graphDb = graphDb;
+        this.direction = direction;
+        this.nodeIds = nodeIds;
+        this.nodeIndexes = nodeIndexes;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.relationshipIds = relationshipIds;
+        this.costs = costs;
+    }
+
+    /**
+     * Projects the given nodes and the relationships of the given types
+     * between them.
+     * @param nodes
+     *            The nodes to include, in the order of their indexes.
+     * @param direction
+     *            The direction in which the relationships are followed.
+     * @param costEvaluator
+     *            Gives the cost of every step, or null for a projection
+     *            without costs.
+     * @param relationshipTypes
+     *            The relationship types to include, all types if none are
+     *            given.
+     * @return the projection.
+     */
+    public static CompactGraph load( Iterable<Node> nodes, Direction direction,
+        CostEvaluator<Double> costEvaluator, RelationshipType... relationshipTypes )
+    {
+        PrimitiveLongIntMap nodeIndexes = new PrimitiveLongIntMap();
+        long[] nodeIds = indexNodes( nodes, nodeIndexes );
+        int nodeCount = nodeIds.length;
+        GraphDatabaseService graphDb = graphDb( nodes );
+
+        Steps steps = new Steps( costEvaluator != null );
+        int[] offsets = new int[nodeCount + 1];
+        for ( int index = 0; index < nodeCount; index++ )
+        {
+            offsets[index] = steps.count;
+            Node node = graphDb.getNodeById( nodeIds[index] );
+            Iterable<Relationship> relationships = relationshipTypes.length == 0 ? node
+                .getRelationships( direction ) : node.getRelationships( direction,
+                relationshipTypes );
+            for ( Relationship relationship : relationships )
+            {
+                Node otherNode = relationship.getOtherNode( node );
+                int target = nodeIndexes.get( otherNode.getId() );
+                if ( target == PrimitiveLongIntMap.NO_VALUE )
+                {
+                    continue;
+                }
+                double cost = 0;
+                if ( costEvaluator != null )
+                {
+                    cost = costEvaluator.getCost( relationship,
+                        relationship.getStartNode().equals( node ) ? Direction.OUTGOING
+                            : Direction.INCOMING );
+                }
+                steps.add( target, relationship.getId(), cost );
+            }
+        }
+        offsets[nodeCount] = steps.count;
+        return new CompactGraph( graphDb, direction, nodeIds, nodeIndexes, offsets,
+            Arrays.copyOf( steps.targets, steps.count ), Arrays.copyOf(
+                steps.relationshipIds, steps.count ),
+            costEvaluator == null ? null : Arrays.copyOf( steps.costs, steps.count ) );
+    }
+
+    /**
+     * Projects the given nodes and relationships, for algorithms that are given
+     * the exact relationships to work on. Relationships with a node that isn't
+     * among the given nodes are left out.
+     * @param nodes
+     *            The nodes to include, in the order of their indexes.
+     * @param relationships
+     *            The relationships to include, it's gone through twice.
+     * @param direction
+     *            The direction in which the relationships are followed.
+     * @param costEvaluator
+     *            Gives the cost of every step, or null for a projection
+     *            without costs.
+     * @return the projection.
+     */
+    public static CompactGraph load( Iterable<Node> nodes,
+        Iterable<Relationship> relationships, Direction direction,
+        CostEvaluator<Double> costEvaluator )
+    {
+        PrimitiveLongIntMap nodeIndexes = new PrimitiveLongIntMap();
+        long[] nodeIds = indexNodes( nodes, nodeIndexes );
+        boolean outgoing = direction != Direction.INCOMING;
+        boolean incoming = direction != Direction.OUTGOING;
+        // Count the steps from every node first, so that they can be put
+        // right where they belong in the second pass
+        int[] offsets = new int[nodeIds.length + 1];
+        for ( Relationship relationship : relationships )
+        {
+            int start = nodeIndexes.get( relationship.getStartNode().getId() );
+            int end = nodeIndexes.get( relationship.getEndNode().getId() );
+            if ( start != PrimitiveLongIntMap.NO_VALUE && end != PrimitiveLongIntMap.NO_VALUE )
+            {
+                offsets[start + 1] += outgoing ? 1 : 0;
+                offsets[end + 1] += incoming ? 1 : 0;
+            }
+        }
+        for ( int index = 0; index < nodeIds.length; index++ )
+        {
+            offsets[index + 1] += offsets[index];
+        }
+        int stepCount = offsets[nodeIds.length];
+        int[] targets = new int[stepCount];
+        long[] relationshipIds = new long[stepCount];
+        double[] costs = costEvaluator == null ? null : new double[stepCount];
+        int[] nextSteps = Arrays.copyOf( offsets, nodeIds.length );
+        for ( Relationship relationship : relationships )
+        {
+            int start = nodeIndexes.get( relationship.getStartNode().getId() );
+            int end = nodeIndexes.get( relationship.getEndNode().getId() );
+            if ( start == PrimitiveLongIntMap.NO_VALUE || end == PrimitiveLongIntMap.NO_VALUE )
+            {
+                continue;
+            }
+            if ( outgoing )
+            {
+                int step = nextSteps[start]++;
+                targets[step] = end;
+                relationshipIds[step] = relationship.getId();
+                if ( costs != null )
+                {
+                    costs[step] = costEvaluator.getCost( relationship, Direction.OUTGOING );
+                }
+            }
+            if ( incoming )
+            {
+                int step = nextSteps[end]++;
+                targets[step] = start;
+                relationshipIds[step] = relationship.getId();
+                if ( costs != null )
+                {
+                    costs[step] = costEvaluator.getCost( relationship, Direction.INCOMING );
+                }
+            }
+        }
+        return new CompactGraph( graphDb( nodes ), direction, nodeIds, nodeIndexes,
+            offsets, targets, relationshipIds, costs );
+    }
+
+    private static long[] indexNodes( Iterable<Node> nodes, PrimitiveLongIntMap nodeIndexes )
+    {
+        long[] nodeIds = new long[16];
+        int nodeCount = 0;
+        for ( Node node : nodes )
+        {
+            if ( nodeIndexes.get( node.getId() ) != PrimitiveLongIntMap.NO_VALUE )
+            {
+                continue;
+            }
+            if ( nodeCount == nodeIds.length )
+            {
+                nodeIds = Arrays.copyOf( nodeIds, nodeCount * 2 );
+            }
+            nodeIndexes.put( node.getId(), nodeCount );
+            nodeIds[nodeCount++] = node.getId();
+        }
+        return Arrays.copyOf( nodeIds, nodeCount );
+    }
+
+    private static GraphDatabaseService graphDb( Iterable<Node> nodes )
+    {
+        Iterator<Node> iterator = nodes.iterator();
+        return iterator.hasNext() ? iterator.next().getGraphDatabase() : null;
+    }
+
+    /**
+     * The steps of a projection while it's being loaded.
+     */
+    private static class Steps
+    {
+        int count;
+        int[] targets = new int[64];
+        long[] relationshipIds = new long[64];
+        double[] costs;
+
+        Steps( boolean withCosts )
+        {
+            costs = withCosts ? new double[64] : null;
+        }
+
+        void add( int target, long relationshipId, double cost )
+        {
+            if ( count == targets.length )
+            {
+                int newLength = count * 2;
+                targets = Arrays.copyOf( targets, newLength );
+                relationshipIds = Arrays.copyOf( relationshipIds, newLength );
+                if ( costs != null )
+                {
+                    costs = Arrays.copyOf( costs, newLength );
+                }
+            }
+            targets[count] = target;
+            relationshipIds[count] = relationshipId;
+            if ( costs != null )
+            {
+                costs[count] = cost;
+            }
+            count++;
+        }
+    }
+
+    /**
+     * Returns the projection with every step turned around, keeping its
+     * cost, so that the shortest paths from a node in the reversed projection
+     * are the shortest paths to that node in this one. The nodes keep their
+     * indexes. A projection with {@link Direction#BOTH} is its own reverse.
+     * @return the reversed projection.
+     */
+    public CompactGraph reverse()
+    {
+        if ( direction == Direction.BOTH )
+        {
+            return this;
+        }
+        int nodeCount = nodeIds.length;
+        int[] reversedOffsets = new int[nodeCount + 1];
+        for ( int target : targets )
+        {
+            reversedOffsets[target + 1]++;
+        }
+        for ( int index = 0; index < nodeCount; index++ )
+        {
+            reversedOffsets[index + 1] += reversedOffsets[index];
+        }
+        int[] reversedTargets = new int[targets.length];
+        long[] reversedRelationshipIds = new long[targets.length];
+        double[] reversedCosts = costs == null ? null : new double[targets.length];
+        int[] nextSteps = Arrays.copyOf( reversedOffsets, nodeCount );
+        for ( int index = 0; index < nodeCount; index++ )
+        {
+            for ( int step = offsets[index]; step < offsets[index + 1]; step++ )
+            {
+                int reversedStep = nextSteps[targets[step]]++;
+                reversedTargets[reversedStep] = index;
+                reversedRelationshipIds[reversedStep] = relationshipIds[step];
+                if ( costs != null )
+                {
+                    reversedCosts[reversedStep] = costs[step];
+                }
+            }
+        }
+        return new CompactGraph( graphDb, direction.reverse(), nodeIds, nodeIndexes,
+            reversedOffsets, reversedTargets, reversedRelationshipIds, reversedCosts );
+    }
+
+    /**
+     * @return the direction in which the relationships were followed.
+     */
+    public Direction getDirection()
+    {
+        return direction;
+    }
+
+    /**
+     * @return the number of nodes in the projection.
+     */
+    public int nodeCount()
+    {
+        return nodeIds.length;
+    }
+
+    /**
+     * @return the number of steps in the projection.
+     */
+    public int stepCount()
+    {
+        return targets.length;
+    }
+
+    /**
+     * @return true if the steps have costs.
+     */
+    public boolean hasCosts()
+    {
+        return costs != null;
+    }
+
+    /**
+     * @param node
+     * @return the index of the node, or -1 if it isn't in the projection.
+     */
+    public int indexOf( Node node )
+    {
+        return nodeIndexes.get( node.getId() );
+    }
+
+    /**
+     * @param nodeId
+     * @return the index of the node with the given id, or -1 if it isn't in
+     *         the projection.
+     */
+    public int indexOf( long nodeId )
+    {
+        return nodeIndexes.get( nodeId );
+    }
+
+    /**
+     * @param index
+     * @return the id of the node with the given index.
+     */
+    public long nodeId( int index )
+    {
+        return nodeIds[index];
+    }
+
+    /**
+     * @param index
+     * @return the node with the given index.
+     */
+    public Node getNode( int index )
+    {
+        return graphDb.getNodeById( nodeIds[index] );
+    }
+
+    /**
+     * The steps from the node with index {@code index} are the steps from
+     * {@code firstStep( index )} up to, but not including,
+     * {@code firstStep( index + 1 )}.
+     * @param index
+     * @return the first step from the node with the given index.
+     */
+    public int firstStep( int index )
+    {
+        return offsets[index];
+    }
+
+    /**
+     * @param index
+     * @return the number of steps from the node with the given index.
+     */
+    public int degree( int index )
+    {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * @param step
+     * @return the index of the node the step leads to.
+     */
+    public int target( int step )
+    {
+        return targets[step];
+    }
+
+    /**
+     * @param step
+     * @return the cost of the step, 1 if the projection has no costs.
+     */
+    public double cost( int step )
+    {
+        return costs == null ? 1.0 : costs[step];
+    }
+
+    /**
+     * @param step
+     * @return the id of the relationship the step follows.
+     */
+    public long relationshipId( int step )
+    {
+        return relationshipIds[step];
+    }
+
+    /**
+     * @param step
+     * @return the relationship the step follows.
+     */
+    public Relationship getRelationship( int step )
+    {
+        return graphDb.getRelationshipById( relationshipIds[step] );
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * A binary min heap of int items with double priorities, which knows where
+ * every item is so that the priority of an item already in the heap can be
+ * lowered. Items are expected to be dense, like the node indexes of a
+ * {@link CompactGraph}, since the heap keeps arrays as large as the largest
+ * item. Nothing is boxed. Not thread safe.
+ */
+public class IndexedDoubleHeap
+{
+    private static final int NOT_IN_HEAP = -1;
+
+    private int[] heap;
+    private int size;
+    private int[] positions;
+    private double[] priorities;
+
+    /**
+     * @param expectedItems
+     *            one more than the largest item expected, the heap grows if
+     *            larger items are added.
+     */
+    public IndexedDoubleHeap( int expectedItems )
+    {
+        int capacity = Math.max( expectedItems, 16 );
+        heap = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill( positions, NOT_IN_HEAP );
+        priorities = new double[capacity];
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean contains( int item )
+    {
+        return item < positions.length && positions[item] != NOT_IN_HEAP;
+    }
+
+    /**
+     * @param item
+     * @return the priority of an item in the heap.
+     */
+    public double priority( int item )
+    {
+        return priorities[item];
+    }
+
+    /**
+     * Adds the item, or lowers its priority if it's already in the heap and
+     * {@code priority} is lower than its current priority.
+     * @param item
+     * @param priority
+     * @return true if the item was added or its priority lowered.
+     */
+    public boolean offer( int item, double priority )
+    {
+        if ( contains( item ) )
+        {
+            if ( priority >= priorities[item] )
+            {
+                return false;
+            }
+            priorities[item] = priority;
+            siftUp( positions[item] );
+            return true;
+        }
+        ensureCapacity( item );
+        priorities[item] = priority;
+        heap[size] = item;
+        positions[item] = size;
+        siftUp( size++ );
+        return true;
+    }
+
+    /**
+     * @return the item with the lowest priority, which is removed from the
+     *         heap. See {@link #priority(int)} for its priority.
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public int poll()
+    {
+        if ( size == 0 )
+        {
+            throw new IllegalStateException( "Heap is empty" );
+        }
+        int first = heap[0];
+        positions[first] = NOT_IN_HEAP;
+        if ( --size > 0 )
+        {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown( 0 );
+        }
+        return first;
+    }
+
+    public void clear()
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            positions[heap[i]] = NOT_IN_HEAP;
+        }
+        size = 0;
+    }
+
+    private void ensureCapacity( int item )
+    {
+        if ( item >= positions.length )
+        {
+            int capacity = Math.max( item + 1, positions.length * 2 );
+            heap = Arrays.copyOf( heap, capacity );
+            int oldLength = positions.length;
+            positions = Arrays.copyOf( positions, capacity );
+            Arrays.fill( positions, oldLength, capacity, NOT_IN_HEAP );
+            priorities = Arrays.copyOf( priorities, capacity );
+        }
+    }
+
+    private void siftUp( int position )
+    {
+        int item = heap[position];
+        double priority = priorities[item];
+        while ( position > 0 )
+        {
+            int parent = (position - 1) >>> 1;
+            int parentItem = heap[parent];
+            if ( priorities[parentItem] <= priority )
+            {
+                break;
+            }
+            heap[position] = parentItem;
+            positions[parentItem] = position;
+            position = parent;
+        }
+        heap[position] = item;
+        positions[item] = position;
+    }
+
+    private void siftDown( int position )
+    {
+        int item = heap[position];
+        double priority = priorities[item];
+        int half = size >>> 1;
+        while ( position < half )
+        {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if ( right < size && priorities[heap[right]] < priorities[heap[child]] )
+            {
+                child = right;
+            }
+            int childItem = heap[child];
+            if ( priority <= priorities[childItem] )
+            {
+                break;
+            }
+            heap[position] = childItem;
+            positions[childItem] = position;
+            position = child;
+        }
+        heap[position] = item;
+        positions[item] = position;
+    }
+}
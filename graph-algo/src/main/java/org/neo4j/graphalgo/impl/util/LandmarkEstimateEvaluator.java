@@ -0,0 +1,485 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphalgo.impl.shortestpath.CompactSingleSourceShortestPath;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.impl.util.PrimitiveLongIntMap;
+
+/**
+ * An {@link EstimateEvaluator} using precomputed distances to a few
+ * landmarks, the ALT heuristic. For a landmark L the triangle inequality gives
+ * that the distance from a node v to a goal t is at least
+ * {@code d(L,t) - d(L,v)} and at least {@code d(v,L) - d(t,L)}, and the
+ * estimate is the largest of those bounds. It works for any non-negative
+ * costs, not only geometric ones, and the bounds are usually much tighter
+ * than a straight line distance, so that A* settles far fewer nodes.
+ * <p>
+ * The distances are computed on a {@link CompactGraph}, which should be
+ * loaded with the same relationships, direction and costs as the A* search
+ * uses, and kept in a table outside the heap, either in direct buffers or in
+ * a file mapped with {@link #load(File)}. Nodes which weren't in the
+ * projection get an estimate of 0.
+ * <p>
+ * The table is a snapshot. Relationships which are created, deleted or get
+ * other costs may make the estimates too high, which makes A* return paths
+ * which aren't the cheapest, so after such changes the table should be
+ * {@link #invalidate() invalidated}, manually or by registering
+ * {@link #invalidatingHandler()}, until it is {@link #rebuild(CompactGraph)
+ * rebuilt}. An invalidated table gives estimates of 0, which turns A* into
+ * Dijkstra.
+ */
+public class LandmarkEstimateEvaluator implements EstimateEvaluator<Double>
+{
+    // "LANDMRK1"
+    private static final long FORMAT_VERSION = 0x4c414e444d524b31L;
+    private static final int HEADER_SIZE = 8 + 4 + 4 + 4;
+    // Number of distances in each buffer of the table, 1GB each
+    private static final int CHUNK_SIZE = 1 << 27;
+
+    private volatile Table table;
+    private volatile boolean valid = true;
+
+    private LandmarkEstimateEvaluator( Table table )
+    {
+        this.table = table;
+    }
+
+    /**
+     * Picks {@code numberOfLandmarks} landmarks in the projection and
+     * computes the distances between them and all other nodes. The landmarks
+     * are picked one at a time, each as far away as possible from the ones
+     * picked before it.
+     * @param graph
+     *            The projection to compute the distances in.
+     * @param numberOfLandmarks
+     *            The number of landmarks, more gives better estimates but a
+     *            bigger table and slower estimates.
+     * @return the evaluator.
+     */
+    public static LandmarkEstimateEvaluator build( CompactGraph graph, int numberOfLandmarks )
+    {
+        return new LandmarkEstimateEvaluator( compute( graph, new int[0], numberOfLandmarks ) );
+    }
+
+    /**
+     * Computes the distances between the given landmarks and all nodes in
+     * the projection.
+     * @param graph
+     *            The projection to compute the distances in.
+     * @param landmarks
+     *            The landmarks, which must be in the projection.
+     * @return the evaluator.
+     */
+    public static LandmarkEstimateEvaluator build( CompactGraph graph, Node... landmarks )
+    {
+        int[] indexes = new int[landmarks.length];
+        for ( int i = 0; i < landmarks.length; i++ )
+        {
+            indexes[i] = graph.indexOf( landmarks[i] );
+            if ( indexes[i] < 0 )
+            {
+                throw new IllegalArgumentException( landmarks[i] + " isn't in the projection" );
+            }
+        }
+        return new LandmarkEstimateEvaluator( compute( graph, indexes, landmarks.length ) );
+    }
+
+    /**
+     * Maps a table written by {@link #save(File)}. The distances are read
+     * from the file as they're needed, and the file must not be changed
+     * while the evaluator is used.
+     * @param file
+     *            The file to read the table from.
+     * @return the evaluator.
+     * @throws IOException
+     *             if the file couldn't be read.
+     */
+    public static LandmarkEstimateEvaluator load( File file ) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = read( channel, 0, HEADER_SIZE );
+            if ( header.getLong() != FORMAT_VERSION )
+            {
+                throw new IOException( file + " isn't a landmark table" );
+            }
+            int nodeCount = header.getInt();
+            int landmarkCount = header.getInt();
+            boolean directed = header.getInt() != 0;
+            long position = HEADER_SIZE;
+            long[] landmarkIds = new long[landmarkCount];
+            read( channel, position, landmarkCount * 8 ).asLongBuffer().get( landmarkIds );
+            position += landmarkCount * 8L;
+            long[] nodeIds = new long[nodeCount];
+            read( channel, position, nodeCount * 8 ).asLongBuffer().get( nodeIds );
+            position += nodeCount * 8L;
+            Table table = new Table( nodeIds, landmarkIds, directed );
+            for ( int chunk = 0; chunk < table.chunks.length; chunk++ )
+            {
+                int size = table.chunkBytes( chunk );
+                table.chunks[chunk] = channel.map( FileChannel.MapMode.READ_ONLY, position, size );
+                position += size;
+            }
+            return new LandmarkEstimateEvaluator( table );
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private static ByteBuffer read( FileChannel channel, long position, int size ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( size );
+        while ( buffer.hasRemaining() )
+        {
+            if ( channel.read( buffer, position + buffer.position() ) == -1 )
+            {
+                throw new IOException( "Unexpected end of landmark table" );
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes the table to a file, which can be mapped with
+     * {@link #load(File)}.
+     * @param file
+     *            The file to write the table to, which is overwritten.
+     * @throws IOException
+     *             if the file couldn't be written.
+     */
+    public void save( File file ) throws IOException
+    {
+        Table current = table;
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            channel.truncate( 0 );
+            int landmarkCount = current.landmarkIds.length;
+            int nodeCount = current.nodeIds.length;
+            ByteBuffer ids = ByteBuffer.allocate( HEADER_SIZE + (landmarkCount + nodeCount) * 8 );
+            ids.putLong( FORMAT_VERSION ).putInt( nodeCount ).putInt( landmarkCount )
+                .putInt( current.directed ? 1 : 0 );
+            ids.asLongBuffer().put( current.landmarkIds ).put( current.nodeIds );
+            ids.clear();
+            write( channel, ids );
+            for ( ByteBuffer chunk : current.chunks )
+            {
+                write( channel, chunk.duplicate() );
+            }
+            channel.force( false );
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private static void write( FileChannel channel, ByteBuffer buffer ) throws IOException
+    {
+        buffer.clear();
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+    }
+
+    /**
+     * @return the ids of the landmarks.
+     */
+    public long[] getLandmarkIds()
+    {
+        return table.landmarkIds.clone();
+    }
+
+    /**
+     * @return false if the table has been invalidated and not rebuilt since.
+     */
+    public boolean isValid()
+    {
+        return valid;
+    }
+
+    /**
+     * Makes all estimates 0 until the table is rebuilt.
+     */
+    public void invalidate()
+    {
+        valid = false;
+    }
+
+    /**
+     * Computes the distances again in a new projection, with the same
+     * landmarks as before. Landmarks which aren't in the projection any
+     * longer are replaced by new ones. The new table replaces the current
+     * one when it's done, and the current table is used until then.
+     * @param graph
+     *            The projection to compute the distances in, loaded after
+     *            the changes which made the table invalid.
+     */
+    public void rebuild( CompactGraph graph )
+    {
+        long[] landmarkIds = table.landmarkIds;
+        int[] indexes = new int[landmarkIds.length];
+        int count = 0;
+        for ( long landmarkId : landmarkIds )
+        {
+            int index = graph.indexOf( landmarkId );
+            if ( index >= 0 )
+            {
+                indexes[count++] = index;
+            }
+        }
+        table = compute( graph, Arrays.copyOf( indexes, count ), landmarkIds.length );
+        valid = true;
+    }
+
+    /**
+     * Returns a {@link TransactionEventHandler} which invalidates the table
+     * when relationships are created or deleted or get their properties
+     * changed, to be registered with
+     * {@link org.neo4j.graphdb.GraphDatabaseService#registerTransactionEventHandler(TransactionEventHandler)}.
+     * @return the handler.
+     */
+    public TransactionEventHandler<Void> invalidatingHandler()
+    {
+        return new TransactionEventHandler<Void>()
+        {
+            public Void beforeCommit( TransactionData data )
+            {
+                return null;
+            }
+
+            public void afterCommit( TransactionData data, Void state )
+            {
+                if ( data.createdRelationships().iterator().hasNext()
+                     || data.deletedRelationships().iterator().hasNext()
+                     || data.assignedRelationshipProperties().iterator().hasNext()
+                     || data.removedRelationshipProperties().iterator().hasNext() )
+                {
+                    invalidate();
+                }
+            }
+
+            public void afterRollback( TransactionData data, Void state )
+            {
+            }
+        };
+    }
+
+    public Double getCost( Node node, Node goal )
+    {
+        Table current = table;
+        if ( !valid )
+        {
+            return 0d;
+        }
+        int row = current.rows.get( node.getId() );
+        int goalRow = current.rows.get( goal.getId() );
+        if ( row == PrimitiveLongIntMap.NO_VALUE || goalRow == PrimitiveLongIntMap.NO_VALUE )
+        {
+            return 0d;
+        }
+        return current.estimate( row, goalRow );
+    }
+
+    private static Table compute( CompactGraph graph, int[] initialLandmarks, int numberOfLandmarks )
+    {
+        int nodeCount = graph.nodeCount();
+        int landmarkCount = Math.min( numberOfLandmarks, nodeCount );
+        long[] nodeIds = new long[nodeCount];
+        for ( int index = 0; index < nodeCount; index++ )
+        {
+            nodeIds[index] = graph.nodeId( index );
+        }
+        CompactSingleSourceShortestPath paths = new CompactSingleSourceShortestPath( graph );
+        // The distance from every node to the closest landmark so far, or -1
+        // for the landmarks themselves. Without given landmarks the first one
+        // is the node farthest away from the first node.
+        double[] closest = new double[nodeCount];
+        Arrays.fill( closest, Double.POSITIVE_INFINITY );
+        if ( initialLandmarks.length == 0 && landmarkCount > 0 )
+        {
+            paths.calculate( 0 );
+            for ( int index = 0; index < nodeCount; index++ )
+            {
+                closest[index] = paths.getCost( index );
+            }
+        }
+        int[] landmarks = new int[landmarkCount];
+        long[] landmarkIds = new long[landmarkCount];
+        Table table = new Table( nodeIds, landmarkIds, graph.getDirection() != Direction.BOTH );
+        table.allocate();
+        for ( int landmark = 0; landmark < landmarkCount; landmark++ )
+        {
+            // The landmarks after the given ones are picked as they go
+            landmarks[landmark] = landmark < initialLandmarks.length ?
+                initialLandmarks[landmark] : farthest( closest );
+            landmarkIds[landmark] = nodeIds[landmarks[landmark]];
+            closest[landmarks[landmark]] = -1;
+            paths.calculate( landmarks[landmark] );
+            for ( int index = 0; index < nodeCount; index++ )
+            {
+                double distance = paths.getCost( index );
+                table.set( index, landmark, distance );
+                closest[index] = Math.min( closest[index], distance );
+            }
+        }
+        if ( table.directed )
+        {
+            CompactSingleSourceShortestPath reversedPaths =
+                new CompactSingleSourceShortestPath( graph.reverse() );
+            for ( int landmark = 0; landmark < landmarkCount; landmark++ )
+            {
+                reversedPaths.calculate( landmarks[landmark] );
+                for ( int index = 0; index < nodeCount; index++ )
+                {
+                    table.set( index, landmarkCount + landmark, reversedPaths.getCost( index ) );
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return the index with the biggest distance, where unreachable nodes
+     *         are the farthest away of all.
+     */
+    private static int farthest( double[] distances )
+    {
+        int farthest = 0;
+        for ( int index = 1; index < distances.length; index++ )
+        {
+            if ( distances[index] > distances[farthest] )
+            {
+                farthest = index;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * The distances between the landmarks and every node, a row per node.
+     * A row has the distances from each landmark to the node and, if the
+     * relationships have a direction, the distances from the node to each
+     * landmark. The rows are split over buffers of at most
+     * {@link LandmarkEstimateEvaluator#CHUNK_SIZE} distances.
+     */
+    private static class Table
+    {
+        final long[] nodeIds;
+        final long[] landmarkIds;
+        final boolean directed;
+        final PrimitiveLongIntMap rows;
+        final int columns;
+        final int rowsPerChunk;
+        final ByteBuffer[] chunks;
+
+        Table( long[] nodeIds, long[] landmarkIds, boolean directed )
+        {
+            this.nodeIds = nodeIds;
+            this.landmarkIds = landmarkIds;
+            this.directed = directed;
+            this.rows = new PrimitiveLongIntMap( nodeIds.length );
+            for ( int row = 0; row < nodeIds.length; row++ )
+            {
+                rows.put( nodeIds[row], row );
+            }
+            this.columns = Math.max( 1, directed ? landmarkIds.length * 2 : landmarkIds.length );
+            this.rowsPerChunk = Math.max( 1, CHUNK_SIZE / columns );
+            this.chunks = new ByteBuffer[(nodeIds.length + rowsPerChunk - 1) / rowsPerChunk];
+        }
+
+        int chunkBytes( int chunk )
+        {
+            int chunkRows = Math.min( rowsPerChunk, nodeIds.length - chunk * rowsPerChunk );
+            return chunkRows * columns * 8;
+        }
+
+        void allocate()
+        {
+            for ( int chunk = 0; chunk < chunks.length; chunk++ )
+            {
+                chunks[chunk] = ByteBuffer.allocateDirect( chunkBytes( chunk ) );
+            }
+        }
+
+        double get( int row, int column )
+        {
+            return chunks[row / rowsPerChunk].getDouble(
+                ((row % rowsPerChunk) * columns + column) * 8 );
+        }
+
+        void set( int row, int column, double distance )
+        {
+            chunks[row / rowsPerChunk].putDouble(
+                ((row % rowsPerChunk) * columns + column) * 8, distance );
+        }
+
+        double estimate( int row, int goalRow )
+        {
+            int landmarkCount = landmarkIds.length;
+            double estimate = 0;
+            for ( int landmark = 0; landmark < landmarkCount; landmark++ )
+            {
+                // Unreachable nodes have infinite distances and give no bounds
+                double fromLandmark = get( row, landmark );
+                double goalFromLandmark = get( goalRow, landmark );
+                if ( fromLandmark != Double.POSITIVE_INFINITY
+                     && goalFromLandmark != Double.POSITIVE_INFINITY )
+                {
+                    estimate = Math.max( estimate, goalFromLandmark - fromLandmark );
+                    if ( !directed )
+                    {
+                        estimate = Math.max( estimate, fromLandmark - goalFromLandmark );
+                    }
+                }
+                if ( directed )
+                {
+                    double toLandmark = get( row, landmarkCount + landmark );
+                    double goalToLandmark = get( goalRow, landmarkCount + landmark );
+                    if ( toLandmark != Double.POSITIVE_INFINITY
+                         && goalToLandmark != Double.POSITIVE_INFINITY )
+                    {
+                        estimate = Math.max( estimate, toLandmark - goalToLandmark );
+                    }
+                }
+            }
+            return estimate;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.centrality;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.centrality.BetweennessCentrality;
+import org.neo4j.graphalgo.impl.centrality.CompactBetweennessCentrality;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPathDijkstra;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphalgo.impl.util.DoubleAdder;
+import org.neo4j.graphalgo.impl.util.DoubleComparator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import common.Neo4jAlgoTestCase;
+
+public class CompactBetweennessCentralityTest extends Neo4jAlgoTestCase
+{
+    private static final CostEvaluator<Double> COST = new CostEvaluator<Double>()
+    {
+        public Double getCost( Relationship relationship, Direction direction )
+        {
+            return (Double) relationship.getProperty( "cost" );
+        }
+    };
+
+    private static final CostEvaluator<Double> UNIT_COST = new CostEvaluator<Double>()
+    {
+        public Double getCost( Relationship relationship, Direction direction )
+        {
+            return 1.0;
+        }
+    };
+
+    @Test
+    public void testPlusShape()
+    {
+        graph.makeEdgeChain( "a,b,c" );
+        graph.makeEdgeChain( "d,b,e" );
+        CompactBetweennessCentrality centrality = new CompactBetweennessCentrality(
+            CompactGraph.load( graph.getAllNodes(), Direction.BOTH, null, MyRelTypes.R1 ) );
+        assertEquals( 0.0, centrality.getCentrality( graph.getNode( "a" ) ), 0 );
+        assertEquals( 6.0, centrality.getCentrality( graph.getNode( "b" ) ), 0 );
+        assertEquals( 0.0, centrality.getCentrality( graph.getNode( "c" ) ), 0 );
+        assertEquals( 0.0, centrality.getCentrality( graph.getNode( "d" ) ), 0 );
+        assertEquals( 0.0, centrality.getCentrality( graph.getNode( "e" ) ), 0 );
+    }
+
+    @Test
+    public void nodesOutsideTheProjectionHaveNoCentrality()
+    {
+        graph.makeEdgeChain( "a,b,c" );
+        Node outside = graph.makeNode( "d" );
+        graph.makeEdge( "c", "d" );
+        CompactBetweennessCentrality centrality = new CompactBetweennessCentrality(
+            CompactGraph.load( Arrays.asList( graph.getNode( "a" ),
+                graph.getNode( "b" ), graph.getNode( "c" ) ), Direction.BOTH, null ) );
+        assertEquals( 1.0, centrality.getCentrality( graph.getNode( "b" ) ), 0 );
+        assertEquals( 0.0, centrality.getCentrality( graph.getNode( "c" ) ), 0 );
+        assertNull( centrality.getCentrality( outside ) );
+    }
+
+    @Test
+    public void sameAsBetweennessCentralityWithoutCosts()
+    {
+        makeRandomGraph();
+        for ( Direction direction : Direction.values() )
+        {
+            // SingleSourceShortestPathBFS takes relationships between nodes
+            // at the same depth for predecessors, so compare with Dijkstra
+            BetweennessCentrality<Double> expected = new BetweennessCentrality<Double>(
+                new SingleSourceShortestPathDijkstra<Double>( 0.0, null, UNIT_COST,
+                    new DoubleAdder(), new DoubleComparator(), direction,
+                    MyRelTypes.R1 ), graph.getAllNodes() );
+            CompactBetweennessCentrality actual = new CompactBetweennessCentrality(
+                CompactGraph.load( graph.getAllNodes(), direction, null, MyRelTypes.R1 ) );
+            for ( Node node : graph.getAllNodes() )
+            {
+                assertEquals( expected.getCentrality( node ),
+                    actual.getCentrality( node ), 1e-9 );
+            }
+        }
+    }
+
+    @Test
+    public void sameAsBetweennessCentralityWithCosts()
+    {
+        makeRandomGraph();
+        for ( Direction direction : Direction.values() )
+        {
+            BetweennessCentrality<Double> expected = new BetweennessCentrality<Double>(
+                new SingleSourceShortestPathDijkstra<Double>( 0.0, null, COST,
+                    new DoubleAdder(), new DoubleComparator(), direction,
+                    MyRelTypes.R1 ), graph.getAllNodes() );
+            CompactBetweennessCentrality actual = new CompactBetweennessCentrality(
+                CompactGraph.load( graph.getAllNodes(), direction, COST, MyRelTypes.R1 ) );
+            for ( Node node : graph.getAllNodes() )
+            {
+                assertEquals( expected.getCentrality( node ),
+                    actual.getCentrality( node ), 1e-9 );
+            }
+        }
+    }
+
+    private void makeRandomGraph()
+    {
+        Random random = new Random( 1234 );
+        for ( int i = 0; i < 120; i++ )
+        {
+            // Few different costs, so that there are many equally short paths
+            graph.makeEdge( "n" + random.nextInt( 40 ), "n" + random.nextInt( 40 ),
+                "cost", (double) (1 + random.nextInt( 3 )) );
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.centrality;
+
+import java.util.Set;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.centrality.CompactEigenvectorCentralityPower;
+import org.neo4j.graphalgo.impl.centrality.EigenvectorCentrality;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+public class CompactEigenvectorCentralityPowerTest extends EigenvectorCentralityTest
+{
+    @Override
+    public EigenvectorCentrality getEigenvectorCentrality(
+        Direction relationDirection, CostEvaluator<Double> costEvaluator,
+        Set<Node> nodeSet, Set<Relationship> relationshipSet, double precision )
+    {
+        return new CompactEigenvectorCentralityPower( CompactGraph.load( nodeSet,
+            relationshipSet, relationDirection, costEvaluator ), precision );
+    }
+}
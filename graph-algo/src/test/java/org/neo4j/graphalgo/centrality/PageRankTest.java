@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.centrality;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.centrality.PageRank;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import common.Neo4jAlgoTestCase;
+
+public class PageRankTest extends Neo4jAlgoTestCase
+{
+    private static final CostEvaluator<Double> WEIGHT =
+            CommonEvaluators.doubleCostEvaluator( "weight" );
+
+    private PageRank pageRank( double dampingFactor, int numberOfThreads )
+    {
+        return new PageRank( CompactGraph.load( graph.getAllNodes(), Direction.OUTGOING, WEIGHT ),
+                dampingFactor, 1e-12, numberOfThreads );
+    }
+
+    private void createRandomGraph()
+    {
+        Random random = new Random( 2345 );
+        int nodes = 50;
+        for ( int i = 0; i < nodes; i++ )
+        {
+            graph.makeNode( "n" + i );
+        }
+        for ( int i = 0; i < 150; i++ )
+        {
+            // A few nodes without any relationships out of them
+            graph.makeEdge( "n" + random.nextInt( nodes - 5 ), "n" + random.nextInt( nodes ),
+                    "weight", (double) (1 + random.nextInt( 4 )) );
+        }
+    }
+
+    /**
+     * The page ranks computed straight from the relationships.
+     */
+    private Map<Node,Double> expectedRanks( double dampingFactor )
+    {
+        Map<Node,Double> outWeights = new HashMap<Node,Double>();
+        Map<Node,Double> ranks = new HashMap<Node,Double>();
+        int nodeCount = graph.getAllNodes().size();
+        for ( Node node : graph.getAllNodes() )
+        {
+            outWeights.put( node, 0d );
+            ranks.put( node, 1d / nodeCount );
+        }
+        for ( Relationship relationship : graph.getAllEdges() )
+        {
+            Node start = relationship.getStartNode();
+            outWeights.put( start, outWeights.get( start ) + (Double) relationship.getProperty( "weight" ) );
+        }
+        for ( int iteration = 0; iteration < 1000; iteration++ )
+        {
+            double dangling = 0;
+            for ( Node node : graph.getAllNodes() )
+            {
+                dangling += outWeights.get( node ) == 0 ? ranks.get( node ) : 0;
+            }
+            Map<Node,Double> newRanks = new HashMap<Node,Double>();
+            for ( Node node : graph.getAllNodes() )
+            {
+                newRanks.put( node, (1 - dampingFactor + dampingFactor * dangling) / nodeCount );
+            }
+            for ( Relationship relationship : graph.getAllEdges() )
+            {
+                Node start = relationship.getStartNode();
+                Node end = relationship.getEndNode();
+                newRanks.put( end, newRanks.get( end ) + dampingFactor * ranks.get( start )
+                        * (Double) relationship.getProperty( "weight" ) / outWeights.get( start ) );
+            }
+            ranks = newRanks;
+        }
+        return ranks;
+    }
+
+    private void assertRanks( Map<Node,Double> expected, PageRank pageRank )
+    {
+        double sum = 0;
+        for ( Map.Entry<Node,Double> entry : expected.entrySet() )
+        {
+            assertEquals( entry.getValue(), pageRank.getCentrality( entry.getKey() ), 1e-9 );
+            sum += pageRank.getCentrality( entry.getKey() );
+        }
+        assertEquals( 1d, sum, 1e-9 );
+    }
+
+    @Test
+    public void ranksOfCycleAreEqual()
+    {
+        graph.makeEdgeChain( "a,b,c,a", "weight", 1d );
+        PageRank pageRank = pageRank( 0.85, 1 );
+        assertEquals( 1d / 3, pageRank.getCentrality( graph.getNode( "a" ) ), 1e-9 );
+        assertEquals( 1d / 3, pageRank.getCentrality( graph.getNode( "b" ) ), 1e-9 );
+        assertEquals( 1d / 3, pageRank.getCentrality( graph.getNode( "c" ) ), 1e-9 );
+    }
+
+    @Test
+    public void rankOfNodeWithoutRelationshipsOutIsSpread()
+    {
+        graph.makeEdge( "a", "b", "weight", 1d );
+        PageRank pageRank = pageRank( 0.85, 1 );
+        // a = 0.15 / 2 + 0.85 * b / 2, b = 0.15 / 2 + 0.85 * (a + b / 2)
+        assertEquals( 20d / 57, pageRank.getCentrality( graph.getNode( "a" ) ), 1e-9 );
+        assertEquals( 37d / 57, pageRank.getCentrality( graph.getNode( "b" ) ), 1e-9 );
+    }
+
+    @Test
+    public void ranksOfWeightedGraph()
+    {
+        createRandomGraph();
+        assertRanks( expectedRanks( 0.85 ), pageRank( 0.85, 1 ) );
+    }
+
+    @Test
+    public void ranksOnSeveralThreadsAreTheSame()
+    {
+        createRandomGraph();
+        Map<Node,Double> expected = expectedRanks( 0.85 );
+        for ( int threads = 2; threads <= 5; threads++ )
+        {
+            assertRanks( expected, pageRank( 0.85, threads ) );
+        }
+    }
+
+    @Test
+    public void calculationGoesOnFromCheckpoint()
+    {
+        createRandomGraph();
+        File checkpoint = new File( "target/var/pagerank-checkpoint" );
+        checkpoint.getParentFile().mkdirs();
+        checkpoint.delete();
+        try
+        {
+            PageRank first = pageRank( 0.85, 2 );
+            first.setCheckpoint( checkpoint, 2 );
+            first.setMaxIterations( 5 );
+            first.calculate();
+            assertEquals( 5, first.getTotalIterations() );
+            assertTrue( checkpoint.exists() );
+
+            PageRank second = pageRank( 0.85, 2 );
+            second.setCheckpoint( checkpoint, 2 );
+            second.calculate();
+            assertTrue( second.getTotalIterations() > 5 );
+            assertRanks( expectedRanks( 0.85 ), second );
+
+            // Starting from the converged ranks it's done after one iteration
+            PageRank third = pageRank( 0.85, 1 );
+            third.setCheckpoint( checkpoint, 2 );
+            third.calculate();
+            assertEquals( second.getTotalIterations() + 1, third.getTotalIterations() );
+        }
+        finally
+        {
+            checkpoint.delete();
+        }
+    }
+}
@@ -19,8 +19,16 @@
  */
 package org.neo4j.graphalgo.centrality;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
 import org.junit.Test;
 import org.neo4j.graphalgo.CostEvaluator;
 import org.neo4j.graphalgo.impl.centrality.BetweennessCentrality;
@@ -30,10 +38,16 @@ import org.neo4j.graphalgo.impl.centrality.ParallellCentralityCalculation;
 import org.neo4j.graphalgo.impl.centrality.ShortestPathBasedCentrality;
 import org.neo4j.graphalgo.impl.centrality.StressCentrality;
 import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPath;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPathBFS;
 import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPathDijkstra;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPathFactory;
 import org.neo4j.graphalgo.impl.util.DoubleAdder;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
 
 import common.Neo4jAlgoTestCase;
 
@@ -110,4 +124,137 @@ public class ParallellCentralityCalculationTest extends Neo4jAlgoTestCase
         assertCentrality( closenessCentrality, "d", 1.0 / 7 );
         assertCentrality( closenessCentrality, "e", 1.0 / 7 );
     }
+
+    @Test
+    public void parallelCalculationGivesSameResultsAsSequential()
+    {
+        Random random = new Random( 1234 );
+        for ( int i = 0; i < 200; i++ )
+        {
+            graph.makeEdge( "n" + random.nextInt( 60 ), "n" + random.nextInt( 60 ) );
+        }
+        // The threads of a parallel calculation only see committed data
+        restartTx();
+        Map<String,Double> sequential = calculateCentralities( 1 );
+        Map<String,Double> parallel = calculateCentralities( 4 );
+        assertEquals( sequential.keySet(), parallel.keySet() );
+        for ( Map.Entry<String,Double> entry : sequential.entrySet() )
+        {
+            assertEquals( entry.getKey(), entry.getValue(),
+                parallel.get( entry.getKey() ), 1e-9 );
+        }
+    }
+
+    private Map<String,Double> calculateCentralities( int numberOfThreads )
+    {
+        Set<Node> nodes = graph.getAllNodes();
+        SingleSourceShortestPathFactory<Double> factory = new SingleSourceShortestPathFactory<Double>()
+        {
+            public SingleSourceShortestPath<Double> newSingleSourceShortestPath()
+            {
+                return getSingleSourceShortestPath();
+            }
+        };
+        SingleSourceShortestPath<Double> singleSourceShortestPath = factory
+            .newSingleSourceShortestPath();
+        ParallellCentralityCalculation<Double> pcc = new ParallellCentralityCalculation<Double>(
+            factory, nodes, numberOfThreads );
+        BetweennessCentrality<Double> betweennessCentrality = new BetweennessCentrality<Double>(
+            singleSourceShortestPath, nodes );
+        StressCentrality<Double> stressCentrality = new StressCentrality<Double>(
+            singleSourceShortestPath, nodes );
+        ClosenessCentrality<Double> closenessCentrality = new ClosenessCentrality<Double>(
+            singleSourceShortestPath, new DoubleAdder(), 0.0, nodes,
+            new CostDivider<Double>()
+            {
+                public Double divideByCost( Double d, Double c )
+                {
+                    return d / c;
+                }
+
+                public Double divideCost( Double c, Double d )
+                {
+                    return c / d;
+                }
+            } );
+        pcc.addCalculation( betweennessCentrality );
+        pcc.addCalculation( stressCentrality );
+        pcc.addCalculation( closenessCentrality );
+        pcc.calculate();
+        Map<String,Double> result = new HashMap<String,Double>();
+        for ( Node node : nodes )
+        {
+            String id = graph.getNodeId( node );
+            result.put( "betweenness " + id, betweennessCentrality.getCentrality( node ) );
+            result.put( "stress " + id, stressCentrality.getCentrality( node ) );
+            result.put( "closeness " + id, closenessCentrality.getCentrality( node ) );
+        }
+        return result;
+    }
+
+    /**
+     * Measures how betweenness centrality on a random graph scales with the
+     * number of threads.
+     */
+    public static void main( String[] args )
+    {
+        int nodeCount = args.length > 0 ? Integer.parseInt( args[0] ) : 2000;
+        String storeDir = "target/var/centrality-benchmark";
+        deleteFileOrDirectory( new File( storeDir ) );
+        GraphDatabaseService db = new EmbeddedGraphDatabase( storeDir );
+        try
+        {
+            final Set<Node> nodes = new HashSet<Node>();
+            Transaction tx = db.beginTx();
+            try
+            {
+                Random random = new Random( 1234 );
+                Node[] nodeArray = new Node[nodeCount];
+                for ( int i = 0; i < nodeArray.length; i++ )
+                {
+                    nodeArray[i] = db.createNode();
+                    nodes.add( nodeArray[i] );
+                }
+                for ( int i = 0; i < nodeArray.length * 4; i++ )
+                {
+                    nodeArray[random.nextInt( nodeArray.length )].createRelationshipTo(
+                        nodeArray[random.nextInt( nodeArray.length )], MyRelTypes.R1 );
+                }
+                tx.success();
+            }
+            finally
+            {
+                tx.finish();
+            }
+            SingleSourceShortestPathFactory<Integer> factory = new SingleSourceShortestPathFactory<Integer>()
+            {
+                public SingleSourceShortestPath<Integer> newSingleSourceShortestPath()
+                {
+                    return new SingleSourceShortestPathBFS( null, Direction.BOTH,
+                        MyRelTypes.R1 );
+                }
+            };
+            long sequentialTime = 0;
+            for ( int threads : new int[] { 1, 1, 2, 4, 8 } )
+            {
+                ParallellCentralityCalculation<Integer> pcc = new ParallellCentralityCalculation<Integer>(
+                    factory, nodes, threads );
+                pcc.addCalculation( new BetweennessCentrality<Integer>(
+                    factory.newSingleSourceShortestPath(), nodes ) );
+                long time = System.currentTimeMillis();
+                pcc.calculate();
+                time = System.currentTimeMillis() - time;
+                if ( threads == 1 )
+                {
+                    sequentialTime = time;
+                }
+                System.out.printf( "%d threads: %d ms, speedup %.2f%n", threads,
+                    time, sequentialTime / (double) Math.max( time, 1 ) );
+            }
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
 }
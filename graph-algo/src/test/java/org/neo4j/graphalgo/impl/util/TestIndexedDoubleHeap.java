@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestIndexedDoubleHeap
+{
+    @Test
+    public void pollsInOrderOfPriority()
+    {
+        IndexedDoubleHeap heap = new IndexedDoubleHeap( 4 );
+        heap.offer( 0, 5d );
+        heap.offer( 1, 4d );
+        assertFalse( heap.offer( 1, 4d ) );
+        assertTrue( heap.offer( 1, 3d ) );
+        assertFalse( heap.offer( 1, 6d ) );
+        assertEquals( 2, heap.size() );
+        assertEquals( 1, heap.poll() );
+        assertEquals( 3d, heap.priority( 1 ), 0 );
+        assertFalse( heap.contains( 1 ) );
+        assertEquals( 0, heap.poll() );
+        assertTrue( heap.isEmpty() );
+    }
+
+    @Test
+    public void growsForLargerItems()
+    {
+        IndexedDoubleHeap heap = new IndexedDoubleHeap( 1 );
+        heap.offer( 1000, 2d );
+        heap.offer( 5, 1d );
+        assertTrue( heap.contains( 1000 ) );
+        assertEquals( 5, heap.poll() );
+        assertEquals( 1000, heap.poll() );
+    }
+
+    @Test
+    public void sortsRandomPrioritiesWithDecreases()
+    {
+        Random random = new Random( 1234 );
+        int items = 1000;
+        double[] expected = new double[items];
+        IndexedDoubleHeap heap = new IndexedDoubleHeap( items );
+        for ( int item = 0; item < items; item++ )
+        {
+            expected[item] = random.nextDouble();
+            heap.offer( item, expected[item] );
+        }
+        for ( int i = 0; i < items; i++ )
+        {
+            int item = random.nextInt( items );
+            expected[item] = Math.min( expected[item], random.nextDouble() );
+            heap.offer( item, expected[item] );
+        }
+        Arrays.sort( expected );
+        for ( double priority : expected )
+        {
+            assertEquals( priority, heap.priority( heap.poll() ), 0 );
+        }
+        assertTrue( heap.isEmpty() );
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void pollingEmptyHeapFails()
+    {
+        new IndexedDoubleHeap( 4 ).poll();
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.GraphAlgoFactory;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.shortestpath.CompactSingleSourceShortestPath;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.Traversal;
+
+import common.Neo4jAlgoTestCase;
+
+public class TestLandmarkEstimateEvaluator extends Neo4jAlgoTestCase
+{
+    private static final CostEvaluator<Double> LENGTH =
+            CommonEvaluators.doubleCostEvaluator( "length" );
+
+    private List<Node> createRandomGraph( int nodeCount, int relationshipCount )
+    {
+        Random random = new Random( 4321 );
+        List<Node> nodes = new ArrayList<Node>();
+        for ( int i = 0; i < nodeCount; i++ )
+        {
+            nodes.add( graph.makeNode( "n" + i ) );
+        }
+        for ( int i = 0; i < relationshipCount; i++ )
+        {
+            graph.makeEdge( "n" + random.nextInt( nodeCount ), "n" + random.nextInt( nodeCount ),
+                    "length", (double) (1 + random.nextInt( 10 )) );
+        }
+        return nodes;
+    }
+
+    private CompactGraph load( List<Node> nodes, Direction direction )
+    {
+        return CompactGraph.load( nodes, direction, LENGTH, MyRelTypes.R1 );
+    }
+
+    private void assertEstimatesAreLowerBounds( CompactGraph compact,
+            LandmarkEstimateEvaluator estimator )
+    {
+        CompactSingleSourceShortestPath paths = new CompactSingleSourceShortestPath( compact );
+        boolean someEstimateIsPositive = false;
+        for ( int start = 0; start < compact.nodeCount(); start++ )
+        {
+            paths.calculate( start );
+            Node node = compact.getNode( start );
+            for ( int goal = 0; goal < compact.nodeCount(); goal++ )
+            {
+                double estimate = estimator.getCost( node, compact.getNode( goal ) );
+                assertTrue( estimate >= 0 );
+                assertTrue( node + " to " + compact.getNode( goal ) + " estimated " + estimate
+                            + " but is " + paths.getCost( goal ),
+                        estimate <= paths.getCost( goal ) + 1e-9 );
+                someEstimateIsPositive |= estimate > 0;
+            }
+        }
+        assertTrue( someEstimateIsPositive );
+    }
+
+    @Test
+    public void estimatesAreLowerBoundsForDirectedRelationships()
+    {
+        List<Node> nodes = createRandomGraph( 40, 100 );
+        CompactGraph compact = load( nodes, Direction.OUTGOING );
+        LandmarkEstimateEvaluator estimator = LandmarkEstimateEvaluator.build( compact, 4 );
+        assertEquals( 4, estimator.getLandmarkIds().length );
+        assertEstimatesAreLowerBounds( compact, estimator );
+    }
+
+    @Test
+    public void estimatesAreLowerBoundsForUndirectedRelationships()
+    {
+        List<Node> nodes = createRandomGraph( 40, 60 );
+        CompactGraph compact = load( nodes, Direction.BOTH );
+        assertEstimatesAreLowerBounds( compact, LandmarkEstimateEvaluator.build( compact, 3 ) );
+    }
+
+    @Test
+    public void estimatesToLandmarkAreExact()
+    {
+        List<Node> nodes = createRandomGraph( 30, 90 );
+        Node landmark = nodes.get( 7 );
+        CompactGraph compact = load( nodes, Direction.OUTGOING );
+        LandmarkEstimateEvaluator estimator = LandmarkEstimateEvaluator.build( compact, landmark );
+        CompactSingleSourceShortestPath paths = new CompactSingleSourceShortestPath( compact );
+        for ( Node node : nodes )
+        {
+            paths.setStartNode( node );
+            double distance = paths.getCost( compact.indexOf( landmark ) );
+            if ( distance != Double.POSITIVE_INFINITY )
+            {
+                assertEquals( distance, estimator.getCost( node, landmark ), 0d );
+            }
+        }
+    }
+
+    @Test
+    public void aStarFindsCheapestPaths()
+    {
+        List<Node> nodes = createRandomGraph( 60, 180 );
+        LandmarkEstimateEvaluator estimator = CommonEvaluators.landmarkEstimateEvaluator( nodes,
+                Direction.OUTGOING, LENGTH, 4, MyRelTypes.R1 );
+        PathFinder<WeightedPath> dijkstra = GraphAlgoFactory.dijkstra(
+                Traversal.expanderForTypes( MyRelTypes.R1, Direction.OUTGOING ), LENGTH );
+        PathFinder<WeightedPath> primitiveAStar = GraphAlgoFactory.primitiveAStar(
+                Traversal.expanderForTypes( MyRelTypes.R1, Direction.OUTGOING ), LENGTH, estimator );
+        Random random = new Random( 8765 );
+        for ( int i = 0; i < 100; i++ )
+        {
+            Node start = nodes.get( random.nextInt( nodes.size() ) );
+            Node end = nodes.get( random.nextInt( nodes.size() ) );
+            WeightedPath expected = dijkstra.findSinglePath( start, end );
+            if ( expected == null )
+            {
+                assertNull( primitiveAStar.findSinglePath( start, end ) );
+                continue;
+            }
+            assertEquals( expected.weight(), primitiveAStar.findSinglePath( start, end ).weight(), 1e-9 );
+        }
+    }
+
+    @Test
+    public void savedTableGivesSameEstimates() throws Exception
+    {
+        List<Node> nodes = createRandomGraph( 30, 90 );
+        LandmarkEstimateEvaluator estimator = LandmarkEstimateEvaluator.build(
+                load( nodes, Direction.OUTGOING ), 3 );
+        File file = new File( "target/var/landmarks" );
+        file.getParentFile().mkdirs();
+        estimator.save( file );
+        LandmarkEstimateEvaluator loaded = LandmarkEstimateEvaluator.load( file );
+        assertEquals( estimator.getLandmarkIds()[0], loaded.getLandmarkIds()[0] );
+        for ( Node node : nodes )
+        {
+            for ( Node goal : nodes )
+            {
+                assertEquals( estimator.getCost( node, goal ), loaded.getCost( node, goal ) );
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void changesInvalidateTableUntilRebuilt()
+    {
+        List<Node> nodes = createRandomGraph( 10, 0 );
+        graph.makeEdgeChain( "n0,n1,n2,n3,n4,n5,n6,n7,n8,n9", "length", 1d );
+        LandmarkEstimateEvaluator estimator = LandmarkEstimateEvaluator.build(
+                load( nodes, Direction.OUTGOING ), nodes.get( 0 ) );
+        assertEquals( 8d, estimator.getCost( nodes.get( 1 ), nodes.get( 9 ) ), 0d );
+
+        // Handlers only see transactions started after they're registered
+        TransactionEventHandler<Void> handler = estimator.invalidatingHandler();
+        graphDb.registerTransactionEventHandler( handler );
+        restartTx();
+        try
+        {
+            graph.makeEdge( "n1", "n9", "length", 1d );
+            restartTx();
+        }
+        finally
+        {
+            graphDb.unregisterTransactionEventHandler( handler );
+        }
+        assertFalse( estimator.isValid() );
+        assertEquals( 0d, estimator.getCost( nodes.get( 1 ), nodes.get( 9 ) ), 0d );
+
+        estimator.rebuild( load( nodes, Direction.OUTGOING ) );
+        assertTrue( estimator.isValid() );
+        assertEquals( nodes.get( 0 ).getId(), estimator.getLandmarkIds()[0] );
+        assertEquals( 1d, estimator.getCost( nodes.get( 1 ), nodes.get( 9 ) ), 0d );
+    }
+}
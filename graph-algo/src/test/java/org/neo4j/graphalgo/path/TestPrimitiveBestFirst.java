@@ -0,0 +1,303 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.GraphAlgoFactory;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipExpander;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.Traversal;
+
+import common.Neo4jAlgoTestCase;
+
+public class TestPrimitiveBestFirst extends Neo4jAlgoTestCase
+{
+    private static final CostEvaluator<Double> LENGTH =
+            CommonEvaluators.doubleCostEvaluator( "length" );
+
+    @Test
+    public void dijkstraFindsAllCheapestPaths()
+    {
+        /*
+         * (a)-[1]->(b)-[2]->(d)
+         *  |                 ^
+         * [2]               [1]
+         *  v                 |
+         * (c)-------[1]------+
+         */
+        graph.makeEdge( "a", "b", "length", 1d );
+        graph.makeEdge( "b", "d", "length", 2d );
+        graph.makeEdge( "a", "c", "length", 2d );
+        graph.makeEdge( "c", "d", "length", 1d );
+        graph.makeEdge( "a", "d", "length", 4d );
+
+        PathFinder<WeightedPath> finder = GraphAlgoFactory.primitiveDijkstra(
+                Traversal.expanderForTypes( MyRelTypes.R1, Direction.OUTGOING ), LENGTH );
+        Node a = graph.getNode( "a" );
+        Node d = graph.getNode( "d" );
+        assertPaths( finder.findAllPaths( a, d ), "a,b,d", "a,c,d" );
+        for ( WeightedPath path : finder.findAllPaths( a, d ) )
+        {
+            assertEquals( 3d, path.weight(), 0d );
+        }
+        assertEquals( 3d, finder.findSinglePath( a, d ).weight(), 0d );
+    }
+
+    @Test
+    public void aStarFindsCheapestPath()
+    {
+        Node nodeA = graph.makeNode( "A", "x", 0d, "y", 0d );
+        Node nodeB = graph.makeNode( "B", "x", 2d, "y", 1d );
+        Node nodeC = graph.makeNode( "C", "x", 7d, "y", 0d );
+        graph.makeEdge( "A", "B", "length", 2d );
+        graph.makeEdge( "B", "C", "length", 6d );
+        graph.makeEdge( "A", "C", "length", 10d );
+
+        PathFinder<WeightedPath> finder = GraphAlgoFactory.primitiveAStar(
+                Traversal.expanderForAllTypes(), LENGTH, TestAStar.ESTIMATE_EVALUATOR );
+        WeightedPath path = finder.findSinglePath( nodeA, nodeC );
+        assertEquals( 8d, path.weight(), 0d );
+        assertPath( path, nodeA, nodeB, nodeC );
+        int count = 0;
+        for ( WeightedPath found : finder.findAllPaths( nodeA, nodeC ) )
+        {
+            assertPath( found, nodeA, nodeB, nodeC );
+            count++;
+        }
+        assertEquals( 1, count );
+    }
+
+    @Test
+    public void pathFromNodeToItself()
+    {
+        Node a = graph.makeNode( "a", "x", 0d, "y", 0d );
+        graph.makeNode( "b", "x", 1d, "y", 0d );
+        graph.makeEdge( "a", "b", "length", 1d );
+
+        for ( PathFinder<WeightedPath> finder : primitiveFinders( Traversal.expanderForAllTypes() ) )
+        {
+            WeightedPath path = finder.findSinglePath( a, a );
+            assertEquals( 0, path.length() );
+            assertEquals( 0d, path.weight(), 0d );
+            assertEquals( a, path.startNode() );
+            assertEquals( a, path.endNode() );
+        }
+    }
+
+    @Test
+    public void noPathBetweenUnconnectedNodes()
+    {
+        Node a = graph.makeNode( "a", "x", 0d, "y", 0d );
+        graph.makeNode( "b", "x", 1d, "y", 0d );
+        Node c = graph.makeNode( "c", "x", 2d, "y", 0d );
+        graph.makeEdge( "a", "b", "length", 1d );
+        graph.makeEdge( "c", "b", "length", 1d );
+
+        for ( PathFinder<WeightedPath> finder : primitiveFinders(
+                Traversal.expanderForTypes( MyRelTypes.R1, Direction.OUTGOING ) ) )
+        {
+            assertNull( finder.findSinglePath( a, c ) );
+            assertFalse( finder.findAllPaths( a, c ).iterator().hasNext() );
+        }
+    }
+
+    @Test
+    public void findsSamePathsAsObjectBasedFinders()
+    {
+        Random random = new Random( 1234 );
+        int nodes = 60;
+        for ( int i = 0; i < nodes; i++ )
+        {
+            graph.makeNode( "n" + i, "x", random.nextDouble() * 10, "y", random.nextDouble() * 10 );
+        }
+        for ( int i = 0; i < nodes * 3; i++ )
+        {
+            String from = "n" + random.nextInt( nodes );
+            String to = "n" + random.nextInt( nodes );
+            // Never shorter than the straight line, so that the estimate is optimistic
+            double length = TestAStar.ESTIMATE_EVALUATOR.getCost( graph.getNode( from ),
+                    graph.getNode( to ) ) + random.nextInt( 3 );
+            graph.makeEdge( from, to, "length", length );
+        }
+
+        RelationshipExpander expander = Traversal.expanderForTypes( MyRelTypes.R1, Direction.OUTGOING );
+        PathFinder<WeightedPath> dijkstra = GraphAlgoFactory.dijkstra( expander, LENGTH );
+        PathFinder<WeightedPath> aStar = GraphAlgoFactory.aStar( expander, LENGTH,
+                TestAStar.ESTIMATE_EVALUATOR );
+        PathFinder<WeightedPath> primitiveDijkstra = GraphAlgoFactory.primitiveDijkstra( expander, LENGTH );
+        PathFinder<WeightedPath> primitiveAStar = GraphAlgoFactory.primitiveAStar( expander, LENGTH,
+                TestAStar.ESTIMATE_EVALUATOR );
+        for ( int i = 0; i < 100; i++ )
+        {
+            Node start = graph.getNode( "n" + random.nextInt( nodes ) );
+            Node end = graph.getNode( "n" + random.nextInt( nodes ) );
+            WeightedPath expected = dijkstra.findSinglePath( start, end );
+            if ( expected == null )
+            {
+                assertNull( aStar.findSinglePath( start, end ) );
+                assertNull( primitiveDijkstra.findSinglePath( start, end ) );
+                assertNull( primitiveAStar.findSinglePath( start, end ) );
+                continue;
+            }
+            assertEquals( expected.weight(), primitiveDijkstra.findSinglePath( start, end ).weight(), 1e-9 );
+            assertEquals( expected.weight(), primitiveAStar.findSinglePath( start, end ).weight(), 1e-9 );
+            assertEquals( relationshipIds( dijkstra.findAllPaths( start, end ) ),
+                    relationshipIds( primitiveDijkstra.findAllPaths( start, end ) ) );
+        }
+    }
+
+    private PathFinder<WeightedPath>[] primitiveFinders( RelationshipExpander expander )
+    {
+        @SuppressWarnings( "unchecked" )
+        PathFinder<WeightedPath>[] finders = new PathFinder[] {
+                GraphAlgoFactory.primitiveDijkstra( expander, LENGTH ),
+                GraphAlgoFactory.primitiveAStar( expander, LENGTH, TestAStar.ESTIMATE_EVALUATOR ) };
+        return finders;
+    }
+
+    private Set<List<Long>> relationshipIds( Iterable<WeightedPath> paths )
+    {
+        Set<List<Long>> result = new HashSet<List<Long>>();
+        for ( WeightedPath path : paths )
+        {
+            List<Long> ids = new ArrayList<Long>();
+            for ( Relationship relationship : path.relationships() )
+            {
+                ids.add( relationship.getId() );
+            }
+            assertTrue( "Duplicate path " + path, result.add( ids ) );
+        }
+        return result;
+    }
+
+    // === Benchmarking ===
+
+    private static final int GRID_SIZE = 300;
+
+    /**
+     * Compares {@link GraphAlgoFactory#dijkstra(RelationshipExpander, CostEvaluator)}
+     * and {@link GraphAlgoFactory#aStar(RelationshipExpander, CostEvaluator,
+     * org.neo4j.graphalgo.EstimateEvaluator) aStar} with their primitive
+     * counterparts, finding paths between opposite corners of a grid where
+     * every edge is a bit longer than the distance between its nodes.
+     */
+    public static void main( String[] args )
+    {
+        String path = args.length > 0 ? args[0] : "target/var/best-first-benchmark";
+        deleteFileOrDirectory( new File( path ) );
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( path );
+        try
+        {
+            Node[][] grid = createGrid( db );
+            Node start = grid[0][0];
+            Node end = grid[GRID_SIZE - 1][GRID_SIZE - 1];
+            RelationshipExpander expander = Traversal.expanderForAllTypes();
+            for ( int i = 0; i < 3; i++ )
+            {
+                time( "dijkstra", GraphAlgoFactory.dijkstra( expander, LENGTH ), start, end );
+                time( "primitiveDijkstra", GraphAlgoFactory.primitiveDijkstra( expander, LENGTH ),
+                        start, end );
+                time( "aStar", GraphAlgoFactory.aStar( expander, LENGTH,
+                        TestAStar.ESTIMATE_EVALUATOR ), start, end );
+                time( "primitiveAStar", GraphAlgoFactory.primitiveAStar( expander, LENGTH,
+                        TestAStar.ESTIMATE_EVALUATOR ), start, end );
+            }
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    private static void time( String name, PathFinder<WeightedPath> finder, Node start, Node end )
+    {
+        long time = System.currentTimeMillis();
+        WeightedPath path = finder.findSinglePath( start, end );
+        time = System.currentTimeMillis() - time;
+        System.out.printf( "%-18s weight %.3f, length %d in %d ms%n", name, path.weight(),
+                path.length(), time );
+    }
+
+    private static Node[][] createGrid( EmbeddedGraphDatabase db )
+    {
+        Random random = new Random( 1 );
+        Node[][] grid = new Node[GRID_SIZE][GRID_SIZE];
+        Transaction tx = db.beginTx();
+        try
+        {
+            for ( int x = 0; x < GRID_SIZE; x++ )
+            {
+                for ( int y = 0; y < GRID_SIZE; y++ )
+                {
+                    Node node = db.createNode();
+                    node.setProperty( "x", (double) x );
+                    node.setProperty( "y", (double) y );
+                    grid[x][y] = node;
+                    if ( x > 0 )
+                    {
+                        connect( grid[x - 1][y], node, random );
+                    }
+                    if ( y > 0 )
+                    {
+                        connect( grid[x][y - 1], node, random );
+                    }
+                }
+                if ( x % 20 == 0 )
+                {
+                    tx.success();
+                    tx.finish();
+                    tx = db.beginTx();
+                }
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+        return grid;
+    }
+
+    private static void connect( Node from, Node to, Random random )
+    {
+        from.createRelationshipTo( to, MyRelTypes.R1 ).setProperty( "length",
+                1 + random.nextDouble() );
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.shortestpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.impl.shortestpath.CompactSingleSourceShortestPath;
+import org.neo4j.graphalgo.impl.shortestpath.SingleSourceShortestPathDijkstra;
+import org.neo4j.graphalgo.impl.util.CompactGraph;
+import org.neo4j.graphalgo.impl.util.DoubleAdder;
+import org.neo4j.graphalgo.impl.util.DoubleComparator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import common.Neo4jAlgoTestCase;
+
+public class CompactSingleSourceShortestPathTest extends Neo4jAlgoTestCase
+{
+    private static final CostEvaluator<Double> COST = new CostEvaluator<Double>()
+    {
+        public Double getCost( Relationship relationship, Direction direction )
+        {
+            return (Double) relationship.getProperty( "cost" );
+        }
+    };
+
+    @Test
+    public void loadsStepsInTheDirectionOfTheProjection()
+    {
+        graph.makeEdge( "a", "b", "cost", 1.0 );
+        graph.makeEdge( "b", "c", "cost", 2.0 );
+        CompactGraph outgoing = CompactGraph.load( graph.getAllNodes(), Direction.OUTGOING, COST );
+        assertEquals( 3, outgoing.nodeCount() );
+        assertEquals( 2, outgoing.stepCount() );
+        int b = outgoing.indexOf( graph.getNode( "b" ) );
+        assertEquals( 1, outgoing.degree( b ) );
+        assertEquals( graph.getNode( "c" ), outgoing.getNode( outgoing.target(
+            outgoing.firstStep( b ) ) ) );
+        assertEquals( 2.0, outgoing.cost( outgoing.firstStep( b ) ), 0 );
+        CompactGraph both = CompactGraph.load( graph.getAllNodes(), graph.getAllEdges(),
+            Direction.BOTH, null );
+        assertEquals( 4, both.stepCount() );
+        assertEquals( 2, both.degree( both.indexOf( graph.getNode( "b" ) ) ) );
+        assertEquals( 1.0, both.cost( 0 ), 0 );
+    }
+
+    @Test
+    public void sameCostsAsDijkstra()
+    {
+        Random random = new Random( 1234 );
+        for ( int i = 0; i < 150; i++ )
+        {
+            graph.makeEdge( "n" + random.nextInt( 50 ), "n" + random.nextInt( 50 ), "cost",
+                random.nextDouble() * 10 );
+        }
+        for ( Direction direction : Direction.values() )
+        {
+            CompactGraph compactGraph = CompactGraph.load( graph.getAllNodes(), direction,
+                COST, MyRelTypes.R1 );
+            CompactSingleSourceShortestPath compact = new CompactSingleSourceShortestPath(
+                compactGraph );
+            SingleSourceShortestPathDijkstra<Double> dijkstra = new SingleSourceShortestPathDijkstra<Double>(
+                0.0, null, COST, new DoubleAdder(), new DoubleComparator(), direction,
+                MyRelTypes.R1 );
+            for ( Node start : graph.getAllNodes() )
+            {
+                compact.setStartNode( start );
+                dijkstra.reset();
+                dijkstra.setStartNode( start );
+                for ( Node target : graph.getAllNodes() )
+                {
+                    Double expected = dijkstra.getCost( target );
+                    if ( expected == null )
+                    {
+                        assertNull( compact.getCost( target ) );
+                        assertNull( compact.getPathAsNodes( target ) );
+                        continue;
+                    }
+                    assertEquals( expected, compact.getCost( target ), 1e-9 );
+                    assertPathCost( expected, start, target,
+                        compact.getPathAsNodes( target ),
+                        compact.getPathAsRelationships( target ) );
+                }
+            }
+        }
+    }
+
+    private void assertPathCost( double expected, Node start, Node target, List<Node> nodes,
+        List<Relationship> relationships )
+    {
+        assertEquals( start, nodes.get( 0 ) );
+        assertEquals( target, nodes.get( nodes.size() - 1 ) );
+        assertEquals( nodes.size() - 1, relationships.size() );
+        double cost = 0;
+        Iterator<Node> nodeIterator = nodes.iterator();
+        Node current = nodeIterator.next();
+        for ( Relationship relationship : relationships )
+        {
+            current = relationship.getOtherNode( current );
+            assertEquals( nodeIterator.next(), current );
+            cost += COST.getCost( relationship, null );
+        }
+        assertEquals( expected, cost, 1e-9 );
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx;
+
+@ManagementInterface( name = GroupCommit.NAME )
+@Description( "Statistics about the batched disk forces of the transaction logs" )
+public interface GroupCommit
+{
+    final String NAME = "Group commit";
+
+    @Description( "Whether group commit is enabled in this Neo4j instance" )
+    boolean isGroupCommitEnabled();
+
+    @Description( "The max time in milliseconds to wait for more transactions before forcing a log" )
+    long getWindow();
+
+    @Description( "The number of waiting transactions that forces a log before the window has passed" )
+    int getMaxBatchSize();
+
+    @Description( "The number of forces of the logical log of the Neo4j store" )
+    long getLogicalLogForceCount();
+
+    @Description( "The number of commits forced to the logical log of the Neo4j store" )
+    long getLogicalLogForcedCommitCount();
+
+    @Description( "The average number of commits per force of the logical log of the Neo4j store" )
+    double getLogicalLogAverageBatchSize();
+
+    @Description( "The largest number of commits in one force of the logical log of the Neo4j store" )
+    long getLogicalLogLargestBatchSize();
+
+    @Description( "The average time in milliseconds of a force of the logical log of the Neo4j store" )
+    double getLogicalLogAverageForceLatency();
+
+    @Description( "The longest time in milliseconds of a force of the logical log of the Neo4j store" )
+    double getLogicalLogMaxForceLatency();
+
+    @Description( "The number of forces of the transaction manager log" )
+    long getTxLogForceCount();
+
+    @Description( "The number of commits forced to the transaction manager log" )
+    long getTxLogForcedCommitCount();
+
+    @Description( "The average number of commits per force of the transaction manager log" )
+    double getTxLogAverageBatchSize();
+
+    @Description( "The largest number of commits in one force of the transaction manager log" )
+    long getTxLogLargestBatchSize();
+
+    @Description( "The average time in milliseconds of a force of the transaction manager log" )
+    double getTxLogAverageForceLatency();
+
+    @Description( "The longest time in milliseconds of a force of the transaction manager log" )
+    double getTxLogMaxForceLatency();
+}
@@ -36,4 +36,19 @@ public interface Primitives
 
     @Description( "An estimation of the number of properties used in this Neo4j instance" )
     long getNumberOfPropertyIdsInUse();
+
+    @Description( "The ratio of node lookups that were served from the node cache, "
+                  + "only tracked by the offheap cache type" )
+    double getNodeCacheHitRatio();
+
+    @Description( "The ratio of node cache lookups missing the heap that were served "
+                  + "from the off heap part of the offheap cache type" )
+    double getOffHeapNodeCacheHitRatio();
+
+    @Description( "The number of bytes of direct memory used by cached nodes "
+                  + "in the offheap cache type" )
+    long getOffHeapNodeCacheBytesUsed();
+
+    @Description( "The max number of bytes of direct memory the offheap cache type may use" )
+    long getOffHeapNodeCacheMaxBytes();
 }
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx.impl;
+
+import javax.management.NotCompliantMBeanException;
+import javax.transaction.TransactionManager;
+
+import org.neo4j.helpers.Service;
+import org.neo4j.jmx.GroupCommit;
+import org.neo4j.kernel.impl.transaction.TxManager;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommitter;
+
+@Service.Implementation( ManagementBeanProvider.class )
+public final class GroupCommitBean extends ManagementBeanProvider
+{
+    public GroupCommitBean()
+    {
+        super( GroupCommit.class );
+    }
+
+    @Override
+    protected Neo4jMBean createMBean( ManagementData management ) throws NotCompliantMBeanException
+    {
+        return new GroupCommitImpl( management );
+    }
+
+    private static class GroupCommitImpl extends Neo4jMBean implements GroupCommit
+    {
+        GroupCommitImpl( ManagementData management ) throws NotCompliantMBeanException
+        {
+            super( management );
+            this.logicalLog = KernelBean.getNeoDataSource( management.getKernelData() ).getXaContainer()
+                    .getLogicalLog().getGroupCommitter();
+            TransactionManager txManager = management.getKernelData().getConfig().getTxModule().getTxManager();
+            this.txLog = txManager instanceof TxManager ? ((TxManager) txManager).getGroupCommitter() : null;
+        }
+
+        private final GroupCommitter logicalLog;
+        private final GroupCommitter txLog;
+
+        public boolean isGroupCommitEnabled()
+        {
+            return logicalLog != null;
+        }
+
+        public long getWindow()
+        {
+            return logicalLog != null ? logicalLog.getWindowMillis() : 0;
+        }
+
+        public int getMaxBatchSize()
+        {
+            return logicalLog != null ? logicalLog.getMaxBatchSize() : 0;
+        }
+
+        public long getLogicalLogForceCount()
+        {
+            return logicalLog != null ? logicalLog.getForceCount() : 0;
+        }
+
+        public long getLogicalLogForcedCommitCount()
+        {
+            return logicalLog != null ? logicalLog.getForcedRecordCount() : 0;
+        }
+
+        public double getLogicalLogAverageBatchSize()
+        {
+            return logicalLog != null ? logicalLog.getAverageBatchSize() : 0;
+        }
+
+        public long getLogicalLogLargestBatchSize()
+        {
+            return logicalLog != null ? logicalLog.getLargestBatchSize() : 0;
+        }
+
+        public double getLogicalLogAverageForceLatency()
+        {
+            return logicalLog != null ? logicalLog.getAverageForceLatencyMillis() : 0;
+        }
+
+        public double getLogicalLogMaxForceLatency()
+        {
+            return logicalLog != null ? logicalLog.getMaxForceLatencyMillis() : 0;
+        }
+
+        public long getTxLogForceCount()
+        {
+            return txLog != null ? txLog.getForceCount() : 0;
+        }
+
+        public long getTxLogForcedCommitCount()
+        {
+            return txLog != null ? txLog.getForcedRecordCount() : 0;
+        }
+
+        public double getTxLogAverageBatchSize()
+        {
+            return txLog != null ? txLog.getAverageBatchSize() : 0;
+        }
+
+        public long getTxLogLargestBatchSize()
+        {
+            return txLog != null ? txLog.getLargestBatchSize() : 0;
+        }
+
+        public double getTxLogAverageForceLatency()
+        {
+            return txLog != null ? txLog.getAverageForceLatencyMillis() : 0;
+        }
+
+        public double getTxLogMaxForceLatency()
+        {
+            return txLog != null ? txLog.getMaxForceLatencyMillis() : 0;
+        }
+    }
+}
@@ -72,5 +72,25 @@ public final class PrimitivesBean extends ManagementBeanProvider
         {
             return nodeManager.getNumberOfIdsInUse( RelationshipType.class );
         }
+
+        public double getNodeCacheHitRatio()
+        {
+            return nodeManager.getNodeCacheHitRatio();
+        }
+
+        public double getOffHeapNodeCacheHitRatio()
+        {
+            return nodeManager.getOffHeapNodeCacheHitRatio();
+        }
+
+        public long getOffHeapNodeCacheBytesUsed()
+        {
+            return nodeManager.getOffHeapNodeCacheBytesUsed();
+        }
+
+        public long getOffHeapNodeCacheMaxBytes()
+        {
+            return nodeManager.getOffHeapNodeCacheMaxBytes();
+        }
     }
 }
@@ -165,6 +165,27 @@ public interface TraversalDescription
      */
     TraversalDescription breadthFirst();
 
+    /**
+     * Expands the traversal on {@code threads} threads. Only
+     * {@link #breadthFirst() breadth first} traversals can be parallel: one
+     * depth at a time is expanded by all the threads, and all positions of
+     * a depth are returned before any position of the next depth. The
+     * order of positions within a depth isn't defined.
+     * <p>
+     * The {@link Evaluator}s and {@link RelationshipExpander} of a parallel
+     * traversal are called from many threads at the same time and must be
+     * thread safe. The {@link UniquenessFactory} is asked for a thread safe
+     * filter, see {@link Uniqueness#createConcurrent(Object)}; other
+     * factories get their filters synchronized. The traversal threads don't
+     * take part in the transaction of the caller, so they only see committed
+     * data.
+     *
+     * @param threads the number of threads to expand the traversal on, 1
+     * means that the traversal is done on the thread iterating over it.
+     * @return a new traversal description with the new modifications.
+     */
+    TraversalDescription parallel( int threads );
+
     /**
      * Adds {@code type} to the list of relationship types to traverse.
      * There's no priority or order in which types to traverse.
@@ -211,4 +232,30 @@ public interface TraversalDescription
      *         results from.
      */
     Traverser traverse( Node startNode );
+
+    /**
+     * Traverse from both {@code startNode} and {@code endNode} at the same
+     * time, returning the paths from {@code startNode} to {@code endNode}
+     * where the two sides meet. The sides take turns selecting the next
+     * branch, each with its own {@link BranchSelector} and
+     * {@link UniquenessFilter}, and the end node side expands relationships
+     * in the reversed direction (see {@link RelationshipExpander#reversed()}).
+     * Since each side only has to reach about half way, a point to point
+     * query typically expands far fewer relationships than a traversal from
+     * one of the nodes.
+     * <p>
+     * The {@link Evaluator}s decide where each side stops expanding, seeing
+     * paths from {@code startNode} and paths from {@code endNode}
+     * respectively, and which of the joined paths to return. A joined path
+     * is only returned if it doesn't visit any node twice (for node
+     * uniqueness) or any relationship twice (for relationship uniqueness),
+     * and each path is returned once even if the sides meet on several of
+     * its nodes. Bidirectional traversals can't be {@link #parallel(int)}.
+     *
+     * @param startNode the {@link Node} the returned paths start at.
+     * @param endNode the {@link Node} the returned paths end at.
+     * @return a {@link Traverser} used to step through the graph and to get
+     *         results from.
+     */
+    Traverser traverse( Node startNode, Node endNode );
 }
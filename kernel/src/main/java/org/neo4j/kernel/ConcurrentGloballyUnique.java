@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel;
+
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.kernel.impl.util.PrimitiveLongSet;
+
+/**
+ * Same as {@link GloballyUnique}, but can be checked by many threads at the
+ * same time. The visited ids are spread over striped sets so that threads
+ * checking different ids seldom wait for each other.
+ */
+class ConcurrentGloballyUnique extends AbstractUniquenessFilter
+{
+    private static final int STRIPES = 64;
+
+    private final PrimitiveLongSet[] visited = new PrimitiveLongSet[STRIPES];
+
+    ConcurrentGloballyUnique( PrimitiveTypeFetcher type )
+    {
+        super( type );
+        for ( int i = 0; i < visited.length; i++ )
+        {
+            visited[i] = new PrimitiveLongSet();
+        }
+    }
+
+    public boolean check( TraversalBranch branch )
+    {
+        long id = type.getId( branch );
+        PrimitiveLongSet stripe = visited[(int) (id ^ (id >>> 32)) & (STRIPES - 1)];
+        synchronized ( stripe )
+        {
+            return stripe.add( id );
+        }
+    }
+}
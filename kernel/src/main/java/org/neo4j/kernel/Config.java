@@ -23,6 +23,7 @@ import static java.util.regex.Pattern.quote;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.logging.Logger;
 
 import javax.transaction.TransactionManager;
 
@@ -63,6 +64,19 @@ public class Config
      */
     @Documented
     public static final String USE_MEMORY_MAPPED_BUFFERS = "use_memory_mapped_buffers";
+    /**
+     * The amount of memory, with a k, M or G suffix, for a page cache of
+     * memory mapped pages shared by all stores. When set it replaces the
+     * per store mapped_memory settings.
+     */
+    @Documented
+    public static final String PAGE_CACHE_MEMORY = "page_cache_memory";
+    /**
+     * The size of the pages of the page cache, with a k, M or G suffix,
+     * defaults to 1M
+     */
+    @Documented
+    public static final String PAGE_CACHE_PAGE_SIZE = "page_cache_page_size";
     /** Print out the effective Neo4j configuration after startup */
     @Documented
     public static final String DUMP_CONFIGURATION = "dump_configuration";
@@ -129,10 +143,17 @@ public class Config
     public static final String NEO_STORE = "neo_store";
     /**
      * The type of cache to use for nodes and relationships, one of [weak, soft,
-     * none]
+     * strong, old, clock, offheap, none]
      */
     @Documented
     public static final String CACHE_TYPE = "cache_type";
+    /**
+     * The max number of bytes of direct memory the offheap cache type may use
+     * for nodes evicted from the heap, with a k, M or G suffix, defaults to
+     * 256M
+     */
+    @Documented
+    public static final String OFF_HEAP_NODE_CACHE_SIZE = "off_heap_node_cache_size";
     /**
      * The name of the Transaction Manager service to use as defined in the TM
      * service provider constructor, defaults to native.
@@ -182,6 +203,27 @@ public class Config
     @Documented
     public static final String RELATIONSHIP_AUTO_INDEXING = "relationship_auto_indexing";
 
+    /**
+     * Boolean (one of true,false) defining whether to batch the disk forces
+     * of concurrently committing transactions into one force of the logical
+     * logs and the transaction manager log. The default is false.
+     */
+    @Documented
+    public static final String GROUP_COMMIT = "group_commit";
+    /**
+     * The max time in milliseconds to wait for more transactions to join a
+     * group commit before forcing the log. The default is 0, which forces as
+     * soon as the previous force is done.
+     */
+    @Documented
+    public static final String GROUP_COMMIT_WINDOW = "group_commit_window";
+    /**
+     * The number of waiting transactions that makes a group commit force the
+     * log before its window has passed. The default is 100.
+     */
+    @Documented
+    public static final String GROUP_COMMIT_MAX_BATCH_SIZE = "group_commit_max_batch_size";
+
     static final String LOAD_EXTENSIONS = "load_kernel_extensions";
 
     private final AdaptiveCacheManager cacheManager;
@@ -406,6 +448,95 @@ public class Config
         return result;
     }
 
+    /**
+     * Parses a size in bytes, optionally suffixed with k, M or G for kilo-,
+     * mega- or gigabytes, e.g. "512k" or "100M". A value that can't be parsed
+     * is logged and the default is returned, the same as if it was missing.
+     *
+     * @param config the configuration to read from, may be {@code null}.
+     * @param key the setting to read.
+     * @param defaultValue the size to return if the setting is missing or
+     * invalid.
+     * @return the size in bytes.
+     */
+    public static long parseSize( Map<?, ?> config, Object key, long defaultValue )
+    {
+        Object value = config != null ? config.get( key ) : null;
+        if ( value == null )
+        {
+            return defaultValue;
+        }
+        if ( value instanceof Number )
+        {
+            return ((Number) value).longValue();
+        }
+        String string = value.toString().trim();
+        long multiplier = 1;
+        if ( string.endsWith( "k" ) )
+        {
+            multiplier = 1024;
+        }
+        else if ( string.endsWith( "M" ) )
+        {
+            multiplier = 1024 * 1024;
+        }
+        else if ( string.endsWith( "G" ) )
+        {
+            multiplier = 1024 * 1024 * 1024;
+        }
+        if ( multiplier != 1 )
+        {
+            string = string.substring( 0, string.length() - 1 );
+        }
+        try
+        {
+            return Long.parseLong( string ) * multiplier;
+        }
+        catch ( NumberFormatException e )
+        {
+            return invalid( key, value, defaultValue );
+        }
+    }
+
+    /**
+     * Parses a whole number, like {@link #parseSize(Map, Object, long)} but
+     * without suffixes. A value that can't be parsed is logged and the
+     * default is returned, the same as if it was missing.
+     *
+     * @param config the configuration to read from, may be {@code null}.
+     * @param key the setting to read.
+     * @param defaultValue the number to return if the setting is missing or
+     * invalid.
+     * @return the number.
+     */
+    public static long parseLong( Map<?, ?> config, Object key, long defaultValue )
+    {
+        Object value = config != null ? config.get( key ) : null;
+        if ( value == null )
+        {
+            return defaultValue;
+        }
+        if ( value instanceof Number )
+        {
+            return ((Number) value).longValue();
+        }
+        try
+        {
+            return Long.parseLong( value.toString().trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            return invalid( key, value, defaultValue );
+        }
+    }
+
+    private static long invalid( Object key, Object value, long defaultValue )
+    {
+        Logger.getLogger( Config.class.getName() ).warning(
+                "Unable to parse " + key + " " + value );
+        return defaultValue;
+    }
+
     public static Object getFromConfig( Map<?, ?> config, Object key,
             Object defaultValue )
     {
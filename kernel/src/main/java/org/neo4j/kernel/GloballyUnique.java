@@ -19,14 +19,12 @@
  */
 package org.neo4j.kernel;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.kernel.impl.util.PrimitiveLongSet;
 
 class GloballyUnique extends AbstractUniquenessFilter
 {
-    private final Set<Long> visited = new HashSet<Long>();
+    private final PrimitiveLongSet visited = new PrimitiveLongSet();
     
     GloballyUnique( PrimitiveTypeFetcher type )
     {
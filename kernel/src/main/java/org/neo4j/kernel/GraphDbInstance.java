@@ -151,6 +151,7 @@ class GraphDbInstance
         config.getIdGeneratorModule().setPersistenceSourceInstance(
                 persistenceSource );
         config.getTxModule().init();
+        config.getTxModule().configure( params );
         config.getPersistenceModule().init();
         persistenceSource.init();
         config.getIdGeneratorModule().init();
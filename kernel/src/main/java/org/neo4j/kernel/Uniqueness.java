@@ -21,6 +21,7 @@ package org.neo4j.kernel;
 
 import org.neo4j.graphdb.traversal.UniquenessFactory;
 import org.neo4j.graphdb.traversal.UniquenessFilter;
+import org.neo4j.kernel.impl.traversal.SynchronizedUniquenessFilter;
 
 /**
  * Contains some uniqueness modes that are very common in traversals, for
@@ -39,6 +40,13 @@ public enum Uniqueness implements UniquenessFactory
             acceptNull( optionalParameter );
             return new GloballyUnique( PrimitiveTypeFetcher.NODE );
         }
+
+        @Override
+        public UniquenessFilter createConcurrent( Object optionalParameter )
+        {
+            acceptNull( optionalParameter );
+            return new ConcurrentGloballyUnique( PrimitiveTypeFetcher.NODE );
+        }
     },
     /**
      * For each returned node there's a unique path from the start node to it.
@@ -50,6 +58,13 @@ public enum Uniqueness implements UniquenessFactory
             acceptNull( optionalParameter );
             return new PathUnique( PrimitiveTypeFetcher.NODE );
         }
+
+        @Override
+        public UniquenessFilter createConcurrent( Object optionalParameter )
+        {
+            // Only looks at the branch itself, so it's thread safe
+            return create( optionalParameter );
+        }
     },
     /**
      * This is like {@link Uniqueness#NODE_GLOBAL}, but only guarantees
@@ -79,6 +94,13 @@ public enum Uniqueness implements UniquenessFactory
             acceptNull( optionalParameter );
             return new GloballyUnique( PrimitiveTypeFetcher.RELATIONSHIP );
         }
+
+        @Override
+        public UniquenessFilter createConcurrent( Object optionalParameter )
+        {
+            acceptNull( optionalParameter );
+            return new ConcurrentGloballyUnique( PrimitiveTypeFetcher.RELATIONSHIP );
+        }
     },
     /**
      * For each returned node there's a (relationship wise) unique path from the
@@ -91,6 +113,13 @@ public enum Uniqueness implements UniquenessFactory
             acceptNull( optionalParameter );
             return new PathUnique( PrimitiveTypeFetcher.RELATIONSHIP );
         }
+
+        @Override
+        public UniquenessFilter createConcurrent( Object optionalParameter )
+        {
+            // Only looks at the branch itself, so it's thread safe
+            return create( optionalParameter );
+        }
     },
     /**
      * Same as for {@link Uniqueness#NODE_RECENT}, but for relationships.
@@ -115,7 +144,31 @@ public enum Uniqueness implements UniquenessFactory
             acceptNull( optionalParameter );
             return instance;
         }
+
+        @Override
+        public UniquenessFilter createConcurrent( Object optionalParameter )
+        {
+            // Doesn't keep any state
+            return create( optionalParameter );
+        }
     };
+
+    /**
+     * Creates a {@link UniquenessFilter} which can be checked by many threads
+     * at the same time, as is done in a parallel traversal (see
+     * {@link org.neo4j.graphdb.traversal.TraversalDescription#parallel(int)}).
+     * The global uniqueness modes use concurrent filters, the recent ones
+     * are synchronized versions of the filters {@link #create(Object)}
+     * returns.
+     *
+     * @param optionalParameter the same parameter as for
+     * {@link #create(Object)}.
+     * @return a thread safe {@link UniquenessFilter}.
+     */
+    public UniquenessFilter createConcurrent( Object optionalParameter )
+    {
+        return new SynchronizedUniquenessFilter( create( optionalParameter ) );
+    }
     
     private static void acceptNull( Object optionalParameter )
     {
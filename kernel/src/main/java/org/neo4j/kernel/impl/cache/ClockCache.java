@@ -0,0 +1,362 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent cache with a maximum size that evicts elements in approximate
+ * least recently used order using the CLOCK (second chance) algorithm.
+ * <p>
+ * Elements are kept in a {@link ConcurrentHashMap} so a <CODE>get</CODE>
+ * never takes a lock, it only sets the referenced bit of the element. The
+ * elements are spread over a number of segments by key, each segment having
+ * its own clock of elements in insertion order and its own share of the
+ * maximum size. When a <CODE>put</CODE> makes a segment exceed its share the
+ * clock of that segment is swept, giving referenced elements a second chance
+ * and evicting the first one that hasn't been referenced since the last sweep.
+ * <p>
+ * Since the maximum size is split between segments the cache may hold a few
+ * elements less than <CODE>maxSize</CODE> when the keys aren't evenly spread.
+ * If the cache is adaptive it asks the {@link AdaptiveCacheManager} to adapt
+ * its size before evicting, the same way {@link LruCache} does.
+ */
+public class ClockCache<K,E> implements Cache<K,E>
+{
+    private static final int MAX_SEGMENTS = 64;
+
+    private final String name;
+    private final AdaptiveCacheManager cacheManager;
+    private final ConcurrentHashMap<K,Element<K,E>> cache;
+    private final Segment<K,E>[] segments;
+    private final int segmentMask;
+    private volatile int maxSize;
+    private volatile boolean adaptive = false;
+    private final AtomicBoolean adapting = new AtomicBoolean();
+
+    private static final class Element<K,E>
+    {
+        final K key;
+        final E value;
+        volatile boolean referenced;
+
+        Element( K key, E value )
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final class Segment<K,E>
+    {
+        // elements in the order the clock hand visits them, may contain
+        // elements that have been removed or replaced in the map
+        final Queue<Element<K,E>> clock = new ConcurrentLinkedQueue<Element<K,E>>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicInteger clockSize = new AtomicInteger();
+    }
+
+    /**
+     * Creates a CLOCK cache. If <CODE>maxSize < 1</CODE> an
+     * IllegalArgumentException is thrown.
+     * 
+     * @param name
+     *            name of cache
+     * @param maxSize
+     *            maximum size of this cache
+     * @param cacheManager
+     *            adaptive cache manager or null if adaptive caching not needed
+     */
+    public ClockCache( String name, int maxSize, AdaptiveCacheManager cacheManager )
+    {
+        this( name, maxSize, cacheManager,
+            Runtime.getRuntime().availableProcessors() * 2 );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    ClockCache( String name, int maxSize, AdaptiveCacheManager cacheManager,
+        int concurrencyLevel )
+    {
+        if ( name == null || maxSize < 1 )
+        {
+            throw new IllegalArgumentException( "maxSize=" + maxSize
+                + ", name=" + name );
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.cacheManager = cacheManager;
+        int segmentCount = 1;
+        while ( segmentCount < concurrencyLevel && segmentCount < MAX_SEGMENTS )
+        {
+            segmentCount <<= 1;
+        }
+        this.segments = newSegments( segmentCount );
+        this.segmentMask = segmentCount - 1;
+        this.cache = new ConcurrentHashMap<K,Element<K,E>>( 500, 0.75f,
+            segmentCount );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static <K,E> Segment<K,E>[] newSegments( int count )
+    {
+        Segment<K,E>[] segments = (Segment<K,E>[]) new Segment<?,?>[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            segments[i] = new Segment<K,E>();
+        }
+        return segments;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public E get( K key )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException();
+        }
+        Element<K,E> element = cache.get( key );
+        if ( element == null )
+        {
+            return null;
+        }
+        if ( !element.referenced )
+        {
+            // only write when needed to keep the cache line shared
+            element.referenced = true;
+        }
+        return element.value;
+    }
+
+    public void put( K key, E value )
+    {
+        if ( key == null || value == null )
+        {
+            throw new IllegalArgumentException( "key=" + key + ", element="
+                + value );
+        }
+        Element<K,E> element = new Element<K,E>( key, value );
+        Segment<K,E> segment = segmentFor( key );
+        Element<K,E> previous = cache.put( key, element );
+        segment.clock.offer( element );
+        int clockSize = segment.clockSize.incrementAndGet();
+        if ( previous != null )
+        {
+            if ( clockSize > 2 * segment.size.get() + 16 )
+            {
+                purgeStaleElements( segment );
+            }
+            return;
+        }
+        if ( segment.size.incrementAndGet() > segmentMaxSize() )
+        {
+            if ( isAdaptive() && adapting.compareAndSet( false, true ) )
+            {
+                try
+                {
+                    adaptCache();
+                }
+                finally
+                {
+                    adapting.set( false );
+                }
+            }
+            evict( segment );
+        }
+    }
+
+    void adaptCache()
+    {
+        if ( cacheManager != null )
+        {
+            cacheManager.adaptCache( this );
+        }
+    }
+
+    public E remove( K key )
+    {
+        if ( key == null )
+        {
+            throw new IllegalArgumentException( "Null parameter" );
+        }
+        Element<K,E> element = cache.remove( key );
+        if ( element == null )
+        {
+            return null;
+        }
+        Segment<K,E> segment = segmentFor( key );
+        segment.size.decrementAndGet();
+        if ( segment.clockSize.get() > 2 * segment.size.get() + 16 )
+        {
+            purgeStaleElements( segment );
+        }
+        return element.value;
+    }
+
+    public void clear()
+    {
+        for ( K key : cache.keySet() )
+        {
+            remove( key );
+        }
+        for ( Segment<K,E> segment : segments )
+        {
+            purgeStaleElements( segment );
+        }
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for ( Segment<K,E> segment : segments )
+        {
+            size += segment.size.get();
+        }
+        return Math.max( size, 0 );
+    }
+
+    public int maxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Changes the max size of the cache. If <CODE>newMaxSize</CODE> is less
+     * than <CODE>size()</CODE> elements are evicted until each segment is
+     * within its share of the new size, invoking {@link #elementCleaned} for
+     * each evicted element.
+     * 
+     * @param newMaxSize
+     *            the new maximum size of the cache
+     */
+    public void resize( int newMaxSize )
+    {
+        if ( newMaxSize < 1 )
+        {
+            throw new IllegalArgumentException( "newMaxSize=" + newMaxSize );
+        }
+        maxSize = newMaxSize;
+        for ( Segment<K,E> segment : segments )
+        {
+            evict( segment );
+        }
+    }
+
+    public void elementCleaned( E element )
+    {
+    }
+
+    public boolean isAdaptive()
+    {
+        return adaptive;
+    }
+
+    public void setAdaptiveStatus( boolean status )
+    {
+        this.adaptive = status;
+    }
+
+    public void putAll( Map<K,E> map )
+    {
+        for ( Map.Entry<K,E> entry : map.entrySet() )
+        {
+            put( entry.getKey(), entry.getValue() );
+        }
+    }
+
+    private int segmentMaxSize()
+    {
+        return Math.max( 1, maxSize / segments.length );
+    }
+
+    private Segment<K,E> segmentFor( K key )
+    {
+        // spread the bits so that sequential ids end up in all segments
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[h & segmentMask];
+    }
+
+    private void evict( Segment<K,E> segment )
+    {
+        synchronized ( segment )
+        {
+            // a second lap around the clock evicts elements regardless of
+            // their referenced bit, gets can set it again at any time
+            int chances = segment.clockSize.get();
+            while ( segment.size.get() > segmentMaxSize() )
+            {
+                Element<K,E> element = segment.clock.poll();
+                if ( element == null )
+                {
+                    break;
+                }
+                segment.clockSize.decrementAndGet();
+                if ( cache.get( element.key ) != element )
+                {
+                    // removed or replaced since it was put
+                    continue;
+                }
+                if ( element.referenced && chances-- > 0 )
+                {
+                    element.referenced = false;
+                    segment.clock.offer( element );
+                    segment.clockSize.incrementAndGet();
+                    continue;
+                }
+                if ( cache.remove( element.key, element ) )
+                {
+                    segment.size.decrementAndGet();
+                    elementCleaned( element.value );
+                }
+            }
+        }
+    }
+
+    private void purgeStaleElements( Segment<K,E> segment )
+    {
+        synchronized ( segment )
+        {
+            for ( int i = segment.clockSize.get(); i > 0; i-- )
+            {
+                Element<K,E> element = segment.clock.poll();
+                if ( element == null )
+                {
+                    break;
+                }
+                segment.clockSize.decrementAndGet();
+                if ( cache.get( element.key ) == element )
+                {
+                    segment.clock.offer( element );
+                    segment.clockSize.incrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,433 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.neo4j.kernel.impl.util.PrimitiveLongIntMap;
+
+/**
+ * A cache of byte records keyed by long that keeps the records in direct
+ * (off heap) {@link ByteBuffer}s, bounded by a number of bytes rather than a
+ * number of entries. The only per record state on the heap is a slot in a
+ * primitive hash table, so the cache can be made very large without adding
+ * to the work of the garbage collector.
+ * <p>
+ * The bytes are split in segments, each a ring buffer that records are
+ * appended to and evicted from in FIFO order when space is needed. Records
+ * that are removed or replaced are left as garbage in the ring until
+ * overwritten. The direct buffer of a segment is allocated on first write.
+ * <p>
+ * Each key also maps to a stamp that is increased by {@link #invalidate(long)}.
+ * A writer that reads the stamp before building a record from some other
+ * source can pass it to {@link #put(long, byte[], int, long)}, which only
+ * stores the record if the key hasn't been invalidated since.
+ */
+public class OffHeapByteCache
+{
+    private static final int HEADER_SIZE = 12; // key + length
+    private static final int WRAP = -1;
+    private static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE - 8;
+    private static final int STAMP_STRIPES = 4096;
+
+    private final String name;
+    private volatile Segment[] segments;
+    private volatile long maxBytes;
+    private final AtomicLongArray stamps = new AtomicLongArray( STAMP_STRIPES );
+
+    /**
+     * @param name name of the cache.
+     * @param maxBytes the max number of bytes, headers included, to use.
+     */
+    public OffHeapByteCache( String name, long maxBytes )
+    {
+        if ( name == null || maxBytes < 1 )
+        {
+            throw new IllegalArgumentException( "maxBytes=" + maxBytes
+                + ", name=" + name );
+        }
+        this.name = name;
+        setMaxBytes( maxBytes );
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Changes the max number of bytes of this cache, clearing it.
+     */
+    public synchronized void setMaxBytes( long maxBytes )
+    {
+        if ( maxBytes < 1 )
+        {
+            throw new IllegalArgumentException( "maxBytes=" + maxBytes );
+        }
+        int count = 16;
+        while ( maxBytes / count > MAX_SEGMENT_SIZE )
+        {
+            count <<= 1;
+        }
+        while ( count > 1 && maxBytes / count < 64 * 1024 )
+        {
+            count >>= 1;
+        }
+        Segment[] newSegments = new Segment[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            newSegments[i] = new Segment( (int) Math.min( maxBytes / count,
+                MAX_SEGMENT_SIZE ) );
+        }
+        Segment[] oldSegments = segments;
+        if ( oldSegments != null )
+        {
+            for ( Segment segment : oldSegments )
+            {
+                segment.clear();
+            }
+        }
+        this.maxBytes = maxBytes;
+        this.segments = newSegments;
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    /**
+     * @return the current stamp of {@code key}, see
+     * {@link #put(long, byte[], int, long)}.
+     */
+    public long stamp( long key )
+    {
+        return stamps.get( stripe( key ) );
+    }
+
+    /**
+     * Stores {@code length} bytes of {@code data} as the record for
+     * {@code key}, evicting the oldest records in the segment if needed.
+     *
+     * @param stamp the stamp of the key read before {@code data} was built,
+     * the record is only stored if it's still the current stamp.
+     * @return whether or not the record was stored.
+     */
+    public boolean put( long key, byte[] data, int length, long stamp )
+    {
+        Segment segment = segmentFor( key );
+        synchronized ( segment )
+        {
+            if ( stamps.get( stripe( key ) ) != stamp )
+            {
+                return false;
+            }
+            return segment.put( key, data, length );
+        }
+    }
+
+    /**
+     * @return a copy of the record for {@code key}, or {@code null} if not
+     * in the cache.
+     */
+    public byte[] get( long key )
+    {
+        Segment segment = segmentFor( key );
+        synchronized ( segment )
+        {
+            return segment.get( key, false );
+        }
+    }
+
+    /**
+     * Removes the record for {@code key}.
+     *
+     * @return the removed record, or {@code null} if not in the cache.
+     */
+    public byte[] remove( long key )
+    {
+        Segment segment = segmentFor( key );
+        synchronized ( segment )
+        {
+            return segment.get( key, true );
+        }
+    }
+
+    /**
+     * Removes the record for {@code key} and increases its stamp so that
+     * records built before this call won't be stored.
+     */
+    public void invalidate( long key )
+    {
+        Segment segment = segmentFor( key );
+        synchronized ( segment )
+        {
+            stamps.incrementAndGet( stripe( key ) );
+            segment.remove( key );
+        }
+    }
+
+    public void clear()
+    {
+        for ( Segment segment : segments )
+        {
+            synchronized ( segment )
+            {
+                for ( int i = 0; i < STAMP_STRIPES; i++ )
+                {
+                    stamps.incrementAndGet( i );
+                }
+                segment.clear();
+            }
+        }
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for ( Segment segment : segments )
+        {
+            synchronized ( segment )
+            {
+                size += segment.index.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes used by live records, headers included.
+     */
+    public long getBytesUsed()
+    {
+        long used = 0;
+        for ( Segment segment : segments )
+        {
+            used += segment.liveBytes;
+        }
+        return used;
+    }
+
+    public long getHitCount()
+    {
+        long hits = 0;
+        for ( Segment segment : segments )
+        {
+            hits += segment.hits;
+        }
+        return hits;
+    }
+
+    public long getMissCount()
+    {
+        long misses = 0;
+        for ( Segment segment : segments )
+        {
+            misses += segment.misses;
+        }
+        return misses;
+    }
+
+    public long getEvictionCount()
+    {
+        long evictions = 0;
+        for ( Segment segment : segments )
+        {
+            evictions += segment.evictions;
+        }
+        return evictions;
+    }
+
+    private Segment segmentFor( long key )
+    {
+        Segment[] current = segments;
+        return current[(int) (mix( key ) >>> 40) & (current.length - 1)];
+    }
+
+    private static int stripe( long key )
+    {
+        return (int) mix( key ) & (STAMP_STRIPES - 1);
+    }
+
+    private static long mix( long key )
+    {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 29);
+    }
+
+    /*
+     * A ring buffer of records [key:long][length:int][data], appended at
+     * tail and evicted from head. A length of WRAP, or less than a header
+     * worth of bytes left at the end, means the next record is at offset 0.
+     */
+    private static class Segment
+    {
+        private final int capacity;
+        private ByteBuffer buffer;
+        private int head;
+        private int tail;
+        private long ringBytes; // bytes from head to tail, garbage included
+        private final PrimitiveLongIntMap index = new PrimitiveLongIntMap();
+
+        volatile long liveBytes;
+        volatile long hits;
+        volatile long misses;
+        volatile long evictions;
+
+        Segment( int capacity )
+        {
+            this.capacity = capacity;
+        }
+
+        boolean put( long key, byte[] data, int length )
+        {
+            int recordSize = HEADER_SIZE + length;
+            if ( recordSize > capacity )
+            {
+                remove( key );
+                return false;
+            }
+            if ( buffer == null )
+            {
+                buffer = ByteBuffer.allocateDirect( capacity );
+            }
+            int offset = allocate( recordSize );
+            buffer.putLong( offset, key );
+            buffer.putInt( offset + 8, length );
+            buffer.position( offset + HEADER_SIZE );
+            buffer.put( data, 0, length );
+            int previous = index.put( key, offset );
+            if ( previous != PrimitiveLongIntMap.NO_VALUE )
+            {
+                liveBytes -= HEADER_SIZE + buffer.getInt( previous + 8 );
+            }
+            liveBytes += recordSize;
+            return true;
+        }
+
+        byte[] get( long key, boolean remove )
+        {
+            int offset = index.get( key );
+            if ( offset == PrimitiveLongIntMap.NO_VALUE )
+            {
+                misses++;
+                return null;
+            }
+            hits++;
+            byte[] data = new byte[buffer.getInt( offset + 8 )];
+            buffer.position( offset + HEADER_SIZE );
+            buffer.get( data );
+            if ( remove )
+            {
+                index.remove( key );
+                liveBytes -= HEADER_SIZE + data.length;
+            }
+            return data;
+        }
+
+        void remove( long key )
+        {
+            int offset = index.remove( key );
+            if ( offset != PrimitiveLongIntMap.NO_VALUE )
+            {
+                liveBytes -= HEADER_SIZE + buffer.getInt( offset + 8 );
+            }
+        }
+
+        void clear()
+        {
+            index.clear();
+            head = tail = 0;
+            ringBytes = 0;
+            liveBytes = 0;
+        }
+
+        private int allocate( int recordSize )
+        {
+            while ( true )
+            {
+                if ( ringBytes == 0 )
+                {
+                    head = tail = 0;
+                }
+                if ( tail > head || ringBytes == 0 )
+                {
+                    // free space is [tail,capacity) and [0,head)
+                    if ( capacity - tail >= recordSize )
+                    {
+                        return append( recordSize );
+                    }
+                    if ( capacity - tail >= HEADER_SIZE )
+                    {
+                        buffer.putInt( tail + 8, WRAP );
+                    }
+                    ringBytes += capacity - tail;
+                    tail = 0;
+                }
+                // free space is [tail,head)
+                if ( ringBytes < capacity && head - tail >= recordSize )
+                {
+                    return append( recordSize );
+                }
+                evictHead();
+            }
+        }
+
+        private int append( int recordSize )
+        {
+            int offset = tail;
+            tail += recordSize;
+            ringBytes += recordSize;
+            if ( tail == capacity )
+            {
+                tail = 0;
+            }
+            return offset;
+        }
+
+        private void evictHead()
+        {
+            int skip;
+            if ( capacity - head < HEADER_SIZE ||
+                 buffer.getInt( head + 8 ) == WRAP )
+            {
+                skip = capacity - head;
+            }
+            else
+            {
+                long key = buffer.getLong( head );
+                skip = HEADER_SIZE + buffer.getInt( head + 8 );
+                if ( index.get( key ) == head )
+                {
+                    index.remove( key );
+                    liveBytes -= skip;
+                    evictions++;
+                }
+            }
+            ringBytes -= skip;
+            head += skip;
+            if ( head == capacity )
+            {
+                head = 0;
+            }
+        }
+    }
+}
@@ -388,6 +388,10 @@ public class LockReleaser
                         "Unknown transaction status: " + param );
                 }
             }
+            if ( param == Status.STATUS_COMMITTED )
+            {
+                nodeManager.nodeCommitted( entry.getKey(), node );
+            }
         }
         ArrayMap<Long,CowRelElement> cowRelElements = element.relationships;
         Set<Entry<Long,CowRelElement>> relEntrySet =
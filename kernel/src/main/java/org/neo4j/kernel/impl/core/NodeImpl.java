@@ -25,7 +25,6 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
@@ -71,6 +70,16 @@ class NodeImpl extends Primitive
         }
     }
 
+    // Used by OffHeapNodeCache to restore a node from its serialized state
+    NodeImpl( long id, long relChainPosition, RelIdArray[] relationships,
+            PropertyData[] properties )
+    {
+        super( properties );
+        this.id = id;
+        this.relChainPosition = relChainPosition;
+        this.relationships = relationships;
+    }
+
     @Override
     public long getId()
     {
@@ -325,7 +334,7 @@ class NodeImpl extends Primitive
 
     private void loadInitialRelationships( NodeManager nodeManager )
     {
-        Triplet<ArrayMap<String, RelIdArray>, Map<Long, RelationshipImpl>, Long> rels = null;
+        Triplet<ArrayMap<String, RelIdArray>, List<RelationshipImpl>, Long> rels = null;
         synchronized ( this )
         {
             if ( relationships == null )
@@ -362,14 +371,14 @@ class NodeImpl extends Primitive
         return result;
     }
 
-    private Triplet<ArrayMap<String,RelIdArray>,Map<Long,RelationshipImpl>,Long> getMoreRelationships(
+    private Triplet<ArrayMap<String,RelIdArray>,List<RelationshipImpl>,Long> getMoreRelationships(
             NodeManager nodeManager, ArrayMap<String,RelIdArray> tmpRelMap )
     {
         if ( !hasMoreRelationshipsToLoad() )
         {
             return null;
         }
-        Triplet<ArrayMap<String,RelIdArray>,Map<Long,RelationshipImpl>,Long> rels =
+        Triplet<ArrayMap<String,RelIdArray>,List<RelationshipImpl>,Long> rels =
             nodeManager.getMoreRelationships( this );
         ArrayMap<String,RelIdArray> addMap = rels.first();
         if ( addMap.size() == 0 )
@@ -405,7 +414,7 @@ class NodeImpl extends Primitive
 
     boolean getMoreRelationships( NodeManager nodeManager )
     {
-        Triplet<ArrayMap<String,RelIdArray>,Map<Long,RelationshipImpl>,Long> rels;
+        Triplet<ArrayMap<String,RelIdArray>,List<RelationshipImpl>,Long> rels;
         if ( !hasMoreRelationshipsToLoad() )
         {
             return false;
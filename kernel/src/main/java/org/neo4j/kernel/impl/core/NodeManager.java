@@ -19,8 +19,8 @@
  */
 package org.neo4j.kernel.impl.core;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -37,11 +37,12 @@ import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.event.TransactionData;
-import org.neo4j.helpers.Pair;
 import org.neo4j.helpers.Triplet;
+import org.neo4j.kernel.Config;
 import org.neo4j.kernel.PropertyTracker;
 import org.neo4j.kernel.impl.cache.AdaptiveCacheManager;
 import org.neo4j.kernel.impl.cache.Cache;
+import org.neo4j.kernel.impl.cache.ClockCache;
 import org.neo4j.kernel.impl.cache.LruCache;
 import org.neo4j.kernel.impl.cache.NoCache;
 import org.neo4j.kernel.impl.cache.SoftLruCache;
@@ -49,6 +50,7 @@ import org.neo4j.kernel.impl.cache.StrongReferenceCache;
 import org.neo4j.kernel.impl.cache.WeakLruCache;
 import org.neo4j.kernel.impl.nioneo.store.PropertyData;
 import org.neo4j.kernel.impl.nioneo.store.PropertyIndexData;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainCursor;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeData;
 import org.neo4j.kernel.impl.persistence.EntityIdGenerator;
@@ -89,6 +91,7 @@ public class NodeManager
     private int minRelCacheSize = 0;
     private int maxNodeCacheSize = 1500;
     private int maxRelCacheSize = 3500;
+    private long offHeapNodeCacheSize = OffHeapNodeCache.DEFAULT_MAX_BYTES;
 
     private static final int LOCK_STRIPE_COUNT = 32;
     private final ReentrantLock loadLocks[] =
@@ -224,6 +227,8 @@ public class NodeManager
                     + value );
             }
         }
+        offHeapNodeCacheSize = Config.parseSize( params, Config.OFF_HEAP_NODE_CACHE_SIZE,
+            offHeapNodeCacheSize );
     }
 
     public void start( Map<Object,Object> params )
@@ -231,6 +236,10 @@ public class NodeManager
         parseParams( params );
         nodeCache.resize( maxNodeCacheSize );
         relCache.resize( maxRelCacheSize );
+        if ( nodeCache instanceof OffHeapNodeCache )
+        {
+            ((OffHeapNodeCache) nodeCache).setMaxBytes( offHeapNodeCacheSize );
+        }
         if ( useAdaptiveCache && cacheType.needsCacheManagerRegistration )
         {
             cacheManager.registerCache( nodeCache, adaptiveCacheHeapRatio,
@@ -606,66 +615,67 @@ public class NodeManager
         return persistenceManager.getRelationshipChainPosition( node.getId() );
     }
 
-    Triplet<ArrayMap<String,RelIdArray>,Map<Long,RelationshipImpl>,Long> getMoreRelationships( NodeImpl node )
+    Triplet<ArrayMap<String,RelIdArray>,List<RelationshipImpl>,Long> getMoreRelationships( NodeImpl node )
     {
         long nodeId = node.getId();
-        long position = node.getRelChainPosition();
-        Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> rels =
-            persistenceManager.getMoreRelationships( nodeId, position );
+        RelationshipChainCursor chain =
+            persistenceManager.getRelationshipChain( nodeId, node.getRelChainPosition() );
         ArrayMap<String,RelIdArray> newRelationshipMap =
             new ArrayMap<String,RelIdArray>();
-        Map<Long,RelationshipImpl> relsMap = new HashMap<Long,RelationshipImpl>( 150 );
-
-        Iterable<RelationshipRecord> loops = rels.first().get( DirectionWrapper.BOTH );
-        boolean hasLoops = loops != null;
-        if ( hasLoops )
-        {
-            receiveRelationships( loops, newRelationshipMap, relsMap, DirectionWrapper.BOTH, true );
-        }
-        receiveRelationships( rels.first().get( DirectionWrapper.OUTGOING ), newRelationshipMap,
-                relsMap, DirectionWrapper.OUTGOING, hasLoops );
-        receiveRelationships( rels.first().get( DirectionWrapper.INCOMING ), newRelationshipMap,
-                relsMap, DirectionWrapper.INCOMING, hasLoops );
-
-        // relCache.putAll( relsMap );
-        return Triplet.of( newRelationshipMap, relsMap, rels.other() );
-    }
-
-    private void receiveRelationships(
-            Iterable<RelationshipRecord> rels, ArrayMap<String, RelIdArray> newRelationshipMap,
-            Map<Long, RelationshipImpl> relsMap, DirectionWrapper dir, boolean hasLoops )
-    {
-        for ( RelationshipRecord rel : rels )
+        List<RelationshipImpl> loadedRels = new ArrayList<RelationshipImpl>();
+        while ( chain.next() )
         {
-            long relId = rel.getId();
+            long relId = chain.getId();
             RelationshipImpl relImpl = relCache.get( relId );
             RelationshipType type = null;
             if ( relImpl == null )
             {
-                type = getRelationshipTypeById( rel.getType() );
+                type = getRelationshipTypeById( chain.getType() );
                 assert type != null;
-                relImpl = newRelationshipImpl( relId, rel.getFirstNode(), rel.getSecondNode(), type,
-                        rel.getType(), false );
-                relsMap.put( relId, relImpl );
-                // relCache.put( relId, relImpl );
+                relImpl = newRelationshipImpl( relId, chain.getFirstNode(), chain.getSecondNode(),
+                        type, chain.getType(), false );
+                loadedRels.add( relImpl );
             }
             else
             {
                 type = relImpl.getType( this );
             }
+            DirectionWrapper dir;
+            if ( chain.getFirstNode() == chain.getSecondNode() )
+            {
+                dir = DirectionWrapper.BOTH;
+            }
+            else
+            {
+                dir = chain.getFirstNode() == nodeId ? DirectionWrapper.OUTGOING : DirectionWrapper.INCOMING;
+            }
             RelIdArray relationshipSet = newRelationshipMap.get( type.name() );
             if ( relationshipSet == null )
             {
-                relationshipSet = hasLoops ? new RelIdArrayWithLoops( type.name() ) : new RelIdArray( type.name() );
+                relationshipSet = dir == DirectionWrapper.BOTH ?
+                        new RelIdArrayWithLoops( type.name() ) : new RelIdArray( type.name() );
+                newRelationshipMap.put( type.name(), relationshipSet );
+            }
+            else if ( dir == DirectionWrapper.BOTH && !(relationshipSet instanceof RelIdArrayWithLoops) )
+            {
+                // First loop of this type in the batch, loops are rare enough
+                // that copying what we have so far is fine
+                relationshipSet = new RelIdArrayWithLoops( type.name() ).addAll( relationshipSet );
                 newRelationshipMap.put( type.name(), relationshipSet );
             }
             relationshipSet.add( relId, dir );
         }
+
+        // relCache.putAll( relsMap );
+        return Triplet.of( newRelationshipMap, loadedRels, chain.getPosition() );
     }
 
-    void putAllInRelCache( Map<Long,RelationshipImpl> map )
+    void putAllInRelCache( List<RelationshipImpl> rels )
     {
-         relCache.putAll( map );
+        for ( RelationshipImpl rel : rels )
+        {
+            relCache.put( rel.getId(), rel );
+        }
     }
 
     ArrayMap<Integer,PropertyData> loadProperties( NodeImpl node,
@@ -690,6 +700,47 @@ public class NodeManager
         return relCache.size();
     }
 
+    /**
+     * Called by {@link LockReleaser} for each node a transaction changed,
+     * after the changes have been applied to {@code node}, the cached node or
+     * {@code null} if it wasn't cached.
+     */
+    void nodeCommitted( long nodeId, NodeImpl node )
+    {
+        if ( nodeCache instanceof OffHeapNodeCache )
+        {
+            ((OffHeapNodeCache) nodeCache).committed( nodeId, node );
+        }
+    }
+
+    /**
+     * @return the ratio of node lookups that hit the cache, only tracked by
+     * the {@link CacheType#offheap offheap} cache type.
+     */
+    public double getNodeCacheHitRatio()
+    {
+        return nodeCache instanceof OffHeapNodeCache ?
+            ((OffHeapNodeCache) nodeCache).getHitRatio() : 0;
+    }
+
+    public double getOffHeapNodeCacheHitRatio()
+    {
+        return nodeCache instanceof OffHeapNodeCache ?
+            ((OffHeapNodeCache) nodeCache).getOffHeapHitRatio() : 0;
+    }
+
+    public long getOffHeapNodeCacheBytesUsed()
+    {
+        return nodeCache instanceof OffHeapNodeCache ?
+            ((OffHeapNodeCache) nodeCache).getOffHeapBytesUsed() : 0;
+    }
+
+    public long getOffHeapNodeCacheMaxBytes()
+    {
+        return nodeCache instanceof OffHeapNodeCache ?
+            ((OffHeapNodeCache) nodeCache).getOffHeapMaxBytes() : 0;
+    }
+
     public void clearCache()
     {
         nodeCache.clear();
@@ -1108,6 +1159,37 @@ public class NodeManager
                         RELATIONSHIP_CACHE_NAME, 3500, cacheManager );
             }
         },
+        clock( true, "concurrent clock cache" )
+        {
+            @Override
+            Cache<Long, NodeImpl> node( AdaptiveCacheManager cacheManager )
+            {
+                return new ClockCache<Long,NodeImpl>( NODE_CACHE_NAME, 1500, cacheManager );
+            }
+
+            @Override
+            Cache<Long, RelationshipImpl> relationship( AdaptiveCacheManager cacheManager )
+            {
+                return new ClockCache<Long,RelationshipImpl>(
+                        RELATIONSHIP_CACHE_NAME, 3500, cacheManager );
+            }
+        },
+        offheap( true, "clock cache with nodes evicted to direct memory" )
+        {
+            @Override
+            Cache<Long, NodeImpl> node( AdaptiveCacheManager cacheManager )
+            {
+                return new OffHeapNodeCache( NODE_CACHE_NAME, 1500,
+                        OffHeapNodeCache.DEFAULT_MAX_BYTES, cacheManager );
+            }
+
+            @Override
+            Cache<Long, RelationshipImpl> relationship( AdaptiveCacheManager cacheManager )
+            {
+                return new ClockCache<Long,RelationshipImpl>(
+                        RELATIONSHIP_CACHE_NAME, 3500, cacheManager );
+            }
+        },
         none( false, "no cache" )
         {
             @Override
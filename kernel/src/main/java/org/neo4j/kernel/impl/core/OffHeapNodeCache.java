@@ -0,0 +1,488 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.neo4j.kernel.impl.cache.AdaptiveCacheManager;
+import org.neo4j.kernel.impl.cache.Cache;
+import org.neo4j.kernel.impl.cache.ClockCache;
+import org.neo4j.kernel.impl.cache.OffHeapByteCache;
+import org.neo4j.kernel.impl.nioneo.store.PropertyData;
+import org.neo4j.kernel.impl.nioneo.store.PropertyDatas;
+import org.neo4j.kernel.impl.util.RelIdArray;
+
+/**
+ * A node cache in two tiers. The first tier is a {@link ClockCache} of
+ * {@link NodeImpl}s on the heap, sized in number of nodes like the other
+ * caches. Nodes evicted from it get their loaded relationship id arrays and
+ * properties serialized into an {@link OffHeapByteCache}, sized in bytes.
+ * A get that misses the heap tier rebuilds the node from the off heap tier
+ * and moves it back to the heap tier.
+ * <p>
+ * Since the serialized state is a copy, every committed change to a node
+ * must be reported through {@link #committed(long, NodeImpl)} so that stale
+ * copies are dropped. Property values that are arrays, or very long
+ * strings, aren't copied but loaded again when needed.
+ */
+class OffHeapNodeCache implements Cache<Long,NodeImpl>
+{
+    static final long DEFAULT_MAX_BYTES = 256 * 1024 * 1024;
+
+    private static final int MAX_STRING_LENGTH = 1024;
+    private static final int STRIPES = 64;
+
+    private static final byte NOT_LOADED = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte CHAR = 4;
+    private static final byte INT = 5;
+    private static final byte LONG = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte STRING = 9;
+
+    private final String name;
+    private final ClockCache<Long,Resident> heap;
+    private final OffHeapByteCache offHeap;
+    private final Object[] promoteLocks = new Object[STRIPES];
+    // [stripe*2] = gets, [stripe*2+1] = heap tier hits
+    private final AtomicLongArray counters = new AtomicLongArray( STRIPES * 2 );
+
+    private static class Resident
+    {
+        final NodeImpl node;
+        volatile long stamp;
+
+        Resident( NodeImpl node, long stamp )
+        {
+            this.node = node;
+            this.stamp = stamp;
+        }
+    }
+
+    OffHeapNodeCache( String name, int maxSize, long maxBytes,
+            AdaptiveCacheManager cacheManager )
+    {
+        this.name = name;
+        this.offHeap = new OffHeapByteCache( name, maxBytes );
+        this.heap = new ClockCache<Long,Resident>( name, maxSize, cacheManager )
+        {
+            @Override
+            public void elementCleaned( Resident resident )
+            {
+                moveOffHeap( resident );
+            }
+        };
+        for ( int i = 0; i < promoteLocks.length; i++ )
+        {
+            promoteLocks[i] = new Object();
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public NodeImpl get( Long key )
+    {
+        long id = key;
+        int stripe = stripe( id );
+        counters.incrementAndGet( stripe * 2 );
+        Resident resident = heap.get( key );
+        if ( resident != null )
+        {
+            counters.incrementAndGet( stripe * 2 + 1 );
+            return resident.node;
+        }
+        synchronized ( promoteLocks[stripe] )
+        {
+            // another thread may just have moved it to the heap tier
+            resident = heap.get( key );
+            if ( resident != null )
+            {
+                return resident.node;
+            }
+            long stamp = offHeap.stamp( id );
+            byte[] data = offHeap.remove( id );
+            if ( data == null )
+            {
+                return null;
+            }
+            NodeImpl node = deserialize( id, data );
+            heap.put( key, new Resident( node, stamp ) );
+            if ( offHeap.stamp( id ) != stamp )
+            {
+                // changed while being restored, the copy may be stale
+                heap.remove( key );
+            }
+            return node;
+        }
+    }
+
+    public void put( Long key, NodeImpl node )
+    {
+        long id = key;
+        offHeap.invalidate( id );
+        heap.put( key, new Resident( node, offHeap.stamp( id ) ) );
+    }
+
+    public void putAll( Map<Long,NodeImpl> map )
+    {
+        for ( Map.Entry<Long,NodeImpl> entry : map.entrySet() )
+        {
+            put( entry.getKey(), entry.getValue() );
+        }
+    }
+
+    public NodeImpl remove( Long key )
+    {
+        offHeap.invalidate( key );
+        Resident resident = heap.remove( key );
+        return resident != null ? resident.node : null;
+    }
+
+    /**
+     * Called after a transaction has applied its changes to {@code node},
+     * which is the node this cache returned for {@code id} or {@code null}
+     * if it wasn't cached.
+     */
+    void committed( long id, NodeImpl node )
+    {
+        offHeap.invalidate( id );
+        Resident resident = heap.get( id );
+        if ( resident == null )
+        {
+            return;
+        }
+        if ( resident.node == node )
+        {
+            resident.stamp = offHeap.stamp( id );
+        }
+        else
+        {
+            heap.remove( id );
+        }
+    }
+
+    public void clear()
+    {
+        heap.clear();
+        offHeap.clear();
+    }
+
+    public int size()
+    {
+        return heap.size();
+    }
+
+    public int maxSize()
+    {
+        return heap.maxSize();
+    }
+
+    public void resize( int newMaxSize )
+    {
+        heap.resize( newMaxSize );
+    }
+
+    public void elementCleaned( NodeImpl node )
+    {
+    }
+
+    public boolean isAdaptive()
+    {
+        return heap.isAdaptive();
+    }
+
+    public void setAdaptiveStatus( boolean status )
+    {
+        heap.setAdaptiveStatus( status );
+    }
+
+    void setMaxBytes( long maxBytes )
+    {
+        offHeap.setMaxBytes( maxBytes );
+    }
+
+    /**
+     * @return the ratio of gets that found the node in either tier.
+     */
+    double getHitRatio()
+    {
+        long gets = 0;
+        long heapHits = 0;
+        for ( int i = 0; i < STRIPES; i++ )
+        {
+            gets += counters.get( i * 2 );
+            heapHits += counters.get( i * 2 + 1 );
+        }
+        return gets == 0 ? 0 : (double) (heapHits + offHeap.getHitCount()) / gets;
+    }
+
+    /**
+     * @return the ratio of heap tier misses that were found off heap.
+     */
+    double getOffHeapHitRatio()
+    {
+        long hits = offHeap.getHitCount();
+        long lookups = hits + offHeap.getMissCount();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    long getOffHeapBytesUsed()
+    {
+        return offHeap.getBytesUsed();
+    }
+
+    long getOffHeapMaxBytes()
+    {
+        return offHeap.getMaxBytes();
+    }
+
+    int getOffHeapSize()
+    {
+        return offHeap.size();
+    }
+
+    private void moveOffHeap( Resident resident )
+    {
+        NodeImpl node = resident.node;
+        byte[] data;
+        synchronized ( node )
+        {
+            data = serialize( node );
+        }
+        offHeap.put( node.getId(), data, data.length, resident.stamp );
+    }
+
+    private static int stripe( long id )
+    {
+        return (int) (id ^ (id >>> 32)) & (STRIPES - 1);
+    }
+
+    // Format: relChainPosition, rel type count (-1 if not loaded) followed
+    // by type and id array for each, property count (-1 if not loaded)
+    // followed by index, id, value tag and value for each.
+    static byte[] serialize( NodeImpl node )
+    {
+        RelIdArray[] relationships = node.getRelationshipIds();
+        PropertyData[] properties = node.getLoadedProperties();
+        int size = 8 + 4 + 4;
+        if ( relationships != null )
+        {
+            for ( RelIdArray ids : relationships )
+            {
+                size += 4 + ids.getType().length() * 2 + ids.sizeInBytes();
+            }
+        }
+        if ( properties != null )
+        {
+            for ( PropertyData property : properties )
+            {
+                size += 4 + 8 + 1 + valueSize( property.getValue() );
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap( new byte[size] );
+        buffer.putLong( node.getRelChainPosition() );
+        if ( relationships == null )
+        {
+            buffer.putInt( -1 );
+        }
+        else
+        {
+            buffer.putInt( relationships.length );
+            for ( RelIdArray ids : relationships )
+            {
+                putString( buffer, ids.getType() );
+                ids.writeTo( buffer );
+            }
+        }
+        if ( properties == null )
+        {
+            buffer.putInt( -1 );
+        }
+        else
+        {
+            buffer.putInt( properties.length );
+            for ( PropertyData property : properties )
+            {
+                buffer.putInt( property.getIndex() );
+                buffer.putLong( property.getId() );
+                putValue( buffer, property.getValue() );
+            }
+        }
+        return buffer.array();
+    }
+
+    static NodeImpl deserialize( long id, byte[] data )
+    {
+        ByteBuffer buffer = ByteBuffer.wrap( data );
+        long relChainPosition = buffer.getLong();
+        RelIdArray[] relationships = null;
+        int count = buffer.getInt();
+        if ( count != -1 )
+        {
+            relationships = new RelIdArray[count];
+            for ( int i = 0; i < count; i++ )
+            {
+                String type = getString( buffer );
+                relationships[i] = RelIdArray.readFrom( type, buffer );
+            }
+        }
+        PropertyData[] properties = null;
+        count = buffer.getInt();
+        if ( count != -1 )
+        {
+            properties = new PropertyData[count];
+            for ( int i = 0; i < count; i++ )
+            {
+                int index = buffer.getInt();
+                long propertyId = buffer.getLong();
+                properties[i] = getProperty( buffer, index, propertyId );
+            }
+        }
+        return new NodeImpl( id, relChainPosition, relationships, properties );
+    }
+
+    private static int valueSize( Object value )
+    {
+        if ( value instanceof Boolean || value instanceof Byte )
+        {
+            return 1;
+        }
+        if ( value instanceof Short || value instanceof Character )
+        {
+            return 2;
+        }
+        if ( value instanceof Integer || value instanceof Float )
+        {
+            return 4;
+        }
+        if ( value instanceof Long || value instanceof Double )
+        {
+            return 8;
+        }
+        if ( value instanceof String
+             && ((String) value).length() <= MAX_STRING_LENGTH )
+        {
+            return 4 + ((String) value).length() * 2;
+        }
+        return 0;
+    }
+
+    private static void putValue( ByteBuffer buffer, Object value )
+    {
+        if ( value instanceof Boolean )
+        {
+            buffer.put( BOOLEAN ).put( (byte) (((Boolean) value) ? 1 : 0) );
+        }
+        else if ( value instanceof Byte )
+        {
+            buffer.put( BYTE ).put( (Byte) value );
+        }
+        else if ( value instanceof Short )
+        {
+            buffer.put( SHORT ).putShort( (Short) value );
+        }
+        else if ( value instanceof Character )
+        {
+            buffer.put( CHAR ).putChar( (Character) value );
+        }
+        else if ( value instanceof Integer )
+        {
+            buffer.put( INT ).putInt( (Integer) value );
+        }
+        else if ( value instanceof Long )
+        {
+            buffer.put( LONG ).putLong( (Long) value );
+        }
+        else if ( value instanceof Float )
+        {
+            buffer.put( FLOAT ).putFloat( (Float) value );
+        }
+        else if ( value instanceof Double )
+        {
+            buffer.put( DOUBLE ).putDouble( (Double) value );
+        }
+        else if ( value instanceof String
+                  && ((String) value).length() <= MAX_STRING_LENGTH )
+        {
+            buffer.put( STRING );
+            putString( buffer, (String) value );
+        }
+        else
+        {
+            buffer.put( NOT_LOADED );
+        }
+    }
+
+    private static PropertyData getProperty( ByteBuffer buffer, int index, long id )
+    {
+        byte tag = buffer.get();
+        switch ( tag )
+        {
+        case BOOLEAN:
+            return PropertyDatas.forBoolean( index, id, buffer.get() != 0 );
+        case BYTE:
+            return PropertyDatas.forByte( index, id, buffer.get() );
+        case SHORT:
+            return PropertyDatas.forShort( index, id, buffer.getShort() );
+        case CHAR:
+            return PropertyDatas.forChar( index, id, buffer.getChar() );
+        case INT:
+            return PropertyDatas.forInt( index, id, buffer.getInt() );
+        case LONG:
+            return PropertyDatas.forLong( index, id, buffer.getLong() );
+        case FLOAT:
+            return PropertyDatas.forFloat( index, id, buffer.getFloat() );
+        case DOUBLE:
+            return PropertyDatas.forDouble( index, id, buffer.getDouble() );
+        case STRING:
+            return PropertyDatas.forStringOrArray( index, id, getString( buffer ) );
+        default:
+            // loaded lazily, as a light property would be
+            return PropertyDatas.forStringOrArray( index, id, null );
+        }
+    }
+
+    private static void putString( ByteBuffer buffer, String value )
+    {
+        buffer.putInt( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            buffer.putChar( value.charAt( i ) );
+        }
+    }
+
+    private static String getString( ByteBuffer buffer )
+    {
+        char[] chars = new char[buffer.getInt()];
+        for ( int i = 0; i < chars.length; i++ )
+        {
+            chars[i] = buffer.getChar();
+        }
+        return new String( chars );
+    }
+}
@@ -53,6 +53,12 @@ abstract class Primitive
         }
     }
 
+    // Restores a primitive with already loaded properties, null if not loaded
+    Primitive( PropertyData[] properties )
+    {
+        this.properties = properties;
+    }
+
     public abstract long getId();
 
     @Override
@@ -637,6 +643,15 @@ abstract class Primitive
         return false;
     }
 
+    /**
+     * @return the committed properties of this primitive, or {@code null} if
+     * they haven't been loaded.
+     */
+    PropertyData[] getLoadedProperties()
+    {
+        return properties;
+    }
+
     private PropertyData[] toPropertyArray( ArrayMap<Integer, PropertyData> loadedProperties )
     {
         if ( loadedProperties == null || loadedProperties.size() == 0 )
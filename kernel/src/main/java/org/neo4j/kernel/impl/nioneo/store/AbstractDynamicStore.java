@@ -213,9 +213,7 @@ public abstract class AbstractDynamicStore extends CommonAbstractStore
             }
         }
         
-        setWindowPool( new PersistenceWindowPool( getStorageFileName(),
-            getBlockSize(), getFileChannel(), getMappedMem(), 
-            getIfMemoryMapped(), isReadOnly() && !isBackupSlave() ) );
+        setWindowPool( newWindowPool( getBlockSize() ) );
     }
 
     /**
@@ -191,9 +191,7 @@ public abstract class AbstractStore extends CommonAbstractStore
                 }
             }
         }
-        setWindowPool( new PersistenceWindowPool( getStorageFileName(),
-            getRecordSize(), getFileChannel(), getMappedMem(), 
-            getIfMemoryMapped(), isReadOnly() && !isBackupSlave() ) );
+        setWindowPool( newWindowPool( getRecordSize() ) );
     }
 
     /**
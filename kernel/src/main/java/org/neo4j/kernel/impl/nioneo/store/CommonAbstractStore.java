@@ -116,7 +116,7 @@ public abstract class CommonAbstractStore
     private final IdGeneratorFactory idGeneratorFactory;
     private IdGenerator idGenerator = null;
     private FileChannel fileChannel = null;
-    private PersistenceWindowPool windowPool;
+    private WindowPool windowPool;
     private boolean storeOk = true;
     private FileLock fileLock;
     private boolean grabFileLock = true;
@@ -323,7 +323,7 @@ public abstract class CommonAbstractStore
     }
 
     /**
-     * Sets the {@link PersistenceWindowPool} for this store to use. Normally
+     * Sets the {@link WindowPool} for this store to use. Normally
      * this is set in the {@link #loadStorage()} method. This method must be
      * invoked with a valid "pool" before any of the
      * {@link #acquireWindow(long, OperationType)}
@@ -333,11 +333,34 @@ public abstract class CommonAbstractStore
      * @param pool
      *            The window pool this store should use
      */
-    protected void setWindowPool( PersistenceWindowPool pool )
+    protected void setWindowPool( WindowPool pool )
     {
         this.windowPool = pool;
     }
 
+    /**
+     * Creates the window pool for this store. If a {@link PageCache} has
+     * been configured it is shared with the other stores, otherwise a
+     * {@link PersistenceWindowPool} is created with the memory given by
+     * {@link #getMappedMem()}.
+     *
+     * @param blockSize the size of the records or blocks of this store.
+     * @return the window pool to pass to {@link #setWindowPool(WindowPool)}.
+     */
+    protected WindowPool newWindowPool( int blockSize )
+    {
+        boolean readOnly = isReadOnly() && !isBackupSlave();
+        PageCache pageCache = getConfig() != null ?
+                (PageCache) getConfig().get( PageCache.class ) : null;
+        if ( pageCache != null && getIfMemoryMapped() )
+        {
+            return new PagedWindowPool( pageCache, getStorageFileName(),
+                blockSize, getFileChannel(), readOnly );
+        }
+        return new PersistenceWindowPool( getStorageFileName(), blockSize,
+            getFileChannel(), getMappedMem(), getIfMemoryMapped(), readOnly );
+    }
+
     /**
      * Returns the next id for this store's {@link IdGenerator}.
      *
@@ -415,42 +438,10 @@ public abstract class CommonAbstractStore
      */
     protected long getMappedMem()
     {
-        if ( getConfig() != null )
-        {
-            String convertSlash = storageFileName.replace( '\\', '/' );
-            String realName = convertSlash.substring( convertSlash
-                .lastIndexOf( '/' ) + 1 );
-            String mem = (String) getConfig().get( realName + ".mapped_memory" );
-            if ( mem != null )
-            {
-                long multiplier = 1;
-                if ( mem.endsWith( "M" ) )
-                {
-                    multiplier = 1024 * 1024;
-                    mem = mem.substring( 0, mem.length() - 1 );
-                }
-                else if ( mem.endsWith( "k" ) )
-                {
-                    multiplier = 1024;
-                    mem = mem.substring( 0, mem.length() - 1 );
-                }
-                else if ( mem.endsWith( "G" ) )
-                {
-                    multiplier = 1024*1024*1024;
-                    mem = mem.substring( 0, mem.length() - 1 );
-                }
-                try
-                {
-                    return Integer.parseInt( mem ) * multiplier;
-                }
-                catch ( NumberFormatException e )
-                {
-                    logger.info( "Unable to parse mapped memory[" + mem
-                        + "] string for " + storageFileName );
-                }
-            }
-        }
-        return 0;
+        String convertSlash = storageFileName.replace( '\\', '/' );
+        String realName = convertSlash.substring( convertSlash
+            .lastIndexOf( '/' ) + 1 );
+        return Config.parseSize( getConfig(), realName + ".mapped_memory", 0 );
     }
 
     /**
@@ -49,6 +49,7 @@ abstract class LockableWindow implements PersistenceWindow
         new LinkedList<LockElement>();
     private int lockCount = 0;
     private int marked = 0;
+    private boolean closed = false;
 
     LockableWindow( FileChannel fileChannel )
     {
@@ -85,6 +86,41 @@ abstract class LockableWindow implements PersistenceWindow
         return marked > 0;
     }
 
+    /**
+     * Marks this window unless it has been closed by
+     * {@link #closeIfUnused()}, in which case the caller must look up
+     * another window.
+     *
+     * @return whether or not the window was marked.
+     */
+    synchronized boolean markIfNotClosed()
+    {
+        if ( closed )
+        {
+            return false;
+        }
+        this.marked++;
+        return true;
+    }
+
+    /**
+     * Closes this window for further use if no thread has marked, locked or
+     * is waiting for it. After this {@link #markIfNotClosed()} fails so that
+     * the window can be unmapped or dropped without holding a lock that
+     * threads looking up windows would need.
+     *
+     * @return whether or not the window was closed.
+     */
+    synchronized boolean closeIfUnused()
+    {
+        if ( closed || marked > 0 || lockCount > 0 || !waitingThreadList.isEmpty() )
+        {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
     private static class LockElement
     {
         private final Thread thread;
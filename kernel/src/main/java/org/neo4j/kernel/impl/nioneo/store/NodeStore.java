@@ -101,6 +101,31 @@ public class NodeStore extends AbstractStore implements Store
         }
     }
 
+    /**
+     * Reads the first relationship of the relationship chain of a node
+     * without creating a {@link NodeRecord}.
+     *
+     * @throws InvalidRecordException if the node isn't in use.
+     */
+    public long getNextRel( long id )
+    {
+        PersistenceWindow window = acquireWindow( id, OperationType.READ );
+        try
+        {
+            Buffer buffer = window.getOffsettedBuffer( id );
+            long inUseByte = buffer.get();
+            if ( (inUseByte & 0x1) != Record.IN_USE.intValue() )
+            {
+                throw new InvalidRecordException( "Record[" + id + "] not in use" );
+            }
+            return longFromIntAndMod( buffer.getUnsignedInt(), (inUseByte & 0xEL) << 31 );
+        }
+        finally
+        {
+            releaseWindow( window );
+        }
+    }
+
     public void updateRecord( NodeRecord record, boolean recovered )
     {
         assert recovered;
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.kernel.Config;
+
+/**
+ * Memory mapped pages of store files, shared by all the stores of a
+ * database. Instead of giving each store its own share of the mapped
+ * memory, the {@link PagedWindowPool}s of the stores map fixed size pages on
+ * demand from one budget of {@link Config#PAGE_CACHE_MEMORY} bytes. When
+ * the budget is used up pages are evicted in CLOCK order, a page that has
+ * been used since the clock hand last passed it gets a second chance.
+ * <p>
+ * A page is pinned by marking its window while it's in use, eviction skips
+ * pages that are pinned, locked or waited for.
+ */
+public class PageCache
+{
+    public static final int DEFAULT_PAGE_SIZE = 1024 * 1024;
+
+    /**
+     * A mapped page of a store.
+     */
+    static class Page
+    {
+        final PagedWindowPool pool;
+        final long pageId;
+        final MappedPersistenceWindow window;
+        final int bytes;
+        // starts cleared so that pages only used once, as in a scan, are
+        // evicted before pages that have been used again since mapped
+        volatile boolean referenced = false;
+
+        Page( PagedWindowPool pool, long pageId, MappedPersistenceWindow window,
+                int bytes )
+        {
+            this.pool = pool;
+            this.pageId = pageId;
+            this.window = window;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long maxBytes;
+    private final int pageSize;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final ConcurrentLinkedQueue<Page> clock = new ConcurrentLinkedQueue<Page>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final AtomicLong evictions = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+    /**
+     * @param maxBytes the number of bytes all mapped pages together may use.
+     * @param pageSize the size of a page in bytes, rounded down to a
+     * multiple of the record size of each store.
+     */
+    public PageCache( long maxBytes, int pageSize )
+    {
+        if ( maxBytes < 1 || pageSize < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal page cache size "
+                + maxBytes + " or page size " + pageSize );
+        }
+        this.maxBytes = maxBytes;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Creates a page cache from the {@link Config#PAGE_CACHE_MEMORY} and
+     * {@link Config#PAGE_CACHE_PAGE_SIZE} settings.
+     *
+     * @return the page cache, or {@code null} if no page cache memory has
+     * been configured.
+     */
+    public static PageCache create( Map<?,?> config )
+    {
+        long maxBytes = Config.parseSize( config, Config.PAGE_CACHE_MEMORY, 0 );
+        if ( maxBytes <= 0 )
+        {
+            return null;
+        }
+        int pageSize = (int) Config.parseSize( config, Config.PAGE_CACHE_PAGE_SIZE,
+            DEFAULT_PAGE_SIZE );
+        return new PageCache( maxBytes, pageSize );
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    public long getUsedBytes()
+    {
+        return usedBytes.get();
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * Maps a page for {@code pool}, evicting other pages if needed to stay
+     * within budget. The page isn't visible to other threads until the pool
+     * publishes it.
+     *
+     * @return the mapped page, or {@code null} if the budget couldn't be
+     * reserved since too many pages are pinned.
+     * @throws MappedMemException if the page couldn't be mapped.
+     */
+    Page map( PagedWindowPool pool, long pageId, int recordSize, int recordsPerPage,
+            FileChannel channel, FileChannel.MapMode mapMode )
+    {
+        int bytes = recordSize * recordsPerPage;
+        if ( !reserve( bytes ) )
+        {
+            return null;
+        }
+        MappedPersistenceWindow window;
+        try
+        {
+            window = new MappedPersistenceWindow( pageId * recordsPerPage,
+                recordSize, bytes, channel, mapMode );
+        }
+        catch ( RuntimeException e )
+        {
+            usedBytes.addAndGet( -bytes );
+            throw e;
+        }
+        catch ( OutOfMemoryError e )
+        {
+            usedBytes.addAndGet( -bytes );
+            throw e;
+        }
+        return new Page( pool, pageId, window, bytes );
+    }
+
+    /**
+     * Lets the clock consider {@code page} for eviction, must be called once
+     * the pool has published it.
+     */
+    void added( Page page )
+    {
+        clock.offer( page );
+        clockSize.incrementAndGet();
+    }
+
+    /**
+     * Returns the budget of a page that was mapped but never published.
+     */
+    void discard( Page page )
+    {
+        page.window.unmap();
+        usedBytes.addAndGet( -page.bytes );
+    }
+
+    /**
+     * Unmaps {@code pages} and returns their memory to the budget, the pool
+     * must not hand out their windows any more.
+     */
+    void removeAll( Collection<Page> pages )
+    {
+        synchronized ( evictionLock )
+        {
+            for ( Page page : pages )
+            {
+                page.window.unmap();
+                usedBytes.addAndGet( -page.bytes );
+            }
+            if ( clock.removeAll( new HashSet<Page>( pages ) ) )
+            {
+                clockSize.set( clock.size() );
+            }
+        }
+    }
+
+    /**
+     * Runs {@code task} without any page being evicted meanwhile.
+     */
+    void withoutEviction( Runnable task )
+    {
+        synchronized ( evictionLock )
+        {
+            task.run();
+        }
+    }
+
+    private boolean reserve( int bytes )
+    {
+        while ( true )
+        {
+            long used = usedBytes.get();
+            if ( used + bytes <= maxBytes )
+            {
+                if ( usedBytes.compareAndSet( used, used + bytes ) )
+                {
+                    return true;
+                }
+                continue;
+            }
+            if ( !evictOne() )
+            {
+                return false;
+            }
+        }
+    }
+
+    private boolean evictOne()
+    {
+        synchronized ( evictionLock )
+        {
+            // two laps, the first may only clear referenced bits
+            for ( int chances = 2 * clockSize.get(); chances > 0; chances-- )
+            {
+                Page page = clock.poll();
+                if ( page == null )
+                {
+                    return false;
+                }
+                if ( page.referenced )
+                {
+                    page.referenced = false;
+                    clock.offer( page );
+                }
+                else if ( page.window.closeIfUnused() )
+                {
+                    clockSize.decrementAndGet();
+                    page.pool.evicted( page );
+                    page.window.unmap();
+                    usedBytes.addAndGet( -page.bytes );
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                else
+                {
+                    // pinned
+                    clock.offer( page );
+                }
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PageCache[maxBytes=" + maxBytes + ", pageSize=" + pageSize
+            + ", usedBytes=" + usedBytes.get() + "]";
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.kernel.impl.nioneo.store.PageCache.Page;
+
+/**
+ * The window pool of a store using a {@link PageCache} shared with the
+ * other stores. Positions are served by mapping the page that contains them,
+ * pages are only unmapped when evicted by the page cache or when the store is
+ * closed.
+ * <p>
+ * Pages that extend beyond the end of the file aren't mapped, since mapping
+ * them would grow the file. Positions in such pages, or positions for which
+ * no page could be mapped, are served by {@link PersistenceRow}s like in
+ * {@link PersistenceWindowPool}.
+ */
+class PagedWindowPool implements WindowPool
+{
+    private static Logger log = Logger.getLogger( PagedWindowPool.class.getName() );
+
+    private final PageCache pageCache;
+    private final String storeName;
+    private final int blockSize;
+    private final int recordsPerPage;
+    private final int pageBytes;
+    private final FileChannel fileChannel;
+    private final FileChannel.MapMode mapMode;
+    private final boolean readOnly;
+    private volatile long fileSize;
+
+    private final ConcurrentMap<Long,Page> pages = new ConcurrentHashMap<Long,Page>();
+    private final ConcurrentMap<Long,PersistenceRow> activeRowWindows =
+        new ConcurrentHashMap<Long,PersistenceRow>();
+    private final AtomicInteger mappedPages = new AtomicInteger();
+
+    private final AtomicLong hit = new AtomicLong();
+    private final AtomicLong miss = new AtomicLong();
+    private final AtomicLong switches = new AtomicLong();
+    private final AtomicLong ooe = new AtomicLong();
+
+    PagedWindowPool( PageCache pageCache, String storeName, int blockSize,
+            FileChannel fileChannel, boolean readOnly )
+    {
+        this.pageCache = pageCache;
+        this.storeName = storeName;
+        this.blockSize = blockSize;
+        this.recordsPerPage = blockSize > 0 ?
+            Math.max( 1, pageCache.getPageSize() / blockSize ) : 0;
+        this.pageBytes = recordsPerPage * blockSize;
+        this.fileChannel = fileChannel;
+        this.readOnly = readOnly;
+        this.mapMode = readOnly ? FileChannel.MapMode.READ_ONLY :
+            FileChannel.MapMode.READ_WRITE;
+        this.fileSize = currentFileSize();
+    }
+
+    public PersistenceWindow acquire( long position, OperationType operationType )
+    {
+        LockableWindow window = null;
+        if ( recordsPerPage > 0 )
+        {
+            window = acquirePage( position );
+        }
+        else
+        {
+            miss.incrementAndGet();
+        }
+        boolean readPos = false;
+        if ( window == null )
+        {
+            window = acquireRow( position );
+            readPos = operationType == OperationType.READ;
+        }
+        window.lock();
+        if ( readPos )
+        {
+            ((PersistenceRow) window).readPosition();
+        }
+        window.setOperationType( operationType );
+        return window;
+    }
+
+    /*
+     * Returns the pinned window of the page containing position, mapping it
+     * if needed, or null if it can't be mapped. Only finding the page already
+     * mapped counts as a hit.
+     */
+    private LockableWindow acquirePage( long position )
+    {
+        long pageId = position / recordsPerPage;
+        boolean missed = false;
+        while ( true )
+        {
+            Page page = pages.get( pageId );
+            if ( page != null )
+            {
+                if ( page.window.markIfNotClosed() )
+                {
+                    if ( !page.referenced )
+                    {
+                        page.referenced = true;
+                    }
+                    if ( !missed )
+                    {
+                        hit.incrementAndGet();
+                    }
+                    return page.window;
+                }
+                // evicted, the page cache removes it from pages
+                Thread.yield();
+                continue;
+            }
+            if ( !missed )
+            {
+                missed = true;
+                miss.incrementAndGet();
+            }
+            page = mapPage( pageId );
+            if ( page == null )
+            {
+                return null;
+            }
+            page.window.mark();
+            if ( pages.putIfAbsent( pageId, page ) != null )
+            {
+                pageCache.discard( page );
+                continue;
+            }
+            mappedPages.incrementAndGet();
+            pageCache.added( page );
+            return page.window;
+        }
+    }
+
+    private Page mapPage( long pageId )
+    {
+        long pageEnd = (pageId + 1) * pageBytes;
+        if ( pageEnd > fileSize )
+        {
+            fileSize = currentFileSize();
+            if ( pageEnd > fileSize )
+            {
+                return null;
+            }
+        }
+        try
+        {
+            return pageCache.map( this, pageId, blockSize, recordsPerPage,
+                fileChannel, mapMode );
+        }
+        catch ( MappedMemException e )
+        {
+            ooe.incrementAndGet();
+            logWarn( "Unable to memory map", e );
+        }
+        catch ( OutOfMemoryError e )
+        {
+            ooe.incrementAndGet();
+            logWarn( "Unable to allocate direct buffer", e );
+        }
+        return null;
+    }
+
+    /**
+     * Called by the page cache, with its eviction lock held, when it has
+     * closed the window of {@code page} and is about to unmap it.
+     */
+    void evicted( Page page )
+    {
+        if ( pages.remove( page.pageId, page ) )
+        {
+            mappedPages.decrementAndGet();
+            switches.incrementAndGet();
+        }
+    }
+
+    private PersistenceRow acquireRow( long position )
+    {
+        while ( true )
+        {
+            PersistenceRow dpw = activeRowWindows.get( position );
+            if ( dpw == null )
+            {
+                dpw = new PersistenceRow( position, blockSize, fileChannel );
+                dpw.mark();
+                if ( activeRowWindows.putIfAbsent( position, dpw ) == null )
+                {
+                    return dpw;
+                }
+            }
+            else if ( dpw.markIfNotClosed() )
+            {
+                return dpw;
+            }
+            else
+            {
+                activeRowWindows.remove( position, dpw );
+            }
+        }
+    }
+
+    public void release( PersistenceWindow window )
+    {
+        if ( window instanceof PersistenceRow )
+        {
+            PersistenceRow dpw = (PersistenceRow) window;
+            dpw.writeOut();
+            dpw.unLock();
+            if ( dpw.closeIfUnused() )
+            {
+                activeRowWindows.remove( dpw.position(), dpw );
+            }
+        }
+        else
+        {
+            ((LockableWindow) window).unLock();
+        }
+    }
+
+    public void flushAll()
+    {
+        if ( readOnly )
+        {
+            return;
+        }
+        pageCache.withoutEviction( new Runnable()
+        {
+            public void run()
+            {
+                for ( Page page : pages.values() )
+                {
+                    page.window.force();
+                }
+            }
+        } );
+        try
+        {
+            fileChannel.force( false );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException(
+                "Failed to flush file channel " + storeName, e );
+        }
+    }
+
+    public void close()
+    {
+        Collection<Page> mapped = new ArrayList<Page>( pages.values() );
+        pages.clear();
+        mappedPages.set( 0 );
+        pageCache.removeAll( mapped );
+        activeRowWindows.clear();
+        log.finest( storeName + " hit=" + hit.get() + " miss=" + miss.get()
+            + " switches=" + switches.get() + " ooe=" + ooe.get() );
+    }
+
+    public WindowPoolStats getStats()
+    {
+        int mapped = mappedPages.get();
+        return new WindowPoolStats( storeName, pageCache.getMaxBytes(),
+            (long) mapped * pageBytes, mapped, pageBytes, hit.get(), miss.get(),
+            switches.get(), ooe.get() );
+    }
+
+    private long currentFileSize()
+    {
+        try
+        {
+            return fileChannel.size();
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException(
+                "Unable to get file size for " + storeName, e );
+        }
+    }
+
+    private void logWarn( String logMessage, Throwable cause )
+    {
+        log.log( Level.WARNING, "[" + storeName + "] " + logMessage, cause );
+    }
+}
@@ -25,8 +25,15 @@ import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,33 +44,58 @@ import java.util.logging.Logger;
  * make the most efficient use of those windows by allocating them in such a way
  * that the most frequently used records/blocks (be it for read or write
  * operations) are encapsulated by a memory mapped persistence window.
+ * <p>
+ * Acquiring a window for a position in an already mapped brick doesn't take
+ * any lock shared with other threads, other than the lock of the window
+ * itself. Windows are only unmapped once {@link LockableWindow#closeIfUnused()}
+ * succeeds, so a thread that has marked a window can't have it unmapped
+ * under it. A closed window is written out before it's removed from its
+ * brick, holding the monitor of the pool, and a thread that finds a closed
+ * window waits for that monitor before reading the records from the file.
+ * Plain windows, which read their brick from the file when allocated, aren't
+ * allocated for a brick that has rows in use, whose writes may not have been
+ * written out yet. Re-mapping of bricks, based on how often they have been
+ * hit, is done by a background thread once enough misses have accumulated.
  */
-class PersistenceWindowPool
+class PersistenceWindowPool implements WindowPool
 {
     private static final int MAX_BRICK_COUNT = 100000;
 
     private final String storeName;
     // == recordSize
     private final int blockSize;
-    private FileChannel fileChannel;
-    private final Map<Integer,PersistenceRow> activeRowWindows =
-        new HashMap<Integer,PersistenceRow>();
+    private volatile FileChannel fileChannel;
+    private final ConcurrentMap<Long,PersistenceRow> activeRowWindows =
+        new ConcurrentHashMap<Long,PersistenceRow>();
     private long availableMem = 0;
-    private long memUsed = 0;
+    private volatile long memUsed = 0;
     private int brickCount = 0;
     private int brickSize = 0;
-    private BrickElement brickArray[] = new BrickElement[0];
-    private int brickMiss = 0;
+    private volatile BrickElement brickArray[] = new BrickElement[0];
+    private final AtomicInteger brickMiss = new AtomicInteger();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
 
     private static Logger log = Logger.getLogger( PersistenceWindowPool.class
         .getName() );
     private static final int REFRESH_BRICK_COUNT = 50000;
     private final FileChannel.MapMode mapMode;
 
-    private int hit = 0;
-    private int miss = 0;
-    private int switches = 0;
-    private int ooe = 0;
+    // Shared by all pools, refreshing is rare and mostly waits on mapping
+    private static final ExecutorService refresher =
+        Executors.newSingleThreadExecutor( new ThreadFactory()
+        {
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "Window pool refresher" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+
+    private final AtomicLong hit = new AtomicLong();
+    private final AtomicLong miss = new AtomicLong();
+    private final AtomicLong switches = new AtomicLong();
+    private final AtomicLong ooe = new AtomicLong();
     private boolean useMemoryMapped = true;
 
     private final boolean readOnly;
@@ -116,80 +148,160 @@ class PersistenceWindowPool
      * @throws IOException
      *             If unable to acquire the window
      */
-    PersistenceWindow acquire( long position, OperationType operationType )
+    public PersistenceWindow acquire( long position, OperationType operationType )
     {
         LockableWindow window = null;
+        if ( brickSize > 0 )
+        {
+            int brickIndex = (int) (position * blockSize / brickSize);
+            BrickElement bricks[] = brickArray;
+            if ( brickIndex >= bricks.length )
+            {
+                expandBricks( brickIndex + 1 );
+                bricks = brickArray;
+            }
+            BrickElement brick = bricks[brickIndex];
+            window = useMemoryMapped ? markedWindow( brick ) : markedWindowOrRow( brick );
+            brick.setHit();
+        }
         boolean readPos = false;
-//        synchronized ( activeRowWindows )
-//        {
-            if ( brickMiss >= REFRESH_BRICK_COUNT )
+        if ( window == null )
+        {
+            miss.incrementAndGet();
+            if ( brickMiss.incrementAndGet() >= REFRESH_BRICK_COUNT )
             {
-//                brickMiss = 0;
-                refreshBricks();
+                scheduleRefresh();
             }
-            if ( brickSize > 0 )
+            window = acquireRow( position );
+            readPos = operationType == OperationType.READ;
+        }
+        else
+        {
+            hit.incrementAndGet();
+        }
+        window.lock();
+        if ( readPos )
+        {
+            ((PersistenceRow) window).readPosition();
+        }
+        window.setOperationType( operationType );
+        return window;
+    }
+
+    private LockableWindow markedWindow( BrickElement brick )
+    {
+        LockableWindow window = brick.getWindow();
+        // a window closed since we read it is about to be unmapped
+        if ( window != null && !window.markIfNotClosed() )
+        {
+            awaitClosedWindows();
+            return null;
+        }
+        return window;
+    }
+
+    /*
+     * Returns the marked plain window of the brick, or null after counting
+     * a row for it. A plain window reads its brick from the file when it's
+     * allocated, so one mustn't be allocated while rows of the brick may
+     * still have writes that haven't been written out, see mapBrick.
+     */
+    private LockableWindow markedWindowOrRow( BrickElement brick )
+    {
+        while ( true )
+        {
+            synchronized ( brick )
             {
-                int brickIndex = (int) (position * blockSize / brickSize);
-                if ( brickIndex < brickArray.length )
+                LockableWindow window = brick.getWindow();
+                if ( window == null )
                 {
-                    synchronized ( this )
-                    {
-                        window = brickArray[brickIndex].getWindow();
-                        if ( window != null )
-                        {
-                            window.mark();
-                        }
-                    }
-                    // assert window == null || window.encapsulates( position );
-                    brickArray[brickIndex].setHit();
+                    brick.activeRows++;
+                    return null;
                 }
-                else
+                if ( window.markIfNotClosed() )
                 {
-                    expandBricks( brickIndex + 1 );
-                    window = brickArray[brickIndex].getWindow();
+                    return window;
                 }
             }
-            if ( window == null )
+            awaitClosedWindows();
+        }
+    }
+
+    /*
+     * Windows are closed and written out holding the monitor of the pool, see
+     * freeWindows and refreshBricks, so once we have it the records of a
+     * closed window can be read from the file.
+     */
+    private synchronized void awaitClosedWindows()
+    {
+    }
+
+    /*
+     * Returns a marked row for position, shared with other threads currently
+     * using the same position so that they serialize on its window lock.
+     */
+    private PersistenceRow acquireRow( long position )
+    {
+        while ( true )
+        {
+            PersistenceRow dpw = activeRowWindows.get( position );
+            if ( dpw == null )
             {
-                synchronized ( this )
+                dpw = new PersistenceRow( position, blockSize, fileChannel );
+                dpw.mark();
+                if ( activeRowWindows.putIfAbsent( position, dpw ) == null )
                 {
-                    miss++;
-                    brickMiss++;
-
-                    PersistenceRow dpw = activeRowWindows.get( (int) position );
+                    return dpw;
+                }
+            }
+            else if ( dpw.markIfNotClosed() )
+            {
+                return dpw;
+            }
+            else
+            {
+                activeRowWindows.remove( position, dpw );
+            }
+        }
+    }
 
-                    if ( dpw == null )
+    private void scheduleRefresh()
+    {
+        if ( !refreshScheduled.compareAndSet( false, true ) )
+        {
+            return;
+        }
+        try
+        {
+            refresher.execute( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        refreshBricks();
+                    }
+                    catch ( RuntimeException e )
                     {
-                        dpw = new PersistenceRow( position, blockSize,
-                            fileChannel );
+                        logWarn( "Unable to refresh bricks", e );
                     }
-                    if ( operationType == OperationType.READ )
+                    finally
                     {
-                        readPos = true;
+                        refreshScheduled.set( false );
                     }
-                    window = dpw;
-                    activeRowWindows.put( (int) position, dpw );
-                    window.mark();
                 }
-            }
-            else
-            {
-                hit++;
-            }
-//        }
-        window.lock();
-        if ( readPos )
+            } );
+        }
+        catch ( RejectedExecutionException e )
         {
-            ((PersistenceRow) window).readPosition();
+            refreshScheduled.set( false );
         }
-        window.setOperationType( operationType );
-        return window;
     }
 
     void dumpStatistics()
     {
-        log.finest( storeName + " hit=" + hit + " miss=" + miss + " switches="
-            + switches + " ooe=" + ooe );
+        log.finest( storeName + " hit=" + hit.get() + " miss=" + miss.get()
+            + " switches=" + switches.get() + " ooe=" + ooe.get() );
     }
 
     /**
@@ -201,21 +313,25 @@ class PersistenceWindowPool
      * @throws IOException
      *             If unable to release window
      */
-    void release( PersistenceWindow window )
+    public void release( PersistenceWindow window )
     {
         if ( window instanceof PersistenceRow )
         {
             PersistenceRow dpw = (PersistenceRow) window;
             dpw.writeOut();
-            synchronized ( this )
+            dpw.unLock();
+            if ( dpw.closeIfUnused() )
+            {
+                activeRowWindows.remove( dpw.position(), dpw );
+            }
+            if ( !useMemoryMapped && brickSize > 0 )
             {
-                if ( dpw.getWaitingThreadsCount() == 0 && !dpw.isMarked() )
+                BrickElement brick = brickArray[(int) (dpw.position() * blockSize / brickSize)];
+                synchronized ( brick )
                 {
-                    int key = (int) dpw.position();
-                    activeRowWindows.remove( key );
+                    brick.activeRows--;
                 }
             }
-            dpw.unLock();
         }
         else
         {
@@ -223,7 +339,7 @@ class PersistenceWindowPool
         }
     }
 
-    synchronized void close()
+    public synchronized void close()
     {
         flushAll();
 //        synchronized ( activeRowWindows )
@@ -243,7 +359,7 @@ class PersistenceWindowPool
         dumpStatistics();
     }
 
-    void flushAll()
+    public void flushAll()
     {
         if ( readOnly ) return;
 
@@ -272,8 +388,15 @@ class PersistenceWindowPool
     private static class BrickElement
     {
         private final int index;
+        // updated without synchronization, a lost hit only skews the
+        // heuristic for which bricks to map
         private int hitCount;
-        private LockableWindow window = null;
+        // sorting needs values that don't change while sorting
+        private int hitSnapshot;
+        private volatile LockableWindow window = null;
+        // rows acquired for the brick and not yet released, guarded by the
+        // brick and only counted for plain windows
+        private int activeRows;
 
         BrickElement( int index )
         {
@@ -304,9 +427,18 @@ class PersistenceWindowPool
             }
         }
 
+        void snapshotHit()
+        {
+            hitSnapshot = hitCount;
+        }
+
+        /**
+         * @return the hit count as of the last {@link #snapshotHit()} or
+         * {@link #refresh()}.
+         */
         int getHit()
         {
-            return hitCount;
+            return hitSnapshot;
         }
 
         void refresh()
@@ -319,6 +451,7 @@ class PersistenceWindowPool
             {
                 hitCount /= 1.15;
             }
+            hitSnapshot = hitCount;
         }
 
         @Override
@@ -419,7 +552,8 @@ class PersistenceWindowPool
         }
     }
 
-    private synchronized void freeWindows( int nr )
+    // must be called with the monitor of this pool held
+    private void freeWindows( int nr )
     {
         if ( brickSize <= 0 )
         {
@@ -432,6 +566,7 @@ class PersistenceWindowPool
             BrickElement be = brickArray[i];
             if ( be.getWindow() != null )
             {
+                be.snapshotHit();
                 mappedBricks.add( be );
             }
         }
@@ -440,29 +575,39 @@ class PersistenceWindowPool
         {
             BrickElement mappedBrick = mappedBricks.get( i );
             LockableWindow window = mappedBrick.getWindow();
-            if ( window.getWaitingThreadsCount() == 0 && !window.isMarked() )
+            if ( window.closeIfUnused() )
             {
-                if ( window instanceof MappedPersistenceWindow )
-                {
-                    ((MappedPersistenceWindow) window).unmap();
-                }
-                else if ( window instanceof PlainPersistenceWindow )
-                {
-                    ((PlainPersistenceWindow) window).writeOut();
-                }
+                releaseClosedWindow( window );
                 mappedBrick.setWindow( null );
                 memUsed -= brickSize;
             }
         }
     }
 
+    /*
+     * Must be called with the monitor of this pool held, before the window is
+     * removed from its brick, so that rows created for the brick after that
+     * read what was written through the window.
+     */
+    private void releaseClosedWindow( LockableWindow window )
+    {
+        if ( window instanceof MappedPersistenceWindow )
+        {
+            ((MappedPersistenceWindow) window).unmap();
+        }
+        else if ( !readOnly && window instanceof PlainPersistenceWindow )
+        {
+            ((PlainPersistenceWindow) window).writeOut();
+        }
+    }
+
     private synchronized void refreshBricks()
     {
-        if ( brickMiss < REFRESH_BRICK_COUNT )
+        if ( brickMiss.get() < REFRESH_BRICK_COUNT || fileChannel == null )
         {
             return;
         }
-        brickMiss = 0;
+        brickMiss.set( 0 );
         if ( brickSize <= 0 )
         {
             // memory mapped turned off
@@ -498,18 +643,19 @@ class PersistenceWindowPool
             }
             try
             {
-                nonMappedBrick.setWindow(
-                    allocateNewWindow( nonMappedBrick.index() ) );
-                memUsed += brickSize;
+                if ( mapBrick( nonMappedBrick ) )
+                {
+                    memUsed += brickSize;
+                }
             }
             catch ( MappedMemException e )
             {
-                ooe++;
+                ooe.incrementAndGet();
                 logWarn( "Unable to memory map", e );
             }
             catch ( OutOfMemoryError e )
             {
-                ooe++;
+                ooe.incrementAndGet();
                 logWarn( "Unable to allocate direct buffer", e );
             }
         }
@@ -525,33 +671,27 @@ class PersistenceWindowPool
                 break;
             }
             LockableWindow window = mappedBrick.getWindow();
-            if ( window.getWaitingThreadsCount() == 0 && !window.isMarked() )
+            if ( window.closeIfUnused() )
             {
-                if ( window instanceof MappedPersistenceWindow )
-                {
-                    ((MappedPersistenceWindow) window).unmap();
-                }
-                else if ( !readOnly && window instanceof PlainPersistenceWindow )
-                {
-                    ((PlainPersistenceWindow) window).writeOut();
-                }
+                releaseClosedWindow( window );
                 mappedBrick.setWindow( null );
                 memUsed -= brickSize;
                 try
                 {
-                    nonMappedBrick.setWindow(
-                        allocateNewWindow( nonMappedBrick.index() ) );
-                    memUsed += brickSize;
-                    switches++;
+                    if ( mapBrick( nonMappedBrick ) )
+                    {
+                        memUsed += brickSize;
+                        switches.incrementAndGet();
+                    }
                 }
                 catch ( MappedMemException e )
                 {
-                    ooe++;
+                    ooe.incrementAndGet();
                     logWarn( "Unable to memory map" );
                 }
                 catch ( OutOfMemoryError e )
                 {
-                    ooe++;
+                    ooe.incrementAndGet();
                     logWarn( "Unable to allocate direct buffer" );
                 }
             }
@@ -576,17 +716,19 @@ class PersistenceWindowPool
                 {
                     try
                     {
-                        be.setWindow( allocateNewWindow( i ) );
-                        memUsed += brickSize;
+                        if ( mapBrick( be ) )
+                        {
+                            memUsed += brickSize;
+                        }
                     }
                     catch ( MappedMemException e )
                     {
-                        ooe++;
+                        ooe.incrementAndGet();
                         logWarn( "Unable to memory map" );
                     }
                     catch ( OutOfMemoryError e )
                     {
-                        ooe++;
+                        ooe.incrementAndGet();
                         logWarn( "Unable to allocate direct buffer" );
                     }
                 }
@@ -596,6 +738,29 @@ class PersistenceWindowPool
         }
     }
 
+    /*
+     * Must be called with the monitor of this pool held. A plain window isn't
+     * allocated while there are rows of its brick in use, since it would
+     * read the brick before they have been written out.
+     */
+    private boolean mapBrick( BrickElement brick )
+    {
+        if ( useMemoryMapped )
+        {
+            brick.setWindow( allocateNewWindow( brick.index() ) );
+            return true;
+        }
+        synchronized ( brick )
+        {
+            if ( brick.activeRows > 0 )
+            {
+                return false;
+            }
+            brick.setWindow( allocateNewWindow( brick.index() ) );
+            return true;
+        }
+    }
+
     private LockableWindow allocateNewWindow( long brick )
     {
         if ( useMemoryMapped )
@@ -661,9 +826,9 @@ class PersistenceWindowPool
         log.log( Level.WARNING, "[" + storeName + "] " + logMessage, cause );
     }
 
-    WindowPoolStats getStats()
+    public WindowPoolStats getStats()
     {
         return new WindowPoolStats( storeName, availableMem, memUsed, brickCount,
-                brickSize, hit, miss, ooe );
+                brickSize, hit.get(), miss.get(), switches.get(), ooe.get() );
     }
 }
\ No newline at end of file
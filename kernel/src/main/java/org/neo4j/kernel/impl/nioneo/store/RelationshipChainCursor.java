@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+/**
+ * Reads the relationship chain of a node one record at a time. The same
+ * cursor instance holds every record read, so walking a chain doesn't
+ * create a {@link RelationshipRecord} per relationship.
+ * <p>
+ * A cursor is positioned with {@link #init(long, long, int)} and advanced
+ * with {@link #next()}. It isn't thread safe and the values of a record
+ * are only valid until the next call to {@link #next()}.
+ */
+public class RelationshipChainCursor
+{
+    private final RelationshipStore store;
+
+    private long nodeId;
+    private long position = Record.NO_NEXT_RELATIONSHIP.intValue();
+    private int remaining;
+
+    // The current record, set by RelationshipStore#readChainRecord
+    private long id;
+    private long firstNode;
+    private long secondNode;
+    private int type;
+    private long firstPrevRel;
+    private long firstNextRel;
+    private long secondPrevRel;
+    private long secondNextRel;
+    private long nextProp;
+
+    RelationshipChainCursor( RelationshipStore store )
+    {
+        this.store = store;
+    }
+
+    /**
+     * Positions this cursor at {@code position} in the relationship chain
+     * of node {@code nodeId}.
+     *
+     * @param maxCount the max number of records {@link #next()} will read
+     * before returning {@code false}.
+     * @return this cursor.
+     */
+    public RelationshipChainCursor init( long nodeId, long position, int maxCount )
+    {
+        this.nodeId = nodeId;
+        this.position = position;
+        this.remaining = maxCount;
+        return this;
+    }
+
+    /**
+     * Reads the record at the current position and moves the position to
+     * the next relationship in the chain of the node.
+     *
+     * @return {@code true} if a record was read, {@code false} if the end
+     * of the chain, the high id of the store or the max count was reached.
+     * @throws InvalidRecordException if the record isn't in use or doesn't
+     * belong to the chain of the node.
+     */
+    public boolean next()
+    {
+        if ( remaining <= 0 || position == Record.NO_NEXT_RELATIONSHIP.intValue() )
+        {
+            return false;
+        }
+        if ( !store.readChainRecord( position, this ) )
+        {
+            // ok to high id, leave the position where it is
+            return false;
+        }
+        if ( firstNode == nodeId )
+        {
+            position = firstNextRel;
+        }
+        else if ( secondNode == nodeId )
+        {
+            position = secondNextRel;
+        }
+        else
+        {
+            throw new InvalidRecordException( "Node[" + nodeId +
+                "] is neither firstNode[" + firstNode +
+                "] nor secondNode[" + secondNode + "] for Relationship[" + id + "]" );
+        }
+        remaining--;
+        return true;
+    }
+
+    void set( long id, long firstNode, long secondNode, int type, long firstPrevRel,
+            long firstNextRel, long secondPrevRel, long secondNextRel, long nextProp )
+    {
+        this.id = id;
+        this.firstNode = firstNode;
+        this.secondNode = secondNode;
+        this.type = type;
+        this.firstPrevRel = firstPrevRel;
+        this.firstNextRel = firstNextRel;
+        this.secondPrevRel = secondPrevRel;
+        this.secondNextRel = secondNextRel;
+        this.nextProp = nextProp;
+    }
+
+    /**
+     * @return the chain position after the last record read, i.e. where
+     * loading should continue from.
+     */
+    public long getPosition()
+    {
+        return position;
+    }
+
+    public long getNodeId()
+    {
+        return nodeId;
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public long getFirstNode()
+    {
+        return firstNode;
+    }
+
+    public long getSecondNode()
+    {
+        return secondNode;
+    }
+
+    public int getType()
+    {
+        return type;
+    }
+
+    public long getFirstPrevRel()
+    {
+        return firstPrevRel;
+    }
+
+    public long getFirstNextRel()
+    {
+        return firstNextRel;
+    }
+
+    public long getSecondPrevRel()
+    {
+        return secondPrevRel;
+    }
+
+    public long getSecondNextRel()
+    {
+        return secondNextRel;
+    }
+
+    public long getNextProp()
+    {
+        return nextProp;
+    }
+
+    /**
+     * @return a new {@link RelationshipRecord} with the values of the
+     * current record.
+     */
+    public RelationshipRecord toRecord()
+    {
+        RelationshipRecord record = new RelationshipRecord( id, firstNode, secondNode, type );
+        record.setInUse( true );
+        record.setFirstPrevRel( firstPrevRel );
+        record.setFirstNextRel( firstNextRel );
+        record.setSecondPrevRel( secondPrevRel );
+        record.setSecondNextRel( secondNextRel );
+        record.setNextProp( nextProp );
+        return record;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RelationshipChainCursor[node=" + nodeId + ",position=" + position + ",rel=" + id
+            + "]";
+    }
+}
@@ -342,6 +342,65 @@ public class RelationshipStore extends AbstractStore implements Store
         }
     }
 
+    /**
+     * @return a cursor positioned at {@code position} in the relationship
+     * chain of node {@code nodeId}, reading at most {@code maxCount} records.
+     */
+    public RelationshipChainCursor newChainCursor( long nodeId, long position, int maxCount )
+    {
+        return new RelationshipChainCursor( this ).init( nodeId, position, maxCount );
+    }
+
+    /*
+     * Same as getChainRecord but reads the record into the cursor instead
+     * of creating a new record. Returns false if relId is beyond high id.
+     */
+    boolean readChainRecord( long relId, RelationshipChainCursor cursor )
+    {
+        PersistenceWindow window = null;
+        try
+        {
+            window = acquireWindow( relId, OperationType.READ );
+        }
+        catch ( InvalidRecordException e )
+        {
+            // ok to high id
+            return false;
+        }
+        try
+        {
+            Buffer buffer = window.getOffsettedBuffer( relId );
+            // see getRecord( long, PersistenceWindow, boolean ) for the layout
+            long inUseByte = buffer.get();
+            if ( (inUseByte & 0x1) != Record.IN_USE.intValue() )
+            {
+                throw new InvalidRecordException( "Record[" + relId + "] not in use" );
+            }
+            long firstNode = buffer.getUnsignedInt();
+            long secondNode = buffer.getUnsignedInt();
+            long typeInt = buffer.getInt();
+            long firstPrevRel = buffer.getUnsignedInt();
+            long firstNextRel = buffer.getUnsignedInt();
+            long secondPrevRel = buffer.getUnsignedInt();
+            long secondNextRel = buffer.getUnsignedInt();
+            long nextProp = buffer.getUnsignedInt();
+            cursor.set( relId,
+                longFromIntAndMod( firstNode, (inUseByte & 0xEL) << 31 ),
+                longFromIntAndMod( secondNode, (typeInt & 0x70000000L) << 4 ),
+                (int)(typeInt & 0xFFFF),
+                longFromIntAndMod( firstPrevRel, (typeInt & 0xE000000L) << 7 ),
+                longFromIntAndMod( firstNextRel, (typeInt & 0x1C00000L) << 10 ),
+                longFromIntAndMod( secondPrevRel, (typeInt & 0x380000L) << 13 ),
+                longFromIntAndMod( secondNextRel, (typeInt & 0x70000L) << 16 ),
+                longFromIntAndMod( nextProp, (inUseByte & 0xF0L) << 28 ) );
+            return true;
+        }
+        finally
+        {
+            releaseWindow( window );
+        }
+    }
+
     public List<WindowPoolStats> getAllWindowPoolStats()
     {
         List<WindowPoolStats> list = new ArrayList<WindowPoolStats>();
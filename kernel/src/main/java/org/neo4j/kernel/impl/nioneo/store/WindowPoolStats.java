@@ -29,12 +29,13 @@ public class WindowPoolStats
     private final int windowCount;
     private final int windowSize;
     
-    private final int hitCount;
-    private final int missCount;
-    private final int oomCount;
+    private final long hitCount;
+    private final long missCount;
+    private final long switchCount;
+    private final long oomCount;
     
     public WindowPoolStats( String name, long memAvail, long memUsed, int windowCount,
-            int windowSize, int hitCount, int missCount, int oomCount )
+            int windowSize, long hitCount, long missCount, long switchCount, long oomCount )
     {
         this.name = name;
         this.memAvail = memAvail;
@@ -43,6 +44,7 @@ public class WindowPoolStats
         this.windowSize = windowSize;
         this.hitCount = hitCount;
         this.missCount = missCount;
+        this.switchCount = switchCount;
         this.oomCount = oomCount;
     }
     
@@ -71,17 +73,26 @@ public class WindowPoolStats
         return windowSize;
     }
 
-    public int getHitCount()
+    public long getHitCount()
     {
         return hitCount;
     }
 
-    public int getMissCount()
+    public long getMissCount()
     {
         return missCount;
     }
 
-    public int getOomCount()
+    /**
+     * @return the number of times a mapped window has been unmapped to make
+     * room for a window of a more frequently used part of the store.
+     */
+    public long getSwitchCount()
+    {
+        return switchCount;
+    }
+
+    public long getOomCount()
     {
         return oomCount;
     }
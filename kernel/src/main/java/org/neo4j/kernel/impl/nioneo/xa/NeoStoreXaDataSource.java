@@ -41,6 +41,7 @@ import org.neo4j.kernel.impl.core.LockReleaser;
 import org.neo4j.kernel.impl.core.PropertyIndex;
 import org.neo4j.kernel.impl.index.IndexStore;
 import org.neo4j.kernel.impl.nioneo.store.NeoStore;
+import org.neo4j.kernel.impl.nioneo.store.PageCache;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
 import org.neo4j.kernel.impl.nioneo.store.Store;
 import org.neo4j.kernel.impl.nioneo.store.StoreId;
@@ -123,6 +124,14 @@ public class NeoStoreXaDataSource extends LogBackedXaDataSource
             config.put( REBUILD_IDGENERATORS_FAST, "true" );
         }
         File file = new File( store );
+        if ( !config.containsKey( PageCache.class ) )
+        {
+            PageCache pageCache = PageCache.create( config );
+            if ( pageCache != null )
+            {
+                config.put( PageCache.class, pageCache );
+            }
+        }
         String create = "" + config.get( "create" );
         if ( !readOnly && !file.exists() && "true".equals( create ) )
         {
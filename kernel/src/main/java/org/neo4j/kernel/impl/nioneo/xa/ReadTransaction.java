@@ -38,6 +38,7 @@ import org.neo4j.kernel.impl.nioneo.store.PropertyIndexStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
 import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainCursor;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeData;
@@ -88,7 +89,7 @@ class ReadTransaction implements NeoStoreTransaction
 
     public long getRelationshipChainPosition( long nodeId )
     {
-        return getNodeStore().getRecord( nodeId ).getNextRel();
+        return getNodeStore().getNextRel( nodeId );
     }
 
     public Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> getMoreRelationships(
@@ -108,60 +109,37 @@ class ReadTransaction implements NeoStoreTransaction
             new EnumMap<DirectionWrapper, Iterable<RelationshipRecord>>( DirectionWrapper.class );
         result.put( DirectionWrapper.OUTGOING, out );
         result.put( DirectionWrapper.INCOMING, in );
-        for ( int i = 0; i < grabSize && 
-            position != Record.NO_NEXT_RELATIONSHIP.intValue(); i++ )
+        RelationshipChainCursor chain = relStore.newChainCursor( nodeId, position, grabSize );
+        while ( chain.next() )
         {
-            RelationshipRecord relRecord = relStore.getChainRecord( position );
-            if ( relRecord == null )
+            long firstNode = chain.getFirstNode();
+            long secondNode = chain.getSecondNode();
+            if ( firstNode == secondNode )
             {
-                // return what we got so far
-                return Pair.of( result, position );
-            }
-            long firstNode = relRecord.getFirstNode();
-            long secondNode = relRecord.getSecondNode();
-            if ( relRecord.inUse() )
-            {
-                if ( firstNode == secondNode )
-                {
-                    if ( loop == null )
-                    {
-                        // This is done lazily because loops are probably quite
-                        // rarely encountered
-                        loop = new ArrayList<RelationshipRecord>();
-                        result.put( DirectionWrapper.BOTH, loop );
-                    }
-                    loop.add( relRecord );
-                }
-                else if ( firstNode == nodeId )
+                if ( loop == null )
                 {
-                    out.add( relRecord );
-                }
-                else if ( secondNode == nodeId )
-                {
-                    in.add( relRecord );
+                    // This is done lazily because loops are probably quite
+                    // rarely encountered
+                    loop = new ArrayList<RelationshipRecord>();
+                    result.put( DirectionWrapper.BOTH, loop );
                 }
+                loop.add( chain.toRecord() );
             }
-            else
+            else if ( firstNode == nodeId )
             {
-                i--;
-            }
-
-            if ( firstNode == nodeId )
-            {
-                position = relRecord.getFirstNextRel();
-            }
-            else if ( secondNode == nodeId )
-            {
-                position = relRecord.getSecondNextRel();
+                out.add( chain.toRecord() );
             }
             else
             {
-                throw new InvalidRecordException( "Node[" + nodeId + 
-                    "] is neither firstNode[" + firstNode + 
-                    "] nor secondNode[" + secondNode + "] for Relationship[" + relRecord.getId() + "]" );
+                in.add( chain.toRecord() );
             }
         }
-        return Pair.of( result, position );
+        return Pair.of( result, chain.getPosition() );
+    }
+
+    public RelationshipChainCursor getRelationshipChain( long nodeId, long position )
+    {
+        return getRelationshipStore().newChainCursor( nodeId, position, getRelGrabSize() );
     }
     
     static ArrayMap<Integer, PropertyData> loadProperties( PropertyStore propertyStore, long nextProp )
@@ -49,6 +49,7 @@ import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyType;
 import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainCursor;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeData;
@@ -897,7 +898,7 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         {
             return Record.NO_NEXT_RELATIONSHIP.intValue();
         }
-        return getNodeStore().getRecord( nodeId ).getNextRel();
+        return getNodeStore().getNextRel( nodeId );
     }
 
     public Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> getMoreRelationships( long nodeId,
@@ -906,6 +907,11 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         return ReadTransaction.getMoreRelationships( nodeId, position, getRelGrabSize(), getRelationshipStore() );
     }
 
+    public RelationshipChainCursor getRelationshipChain( long nodeId, long position )
+    {
+        return getRelationshipStore().newChainCursor( nodeId, position, getRelGrabSize() );
+    }
+
     private void updateNodes( RelationshipRecord rel )
     {
         if ( rel.getFirstPrevRel() == Record.NO_PREV_RELATIONSHIP.intValue() )
@@ -27,6 +27,7 @@ import org.neo4j.helpers.Pair;
 import org.neo4j.kernel.impl.core.PropertyIndex;
 import org.neo4j.kernel.impl.nioneo.store.PropertyData;
 import org.neo4j.kernel.impl.nioneo.store.PropertyIndexData;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainCursor;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeData;
 import org.neo4j.kernel.impl.transaction.xaframework.XaConnection;
@@ -110,6 +111,15 @@ public interface NeoStoreTransaction
     public Pair<Map<DirectionWrapper, Iterable<RelationshipRecord>>, Long> getMoreRelationships(
             long nodeId, long position );
 
+    /*
+     * Returns a cursor over the next batch of relationships in the chain of
+     * the node, starting at position. Unlike getMoreRelationships it reuses
+     * one cursor for all records instead of creating a record per
+     * relationship. The position of the cursor is the relationship chain
+     * position after the records it has read.
+     */
+    public RelationshipChainCursor getRelationshipChain( long nodeId, long position );
+
     public RelIdArray getCreatedNodes();
 
     public boolean isNodeCreated( long nodeId );
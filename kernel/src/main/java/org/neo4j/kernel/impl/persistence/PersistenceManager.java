@@ -40,6 +40,7 @@ import org.neo4j.kernel.impl.core.TransactionEventsSyncHook;
 import org.neo4j.kernel.impl.core.TxEventSyncHookFactory;
 import org.neo4j.kernel.impl.nioneo.store.PropertyData;
 import org.neo4j.kernel.impl.nioneo.store.PropertyIndexData;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipChainCursor;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeData;
 import org.neo4j.kernel.impl.nioneo.xa.NioNeoDbPersistenceSource;
@@ -108,6 +109,11 @@ public class PersistenceManager
         return getReadOnlyResource().getMoreRelationships( nodeId, position );
     }
 
+    public RelationshipChainCursor getRelationshipChain( long nodeId, long position )
+    {
+        return getReadOnlyResource().getRelationshipChain( nodeId, position );
+    }
+
     public ArrayMap<Integer,PropertyData> loadNodeProperties( long nodeId,
             boolean light )
     {
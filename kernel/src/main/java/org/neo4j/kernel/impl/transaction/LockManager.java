@@ -19,9 +19,9 @@
  */
 package org.neo4j.kernel.impl.transaction;
 
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
@@ -43,12 +43,17 @@ import org.neo4j.kernel.DeadlockDetectedException;
  * must invoke <CODE>releaseReadLock</CODE> x times to release all the locks.
  * <p>
  * LockManager just maps locks to resources and they do all the hard work
- * together with a resource allocation graph.
+ * together with a resource allocation graph. The map is a concurrent one so
+ * looking up the lock of a resource doesn't need any global monitor, only the
+ * lock of the resource itself is synchronized on. A lock that becomes unused
+ * when released is retired and removed, an acquire racing with that will see
+ * the lock as retired and retry with a new lock for the resource.
  */
 public class LockManager
 {
-    private final Map<Object,RWLock> resourceLockMap =
-        new HashMap<Object,RWLock>();
+    private final ConcurrentMap<Object,RWLock> resourceLockMap =
+        new ConcurrentHashMap<Object,RWLock>( 1024, 0.75f,
+            Runtime.getRuntime().availableProcessors() * 4 );
 
     private final RagManager ragManager;
 
@@ -82,18 +87,10 @@ public class LockManager
             throw new IllegalResourceException( "Null parameter" );
         }
 
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
+        while ( !getLock( resource ).acquireReadLock() )
         {
-            lock = resourceLockMap.get( resource );
-            if ( lock == null )
-            {
-                lock = new RWLock( resource, ragManager );
-                resourceLockMap.put( resource, lock );
-            }
-            lock.mark();
+            // the lock was retired after we got it, try again
         }
-        lock.acquireReadLock();
     }
 
     /**
@@ -116,18 +113,25 @@ public class LockManager
             throw new IllegalResourceException( "Null parameter" );
         }
 
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
+        while ( !getLock( resource ).acquireWriteLock() )
+        {
+            // the lock was retired after we got it, try again
+        }
+    }
+
+    private RWLock getLock( Object resource )
+    {
+        RWLock lock = resourceLockMap.get( resource );
+        if ( lock == null )
         {
-            lock = resourceLockMap.get( resource );
+            RWLock newLock = new RWLock( resource, ragManager );
+            lock = resourceLockMap.putIfAbsent( resource, newLock );
             if ( lock == null )
             {
-                lock = new RWLock( resource, ragManager );
-                resourceLockMap.put( resource, lock );
+                lock = newLock;
             }
-            lock.mark();
         }
-        lock.acquireWriteLock();
+        return lock;
     }
 
     /**
@@ -148,22 +152,15 @@ public class LockManager
             throw new IllegalResourceException( "Null parameter" );
         }
 
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
+        RWLock lock = resourceLockMap.get( resource );
+        if ( lock == null )
         {
-            lock = resourceLockMap.get( resource );
-            if ( lock == null )
-            {
-                throw new LockNotFoundException( "Lock not found for: "
-                    + resource );
-            }
-            if ( !lock.isMarked() && lock.getReadCount() == 1 &&
-                lock.getWriteCount() == 0 &&
-                lock.getWaitingThreadsCount() == 0 )
-            {
-                resourceLockMap.remove( resource );
-            }
-            lock.releaseReadLock(tx);
+            throw new LockNotFoundException( "Lock not found for: "
+                + resource );
+        }
+        if ( lock.releaseReadLock( tx ) )
+        {
+            resourceLockMap.remove( resource, lock );
         }
     }
 
@@ -185,22 +182,15 @@ public class LockManager
             throw new IllegalResourceException( "Null parameter" );
         }
 
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
+        RWLock lock = resourceLockMap.get( resource );
+        if ( lock == null )
         {
-            lock = resourceLockMap.get( resource );
-            if ( lock == null )
-            {
-                throw new LockNotFoundException( "Lock not found for: "
-                    + resource );
-            }
-            if ( !lock.isMarked() && lock.getReadCount() == 0 &&
-                lock.getWriteCount() == 1 &&
-                lock.getWaitingThreadsCount() == 0 )
-            {
-                resourceLockMap.remove( resource );
-            }
-            lock.releaseWriteLock(tx);
+            throw new LockNotFoundException( "Lock not found for: "
+                + resource );
+        }
+        if ( lock.releaseWriteLock( tx ) )
+        {
+            resourceLockMap.remove( resource, lock );
         }
 
     }
@@ -213,15 +203,11 @@ public class LockManager
      */
     public void dumpLocksOnResource( Object resource )
     {
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
+        RWLock lock = resourceLockMap.get( resource );
+        if ( lock == null )
         {
-            if ( !resourceLockMap.containsKey( resource ) )
-            {
-                System.out.println( "No locks on " + resource );
-                return;
-            }
-            lock = resourceLockMap.get( resource );
+            System.out.println( "No locks on " + resource );
+            return;
         }
         lock.dumpStack();
     }
@@ -240,35 +226,32 @@ public class LockManager
      */
     public void dumpAllLocks()
     {
-        synchronized ( resourceLockMap )
+        Iterator<RWLock> itr = resourceLockMap.values().iterator();
+        int emptyLockCount = 0;
+        while ( itr.hasNext() )
         {
-            Iterator<RWLock> itr = resourceLockMap.values().iterator();
-            int emptyLockCount = 0;
-            while ( itr.hasNext() )
+            RWLock lock = itr.next();
+            if ( lock.getWriteCount() > 0 || lock.getReadCount() > 0 )
             {
-                RWLock lock = itr.next();
-                if ( lock.getWriteCount() > 0 || lock.getReadCount() > 0 )
-                {
-                    lock.dumpStack();
-                }
-                else
-                {
-                    if ( lock.getWaitingThreadsCount() > 0 )
-                    {
-                        lock.dumpStack();
-                    }
-                    emptyLockCount++;
-                }
-            }
-            if ( emptyLockCount > 0 )
-            {
-                System.out.println( "There are " + emptyLockCount
-                    + " empty locks" );
+                lock.dumpStack();
             }
             else
             {
-                System.out.println( "There are no empty locks" );
+                if ( lock.getWaitingThreadsCount() > 0 )
+                {
+                    lock.dumpStack();
+                }
+                emptyLockCount++;
             }
         }
+        if ( emptyLockCount > 0 )
+        {
+            System.out.println( "There are " + emptyLockCount
+                + " empty locks" );
+        }
+        else
+        {
+            System.out.println( "There are no empty locks" );
+        }
     }
-}
\ No newline at end of file
+}
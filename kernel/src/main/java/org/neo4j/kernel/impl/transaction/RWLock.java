@@ -59,7 +59,8 @@ class RWLock
 {
     private int writeCount = 0; // total writeCount
     private int readCount = 0; // total readCount
-    private int marked = 0; // synch helper in LockManager
+    private int marked = 0; // acquiring or waiting threads
+    private boolean retired = false; // removed from the LockManager
 
     private final Object resource; // the resource for this RWLock
 
@@ -107,14 +108,27 @@ class RWLock
         }
     }
 
-    synchronized void mark()
+    private boolean isMarked()
     {
-        this.marked++;
+        return marked > 0;
     }
 
-    synchronized boolean isMarked()
+    /**
+     * Called while holding the monitor of this lock after a lock has been
+     * released. If nobody holds, waits for or is about to acquire this lock it
+     * is retired and the {@link LockManager} should remove it, any acquire
+     * that still finds it will fail and look up a new lock instead.
+     *
+     * @return <CODE>true</CODE> if this lock was retired.
+     */
+    private boolean retireIfUnused()
     {
-        return marked > 0;
+        if ( !isMarked() && readCount == 0 && writeCount == 0
+            && waitingThreadList.isEmpty() )
+        {
+            retired = true;
+        }
+        return retired;
     }
 
     /**
@@ -126,22 +140,30 @@ class RWLock
      * If the lock can be acquires the lock count is updated on <CODE>this</CODE>
      * and the transaction lock element (tle).
      * 
+     * @return <CODE>false</CODE> if this lock has been retired, the caller
+     *         must then look up the current lock for the resource.
      * @throws DeadlockDetectedException
      *             if a deadlock is detected
      */
-    synchronized void acquireReadLock() throws DeadlockDetectedException
+    synchronized boolean acquireReadLock() throws DeadlockDetectedException
     {
+        if ( retired )
+        {
+            return false;
+        }
         Transaction tx = ragManager.getCurrentTransaction();
         if ( tx == null )
         {
             tx = new PlaceboTransaction();
         }
         TxLockElement tle = txLockElementMap.get( tx );
-        if ( tle == null )
+        boolean newElement = tle == null;
+        if ( newElement )
         {
             tle = new TxLockElement( tx );
         }
 
+        marked++;
         try
         {
             tle.movedOn = false;
@@ -168,8 +190,11 @@ class RWLock
             readCount++;
             tle.readCount++;
             tle.movedOn = true;
-            // TODO: this put could be optimized?
-            txLockElementMap.put( tx, tle );
+            if ( newElement )
+            {
+                txLockElementMap.put( tx, tle );
+            }
+            return true;
         }
         finally
         {
@@ -186,8 +211,11 @@ class RWLock
 	 * not necessarily available through the tm. If there are waiting
 	 * transactions in the queue they will be interrupted if they can acquire
 	 * the lock.
+	 *
+	 * @return <code>true</code> if the lock was retired and should be removed
+	 *         from the lock manager.
 	 */
-    synchronized void releaseReadLock(Transaction tx) throws LockNotFoundException
+    synchronized boolean releaseReadLock(Transaction tx) throws LockNotFoundException
     {
         if ( tx == null && (tx = ragManager.getCurrentTransaction()) == null )
         {
@@ -285,6 +313,7 @@ class RWLock
                 }
             }
         }
+        return retireIfUnused();
     }
 
     /**
@@ -297,22 +326,30 @@ class RWLock
      * If the lock can be acquires the lock count is updated on <CODE>this</CODE>
      * and the transaction lock element (tle).
      * 
+     * @return <CODE>false</CODE> if this lock has been retired, the caller
+     *         must then look up the current lock for the resource.
      * @throws DeadlockDetectedException
      *             if a deadlock is detected
      */
-    synchronized void acquireWriteLock() throws DeadlockDetectedException
+    synchronized boolean acquireWriteLock() throws DeadlockDetectedException
     {
+        if ( retired )
+        {
+            return false;
+        }
         Transaction tx = ragManager.getCurrentTransaction();
         if ( tx == null )
         {
             tx = new PlaceboTransaction();
         }
         TxLockElement tle = txLockElementMap.get( tx );
-        if ( tle == null )
+        boolean newElement = tle == null;
+        if ( newElement )
         {
             tle = new TxLockElement( tx );
         }
 
+        marked++;
         try
         {
             tle.movedOn = false;
@@ -339,8 +376,11 @@ class RWLock
             writeCount++;
             tle.writeCount++;
             tle.movedOn = true;
-            // TODO optimize this put?
-            txLockElementMap.put( tx, tle );
+            if ( newElement )
+            {
+                txLockElementMap.put( tx, tle );
+            }
+            return true;
         }
         finally
         {
@@ -357,8 +397,11 @@ class RWLock
 	 * necessarily available. If write count is zero and there are waiting
 	 * transactions in the queue they will be interrupted if they can acquire
 	 * the lock.
+	 *
+	 * @return <code>true</code> if the lock was retired and should be removed
+	 *         from the lock manager.
 	 */
-    synchronized void releaseWriteLock(Transaction tx) throws LockNotFoundException
+    synchronized boolean releaseWriteLock(Transaction tx) throws LockNotFoundException
     {
         if ( tx == null && (tx = ragManager.getCurrentTransaction()) == null )
         {
@@ -410,6 +453,7 @@ class RWLock
             }
             while ( waitingThreadList.size() > 0 );
         }
+        return retireIfUnused();
     }
 
     int getWriteCount()
@@ -19,12 +19,13 @@
  */
 package org.neo4j.kernel.impl.transaction;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.SystemException;
@@ -56,6 +57,11 @@ import org.neo4j.kernel.impl.util.ArrayMap;
  * traverse node nodespace starting on the resource and see if we can get back
  * to the tx ( T1 wants to wait on R1 and R1->T2->R2->T3->R8->T1 <==>
  * deadlock!).
+ * <p>
+ * Only transactions that have to wait take the monitor of this class. Lock
+ * acquisitions and releases update the resource map without it, which is safe
+ * since they are already serialized per resource by the {@link RWLock} and the
+ * map and locking transaction lists can be read concurrently.
  */
 class RagManager
 {
@@ -72,9 +78,11 @@ class RagManager
     // in a DeadlockDetectedException the transaction must wait
     // o When the transaction wakes up from waiting on a resource the
     // stopWaitOn( resource ) method must be invoked
+    // o lockAcquired and lockReleased for a resource must be invoked while
+    // holding the monitor of that resource (the RWLock)
 
     private final Map<Object,List<Transaction>> resourceMap =
-        new HashMap<Object,List<Transaction>>();
+        new ConcurrentHashMap<Object,List<Transaction>>();
 
     private final ArrayMap<Transaction,Object> waitingTxMap =
         new ArrayMap<Transaction,Object>( 5, false, true );
@@ -93,7 +101,7 @@ class RagManager
         return deadlockCount.longValue();
     }
 
-    synchronized void lockAcquired( Object resource, Transaction tx )
+    void lockAcquired( Object resource, Transaction tx )
     {
         List<Transaction> lockingTxList = resourceMap.get( resource );
         if ( lockingTxList != null )
@@ -103,13 +111,13 @@ class RagManager
         }
         else
         {
-            lockingTxList = new LinkedList<Transaction>();
+            lockingTxList = new CopyOnWriteArrayList<Transaction>();
             lockingTxList.add( tx );
             resourceMap.put( resource, lockingTxList );
         }
     }
 
-    synchronized void lockReleased( Object resource, Transaction tx )
+    void lockReleased( Object resource, Transaction tx )
     {
         List<Transaction> lockingTxList = resourceMap.get( resource );
         if ( lockingTxList == null )
@@ -284,8 +292,14 @@ class RagManager
         while ( resources.hasNext() )
         {
             Object resource = resources.next();
+            List<Transaction> lockingTxList = resourceMap.get( resource );
+            if ( lockingTxList == null )
+            {
+                // released while dumping
+                continue;
+            }
             System.out.print( "" + resource + "->" );
-            Iterator<Transaction> itr = resourceMap.get( resource ).iterator();
+            Iterator<Transaction> itr = lockingTxList.iterator();
             if ( !itr.hasNext() )
             {
                 System.out.println( " Error empty list found" );
@@ -36,11 +36,11 @@ import javax.transaction.xa.Xid;
 
 import org.neo4j.helpers.UTF8;
 import org.neo4j.kernel.impl.transaction.xaframework.DirectMappedLogBuffer;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommitter;
 import org.neo4j.kernel.impl.transaction.xaframework.LogBuffer;
 
 // TODO: fixed sized logs (pre-initialize them)
 // keep dangling records in memory for log switch
-// batch disk forces
 /**
  * This class is made public for testing purposes only, do not use.
  * <p>
@@ -53,6 +53,7 @@ public class TxLog
     private String name = null;
     private LogBuffer logBuffer;
     private int recordCount = 0;
+    private final GroupCommitter groupCommitter;
 
     public static final byte TX_START = 1;
     public static final byte BRANCH_ADD = 2;
@@ -70,6 +71,23 @@ public class TxLog
      *             If unable to open file
      */
     public TxLog( String fileName ) throws IOException
+    {
+        this( fileName, null );
+    }
+
+    /**
+     * Initializes a transaction log using <CODE>filename</CODE>, batching
+     * the forces of {@link #markAsCommitting(byte[])} if group commit is
+     * enabled in <CODE>config</CODE>.
+     *
+     * @param fileName
+     *            Filename of file to use
+     * @param config
+     *            Configuration map or null if no config needed
+     * @throws IOException
+     *             If unable to open file
+     */
+    public TxLog( String fileName, Map<?,?> config ) throws IOException
     {
         if ( fileName == null )
         {
@@ -79,6 +97,18 @@ public class TxLog
         fileChannel.position( fileChannel.size() );
         logBuffer = new DirectMappedLogBuffer( fileChannel );
         this.name = fileName;
+        groupCommitter = GroupCommitter.create( "tx log", config,
+                new GroupCommitter.Target()
+                {
+                    public FileChannel writeOutForForce() throws IOException
+                    {
+                        return writeOutForGroupCommit();
+                    }
+                }, null );
+        if ( groupCommitter != null )
+        {
+            groupCommitter.start();
+        }
     }
 
     /**
@@ -102,6 +132,15 @@ public class TxLog
      * Closes the file representing the transaction log.
      */
     public void close() throws IOException
+    {
+        if ( groupCommitter != null )
+        {
+            groupCommitter.close();
+        }
+        closeChannel();
+    }
+
+    private void closeChannel() throws IOException
     {
         logBuffer.force();
         logBuffer.getFileChannel().close();
@@ -183,13 +222,56 @@ public class TxLog
      */
     // mark_committing(byte)|gid_length(byte)|globalId
     // forces
-    public synchronized void markAsCommitting( byte globalId[] )
+    public void markAsCommitting( byte globalId[] )
+        throws IOException
+    {
+        long ticket = writeMarkAsCommitting( globalId );
+        if ( ticket != -1 )
+        {
+            // wait outside the monitor so that other transactions can join
+            groupCommitter.awaitForced( ticket );
+        }
+    }
+
+    /**
+     * Writes a <CODE>MARK_COMMIT</CODE> record and, unless group commit is
+     * enabled, forces it.
+     *
+     * @return the group commit ticket to wait for, or -1 if the record has
+     *         already been forced.
+     */
+    private synchronized long writeMarkAsCommitting( byte globalId[] )
         throws IOException
     {
         assertNotNull( globalId, "global id" );
         logBuffer.put( MARK_COMMIT ).put( (byte) globalId.length ).put( globalId );
-        logBuffer.force();
         recordCount++;
+        if ( groupCommitter == null )
+        {
+            logBuffer.force();
+            return -1;
+        }
+        return groupCommitter.append();
+    }
+
+    private synchronized FileChannel writeOutForGroupCommit() throws IOException
+    {
+        FileChannel fileChannel = logBuffer.getFileChannel();
+        if ( !fileChannel.isOpen() )
+        {
+            return null;
+        }
+        logBuffer.writeOut();
+        return fileChannel;
+    }
+
+    /**
+     * Returns the group committer forcing this log, or <CODE>null</CODE> if
+     * group commit isn't enabled.
+     */
+    public GroupCommitter getGroupCommitter()
+    {
+        return groupCommitter;
     }
 
     /**
@@ -289,7 +371,8 @@ public class TxLog
         }
         else if ( record.getType() == MARK_COMMIT )
         {
-            markAsCommitting( record.getGlobalId() );
+            // forced when the log switch is done
+            writeMarkAsCommitting( record.getGlobalId() );
         }
         else
         {
@@ -457,7 +540,7 @@ public class TxLog
         // copy all dangling records from current log to new log
         force();
         Iterator<List<Record>> itr = getDanglingRecords();
-        close();
+        closeChannel();
         List<Record> records = new ArrayList<Record>();
         while ( itr.hasNext() )
         {
@@ -54,6 +54,7 @@ import org.neo4j.helpers.Exceptions;
 import org.neo4j.helpers.UTF8;
 import org.neo4j.helpers.collection.MapUtil;
 import org.neo4j.kernel.impl.core.KernelPanicEventGenerator;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommitter;
 import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
 import org.neo4j.kernel.impl.transaction.xaframework.XaResource;
 import org.neo4j.kernel.impl.util.ArrayMap;
@@ -93,6 +94,8 @@ public class TxManager extends AbstractTransactionManager
 
     final TxFinishHook finishHook;
 
+    private Map<?,?> config;
+
     TxManager( String txLogDir, KernelPanicEventGenerator kpe, TxFinishHook finishHook )
     {
         this.txLogDir = txLogDir;
@@ -101,6 +104,15 @@ public class TxManager extends AbstractTransactionManager
         this.finishHook = finishHook;
     }
 
+    /**
+     * Sets the configuration to use for the transaction log, must be called
+     * before {@link #init(XaDataSourceManager)} to have any effect.
+     */
+    void configure( Map<?,?> config )
+    {
+        this.config = config;
+    }
+
     synchronized int getNextEventIdentifier()
     {
         return eventIdentifierCounter++;
@@ -163,7 +175,7 @@ public class TxManager extends AbstractTransactionManager
                                     "Unable to start TM, " + "active tx log file[" +
                                             currentTxLog + "] not found."));
                 }
-                txLog = new TxLog( currentTxLog );
+                txLog = new TxLog( currentTxLog, config );
                 msgLog.logMessage( "TM opening log: " + currentTxLog, true );
             }
             else
@@ -185,7 +197,7 @@ public class TxManager extends AbstractTransactionManager
                 FileChannel fc = new RandomAccessFile( logSwitcherFileName,
                     "rw" ).getChannel();
                 fc.write( buf );
-                txLog = new TxLog( txLogDir + separator + txLog1FileName );
+                txLog = new TxLog( txLogDir + separator + txLog1FileName, config );
                 msgLog.logMessage( "TM new log: " + txLog1FileName, true );
                 fc.force( true );
                 fc.close();
@@ -213,6 +225,15 @@ public class TxManager extends AbstractTransactionManager
         }
     }
 
+    /**
+     * @return the group committer of the transaction log, or
+     *         <CODE>null</CODE> if group commit isn't enabled.
+     */
+    public GroupCommitter getGroupCommitter()
+    {
+        return txLog != null ? txLog.getGroupCommitter() : null;
+    }
+
     synchronized TxLog getTxLog() throws IOException
     {
         if ( txLog.getRecordCount() > maxTxLogRecordCount )
@@ -87,6 +87,18 @@ public class TxModule
     {
     }
 
+    /**
+     * Passes the configuration on to the native transaction manager, must be
+     * called before {@link #start()}.
+     */
+    public void configure( Map<?,?> params )
+    {
+        if ( txManager instanceof TxManager )
+        {
+            ((TxManager) txManager).configure( params );
+        }
+    }
+
     public void start()
     {
         if ( !startIsOk )
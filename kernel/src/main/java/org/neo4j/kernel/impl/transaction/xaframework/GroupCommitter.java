@@ -0,0 +1,395 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.kernel.Config;
+
+/**
+ * Lets many committing transactions share one disk force of a log.
+ * <p>
+ * A committing thread writes its record to the log buffer and takes a ticket
+ * with {@link #append()} while holding the monitor of the log. It then
+ * releases that monitor and calls {@link #awaitForced(long)}. A single
+ * flusher thread writes out everything appended so far, forces the channel
+ * once and releases every waiter whose ticket is covered by that force.
+ * <p>
+ * The flusher waits at most the configured batching window, or until the
+ * configured maximum batch size has been appended, before forcing. With a
+ * window of zero batches still form from the records appended while the
+ * previous force was in progress.
+ * <p>
+ * Logs using this class must force their channel before closing it, the
+ * flusher relies on that when it finds a closed channel.
+ */
+public class GroupCommitter implements Runnable
+{
+    private static final Logger log = Logger.getLogger( GroupCommitter.class.getName() );
+
+    public static final long DEFAULT_WINDOW_MILLIS = 0;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /**
+     * The log a {@link GroupCommitter} forces.
+     */
+    public interface Target
+    {
+        /**
+         * Writes everything buffered so far out to the log file. Called by
+         * the flusher thread.
+         *
+         * @return the channel to force, or {@code null} if the log has been
+         * closed (and thereby forced).
+         * @throws IOException if the data couldn't be written.
+         */
+        FileChannel writeOutForForce() throws IOException;
+    }
+
+    private final String name;
+    private final Target target;
+    private final Object waitMonitor;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private final AtomicLong appended = new AtomicLong();
+    private volatile long forced = 0;
+    private volatile IOException failure = null;
+    private volatile boolean closed = false;
+    private final Object flusherSignal = new Object();
+    private Thread flusher;
+
+    private volatile long forceCount = 0;
+    private volatile long maxForcedBatchSize = 0;
+    private volatile long totalForceNanos = 0;
+    private volatile long maxForceNanos = 0;
+
+    /**
+     * @param name the name of the log, used for the flusher thread.
+     * @param target the log to force.
+     * @param waitMonitor the monitor committing threads wait on, or
+     * {@code null} to wait on this instance. A committing thread holding
+     * some other monitor that concurrent committers need should pass it here
+     * so that it is released while waiting for the force.
+     * @param windowMillis the max time to wait for more records before
+     * forcing.
+     * @param maxBatchSize the number of appended records that triggers a
+     * force without waiting for the window to pass.
+     */
+    public GroupCommitter( String name, Target target, Object waitMonitor,
+            long windowMillis, int maxBatchSize )
+    {
+        if ( windowMillis < 0 || maxBatchSize < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal group commit window "
+                + windowMillis + " or max batch size " + maxBatchSize );
+        }
+        this.name = name;
+        this.target = target;
+        this.waitMonitor = waitMonitor != null ? waitMonitor : this;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Creates a group committer from the {@link Config#GROUP_COMMIT},
+     * {@link Config#GROUP_COMMIT_WINDOW} and
+     * {@link Config#GROUP_COMMIT_MAX_BATCH_SIZE} settings.
+     *
+     * @return the group committer, or {@code null} if group commit isn't
+     * enabled in {@code config}.
+     */
+    public static GroupCommitter create( String name, Map<?,?> config,
+            Target target, Object waitMonitor )
+    {
+        if ( config == null ||
+             !Boolean.parseBoolean( (String) config.get( Config.GROUP_COMMIT ) ) )
+        {
+            return null;
+        }
+        long window = DEFAULT_WINDOW_MILLIS;
+        int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        Object value = config.get( Config.GROUP_COMMIT_WINDOW );
+        if ( value != null )
+        {
+            try
+            {
+                window = Long.parseLong( (String) value );
+            }
+            catch ( NumberFormatException e )
+            {
+                log.warning( "Unable to parse " + Config.GROUP_COMMIT_WINDOW + " " + value );
+            }
+        }
+        value = config.get( Config.GROUP_COMMIT_MAX_BATCH_SIZE );
+        if ( value != null )
+        {
+            try
+            {
+                maxBatchSize = Integer.parseInt( (String) value );
+            }
+            catch ( NumberFormatException e )
+            {
+                log.warning( "Unable to parse " + Config.GROUP_COMMIT_MAX_BATCH_SIZE + " "
+                    + value );
+            }
+        }
+        return new GroupCommitter( name, target, waitMonitor, window, maxBatchSize );
+    }
+
+    public synchronized void start()
+    {
+        if ( flusher != null )
+        {
+            return;
+        }
+        flusher = new Thread( this, "Group commit flusher[" + name + "]" );
+        flusher.setDaemon( true );
+        flusher.start();
+    }
+
+    /**
+     * Stops the flusher thread once all appended records have been forced.
+     * Doesn't wait for it to finish, since it may need the monitor of the log
+     * which the caller could be holding.
+     */
+    public void close()
+    {
+        closed = true;
+        signalFlusher();
+    }
+
+    /**
+     * Registers a record written to the log buffer. Must be called while
+     * holding the monitor of the log that the record was written under.
+     *
+     * @return the ticket to pass to {@link #awaitForced(long)}.
+     */
+    public long append()
+    {
+        long ticket = appended.incrementAndGet();
+        signalFlusher();
+        return ticket;
+    }
+
+    /**
+     * Waits until the record registered with {@code ticket} has been forced
+     * to disk. An interrupt doesn't abort the wait, the interrupt status is
+     * restored when the record is durable.
+     *
+     * @throws IOException if the force covering the record failed.
+     */
+    public void awaitForced( long ticket ) throws IOException
+    {
+        boolean interrupted = false;
+        synchronized ( waitMonitor )
+        {
+            while ( forced < ticket && failure == null )
+            {
+                try
+                {
+                    waitMonitor.wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+        if ( forced < ticket )
+        {
+            throw new IOException( "Unable to force log " + name, failure );
+        }
+    }
+
+    public void run()
+    {
+        while ( awaitBatch() )
+        {
+            flush();
+        }
+    }
+
+    private boolean awaitBatch()
+    {
+        synchronized ( flusherSignal )
+        {
+            try
+            {
+                if ( failure != null )
+                {
+                    return false;
+                }
+                while ( pending() == 0 )
+                {
+                    if ( closed )
+                    {
+                        return false;
+                    }
+                    flusherSignal.wait();
+                }
+                long deadline = System.currentTimeMillis() + windowMillis;
+                long timeLeft = windowMillis;
+                while ( !closed && timeLeft > 0 && pending() < maxBatchSize )
+                {
+                    flusherSignal.wait( timeLeft );
+                    timeLeft = deadline - System.currentTimeMillis();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.interrupted();
+            }
+        }
+        return true;
+    }
+
+    private long pending()
+    {
+        return appended.get() - forced;
+    }
+
+    private void signalFlusher()
+    {
+        synchronized ( flusherSignal )
+        {
+            flusherSignal.notify();
+        }
+    }
+
+    private void flush()
+    {
+        // Read before writing out, every record appended up until now will
+        // be included in the write out since they are appended under the
+        // monitor of the log.
+        long upTo = appended.get();
+        long start = System.nanoTime();
+        try
+        {
+            FileChannel channel = target.writeOutForForce();
+            if ( channel != null )
+            {
+                channel.force( false );
+            }
+        }
+        catch ( ClosedChannelException e )
+        {
+            // The log was closed after we wrote out, closing forces it
+        }
+        catch ( IOException e )
+        {
+            log.log( Level.SEVERE, "Unable to force log " + name, e );
+            failure = e;
+        }
+        catch ( RuntimeException e )
+        {
+            log.log( Level.SEVERE, "Unable to force log " + name, e );
+            failure = new IOException( e );
+        }
+        if ( failure == null )
+        {
+            updateStatistics( upTo - forced, System.nanoTime() - start );
+            forced = upTo;
+        }
+        synchronized ( waitMonitor )
+        {
+            waitMonitor.notifyAll();
+        }
+    }
+
+    private void updateStatistics( long batchSize, long forceNanos )
+    {
+        forceCount++;
+        totalForceNanos += forceNanos;
+        if ( batchSize > maxForcedBatchSize )
+        {
+            maxForcedBatchSize = batchSize;
+        }
+        if ( forceNanos > maxForceNanos )
+        {
+            maxForceNanos = forceNanos;
+        }
+    }
+
+    public long getWindowMillis()
+    {
+        return windowMillis;
+    }
+
+    public int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return the number of forces the flusher has done.
+     */
+    public long getForceCount()
+    {
+        return forceCount;
+    }
+
+    /**
+     * @return the number of records that have been forced to disk.
+     */
+    public long getForcedRecordCount()
+    {
+        return forced;
+    }
+
+    public double getAverageBatchSize()
+    {
+        long forces = forceCount;
+        return forces == 0 ? 0 : (double) forced / forces;
+    }
+
+    public long getLargestBatchSize()
+    {
+        return maxForcedBatchSize;
+    }
+
+    public double getAverageForceLatencyMillis()
+    {
+        long forces = forceCount;
+        return forces == 0 ? 0 : totalForceNanos / 1000000.0d / forces;
+    }
+
+    public double getMaxForceLatencyMillis()
+    {
+        return maxForceNanos / 1000000.0d;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "GroupCommitter[" + name + ", window=" + windowMillis + "ms, maxBatchSize="
+            + maxBatchSize + "]";
+    }
+}
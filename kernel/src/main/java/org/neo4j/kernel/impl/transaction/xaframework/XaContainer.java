@@ -20,8 +20,12 @@
 package org.neo4j.kernel.impl.transaction.xaframework;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.impl.util.StringLogger;
+
 /**
  * This is a wrapper class containing the logical log, command factory,
  * transaction factory and resource manager. Using the static <CODE>create</CODE>
@@ -76,6 +80,17 @@ public class XaContainer
         TxIdGenerator txIdFactory = config != null ?
                 (TxIdGenerator) config.get( TxIdGenerator.class ) : TxIdGenerator.DEFAULT;
         txIdFactory = txIdFactory != null ? txIdFactory : TxIdGenerator.DEFAULT;
+        if ( txIdFactory != TxIdGenerator.DEFAULT && config != null &&
+                Boolean.parseBoolean( (String) config.get( Config.GROUP_COMMIT ) ) )
+        {
+            // Group commit assigns tx ids past the commits still waiting for
+            // their force, which only the default generator leaves to us
+            config = new HashMap<Object,Object>( config );
+            config.remove( Config.GROUP_COMMIT );
+            StringLogger.getLogger( (String) config.get( "store_dir" ) ).logMessage(
+                    "Group commit disabled for " + logicalLog + ", it isn't supported with " +
+                    txIdFactory.getClass().getName() );
+        }
         
         rm = new XaResourceManager( dataSource, tf, txIdFactory, logicalLog );
         log = new XaLogicalLog( logicalLog, rm, cf, tf, config );
@@ -102,6 +102,8 @@ public class XaLogicalLog
     private final LruCache<Long, TxPosition> txStartPositionCache =
         new LruCache<Long, TxPosition>( "Tx start position cache", 10000, null );
 
+    private final GroupCommitter groupCommitter;
+
 
     XaLogicalLog( String fileName, XaResourceManager xaRm, XaCommandFactory cf,
         XaTransactionFactory xaTf, Map<Object,Object> config )
@@ -116,6 +118,16 @@ public class XaLogicalLog
             + Xid.MAXBQUALSIZE * 10 );
         storeDir = (String) config.get( "store_dir" );
         msgLog = StringLogger.getLogger( storeDir);
+        // Committers wait on the resource manager since they are holding its
+        // monitor when they write the commit entry, see XaResourceManager#commit
+        groupCommitter = GroupCommitter.create( fileName, config,
+                new GroupCommitter.Target()
+                {
+                    public FileChannel writeOutForForce() throws IOException
+                    {
+                        return writeOutForGroupCommit();
+                    }
+                }, xaRm );
     }
 
     synchronized void open() throws IOException
@@ -200,6 +212,10 @@ public class XaLogicalLog
         }
 
         instantiateCorrectWriteBuffer();
+        if ( groupCommitter != null )
+        {
+            groupCommitter.start();
+        }
     }
 
     private void instantiateCorrectWriteBuffer() throws IOException
@@ -327,17 +343,12 @@ public class XaLogicalLog
     }
 
     // [TX_1P_COMMIT][identifier]
-    public synchronized void commitOnePhase( int identifier, long txId, int masterId )
+    public void commitOnePhase( int identifier, long txId, int masterId )
         throws XAException
     {
-        LogEntry.Start startEntry = xidIdentMap.get( identifier );
-        assert startEntry != null;
-        assert txId != -1;
         try
         {
-            LogIoUtils.writeCommit( false, writeBuffer, identifier, txId, masterId );
-            writeBuffer.force();
-            cacheTxStartPosition( txId, masterId, startEntry );
+            awaitForced( writeCommit( false, identifier, txId, masterId ) );
         }
         catch ( IOException e )
         {
@@ -346,6 +357,63 @@ public class XaLogicalLog
         }
     }
 
+    /**
+     * Writes the commit entry and, unless group commit is enabled, forces it.
+     *
+     * @return the group commit ticket to wait for, or -1 if the entry has
+     * already been forced.
+     */
+    private synchronized long writeCommit( boolean twoPhase, int identifier, long txId,
+            int masterId ) throws IOException
+    {
+        LogEntry.Start startEntry = xidIdentMap.get( identifier );
+        assert startEntry != null;
+        assert txId != -1;
+        LogIoUtils.writeCommit( twoPhase, writeBuffer, identifier, txId, masterId );
+        long ticket = -1;
+        if ( groupCommitter == null || doingRecovery )
+        {
+            writeBuffer.force();
+        }
+        else
+        {
+            ticket = groupCommitter.append();
+        }
+        cacheTxStartPosition( txId, masterId, startEntry );
+        return ticket;
+    }
+
+    /**
+     * Waits, without holding the monitor of this log, for a commit entry
+     * written by {@link #writeCommit(boolean, int, long, int)} to be forced.
+     */
+    private void awaitForced( long ticket ) throws IOException
+    {
+        if ( ticket != -1 )
+        {
+            groupCommitter.awaitForced( ticket );
+        }
+    }
+
+    private synchronized FileChannel writeOutForGroupCommit() throws IOException
+    {
+        if ( writeBuffer == null )
+        {
+            return null;
+        }
+        writeBuffer.writeOut();
+        return writeBuffer.getFileChannel();
+    }
+
+    /**
+     * @return the group committer forcing this log, or {@code null} if group
+     * commit isn't enabled.
+     */
+    public GroupCommitter getGroupCommitter()
+    {
+        return groupCommitter;
+    }
+
     private synchronized void cacheTxStartPosition( long txId, int masterId,
             LogEntry.Start startEntry )
     {
@@ -399,17 +467,12 @@ public class XaLogicalLog
     }
 
     // [TX_2P_COMMIT][identifier]
-    public synchronized void commitTwoPhase( int identifier, long txId, int masterId )
+    public void commitTwoPhase( int identifier, long txId, int masterId )
         throws XAException
     {
-        LogEntry.Start startEntry = xidIdentMap.get( identifier );
-        assert startEntry != null;
-        assert txId != -1;
         try
         {
-            LogIoUtils.writeCommit( true, writeBuffer, identifier, txId, masterId );
-            writeBuffer.force();
-            cacheTxStartPosition( txId, masterId, startEntry );
+            awaitForced( writeCommit( true, identifier, txId, masterId ) );
         }
         catch ( IOException e )
         {
@@ -672,6 +735,11 @@ public class XaLogicalLog
             log.fine( "Logical log: " + fileName + " already closed" );
             return;
         }
+        if ( groupCommitter != null )
+        {
+            // Both ways of closing below force the log before closing it
+            groupCommitter.close();
+        }
         long endPosition = writeBuffer.getFileChannelPosition();
         if ( xidIdentMap.size() > 0 )
         {
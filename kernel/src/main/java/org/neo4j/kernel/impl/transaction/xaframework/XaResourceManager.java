@@ -59,6 +59,13 @@ public class XaResourceManager
     private final XaDataSource dataSource;
     private StringLogger msgLog;
 
+    // With group commit the monitor of this resource manager is released while
+    // waiting for a commit entry to be forced (see XaLogicalLog#commitOnePhase),
+    // so commits are applied in the order their entries were written.
+    private long lastWrittenCommit = 0;
+    private long lastAppliedCommit = 0;
+    private long highestWrittenTxId = -1;
+
     XaResourceManager( XaDataSource dataSource, XaTransactionFactory tf,
             TxIdGenerator txIdGenerator, String name )
     {
@@ -403,57 +410,73 @@ public class XaResourceManager
         }
         TransactionStatus txStatus = status.getTransactionStatus();
         XaTransaction xaTransaction = txStatus.getTransaction();
-        if ( onePhase )
+        long commitSequence = -1;
+        try
         {
-            if ( !xaTransaction.isReadOnly() )
+            if ( onePhase )
             {
-                if ( !xaTransaction.isRecovered() )
+                if ( !xaTransaction.isReadOnly() )
                 {
-                    xaTransaction.prepare();
-                    
-                    long txId = txIdGenerator.generate( dataSource,
-                            xaTransaction.getIdentifier() );
-                    int masterId = txIdGenerator.getCurrentMasterId();
-                    xaTransaction.setCommitTxId( txId );
-                    log.commitOnePhase( xaTransaction.getIdentifier(), 
-                            xaTransaction.getCommitTxId(), masterId );
+                    if ( !xaTransaction.isRecovered() )
+                    {
+                        xaTransaction.prepare();
+
+                        long txId = nextTxId( xaTransaction );
+                        int masterId = txIdGenerator.getCurrentMasterId();
+                        xaTransaction.setCommitTxId( txId );
+                        commitSequence = ++lastWrittenCommit;
+                        highestWrittenTxId = txId;
+                        log.commitOnePhase( xaTransaction.getIdentifier(),
+                                xaTransaction.getCommitTxId(), masterId );
+                    }
                 }
+                txStatus.markAsPrepared();
             }
-            txStatus.markAsPrepared();
-        }
-        if ( !txStatus.prepared() || txStatus.rollback() )
-        {
-            throw new XAException( "Transaction not prepared or "
-                + "(marked as) rolledbacked" );
-        }
-        if ( !xaTransaction.isReadOnly() )
-        {
-            if ( !xaTransaction.isRecovered() )
+            if ( !txStatus.prepared() || txStatus.rollback() )
             {
-                if ( !onePhase )
-                {
-                    long txId = txIdGenerator.generate( dataSource,
-                            xaTransaction.getIdentifier() );
-                    int masterId = txIdGenerator.getCurrentMasterId();
-                    xaTransaction.setCommitTxId( txId );
-                    log.commitTwoPhase( xaTransaction.getIdentifier(),
-                            xaTransaction.getCommitTxId(), masterId );
-                }
+                throw new XAException( "Transaction not prepared or "
+                    + "(marked as) rolledbacked" );
             }
-            txStatus.markCommitStarted();
-            if ( xaTransaction.isRecovered() && xaTransaction.getCommitTxId() == -1 )
+            if ( !xaTransaction.isReadOnly() )
             {
-                boolean previousRecoveredValue = dataSource.setRecovered( true );
-                try
+                if ( !xaTransaction.isRecovered() )
                 {
-                    xaTransaction.setCommitTxId( dataSource.getLastCommittedTxId() + 1 );
+                    if ( !onePhase )
+                    {
+                        long txId = nextTxId( xaTransaction );
+                        int masterId = txIdGenerator.getCurrentMasterId();
+                        xaTransaction.setCommitTxId( txId );
+                        commitSequence = ++lastWrittenCommit;
+                        highestWrittenTxId = txId;
+                        log.commitTwoPhase( xaTransaction.getIdentifier(),
+                                xaTransaction.getCommitTxId(), masterId );
+                    }
                 }
-                finally
+                awaitTurnToApply( commitSequence );
+                txStatus.markCommitStarted();
+                if ( xaTransaction.isRecovered() && xaTransaction.getCommitTxId() == -1 )
                 {
-                    dataSource.setRecovered( previousRecoveredValue );
+                    boolean previousRecoveredValue = dataSource.setRecovered( true );
+                    try
+                    {
+                        xaTransaction.setCommitTxId( dataSource.getLastCommittedTxId() + 1 );
+                    }
+                    finally
+                    {
+                        dataSource.setRecovered( previousRecoveredValue );
+                    }
                 }
+                xaTransaction.commit();
+            }
+        }
+        finally
+        {
+            if ( commitSequence != -1 )
+            {
+                awaitTurnToApply( commitSequence );
+                lastAppliedCommit = commitSequence;
+                notifyAll();
             }
-            xaTransaction.commit();
         }
         if ( !xaTransaction.isRecovered() )
         {
@@ -473,6 +496,45 @@ public class XaResourceManager
         return xaTransaction;
     }
 
+    private long nextTxId( XaTransaction xaTransaction )
+    {
+        long txId = txIdGenerator.generate( dataSource, xaTransaction.getIdentifier() );
+        // Commits still waiting for their group commit haven't been applied
+        // and so aren't included in the last committed tx id of the data source.
+        // Other generators (e.g. the master's in HA) own the tx id, XaContainer
+        // won't group commit with them.
+        if ( txIdGenerator == TxIdGenerator.DEFAULT &&
+                lastWrittenCommit > lastAppliedCommit && txId <= highestWrittenTxId )
+        {
+            txId = highestWrittenTxId + 1;
+        }
+        return txId;
+    }
+
+    private void awaitTurnToApply( long commitSequence )
+    {
+        if ( commitSequence == -1 )
+        {
+            return;
+        }
+        boolean interrupted = false;
+        while ( lastAppliedCommit != commitSequence - 1 )
+        {
+            try
+            {
+                wait();
+            }
+            catch ( InterruptedException e )
+            {
+                interrupted = true;
+            }
+        }
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     synchronized XaTransaction rollback( Xid xid ) throws XAException
     {
         XidStatus status = xidMap.get( xid );
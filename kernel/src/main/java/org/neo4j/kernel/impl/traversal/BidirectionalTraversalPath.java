@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.kernel.Traversal;
+
+/**
+ * A path found by a bidirectional traversal, joined from a branch from the
+ * start node and a branch from the end node which end at the same node.
+ */
+class BidirectionalTraversalPath implements Path
+{
+    private final LinkedList<Node> nodes = new LinkedList<Node>();
+    private final LinkedList<Relationship> relationships = new LinkedList<Relationship>();
+
+    BidirectionalTraversalPath( TraversalBranch fromStart, TraversalBranch fromEnd )
+    {
+        for ( TraversalBranch stepper = fromStart; stepper != null; stepper = stepper.parent() )
+        {
+            nodes.addFirst( stepper.node() );
+            if ( stepper.relationship() != null )
+            {
+                relationships.addFirst( stepper.relationship() );
+            }
+        }
+        for ( TraversalBranch stepper = fromEnd; stepper.parent() != null; stepper = stepper.parent() )
+        {
+            nodes.addLast( stepper.parent().node() );
+            relationships.addLast( stepper.relationship() );
+        }
+    }
+
+    public Node startNode()
+    {
+        return nodes.getFirst();
+    }
+
+    public Node endNode()
+    {
+        return nodes.getLast();
+    }
+
+    public Relationship lastRelationship()
+    {
+        return relationships.isEmpty() ? null : relationships.getLast();
+    }
+
+    public Iterable<Node> nodes()
+    {
+        return nodes;
+    }
+
+    public Iterable<Relationship> relationships()
+    {
+        return relationships;
+    }
+
+    public Iterator<PropertyContainer> iterator()
+    {
+        return new Iterator<PropertyContainer>()
+        {
+            Iterator<? extends PropertyContainer> current = nodes.iterator();
+            Iterator<? extends PropertyContainer> next = relationships.iterator();
+
+            public boolean hasNext()
+            {
+                return current.hasNext();
+            }
+
+            public PropertyContainer next()
+            {
+                try
+                {
+                    return current.next();
+                }
+                finally
+                {
+                    Iterator<? extends PropertyContainer> temp = current;
+                    current = next;
+                    next = temp;
+                }
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public int length()
+    {
+        return relationships.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return Traversal.defaultPathToString( this );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return relationships.isEmpty() ? startNode().hashCode() : relationships.hashCode();
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if ( this == obj )
+        {
+            return true;
+        }
+        if ( !(obj instanceof Path) )
+        {
+            return false;
+        }
+        Path other = (Path) obj;
+        if ( !startNode().equals( other.startNode() ) )
+        {
+            return false;
+        }
+        Iterator<Relationship> those = other.relationships().iterator();
+        for ( Relationship relationship : relationships )
+        {
+            if ( !those.hasNext() || !relationship.equals( those.next() ) )
+            {
+                return false;
+            }
+        }
+        return !those.hasNext();
+    }
+}
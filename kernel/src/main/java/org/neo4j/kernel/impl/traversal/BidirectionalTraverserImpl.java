@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.Uniqueness;
+import org.neo4j.kernel.impl.util.PrimitiveLongSet;
+
+class BidirectionalTraverserImpl extends TraverserImpl
+{
+    private final TraversalDescriptionImpl description;
+    private final Node endNode;
+
+    BidirectionalTraverserImpl( TraversalDescriptionImpl description, Node startNode,
+            Node endNode )
+    {
+        super( description, startNode );
+        this.description = description;
+        this.endNode = endNode;
+    }
+
+    @Override
+    public Iterator<Path> iterator()
+    {
+        return new BidirectionalIterator( new TraverserIterator(),
+                new TraverserImpl( description.reversed(), endNode ).new TraverserIterator() );
+    }
+
+    /*
+     * One of the two sides of the traversal, remembering the branches it
+     * has selected by the id of the node they end at.
+     */
+    private static class Side
+    {
+        private final TraverserIterator branches;
+        private final Map<Long, List<TraversalBranch>> visited =
+                new HashMap<Long, List<TraversalBranch>>();
+        private boolean exhausted;
+
+        Side( TraverserIterator branches )
+        {
+            this.branches = branches;
+        }
+
+        List<TraversalBranch> visit( TraversalBranch branch )
+        {
+            Long nodeId = branch.node().getId();
+            List<TraversalBranch> branchesHere = visited.get( nodeId );
+            if ( branchesHere == null )
+            {
+                branchesHere = new ArrayList<TraversalBranch>( 1 );
+                visited.put( nodeId, branchesHere );
+            }
+            branchesHere.add( branch );
+            return branchesHere;
+        }
+
+        List<TraversalBranch> visitedAt( TraversalBranch branch )
+        {
+            return visited.get( branch.node().getId() );
+        }
+    }
+
+    private class BidirectionalIterator extends PrefetchingIterator<Path>
+    {
+        private final Side startSide;
+        private final Side endSide;
+        private Side current;
+        private final LinkedList<Path> joined = new LinkedList<Path>();
+        private final Set<Path> returned = new HashSet<Path>();
+
+        BidirectionalIterator( TraverserIterator startBranches, TraverserIterator endBranches )
+        {
+            this.startSide = new Side( startBranches );
+            this.endSide = new Side( endBranches );
+            this.current = startSide;
+        }
+
+        @Override
+        protected Path fetchNextOrNull()
+        {
+            while ( joined.isEmpty() )
+            {
+                if ( startSide.exhausted && endSide.exhausted )
+                {
+                    return null;
+                }
+                Side other = current == startSide ? endSide : startSide;
+                TraversalBranch branch = current.branches.nextBranch();
+                if ( branch == null )
+                {
+                    current.exhausted = true;
+                }
+                else
+                {
+                    current.visit( branch );
+                    List<TraversalBranch> collisions = other.visitedAt( branch );
+                    if ( collisions != null )
+                    {
+                        for ( TraversalBranch otherBranch : collisions )
+                        {
+                            join( current == startSide ? branch : otherBranch,
+                                    current == startSide ? otherBranch : branch );
+                        }
+                    }
+                }
+                if ( !other.exhausted )
+                {
+                    current = other;
+                }
+            }
+            return joined.removeFirst();
+        }
+
+        private void join( TraversalBranch fromStart, TraversalBranch fromEnd )
+        {
+            Path path = new BidirectionalTraversalPath( fromStart, fromEnd );
+            if ( isUnique( path ) && description.evaluator.evaluate( path ).includes()
+                 && returned.add( path ) )
+            {
+                joined.add( path );
+            }
+        }
+    }
+
+    /*
+     * Each side only knows its own half of a joined path, so the uniqueness
+     * of the whole path is checked here.
+     */
+    private boolean isUnique( Path path )
+    {
+        if ( !(description.uniqueness instanceof Uniqueness) )
+        {
+            return true;
+        }
+        switch ( (Uniqueness) description.uniqueness )
+        {
+        case NODE_GLOBAL:
+        case NODE_PATH:
+        case NODE_RECENT:
+            return nodesAreUnique( path );
+        case RELATIONSHIP_GLOBAL:
+        case RELATIONSHIP_PATH:
+        case RELATIONSHIP_RECENT:
+            return relationshipsAreUnique( path );
+        default:
+            return true;
+        }
+    }
+
+    private static boolean nodesAreUnique( Path path )
+    {
+        PrimitiveLongSet seen = new PrimitiveLongSet( path.length() + 1 );
+        for ( Node node : path.nodes() )
+        {
+            if ( !seen.add( node.getId() ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean relationshipsAreUnique( Path path )
+    {
+        PrimitiveLongSet seen = new PrimitiveLongSet( path.length() );
+        for ( Relationship relationship : path.relationships() )
+        {
+            if ( !seen.add( relationship.getId() ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
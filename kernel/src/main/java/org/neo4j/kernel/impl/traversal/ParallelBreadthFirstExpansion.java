@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.impl.traversal.TraverserImpl.TraverserIterator;
+
+/**
+ * Runs a breadth first traversal one depth at a time, expanding the branches
+ * of a depth on a pool of worker threads. The branches a worker gets to are
+ * evaluated and checked for uniqueness on that worker, and included
+ * positions are handed over to the iterating thread through a bounded
+ * queue. The next depth is started when all branches of the current depth
+ * have been expanded.
+ * <p>
+ * The expansion is driven by a separate thread which only holds a weak
+ * reference to the iterator handed out, so that a traversal which isn't
+ * iterated to the end stops once its iterator has been garbage collected.
+ */
+class ParallelBreadthFirstExpansion implements Runnable
+{
+    private static final Object END = new Object();
+    private static final int RESULT_BUFFER_SIZE = 1000;
+    // More chunks than threads evens out branches with very different degrees
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long ABANDON_CHECK_MILLIS = 100;
+    private static final AtomicInteger TRAVERSAL_NUMBER = new AtomicInteger();
+
+    private final TraverserIterator traverser;
+    private final int threads;
+    private final BlockingQueue<Object> results = new ArrayBlockingQueue<Object>( RESULT_BUFFER_SIZE );
+    private volatile Throwable failure;
+    private WeakReference<Iterator<Path>> consumer;
+
+    ParallelBreadthFirstExpansion( TraverserIterator traverser, int threads )
+    {
+        this.traverser = traverser;
+        this.threads = threads;
+    }
+
+    Iterator<Path> start()
+    {
+        Iterator<Path> iterator = new ResultIterator();
+        consumer = new WeakReference<Iterator<Path>>( iterator );
+        Thread driver = new Thread( this, "Parallel traversal " + TRAVERSAL_NUMBER.incrementAndGet()
+                + " from " + traverser.startNode );
+        driver.setDaemon( true );
+        driver.start();
+        return iterator;
+    }
+
+    public void run()
+    {
+        final String name = Thread.currentThread().getName();
+        ExecutorService workers = Executors.newFixedThreadPool( threads, new ThreadFactory()
+        {
+            private final AtomicInteger number = new AtomicInteger();
+
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, name + " worker " + number.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        try
+        {
+            TraversalBranch start = new StartNodeTraversalBranch( traverser, traverser.startNode,
+                    traverser.description.expander );
+            List<TraversalBranch> depth = new ArrayList<TraversalBranch>();
+            // The start branch returns itself the first time, if unique
+            if ( start.next() != null )
+            {
+                publishIfIncluded( start );
+                depth.add( start );
+            }
+            while ( !depth.isEmpty() )
+            {
+                depth = expand( workers, depth );
+            }
+        }
+        catch ( Abandoned e )
+        {
+            // Nobody is interested in the rest of the result
+        }
+        catch ( Throwable e )
+        {
+            failure = e;
+        }
+        finally
+        {
+            workers.shutdownNow();
+            try
+            {
+                publish( END );
+            }
+            catch ( Exception e )
+            {
+                // The iterator is gone, or we got interrupted. Either way
+                // nobody will be waiting for the end
+            }
+        }
+    }
+
+    private List<TraversalBranch> expand( ExecutorService workers, List<TraversalBranch> depth )
+            throws Throwable
+    {
+        int chunkSize = Math.max( 1, depth.size() / (threads * CHUNKS_PER_THREAD) );
+        List<Future<List<TraversalBranch>>> chunks = new ArrayList<Future<List<TraversalBranch>>>();
+        for ( int i = 0; i < depth.size(); i += chunkSize )
+        {
+            chunks.add( workers.submit( new Expansion( depth.subList( i,
+                    Math.min( depth.size(), i + chunkSize ) ) ) ) );
+        }
+        List<TraversalBranch> next = new ArrayList<TraversalBranch>();
+        try
+        {
+            for ( Future<List<TraversalBranch>> chunk : chunks )
+            {
+                next.addAll( chunk.get() );
+            }
+        }
+        catch ( ExecutionException e )
+        {
+            throw e.getCause();
+        }
+        return next;
+    }
+
+    private class Expansion implements Callable<List<TraversalBranch>>
+    {
+        private final List<TraversalBranch> branches;
+
+        Expansion( List<TraversalBranch> branches )
+        {
+            this.branches = branches;
+        }
+
+        public List<TraversalBranch> call() throws Exception
+        {
+            List<TraversalBranch> next = new ArrayList<TraversalBranch>();
+            for ( TraversalBranch branch : branches )
+            {
+                for ( TraversalBranch child; (child = branch.next()) != null; )
+                {
+                    publishIfIncluded( child );
+                    if ( child.evaluation().continues() )
+                    {
+                        next.add( child );
+                    }
+                }
+            }
+            return next;
+        }
+    }
+
+    private void publishIfIncluded( TraversalBranch branch ) throws InterruptedException
+    {
+        if ( branch.evaluation().includes() )
+        {
+            publish( branch.position() );
+        }
+    }
+
+    private void publish( Object result ) throws InterruptedException
+    {
+        while ( !results.offer( result, ABANDON_CHECK_MILLIS, TimeUnit.MILLISECONDS ) )
+        {
+            if ( consumer.get() == null )
+            {
+                throw new Abandoned();
+            }
+        }
+    }
+
+    private static class Abandoned extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private class ResultIterator extends PrefetchingIterator<Path>
+    {
+        private boolean ended;
+
+        @Override
+        protected Path fetchNextOrNull()
+        {
+            if ( ended )
+            {
+                return null;
+            }
+            Object result;
+            try
+            {
+                result = results.take();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while waiting for traversal result", e );
+            }
+            if ( result != END )
+            {
+                return (Path) result;
+            }
+            ended = true;
+            Throwable cause = failure;
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            if ( cause != null )
+            {
+                throw new RuntimeException( "Parallel traversal failed", cause );
+            }
+            return null;
+        }
+    }
+}
@@ -43,7 +43,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
     public TraversalDescriptionImpl()
     {
         this( StandardExpander.DEFAULT, Uniqueness.NODE_GLOBAL, null,
-                Evaluators.all(), Traversal.preorderDepthFirst() );
+                Evaluators.all(), Traversal.preorderDepthFirst(), 1 );
     }
 
     final Expander expander;
@@ -51,16 +51,18 @@ public final class TraversalDescriptionImpl implements TraversalDescription
     final Object uniquenessParameter;
     final Evaluator evaluator;
     final BranchOrderingPolicy branchSelector;
+    final int parallelism;
 
     private TraversalDescriptionImpl( Expander expander,
             UniquenessFactory uniqueness, Object uniquenessParameter,
-            Evaluator evaluator, BranchOrderingPolicy branchSelector )
+            Evaluator evaluator, BranchOrderingPolicy branchSelector, int parallelism )
     {
         this.expander = expander;
         this.uniqueness = uniqueness;
         this.uniquenessParameter = uniquenessParameter;
         this.evaluator = evaluator;
         this.branchSelector = branchSelector;
+        this.parallelism = parallelism;
     }
 
     /* (non-Javadoc)
@@ -68,16 +70,42 @@ public final class TraversalDescriptionImpl implements TraversalDescription
      */
     public Traverser traverse( Node startNode )
     {
+        if ( parallelism > 1 && branchSelector != Traversal.preorderBreadthFirst() )
+        {
+            throw new IllegalStateException( "Only breadth first traversals can be parallel" );
+        }
         return new TraverserImpl( this, startNode );
     }
 
+    /* (non-Javadoc)
+     * @see org.neo4j.graphdb.traversal.TraversalDescription#traverse(org.neo4j.graphdb.Node, org.neo4j.graphdb.Node)
+     */
+    public Traverser traverse( Node startNode, Node endNode )
+    {
+        if ( parallelism > 1 )
+        {
+            throw new IllegalStateException( "Bidirectional traversals can't be parallel" );
+        }
+        return new BidirectionalTraverserImpl( this, startNode, endNode );
+    }
+
+    /*
+     * The same description, but expanding relationships in the opposite
+     * direction, for the end node side of a bidirectional traversal.
+     */
+    TraversalDescriptionImpl reversed()
+    {
+        return new TraversalDescriptionImpl( expander.reversed(), uniqueness,
+                uniquenessParameter, evaluator, branchSelector, parallelism );
+    }
+
     /* (non-Javadoc)
      * @see org.neo4j.graphdb.traversal.TraversalDescription#uniqueness(org.neo4j.graphdb.traversal.Uniqueness)
      */
     public TraversalDescription uniqueness( UniquenessFactory uniqueness )
     {
         return new TraversalDescriptionImpl( expander, uniqueness, null,
-                evaluator, branchSelector );
+                evaluator, branchSelector, parallelism );
     }
 
     /* (non-Javadoc)
@@ -96,7 +124,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
         }
 
         return new TraversalDescriptionImpl( expander, uniqueness, parameter,
-                evaluator, branchSelector );
+                evaluator, branchSelector, parallelism );
     }
     
     public TraversalDescription prune( PruneEvaluator pruning )
@@ -131,7 +159,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
         }
         nullCheck( evaluator, Evaluator.class, "RETURN_ALL" );
         return new TraversalDescriptionImpl( expander, uniqueness, uniquenessParameter,
-                addBlaEvaluator( evaluator ), branchSelector );
+                addBlaEvaluator( evaluator ), branchSelector, parallelism );
     }
     
     private Evaluator addBlaEvaluator( Evaluator evaluator )
@@ -176,7 +204,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
             return this;
         }
         return new TraversalDescriptionImpl( expander, uniqueness, uniquenessParameter,
-                evaluator, selector );
+                evaluator, selector, parallelism );
     }
 
     public TraversalDescription depthFirst()
@@ -189,6 +217,20 @@ public final class TraversalDescriptionImpl implements TraversalDescription
         return order( Traversal.preorderBreadthFirst() );
     }
 
+    public TraversalDescription parallel( int threads )
+    {
+        if ( threads < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal number of threads " + threads );
+        }
+        if ( this.parallelism == threads )
+        {
+            return this;
+        }
+        return new TraversalDescriptionImpl( expander, uniqueness, uniquenessParameter,
+                evaluator, branchSelector, threads );
+    }
+
     /* (non-Javadoc)
      * @see org.neo4j.graphdb.traversal.TraversalDescription#relationships(org.neo4j.graphdb.RelationshipType)
      */
@@ -216,7 +258,7 @@ public final class TraversalDescriptionImpl implements TraversalDescription
             return this;
         }
         return new TraversalDescriptionImpl( Traversal.expander( expander ), uniqueness,
-                uniquenessParameter, evaluator, branchSelector );
+                uniquenessParameter, evaluator, branchSelector, parallelism );
     }
     
     private static class WrappedPruneEvaluator implements Evaluator
@@ -31,6 +31,7 @@ import org.neo4j.graphdb.traversal.UniquenessFilter;
 import org.neo4j.helpers.collection.CombiningIterator;
 import org.neo4j.helpers.collection.IterableWrapper;
 import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.Uniqueness;
 
 class TraverserImpl implements Traverser
 {
@@ -45,9 +46,25 @@ class TraverserImpl implements Traverser
 
     public Iterator<Path> iterator()
     {
+        if ( description.parallelism > 1 )
+        {
+            return new ParallelBreadthFirstExpansion( new TraverserIterator( concurrentUniqueness(),
+                    false ), description.parallelism ).start();
+        }
         return new TraverserIterator();
     }
 
+    private UniquenessFilter concurrentUniqueness()
+    {
+        if ( description.uniqueness instanceof Uniqueness )
+        {
+            return ((Uniqueness) description.uniqueness).createConcurrent(
+                    description.uniquenessParameter );
+        }
+        return new SynchronizedUniquenessFilter( description.uniqueness.create(
+                description.uniquenessParameter ) );
+    }
+
     public Iterable<Node> nodes()
     {
         return new IterableWrapper<Node, Path>( this )
@@ -99,13 +116,23 @@ class TraverserImpl implements Traverser
         final Node startNode;
 
         TraverserIterator()
+        {
+            this( TraverserImpl.this.description.uniqueness.create(
+                    TraverserImpl.this.description.uniquenessParameter ), true );
+        }
+
+        /*
+         * A traverser iterator which doesn't select branches itself is only
+         * used as the context of the branches of a parallel traversal.
+         */
+        TraverserIterator( UniquenessFilter uniqueness, boolean selectBranches )
         {
             this.description = TraverserImpl.this.description;
-            this.uniquness = description.uniqueness.create( description.uniquenessParameter );
+            this.uniquness = uniqueness;
             this.startNode = TraverserImpl.this.startNode;
-            this.sourceSelector = description.branchSelector.create(
+            this.sourceSelector = selectBranches ? description.branchSelector.create(
                     new StartNodeTraversalBranch( this, startNode,
-                            description.expander ) );
+                            description.expander ) ) : null;
         }
 
         boolean okToProceedFirst( TraversalBranch source )
@@ -118,13 +145,21 @@ class TraverserImpl implements Traverser
             return this.uniquness.check( source );
         }
 
+        /*
+         * The next branch, whether or not its position is included.
+         */
+        TraversalBranch nextBranch()
+        {
+            return sourceSelector.next();
+        }
+
         @Override
         protected Path fetchNextOrNull()
         {
             TraversalBranch result = null;
             while ( true )
             {
-                result = sourceSelector.next();
+                result = nextBranch();
                 if ( result == null )
                 {
                     return null;
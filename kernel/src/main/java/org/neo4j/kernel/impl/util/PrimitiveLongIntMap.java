@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * A map from {@code long} keys to non-negative {@code int} values which
+ * doesn't box them, an open addressing hash table with linear probing.
+ * A value of {@code -1} marks an empty slot and is returned for keys that
+ * aren't in the map, so values must be {@code >= 0}. Not thread safe.
+ */
+public class PrimitiveLongIntMap
+{
+    public static final int NO_VALUE = -1;
+
+    private final int initialCapacity;
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public PrimitiveLongIntMap()
+    {
+        this( 16 );
+    }
+
+    /**
+     * @param expectedSize the number of entries the map can hold without
+     * resizing.
+     */
+    public PrimitiveLongIntMap( int expectedSize )
+    {
+        initialCapacity = PrimitiveLongSet.tableSizeFor( expectedSize );
+        clear();
+    }
+
+    /**
+     * Removes all entries and shrinks the map back to its initial capacity.
+     */
+    public void clear()
+    {
+        keys = new long[initialCapacity];
+        values = new int[initialCapacity];
+        Arrays.fill( values, NO_VALUE );
+        size = 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the value of {@code key}, or {@link #NO_VALUE} if it isn't
+     * in the map.
+     */
+    public int get( long key )
+    {
+        int mask = keys.length - 1;
+        for ( int slot = PrimitiveLongSet.slot( key, mask ); ; slot = (slot + 1) & mask )
+        {
+            if ( values[slot] == NO_VALUE )
+            {
+                return NO_VALUE;
+            }
+            if ( keys[slot] == key )
+            {
+                return values[slot];
+            }
+        }
+    }
+
+    /**
+     * @return the previous value of {@code key}, or {@link #NO_VALUE}.
+     */
+    public int put( long key, int value )
+    {
+        if ( value < 0 )
+        {
+            throw new IllegalArgumentException( "Negative value " + value + " for " + key );
+        }
+        if ( (size + 1) * 4 > keys.length * 3 )
+        {
+            grow();
+        }
+        int mask = keys.length - 1;
+        for ( int slot = PrimitiveLongSet.slot( key, mask ); ; slot = (slot + 1) & mask )
+        {
+            if ( values[slot] == NO_VALUE )
+            {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                return NO_VALUE;
+            }
+            if ( keys[slot] == key )
+            {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * @return the removed value of {@code key}, or {@link #NO_VALUE}.
+     */
+    public int remove( long key )
+    {
+        int mask = keys.length - 1;
+        int slot = PrimitiveLongSet.slot( key, mask );
+        while ( true )
+        {
+            if ( values[slot] == NO_VALUE )
+            {
+                return NO_VALUE;
+            }
+            if ( keys[slot] == key )
+            {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int removed = values[slot];
+        size--;
+        // Shift back following entries that would otherwise be unreachable
+        int gap = slot;
+        for ( int next = (gap + 1) & mask; values[next] != NO_VALUE; next = (next + 1) & mask )
+        {
+            int home = PrimitiveLongSet.slot( keys[next], mask );
+            if ( ((next - home) & mask) >= ((next - gap) & mask) )
+            {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = NO_VALUE;
+        return removed;
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill( values, NO_VALUE );
+        size = 0;
+        for ( int i = 0; i < oldKeys.length; i++ )
+        {
+            if ( oldValues[i] != NO_VALUE )
+            {
+                put( oldKeys[i], oldValues[i] );
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PrimitiveLongIntMap[size=" + size + "]";
+    }
+}
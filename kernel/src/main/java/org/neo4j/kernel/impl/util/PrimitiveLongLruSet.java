@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of at most {@code maxSize} {@code long} values which evicts the
+ * least recently used value when full. Adding a value which is already in
+ * the set counts as using it. Entries live in arrays linked into a
+ * recency list, so once the set has grown to its max size neither adds nor
+ * evictions create objects. Not thread safe.
+ */
+public class PrimitiveLongLruSet
+{
+    private static final int NONE = -1;
+
+    private final int maxSize;
+    private long[] values;
+    private int[] newer;
+    private int[] older;
+    private final PrimitiveLongIntMap index = new PrimitiveLongIntMap();
+    private int size;
+    private int newest = NONE;
+    private int oldest = NONE;
+
+    public PrimitiveLongLruSet( int maxSize )
+    {
+        if ( maxSize < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal max size " + maxSize );
+        }
+        this.maxSize = maxSize;
+        // Grow on demand, many traversals visit far fewer than max size nodes
+        int capacity = Math.min( maxSize, 16 );
+        values = new long[capacity];
+        newer = new int[capacity];
+        older = new int[capacity];
+    }
+
+    /**
+     * Adds {@code value} as the most recently used value, evicting the
+     * least recently used one if the set is full.
+     *
+     * @return {@code true} if {@code value} wasn't already in this set.
+     */
+    public boolean add( long value )
+    {
+        int entry = index.get( value );
+        if ( entry != PrimitiveLongIntMap.NO_VALUE )
+        {
+            unlink( entry );
+            linkAsNewest( entry );
+            return false;
+        }
+        if ( size < maxSize )
+        {
+            if ( size == values.length )
+            {
+                grow();
+            }
+            entry = size++;
+        }
+        else
+        {
+            entry = oldest;
+            unlink( entry );
+            index.remove( values[entry] );
+        }
+        values[entry] = value;
+        index.put( value, entry );
+        linkAsNewest( entry );
+        return true;
+    }
+
+    public boolean contains( long value )
+    {
+        return index.get( value ) != PrimitiveLongIntMap.NO_VALUE;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int maxSize()
+    {
+        return maxSize;
+    }
+
+    private void grow()
+    {
+        int capacity = (int) Math.min( (long) values.length * 2, maxSize );
+        values = Arrays.copyOf( values, capacity );
+        newer = Arrays.copyOf( newer, capacity );
+        older = Arrays.copyOf( older, capacity );
+    }
+
+    private void unlink( int entry )
+    {
+        if ( newer[entry] != NONE )
+        {
+            older[newer[entry]] = older[entry];
+        }
+        else
+        {
+            newest = older[entry];
+        }
+        if ( older[entry] != NONE )
+        {
+            newer[older[entry]] = newer[entry];
+        }
+        else
+        {
+            oldest = newer[entry];
+        }
+    }
+
+    private void linkAsNewest( int entry )
+    {
+        newer[entry] = NONE;
+        older[entry] = newest;
+        if ( newest != NONE )
+        {
+            newer[newest] = entry;
+        }
+        newest = entry;
+        if ( oldest == NONE )
+        {
+            oldest = entry;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PrimitiveLongLruSet[size=" + size + ", maxSize=" + maxSize + "]";
+    }
+}
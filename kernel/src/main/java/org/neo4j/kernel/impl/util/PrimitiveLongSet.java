@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of {@code long} values which doesn't box them. It's an open
+ * addressing hash table with linear probing, so an add or lookup which
+ * doesn't cause a resize creates no objects. Not thread safe.
+ */
+public class PrimitiveLongSet
+{
+    private static final int DEFAULT_CAPACITY = 16;
+    // Marks a free slot, the value itself is tracked with a flag
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int size;
+    private boolean containsFree;
+
+    public PrimitiveLongSet()
+    {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * @param expectedSize the number of values the set can hold without
+     * resizing.
+     */
+    public PrimitiveLongSet( int expectedSize )
+    {
+        keys = new long[tableSizeFor( expectedSize )];
+        Arrays.fill( keys, FREE );
+    }
+
+    /**
+     * @return {@code true} if {@code value} wasn't already in this set.
+     */
+    public boolean add( long value )
+    {
+        if ( value == FREE )
+        {
+            boolean added = !containsFree;
+            containsFree = true;
+            return added;
+        }
+        int mask = keys.length - 1;
+        for ( int slot = slot( value, mask ); ; slot = (slot + 1) & mask )
+        {
+            long key = keys[slot];
+            if ( key == value )
+            {
+                return false;
+            }
+            if ( key == FREE )
+            {
+                keys[slot] = value;
+                if ( ++size * 4 > keys.length * 3 )
+                {
+                    rehash( keys.length * 2 );
+                }
+                return true;
+            }
+        }
+    }
+
+    public boolean contains( long value )
+    {
+        if ( value == FREE )
+        {
+            return containsFree;
+        }
+        int mask = keys.length - 1;
+        for ( int slot = slot( value, mask ); ; slot = (slot + 1) & mask )
+        {
+            long key = keys[slot];
+            if ( key == value )
+            {
+                return true;
+            }
+            if ( key == FREE )
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if {@code value} was in this set.
+     */
+    public boolean remove( long value )
+    {
+        if ( value == FREE )
+        {
+            boolean removed = containsFree;
+            containsFree = false;
+            return removed;
+        }
+        int mask = keys.length - 1;
+        int slot = slot( value, mask );
+        while ( keys[slot] != value )
+        {
+            if ( keys[slot] == FREE )
+            {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        size--;
+        // Shift back following values that would otherwise be unreachable
+        int gap = slot;
+        for ( int next = (gap + 1) & mask; keys[next] != FREE; next = (next + 1) & mask )
+        {
+            int home = slot( keys[next], mask );
+            if ( ((next - home) & mask) >= ((next - gap) & mask) )
+            {
+                keys[gap] = keys[next];
+                gap = next;
+            }
+        }
+        keys[gap] = FREE;
+        return true;
+    }
+
+    public int size()
+    {
+        return containsFree ? size + 1 : size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all values, keeping the current capacity.
+     */
+    public void clear()
+    {
+        Arrays.fill( keys, FREE );
+        size = 0;
+        containsFree = false;
+    }
+
+    /**
+     * @return the values of this set, in no particular order.
+     */
+    public long[] toArray()
+    {
+        long[] result = new long[size()];
+        int i = 0;
+        for ( long key : keys )
+        {
+            if ( key != FREE )
+            {
+                result[i++] = key;
+            }
+        }
+        if ( containsFree )
+        {
+            result[i] = FREE;
+        }
+        return result;
+    }
+
+    private void rehash( int capacity )
+    {
+        long[] oldKeys = keys;
+        keys = new long[capacity];
+        Arrays.fill( keys, FREE );
+        int mask = capacity - 1;
+        for ( long key : oldKeys )
+        {
+            if ( key != FREE )
+            {
+                int slot = slot( key, mask );
+                while ( keys[slot] != FREE )
+                {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    /*
+     * Smallest power of two table which holds expectedSize values below
+     * the max load factor of 3/4.
+     */
+    static int tableSizeFor( int expectedSize )
+    {
+        int capacity = DEFAULT_CAPACITY;
+        while ( capacity * 3 / 4 <= expectedSize && capacity < (1 << 30) )
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /*
+     * Ids are often sequential, spread them over the table so that runs of
+     * them don't end up in one long probe sequence.
+     */
+    static int slot( long key, int mask )
+    {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) ((key ^ (key >>> 29)) >>> 32) & mask;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PrimitiveLongSet[size=" + size() + "]";
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.neo4j.kernel.impl.util;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.NoSuchElementException;
 
@@ -258,6 +259,108 @@ public class RelIdArray
     {
         return new RelIdArray( type );
     }
+
+    /**
+     * @return the number of bytes {@link #writeTo(ByteBuffer)} will write.
+     */
+    public int sizeInBytes()
+    {
+        IdBlock loopBlock = getLastLoopBlock();
+        return 1 + sizeInBytes( lastOutBlock ) + sizeInBytes( lastInBlock ) +
+            (loopBlock != null ? sizeInBytes( loopBlock ) : 0);
+    }
+
+    /**
+     * Writes the ids of this array, but not its type, to {@code buffer} so
+     * that an equal array can be read back with
+     * {@link #readFrom(String, ByteBuffer)}.
+     */
+    public void writeTo( ByteBuffer buffer )
+    {
+        IdBlock loopBlock = getLastLoopBlock();
+        buffer.put( (byte) (loopBlock != null ? 1 : 0) );
+        writeBlocks( lastOutBlock, buffer );
+        writeBlocks( lastInBlock, buffer );
+        if ( loopBlock != null )
+        {
+            writeBlocks( loopBlock, buffer );
+        }
+    }
+
+    /**
+     * Reads an array written by {@link #writeTo(ByteBuffer)}.
+     */
+    public static RelIdArray readFrom( String type, ByteBuffer buffer )
+    {
+        boolean hasLoops = buffer.get() != 0;
+        IdBlock out = readBlocks( buffer );
+        IdBlock in = readBlocks( buffer );
+        if ( hasLoops )
+        {
+            return new RelIdArrayWithLoops( type, out, in, readBlocks( buffer ) );
+        }
+        return new RelIdArray( type, out, in );
+    }
+
+    private static int sizeInBytes( IdBlock lastBlock )
+    {
+        int size = 4;
+        for ( IdBlock block = lastBlock; block != null; block = block.getPrev() )
+        {
+            size += 12 + block.length() * 4;
+        }
+        return size;
+    }
+
+    private static void writeBlocks( IdBlock lastBlock, ByteBuffer buffer )
+    {
+        int count = 0;
+        for ( IdBlock block = lastBlock; block != null; block = block.getPrev() )
+        {
+            count++;
+        }
+        buffer.putInt( count );
+        for ( IdBlock block = lastBlock; block != null; block = block.getPrev() )
+        {
+            int length = block.length();
+            buffer.putLong( block.getHighBits() );
+            buffer.putInt( length );
+            for ( int i = 1; i <= length; i++ )
+            {
+                buffer.putInt( block.ids[i] );
+            }
+        }
+    }
+
+    private static IdBlock readBlocks( ByteBuffer buffer )
+    {
+        int count = buffer.getInt();
+        IdBlock lastBlock = null;
+        IdBlock previous = null;
+        for ( int b = 0; b < count; b++ )
+        {
+            long highBits = buffer.getLong();
+            int length = buffer.getInt();
+            IdBlock block = count == 1 && highBits == 0 ? new LowIdBlock() :
+                new HighIdBlock( highBits );
+            block.ids = new int[length+1];
+            block.ids[0] = length;
+            for ( int i = 1; i <= length; i++ )
+            {
+                block.ids[i] = buffer.getInt();
+            }
+            if ( previous == null )
+            {
+                lastBlock = block;
+            }
+            else
+            {
+                previous.setPrev( block );
+            }
+            previous = block;
+        }
+        return lastBlock;
+    }
     
     public static final IdBlock EMPTY_BLOCK = new LowIdBlock();
     
@@ -124,4 +124,36 @@ public class TestDefaultSettings
         assertEquals( "true", params.get( Config.ALLOW_STORE_UPGRADE ) );
         assertEquals( "true", params.get( Config.DUMP_CONFIGURATION ) );
     }
+
+    @Test
+    public void sizesAreParsedWithUnitsAndFallBackToTheDefault()
+    {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put( "plain", "300" );
+        config.put( "kilo", "5k" );
+        config.put( "mega", "20M" );
+        config.put( "giga", "3G" );
+        config.put( "invalid", "10 megabytes" );
+
+        assertEquals( 300, Config.parseSize( config, "plain", 1 ) );
+        assertEquals( 5 * 1024, Config.parseSize( config, "kilo", 1 ) );
+        assertEquals( 20 * 1024 * 1024, Config.parseSize( config, "mega", 1 ) );
+        assertEquals( 3L * 1024 * 1024 * 1024, Config.parseSize( config, "giga", 1 ) );
+        assertEquals( 1, Config.parseSize( config, "invalid", 1 ) );
+        assertEquals( 1, Config.parseSize( config, "missing", 1 ) );
+        assertEquals( 1, Config.parseSize( null, "plain", 1 ) );
+    }
+
+    @Test
+    public void numbersFallBackToTheDefault()
+    {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put( "plain", " 42 " );
+        config.put( "invalid", "four" );
+
+        assertEquals( 42, Config.parseLong( config, "plain", 1 ) );
+        assertEquals( 1, Config.parseLong( config, "invalid", 1 ) );
+        assertEquals( 1, Config.parseLong( config, "missing", 1 ) );
+        assertEquals( 1, Config.parseLong( null, "plain", 1 ) );
+    }
 }
@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TestClockCache
+{
+    private static class ClockCacheTest<K,E> extends ClockCache<K,E>
+    {
+        final List<E> cleaned = new ArrayList<E>();
+        int adaptCalls = 0;
+
+        ClockCacheTest( int maxSize )
+        {
+            super( "TestCache", maxSize, null, 1 );
+        }
+
+        @Override
+        public void elementCleaned( E element )
+        {
+            cleaned.add( element );
+        }
+
+        @Override
+        void adaptCache()
+        {
+            adaptCalls++;
+        }
+    }
+
+    @Test
+    public void testCreate()
+    {
+        try
+        {
+            new ClockCache<Object,Object>( "TestCache", 0, null );
+            fail( "Illegal maxSize should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        ClockCache<Object,Object> cache = new ClockCache<Object,Object>(
+            "TestCache", 70, null );
+        try
+        {
+            cache.put( null, new Object() );
+            fail( "Null key should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        try
+        {
+            cache.put( new Object(), null );
+            fail( "Null element should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        try
+        {
+            cache.get( null );
+            fail( "Null key should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        Object key = new Object();
+        cache.put( key, new Object() );
+        assertEquals( 1, cache.size() );
+        assertNotNull( cache.remove( key ) );
+        assertNull( cache.remove( key ) );
+        assertEquals( 0, cache.size() );
+        cache.put( key, new Object() );
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertNull( cache.get( key ) );
+    }
+
+    @Test
+    public void testReferencedElementsGetSecondChance()
+    {
+        ClockCacheTest<Integer,String> cache = new ClockCacheTest<Integer,String>( 10 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            cache.put( i, "" + i );
+        }
+        for ( int i = 0; i < 5; i++ )
+        {
+            assertEquals( "" + i, cache.get( i ) );
+        }
+        for ( int i = 10; i < 15; i++ )
+        {
+            cache.put( i, "" + i );
+        }
+        assertEquals( 10, cache.size() );
+        for ( int i = 0; i < 5; i++ )
+        {
+            assertEquals( "" + i, cache.get( i ) );
+        }
+        for ( int i = 5; i < 10; i++ )
+        {
+            assertNull( cache.get( i ) );
+            assertTrue( cache.cleaned.contains( "" + i ) );
+        }
+        assertEquals( 5, cache.cleaned.size() );
+    }
+
+    @Test
+    public void testReplacedAndRemovedElementsAreNotEvicted()
+    {
+        ClockCacheTest<Integer,String> cache = new ClockCacheTest<Integer,String>( 5 );
+        for ( int round = 0; round < 100; round++ )
+        {
+            cache.put( 0, "a" + round );
+            cache.put( 1, "b" + round );
+            cache.remove( 1 );
+        }
+        assertEquals( 1, cache.size() );
+        assertEquals( "a99", cache.get( 0 ) );
+        assertEquals( 0, cache.cleaned.size() );
+    }
+
+    @Test
+    public void testResize()
+    {
+        ClockCacheTest<Integer,String> cache = new ClockCacheTest<Integer,String>( 10 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            cache.put( i, "" + i );
+        }
+        cache.resize( 4 );
+        assertEquals( 4, cache.maxSize() );
+        assertEquals( 4, cache.size() );
+        assertEquals( 6, cache.cleaned.size() );
+        cache.resize( 20 );
+        for ( int i = 10; i < 26; i++ )
+        {
+            cache.put( i, "" + i );
+        }
+        assertEquals( 20, cache.size() );
+    }
+
+    @Test
+    public void testAdaptiveCacheIsAdaptedBeforeEvicting()
+    {
+        ClockCacheTest<Integer,String> cache = new ClockCacheTest<Integer,String>( 5 );
+        cache.setAdaptiveStatus( true );
+        for ( int i = 0; i < 6; i++ )
+        {
+            cache.put( i, "" + i );
+        }
+        assertEquals( 1, cache.adaptCalls );
+        assertEquals( 5, cache.size() );
+    }
+
+    @Test
+    public void testConcurrentAccessKeepsSizeBounded() throws Exception
+    {
+        final ClockCache<Integer,Integer> cache =
+            new ClockCache<Integer,Integer>( "TestCache", 1000, null, 8 );
+        runConcurrently( cache, 8, 50000, 5000, 30 );
+        assertTrue( "size " + cache.size(), cache.size() <= 1000 );
+        int found = 0;
+        for ( int i = 0; i < 5000; i++ )
+        {
+            Integer value = cache.get( i );
+            if ( value != null )
+            {
+                assertEquals( i, value.intValue() );
+                found++;
+            }
+        }
+        assertEquals( cache.size(), found );
+    }
+
+    /**
+     * Prints throughput of a read mostly workload on the different cache
+     * implementations used by the cache types, for 1 to 32 threads.
+     */
+    public static void main( String[] args ) throws Exception
+    {
+        int keys = 20000;
+        int opsPerThread = 200000;
+        for ( int threads : new int[] { 1, 4, 16, 32 } )
+        {
+            List<Cache<Integer,Integer>> caches = new ArrayList<Cache<Integer,Integer>>();
+            caches.add( new WeakLruCache<Integer,Integer>( "weak" ) );
+            caches.add( new SoftLruCache<Integer,Integer>( "soft" ) );
+            caches.add( new StrongReferenceCache<Integer,Integer>( "strong" ) );
+            caches.add( new LruCache<Integer,Integer>( "old", keys, null ) );
+            caches.add( new ClockCache<Integer,Integer>( "clock", keys, null ) );
+            for ( Cache<Integer,Integer> cache : caches )
+            {
+                for ( int i = 0; i < keys; i++ )
+                {
+                    cache.put( i, i );
+                }
+                long time = runConcurrently( cache, threads, opsPerThread, keys, 5 );
+                long ops = (long) threads * opsPerThread;
+                System.out.println( cache.getName() + " cache " + threads
+                    + " threads: " + (ops * 1000 / Math.max( time, 1 ))
+                    + " ops/s" );
+            }
+        }
+    }
+
+    private static long runConcurrently( final Cache<Integer,Integer> cache,
+        int threads, final int opsPerThread, final int keys,
+        final int writePercentage ) throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] workers = new Thread[threads];
+        for ( int i = 0; i < threads; i++ )
+        {
+            final long seed = i;
+            workers[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    Random random = new Random( seed );
+                    try
+                    {
+                        start.await();
+                        for ( int op = 0; op < opsPerThread; op++ )
+                        {
+                            Integer key = random.nextInt( keys );
+                            int dice = random.nextInt( 100 );
+                            if ( dice < writePercentage )
+                            {
+                                cache.put( key, key );
+                            }
+                            else if ( dice < writePercentage + 1 )
+                            {
+                                cache.remove( key );
+                            }
+                            else
+                            {
+                                Integer value = cache.get( key );
+                                if ( value != null && !value.equals( key ) )
+                                {
+                                    throw new AssertionError( key + "->" + value );
+                                }
+                            }
+                        }
+                    }
+                    catch ( Throwable t )
+                    {
+                        failure.compareAndSet( null, t );
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        long startTime = System.currentTimeMillis();
+        start.countDown();
+        for ( Thread worker : workers )
+        {
+            worker.join();
+        }
+        if ( failure.get() != null )
+        {
+            throw new AssertionError( failure.get() );
+        }
+        return System.currentTimeMillis() - startTime;
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestOffHeapByteCache
+{
+    private static byte[] data( long key, int length )
+    {
+        byte[] data = new byte[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            data[i] = (byte) (key + i);
+        }
+        return data;
+    }
+
+    private static void put( OffHeapByteCache cache, long key, byte[] data )
+    {
+        assertTrue( cache.put( key, data, data.length, cache.stamp( key ) ) );
+    }
+
+    @Test
+    public void testCreate()
+    {
+        try
+        {
+            new OffHeapByteCache( "TestCache", 0 );
+            fail( "Illegal maxBytes should throw exception" );
+        }
+        catch ( IllegalArgumentException e )
+        { // good
+        }
+        OffHeapByteCache cache = new OffHeapByteCache( "TestCache", 1024 );
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.getBytesUsed() );
+        assertNull( cache.get( 1 ) );
+    }
+
+    @Test
+    public void testPutGetRemove()
+    {
+        OffHeapByteCache cache = new OffHeapByteCache( "TestCache", 4096 );
+        put( cache, 1, data( 1, 10 ) );
+        put( cache, 2, data( 2, 0 ) );
+        assertEquals( 2, cache.size() );
+        assertEquals( 12 + 10 + 12, cache.getBytesUsed() );
+        assertArrayEquals( data( 1, 10 ), cache.get( 1 ) );
+        assertArrayEquals( data( 2, 0 ), cache.get( 2 ) );
+        put( cache, 1, data( 7, 20 ) );
+        assertEquals( 2, cache.size() );
+        assertEquals( 12 + 20 + 12, cache.getBytesUsed() );
+        assertArrayEquals( data( 7, 20 ), cache.remove( 1 ) );
+        assertNull( cache.get( 1 ) );
+        assertEquals( 12, cache.getBytesUsed() );
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertNull( cache.get( 2 ) );
+    }
+
+    @Test
+    public void testEvictsOldestWhenFull()
+    {
+        // 10 records of 100 bytes fit
+        OffHeapByteCache cache = new OffHeapByteCache( "TestCache", 1000 );
+        for ( long key = 0; key < 15; key++ )
+        {
+            put( cache, key, data( key, 88 ) );
+            assertTrue( cache.getBytesUsed() <= cache.getMaxBytes() );
+        }
+        for ( long key = 0; key < 5; key++ )
+        {
+            assertNull( cache.get( key ) );
+        }
+        for ( long key = 5; key < 15; key++ )
+        {
+            assertArrayEquals( data( key, 88 ), cache.get( key ) );
+        }
+        assertEquals( 5, cache.getEvictionCount() );
+        assertFalse( cache.put( 99, new byte[2000], 2000, cache.stamp( 99 ) ) );
+    }
+
+    @Test
+    public void testStaleStampIsRejected()
+    {
+        OffHeapByteCache cache = new OffHeapByteCache( "TestCache", 1024 );
+        put( cache, 1, data( 1, 10 ) );
+        long stamp = cache.stamp( 1 );
+        cache.invalidate( 1 );
+        assertNull( cache.get( 1 ) );
+        assertFalse( cache.put( 1, data( 1, 10 ), 10, stamp ) );
+        assertNull( cache.get( 1 ) );
+        assertTrue( cache.put( 1, data( 1, 10 ), 10, cache.stamp( 1 ) ) );
+    }
+
+    @Test
+    public void testRandomOperationsStayWithinBounds()
+    {
+        long maxBytes = 256 * 1024;
+        OffHeapByteCache cache = new OffHeapByteCache( "TestCache", maxBytes );
+        Map<Long,byte[]> expected = new HashMap<Long,byte[]>();
+        Random random = new Random( 42 );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long key = random.nextInt( 5000 );
+            int operation = random.nextInt( 10 );
+            if ( operation < 6 )
+            {
+                byte[] value = data( random.nextLong(), random.nextInt( 300 ) );
+                put( cache, key, value );
+                expected.put( key, value );
+            }
+            else if ( operation < 9 )
+            {
+                byte[] value = cache.get( key );
+                if ( value != null )
+                {
+                    assertArrayEquals( expected.get( key ), value );
+                }
+            }
+            else
+            {
+                cache.invalidate( key );
+                expected.remove( key );
+            }
+            assertTrue( cache.getBytesUsed() <= maxBytes );
+        }
+        assertTrue( cache.size() > 0 );
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestOffHeapNodeCache
+{
+    private static final String PATH = AbstractNeo4jTestCase.getStorePath( "offheap-cache-db" );
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+    private static final int NODES = 300;
+
+    private EmbeddedGraphDatabase db;
+    private NodeManager nodeManager;
+    private long[] ids;
+
+    @Before
+    public void createGraph()
+    {
+        AbstractNeo4jTestCase.deleteFileOrDirectory( new File( PATH ) );
+        db = new EmbeddedGraphDatabase( PATH, MapUtil.stringMap(
+            Config.CACHE_TYPE, "offheap", "max_node_cache_size", "20",
+            Config.OFF_HEAP_NODE_CACHE_SIZE, "4M" ) );
+        nodeManager = db.getConfig().getGraphDbModule().getNodeManager();
+        ids = new long[NODES];
+        Transaction tx = db.beginTx();
+        Node previous = null;
+        for ( int i = 0; i < NODES; i++ )
+        {
+            Node node = db.createNode();
+            ids[i] = node.getId();
+            node.setProperty( "int", i );
+            node.setProperty( "double", i / 2.0d );
+            node.setProperty( "name", "node" + i );
+            node.setProperty( "array", new int[] { i, i + 1 } );
+            if ( previous != null )
+            {
+                previous.createRelationshipTo( node, KNOWS );
+            }
+            previous = node;
+        }
+        tx.success();
+        tx.finish();
+    }
+
+    @After
+    public void shutdown()
+    {
+        db.shutdown();
+    }
+
+    private void verify( int i, int expectedRelationships )
+    {
+        Node node = db.getNodeById( ids[i] );
+        assertEquals( i, node.getProperty( "int" ) );
+        assertEquals( i / 2.0d, node.getProperty( "double" ) );
+        assertEquals( "node" + i, node.getProperty( "name" ) );
+        assertArrayEquals( new int[] { i, i + 1 }, (int[]) node.getProperty( "array" ) );
+        assertEquals( expectedRelationships, IteratorUtil.count( node.getRelationships() ) );
+    }
+
+    private void verifyAll()
+    {
+        for ( int i = 0; i < NODES; i++ )
+        {
+            verify( i, i == 0 || i == NODES - 1 ? 1 : 2 );
+        }
+    }
+
+    @Test
+    public void nodesMoveBetweenHeapAndOffHeap()
+    {
+        verifyAll();
+        assertTrue( nodeManager.getOffHeapNodeCacheBytesUsed() > 0 );
+        verifyAll();
+        assertTrue( nodeManager.getOffHeapNodeCacheHitRatio() > 0 );
+        assertTrue( nodeManager.getNodeCacheHitRatio() > 0 );
+        assertEquals( 4 * 1024 * 1024, nodeManager.getOffHeapNodeCacheMaxBytes() );
+    }
+
+    @Test
+    public void committedChangesAreSeenAfterEviction()
+    {
+        verifyAll();
+        Transaction tx = db.beginTx();
+        Node node = db.getNodeById( ids[5] );
+        node.setProperty( "int", -5 );
+        node.removeProperty( "name" );
+        node.createRelationshipTo( db.getNodeById( ids[200] ), KNOWS );
+        tx.success();
+        tx.finish();
+        // cycle everything else through the heap tier
+        for ( int i = 10; i < NODES; i++ )
+        {
+            db.getNodeById( ids[i] ).getProperty( "int" );
+        }
+        node = db.getNodeById( ids[5] );
+        assertEquals( -5, node.getProperty( "int" ) );
+        assertFalse( node.hasProperty( "name" ) );
+        assertEquals( 3, IteratorUtil.count( node.getRelationships() ) );
+        verify( 200, 3 );
+    }
+
+    @Test
+    public void rolledBackChangesAreNotSeen()
+    {
+        verifyAll();
+        Transaction tx = db.beginTx();
+        db.getNodeById( ids[7] ).setProperty( "int", -7 );
+        tx.failure();
+        tx.finish();
+        verifyAll();
+    }
+
+    @Test
+    public void deletedNodesAreNotRestored()
+    {
+        verifyAll();
+        Transaction tx = db.beginTx();
+        Node node = db.getNodeById( ids[NODES - 1] );
+        for ( Relationship relationship : node.getRelationships() )
+        {
+            relationship.delete();
+        }
+        node.delete();
+        tx.success();
+        tx.finish();
+        for ( int i = 0; i < NODES - 1; i++ )
+        {
+            db.getNodeById( ids[i] ).getProperty( "int" );
+        }
+        try
+        {
+            db.getNodeById( ids[NODES - 1] );
+            fail( "Deleted node found" );
+        }
+        catch ( NotFoundException e )
+        { // good
+        }
+        assertEquals( 1, IteratorUtil.count( db.getNodeById( ids[NODES - 2] ).getRelationships() ) );
+    }
+}
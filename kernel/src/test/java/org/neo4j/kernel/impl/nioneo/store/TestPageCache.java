@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+import org.neo4j.kernel.impl.nioneo.xa.NeoStoreXaDataSource;
+
+public class TestPageCache
+{
+    private static final int RECORD_SIZE = 8;
+    private static final int RECORDS = 4096;
+    // 64 records per page, 64 pages per file
+    private static final int PAGE_SIZE = 512;
+
+    private File path;
+    private RandomAccessFile[] files;
+    private PageCache pageCache;
+    private PagedWindowPool[] pools;
+
+    @Before
+    public void createFiles() throws Exception
+    {
+        path = new File( AbstractNeo4jTestCase.getStorePath( "pagecache" ) );
+        AbstractNeo4jTestCase.deleteFileOrDirectory( path );
+        path.mkdirs();
+        // room for 8 pages shared by both files
+        pageCache = new PageCache( 8 * PAGE_SIZE, PAGE_SIZE );
+        files = new RandomAccessFile[2];
+        pools = new PagedWindowPool[2];
+        for ( int i = 0; i < files.length; i++ )
+        {
+            files[i] = new RandomAccessFile( new File( path, "store" + i ), "rw" );
+            files[i].setLength( RECORDS * RECORD_SIZE + 100 );
+            pools[i] = new PagedWindowPool( pageCache, "store" + i, RECORD_SIZE,
+                files[i].getChannel(), false );
+        }
+    }
+
+    @After
+    public void closeFiles() throws Exception
+    {
+        for ( int i = 0; i < files.length; i++ )
+        {
+            pools[i].close();
+            files[i].close();
+        }
+        assertEquals( 0, pageCache.getUsedBytes() );
+    }
+
+    private void write( PagedWindowPool pool, long id, long value )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.WRITE );
+        try
+        {
+            window.getOffsettedBuffer( id ).putLong( value );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    private long read( PagedWindowPool pool, long id )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.READ );
+        try
+        {
+            return window.getOffsettedBuffer( id ).getLong();
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    @Test
+    public void pagesAreSharedFromOneBudget()
+    {
+        for ( long id = 0; id < RECORDS; id++ )
+        {
+            write( pools[0], id, id );
+            write( pools[1], id, -id );
+            assertTrue( pageCache.getUsedBytes() <= pageCache.getMaxBytes() );
+        }
+        for ( long id = 0; id < RECORDS; id++ )
+        {
+            assertEquals( id, read( pools[0], id ) );
+            assertEquals( -id, read( pools[1], id ) );
+        }
+        assertTrue( pageCache.getEvictionCount() > 0 );
+        WindowPoolStats stats0 = pools[0].getStats();
+        WindowPoolStats stats1 = pools[1].getStats();
+        assertEquals( pageCache.getUsedBytes(), stats0.getMemUsed() + stats1.getMemUsed() );
+        assertEquals( PAGE_SIZE, stats0.getWindowSize() );
+        assertEquals( 4 * RECORDS, stats0.getHitCount() + stats0.getMissCount()
+            + stats1.getHitCount() + stats1.getMissCount() );
+    }
+
+    @Test
+    public void hotPagesStayMapped()
+    {
+        long hotMisses = 0;
+        for ( int i = 0; i < 400; i++ )
+        {
+            // a scan over 40 pages of the second store, page 0 of the first
+            // store is used between each step of it
+            long misses = pools[0].getStats().getMissCount();
+            read( pools[0], 1 );
+            hotMisses += pools[0].getStats().getMissCount() - misses;
+            read( pools[1], (i % 40) * 64 );
+        }
+        assertEquals( 1, hotMisses );
+        assertTrue( pools[1].getStats().getMissCount() >= 400 - 8 );
+    }
+
+    @Test
+    public void pinnedPagesAreNotEvicted()
+    {
+        PersistenceWindow pinned = pools[0].acquire( 10, OperationType.WRITE );
+        try
+        {
+            for ( long id = 0; id < RECORDS; id++ )
+            {
+                write( pools[1], id, id );
+            }
+            pinned.getOffsettedBuffer( 10 ).putLong( 4711 );
+        }
+        finally
+        {
+            pools[0].release( pinned );
+        }
+        assertEquals( 4711, read( pools[0], 10 ) );
+        assertTrue( pools[0].getStats().getWindowCount() > 0 );
+    }
+
+    @Test
+    public void recordsBeyondTheLastFullPageUseRows()
+    {
+        long lastId = RECORDS + 5;
+        write( pools[0], lastId, 42 );
+        assertEquals( 42, read( pools[0], lastId ) );
+        assertEquals( 2, pools[0].getStats().getMissCount() );
+        assertEquals( 0, pools[0].getStats().getWindowCount() );
+    }
+
+    @Test
+    public void databaseUsesConfiguredPageCache()
+    {
+        String storeDir = new File( path, "db" ).getAbsolutePath();
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( storeDir, MapUtil.stringMap(
+            Config.PAGE_CACHE_MEMORY, "1M", Config.PAGE_CACHE_PAGE_SIZE, "8k" ) );
+        long[] ids = new long[2000];
+        try
+        {
+            Transaction tx = db.beginTx();
+            for ( int i = 0; i < ids.length; i++ )
+            {
+                Node node = db.createNode();
+                node.setProperty( "name", "node" + i );
+                ids[i] = node.getId();
+            }
+            tx.success();
+            tx.finish();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+        db = new EmbeddedGraphDatabase( storeDir, MapUtil.stringMap(
+            Config.PAGE_CACHE_MEMORY, "1M", Config.PAGE_CACHE_PAGE_SIZE, "8k" ) );
+        try
+        {
+            for ( int i = 0; i < ids.length; i++ )
+            {
+                assertEquals( "node" + i, db.getNodeById( ids[i] ).getProperty( "name" ) );
+            }
+            NeoStoreXaDataSource dataSource = (NeoStoreXaDataSource)
+                db.getConfig().getTxModule().getXaDataSourceManager().getXaDataSource(
+                    Config.DEFAULT_DATA_SOURCE_NAME );
+            List<WindowPoolStats> allStats = dataSource.getWindowPoolStats();
+            long hits = 0;
+            for ( WindowPoolStats stats : allStats )
+            {
+                assertEquals( 1024 * 1024, stats.getMemAvail() );
+                hits += stats.getHitCount();
+            }
+            assertTrue( hits > 0 );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void noPageCacheUnlessConfigured()
+    {
+        assertNull( PageCache.create( MapUtil.stringMap() ) );
+        PageCache created = PageCache.create( MapUtil.stringMap( Config.PAGE_CACHE_MEMORY, "2M" ) );
+        assertNotNull( created );
+        assertEquals( 2 * 1024 * 1024, created.getMaxBytes() );
+        assertEquals( PageCache.DEFAULT_PAGE_SIZE, created.getPageSize() );
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestPersistenceWindowPool
+{
+    private static final int RECORD_SIZE = 8;
+    private static final int RECORDS = 10000;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private PersistenceWindowPool pool;
+
+    @Before
+    public void createPool() throws Exception
+    {
+        File path = new File( AbstractNeo4jTestCase.getStorePath( "windowpool" ) );
+        path.mkdirs();
+        File store = new File( path, "pool.db" );
+        store.delete();
+        file = new RandomAccessFile( store, "rw" );
+        file.setLength( (long) RECORDS * RECORD_SIZE );
+        channel = file.getChannel();
+        pool = newPool( true );
+    }
+
+    private PersistenceWindowPool newPool( boolean memoryMapped )
+    {
+        // room for a fifth of the file
+        return new PersistenceWindowPool( "pool.db", RECORD_SIZE, channel,
+            RECORDS * RECORD_SIZE / 5, memoryMapped, false );
+    }
+
+    @After
+    public void closePool() throws Exception
+    {
+        pool.close();
+        file.close();
+    }
+
+    private void write( long id, long value )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.WRITE );
+        try
+        {
+            window.getOffsettedBuffer( id ).putLong( value );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    private long read( long id )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.READ );
+        try
+        {
+            return window.getOffsettedBuffer( id ).getLong();
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    @Test
+    public void bricksGetMappedInTheBackgroundAndHitsAreCounted() throws Exception
+    {
+        for ( long id = 0; id < RECORDS; id++ )
+        {
+            write( id, id * 31 );
+        }
+        // read the first part of the store over and over so that it gets
+        // mapped once enough misses have accumulated
+        long acquired = RECORDS;
+        Random random = new Random( 1 );
+        for ( int i = 0; i < 60000; i++ )
+        {
+            long id = random.nextInt( RECORDS / 10 );
+            assertEquals( id * 31, read( id ) );
+            acquired++;
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( pool.getStats().getMemUsed() == 0 && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+        assertTrue( pool.getStats().getMemUsed() > 0 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            long id = random.nextInt( RECORDS / 10 );
+            assertEquals( id * 31, read( id ) );
+            acquired++;
+        }
+        WindowPoolStats stats = pool.getStats();
+        assertTrue( stats.getHitCount() > 0 );
+        assertEquals( acquired, stats.getHitCount() + stats.getMissCount() );
+        assertTrue( stats.getMemUsed() <= stats.getMemAvail() );
+    }
+
+    @Test
+    public void concurrentReadersAndWritersSeeTheirOwnWrites() throws Exception
+    {
+        readAndWriteConcurrently();
+    }
+
+    @Test
+    public void concurrentReadersAndWritersSeeTheirOwnWritesWithPlainWindows() throws Exception
+    {
+        // rows of a brick whose plain window is switched out must not be read
+        // from the file before the window has been written out
+        pool.close();
+        pool = newPool( false );
+        readAndWriteConcurrently();
+        assertTrue( pool.getStats().getMemUsed() > 0 );
+    }
+
+    private void readAndWriteConcurrently() throws Exception
+    {
+        final int threadCount = 4;
+        final int operations = 40000;
+        final AtomicLong acquired = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[threadCount];
+        for ( int t = 0; t < threadCount; t++ )
+        {
+            final int thread = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Random random = new Random( thread );
+                        int share = RECORDS / threadCount;
+                        for ( int i = 0; i < operations; i++ )
+                        {
+                            // write and read back a record of our own, and
+                            // read someone else's hot record
+                            long id = thread * share + random.nextInt( share );
+                            long value = random.nextLong();
+                            write( id, value );
+                            long read = read( id );
+                            if ( read != value )
+                            {
+                                throw new AssertionError( "Record " + id + " was "
+                                    + read + ", expected " + value );
+                            }
+                            read( random.nextInt( share / 20 ) );
+                            acquired.addAndGet( 3 );
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        failure.compareAndSet( null, e );
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        if ( failure.get() != null )
+        {
+            throw new AssertionError( failure.get() );
+        }
+        WindowPoolStats stats = pool.getStats();
+        assertEquals( acquired.get(), stats.getHitCount() + stats.getMissCount() );
+        assertTrue( stats.getMemUsed() <= stats.getMemAvail() );
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.io.File;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.kernel.CommonFactories;
+import org.neo4j.kernel.IdGeneratorFactory;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+
+public class TestRelationshipChainCursor
+{
+    private static final long NODE = 0;
+    private static final long HIGH_NODE = 5000000000L;
+    private static final int NO_NEXT = Record.NO_NEXT_RELATIONSHIP.intValue();
+
+    private File path;
+    private RelationshipStore store;
+    private long[] chain;
+
+    @Before
+    public void createChain()
+    {
+        path = new File( AbstractNeo4jTestCase.getStorePath( "chaincursor" ) );
+        AbstractNeo4jTestCase.deleteFileOrDirectory( path );
+        path.mkdirs();
+        String file = new File( path, "rels" ).getPath();
+        IdGeneratorFactory idGenerators = CommonFactories.defaultIdGeneratorFactory();
+        RelationshipStore.createStore( file, idGenerators );
+        Map<?,?> config = map( "neo_store", file, "store_dir", path.getPath(),
+            IdGeneratorFactory.class, idGenerators,
+            FileSystemAbstraction.class, CommonFactories.defaultFileSystemAbstraction() );
+        store = new RelationshipStore( file, config );
+
+        // NODE-->1, 2-->NODE, NODE-->NODE, NODE-->HIGH_NODE, in chain order
+        chain = new long[4];
+        for ( int i = 0; i < chain.length; i++ )
+        {
+            chain[i] = store.nextId();
+        }
+        long[][] nodes = { { NODE, 1 }, { 2, NODE }, { NODE, NODE }, { NODE, HIGH_NODE } };
+        for ( int i = 0; i < chain.length; i++ )
+        {
+            RelationshipRecord record = new RelationshipRecord( chain[i], nodes[i][0],
+                nodes[i][1], i );
+            record.setInUse( true );
+            long prev = i == 0 ? Record.NO_PREV_RELATIONSHIP.intValue() : chain[i - 1];
+            long next = i == chain.length - 1 ? NO_NEXT : chain[i + 1];
+            if ( nodes[i][0] == NODE )
+            {
+                record.setFirstPrevRel( prev );
+                record.setFirstNextRel( next );
+            }
+            if ( nodes[i][1] == NODE )
+            {
+                record.setSecondPrevRel( prev );
+                record.setSecondNextRel( next );
+            }
+            store.updateRecord( record );
+        }
+    }
+
+    @After
+    public void closeStore()
+    {
+        store.close();
+        AbstractNeo4jTestCase.deleteFileOrDirectory( path );
+    }
+
+    @Test
+    public void readsWholeChainIntoSameCursor()
+    {
+        RelationshipChainCursor cursor = store.newChainCursor( NODE, chain[0], 100 );
+        for ( int i = 0; i < chain.length; i++ )
+        {
+            assertTrue( cursor.next() );
+            RelationshipRecord expected = store.getChainRecord( chain[i] );
+            RelationshipRecord actual = cursor.toRecord();
+            assertEquals( expected.getId(), cursor.getId() );
+            assertEquals( expected.toString(), actual.toString() );
+        }
+        assertEquals( HIGH_NODE, cursor.getSecondNode() );
+        assertEquals( NO_NEXT, cursor.getPosition() );
+        assertFalse( cursor.next() );
+    }
+
+    @Test
+    public void stopsAtMaxCountAndContinuesFromPosition()
+    {
+        RelationshipChainCursor cursor = store.newChainCursor( NODE, chain[0], 3 );
+        int count = 0;
+        while ( cursor.next() )
+        {
+            count++;
+        }
+        assertEquals( 3, count );
+        assertEquals( chain[3], cursor.getPosition() );
+
+        cursor.init( NODE, cursor.getPosition(), 3 );
+        assertTrue( cursor.next() );
+        assertEquals( chain[3], cursor.getId() );
+        assertFalse( cursor.next() );
+    }
+
+    @Test
+    public void positionAboveHighIdEndsChain()
+    {
+        RelationshipChainCursor cursor = store.newChainCursor( NODE, chain[3] + 1000, 10 );
+        assertFalse( cursor.next() );
+        assertEquals( chain[3] + 1000, cursor.getPosition() );
+    }
+
+    @Test
+    public void relationshipNotInChainOfNode()
+    {
+        RelationshipChainCursor cursor = store.newChainCursor( 1, chain[1], 10 );
+        try
+        {
+            cursor.next();
+            fail( "Relationship " + chain[1] + " isn't in the chain of node 1" );
+        }
+        catch ( InvalidRecordException e )
+        {   // Good
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TestLockManagerContention
+{
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32 };
+
+    @Test
+    public void writeLocksAreExclusiveWhileLocksAreRetiredAndRecreated()
+        throws Exception
+    {
+        LockManager lm = new LockManager( new PlaceboTm() );
+        // few resources so that locks are retired and recreated all the time
+        Object[] resources = newResources( 4 );
+        int[] counters = new int[resources.length];
+        int threads = 8;
+        int opsPerThread = 20000;
+        run( lm, resources, counters, threads, opsPerThread, 50 );
+
+        int total = 0;
+        for ( int counter : counters )
+        {
+            total += counter;
+        }
+        assertEquals( threads * opsPerThread / 2, total );
+        assertAllLocksReleased( lm, resources );
+    }
+
+    /**
+     * Takes and releases locks on a mix of shared and thread local resources,
+     * mostly read locks, and prints the throughput for 1 to 32 threads.
+     */
+    public static void main( String[] args ) throws Exception
+    {
+        Object[] resources = newResources( 10000 );
+        int[] counters = new int[resources.length];
+        int opsPerThread = 50000;
+        for ( int threads : THREAD_COUNTS )
+        {
+            LockManager lm = new LockManager( new PlaceboTm() );
+            long time = run( lm, resources, counters, threads, opsPerThread, 5 );
+            long ops = (long) threads * opsPerThread;
+            System.out.println( "LockManager " + threads + " threads: " + ops
+                + " lock/release pairs in " + time + "ms ("
+                + (ops * 1000 / Math.max( time, 1 )) + " ops/s)" );
+            assertAllLocksReleased( lm, resources );
+        }
+    }
+
+    private static Object[] newResources( int count )
+    {
+        Object[] resources = new Object[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            resources[i] = new Integer( i );
+        }
+        return resources;
+    }
+
+    private static long run( final LockManager lm, final Object[] resources,
+        final int[] counters, int threads, final int opsPerThread,
+        final int writePercentage ) throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] workers = new Thread[threads];
+        for ( int i = 0; i < threads; i++ )
+        {
+            final long seed = i;
+            workers[i] = new Thread( "LockWorker-" + i )
+            {
+                @Override
+                public void run()
+                {
+                    Random random = new Random( seed );
+                    try
+                    {
+                        start.await();
+                        for ( int op = 0; op < opsPerThread; op++ )
+                        {
+                            int index = random.nextInt( resources.length );
+                            Object resource = resources[index];
+                            if ( writePercentage == 50 ? op % 2 == 0 :
+                                random.nextInt( 100 ) < writePercentage )
+                            {
+                                lm.getWriteLock( resource );
+                                counters[index]++;
+                                lm.releaseWriteLock( resource, null );
+                            }
+                            else
+                            {
+                                lm.getReadLock( resource );
+                                lm.releaseReadLock( resource, null );
+                            }
+                        }
+                    }
+                    catch ( Throwable t )
+                    {
+                        failure.compareAndSet( null, t );
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        long startTime = System.currentTimeMillis();
+        start.countDown();
+        for ( Thread worker : workers )
+        {
+            worker.join();
+        }
+        long time = System.currentTimeMillis() - startTime;
+        if ( failure.get() != null )
+        {
+            throw new AssertionError( failure.get() );
+        }
+        return time;
+    }
+
+    private static void assertAllLocksReleased( final LockManager lm,
+        final Object[] resources ) throws Exception
+    {
+        // a lock left behind by some other thread would make this one wait
+        // forever, so take the write locks from a thread we can time out on
+        Thread checker = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for ( Object resource : resources )
+                {
+                    lm.getWriteLock( resource );
+                    lm.releaseWriteLock( resource, null );
+                }
+            }
+        };
+        checker.setDaemon( true );
+        checker.start();
+        checker.join( 10000 );
+        assertTrue( "Locks still held", !checker.isAlive() );
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.AbstractGraphDatabase;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+import org.neo4j.kernel.impl.nioneo.xa.NeoStoreXaDataSource;
+
+public class TestGroupCommit
+{
+    private static final String PATH = AbstractNeo4jTestCase.getStorePath( "group-commit" );
+
+    @Before
+    public void clear()
+    {
+        AbstractNeo4jTestCase.deleteFileOrDirectory( new File( PATH ) );
+        new File( PATH ).mkdirs();
+    }
+
+    @Test
+    public void waitersAreReleasedWhenTheirRecordsAreForced() throws Exception
+    {
+        final FileChannel channel = new RandomAccessFile( PATH + File.separator + "log", "rw" ).getChannel();
+        final AtomicInteger writeOuts = new AtomicInteger();
+        final GroupCommitter committer = new GroupCommitter( "test", new GroupCommitter.Target()
+        {
+            public FileChannel writeOutForForce() throws IOException
+            {
+                writeOuts.incrementAndGet();
+                return channel;
+            }
+        }, null, 10, 1000 );
+        committer.start();
+        final int threads = 10;
+        final CountDownLatch done = new CountDownLatch( threads );
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        for ( int i = 0; i < threads; i++ )
+        {
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        long ticket;
+                        synchronized ( channel )
+                        {
+                            channel.write( ByteBuffer.wrap( new byte[] { 1 } ) );
+                            ticket = committer.append();
+                        }
+                        committer.awaitForced( ticket );
+                    }
+                    catch ( Throwable e )
+                    {
+                        synchronized ( failures )
+                        {
+                            failures.add( e );
+                        }
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        committer.close();
+        channel.close();
+        assertTrue( failures.toString(), failures.isEmpty() );
+        assertEquals( threads, committer.getForcedRecordCount() );
+        assertEquals( writeOuts.get(), committer.getForceCount() );
+        assertTrue( "Expected fewer forces than records, got " + committer.getForceCount(),
+                committer.getForceCount() < threads );
+    }
+
+    @Test
+    public void concurrentCommitsShareForcesAndSurviveRestart() throws Exception
+    {
+        AbstractGraphDatabase db = newDb();
+        final EmbeddedGraphDatabase graphDb = (EmbeddedGraphDatabase) db;
+        final int threads = 8;
+        final int txPerThread = 50;
+        final CountDownLatch done = new CountDownLatch( threads );
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        for ( int i = 0; i < threads; i++ )
+        {
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for ( int tx = 0; tx < txPerThread; tx++ )
+                        {
+                            Transaction transaction = graphDb.beginTx();
+                            try
+                            {
+                                graphDb.createNode().setProperty( "name", getName() + tx );
+                                transaction.success();
+                            }
+                            finally
+                            {
+                                transaction.finish();
+                            }
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        synchronized ( failures )
+                        {
+                            failures.add( e );
+                        }
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        assertTrue( failures.toString(), failures.isEmpty() );
+
+        GroupCommitter committer = neoDataSource( graphDb ).getXaContainer().getLogicalLog().getGroupCommitter();
+        assertNotNull( committer );
+        assertEquals( threads * txPerThread, committer.getForcedRecordCount() );
+        assertTrue( committer.getForceCount() <= committer.getForcedRecordCount() );
+        long lastCommittedTx = neoDataSource( graphDb ).getLastCommittedTxId();
+        db.shutdown();
+
+        db = newDb();
+        assertEquals( lastCommittedTx, neoDataSource( (EmbeddedGraphDatabase) db ).getLastCommittedTxId() );
+        int count = 0;
+        for ( Node node : db.getAllNodes() )
+        {
+            if ( node.hasProperty( "name" ) )
+            {
+                count++;
+            }
+        }
+        assertEquals( threads * txPerThread, count );
+        db.shutdown();
+    }
+
+    @Test
+    public void noGroupCommitWithOtherTxIdGeneratorThanTheDefault() throws Exception
+    {
+        Map<Object,Object> config = new HashMap<Object,Object>( MapUtil.stringMap(
+                Config.GROUP_COMMIT, "true", "store_dir", PATH ) );
+        assertNotNull( newContainer( config ).getLogicalLog().getGroupCommitter() );
+        config.put( TxIdGenerator.class, new TxIdGenerator()
+        {
+            public long generate( XaDataSource dataSource, int identifier )
+            {
+                return 1;
+            }
+
+            public int getCurrentMasterId()
+            {
+                return 1;
+            }
+        } );
+        assertNull( newContainer( config ).getLogicalLog().getGroupCommitter() );
+        assertEquals( "true", config.get( Config.GROUP_COMMIT ) );
+    }
+
+    private XaContainer newContainer( Map<Object,Object> config )
+    {
+        return XaContainer.create( null, PATH + File.separator + "nioneo_logical.log", new XaCommandFactory()
+        {
+            @Override
+            public XaCommand readCommand( ReadableByteChannel byteChannel, ByteBuffer buffer )
+            {
+                return null;
+            }
+        }, new XaTransactionFactory()
+        {
+            @Override
+            public XaTransaction create( int identifier )
+            {
+                return null;
+            }
+
+            @Override
+            public void flushAll()
+            {
+            }
+
+            @Override
+            public long getCurrentVersion()
+            {
+                return 0;
+            }
+
+            @Override
+            public long getAndSetNewVersion()
+            {
+                return 0;
+            }
+
+            @Override
+            public long getLastCommittedTx()
+            {
+                return 0;
+            }
+        }, config );
+    }
+
+    private AbstractGraphDatabase newDb()
+    {
+        return new EmbeddedGraphDatabase( PATH, MapUtil.stringMap( Config.GROUP_COMMIT, "true",
+                Config.GROUP_COMMIT_WINDOW, "2" ) );
+    }
+
+    private NeoStoreXaDataSource neoDataSource( EmbeddedGraphDatabase db )
+    {
+        return (NeoStoreXaDataSource) db.getConfig().getTxModule().getXaDataSourceManager()
+                .getXaDataSource( Config.DEFAULT_DATA_SOURCE_NAME );
+    }
+}
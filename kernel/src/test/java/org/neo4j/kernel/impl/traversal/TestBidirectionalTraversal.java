@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
+
+public class TestBidirectionalTraversal extends AbstractTestBase
+{
+    private static final RelationshipType TO = DynamicRelationshipType.withName( "TO" );
+    private static final RelationshipType RANDOM = DynamicRelationshipType.withName( "RANDOM" );
+    private static Node[] randomNodes;
+
+    /*
+     *        (b)-------
+     *       ^   \      \
+     *      /     v      v
+     *    (a)     (c)--->(e)
+     *      \     ^
+     *       v   /
+     *        (d)
+     */
+    @BeforeClass
+    public static void setupGraph()
+    {
+        createGraph( "a TO b", "b TO c", "a TO d", "d TO c", "c TO e", "b TO e" );
+
+        // A random graph with lots of different paths between nodes
+        GraphDatabaseService db = node( "a" ).getGraphDatabase();
+        Transaction tx = beginTx();
+        try
+        {
+            randomNodes = new Node[200];
+            for ( int i = 0; i < randomNodes.length; i++ )
+            {
+                randomNodes[i] = db.createNode();
+            }
+            Random random = new Random( 4321 );
+            for ( int i = 0; i < randomNodes.length * 2; i++ )
+            {
+                randomNodes[random.nextInt( randomNodes.length )].createRelationshipTo(
+                        randomNodes[random.nextInt( randomNodes.length )], RANDOM );
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void returnsEachPathBetweenTheNodesOnce()
+    {
+        expectPaths( Traversal.description().uniqueness( Uniqueness.NODE_PATH ).relationships(
+                TO, Direction.OUTGOING ).traverse( node( "a" ), node( "e" ) ),
+                "a,b,e", "a,b,c,e", "a,d,c,e" );
+    }
+
+    @Test
+    public void endSideExpandsInTheReversedDirection()
+    {
+        expectPaths( Traversal.description().uniqueness( Uniqueness.NODE_PATH ).relationships(
+                TO, Direction.OUTGOING ).traverse( node( "e" ), node( "a" ) ) );
+        expectPaths( Traversal.description().uniqueness( Uniqueness.NODE_PATH ).relationships(
+                TO, Direction.INCOMING ).traverse( node( "e" ), node( "a" ) ),
+                "e,b,a", "e,c,b,a", "e,c,d,a" );
+    }
+
+    @Test
+    public void evaluatorsDecideWhereEachSideStops()
+    {
+        expectPaths( Traversal.description().uniqueness( Uniqueness.NODE_PATH ).relationships(
+                TO, Direction.OUTGOING ).evaluator( Evaluators.toDepth( 1 ) ).traverse(
+                node( "a" ), node( "e" ) ), "a,b,e" );
+    }
+
+    @Test
+    public void evaluatorsDecideWhichJoinedPathsToReturn()
+    {
+        Evaluator notViaD = new Evaluator()
+        {
+            public Evaluation evaluate( Path path )
+            {
+                for ( Node node : path.nodes() )
+                {
+                    if ( node.equals( node( "d" ) ) )
+                    {
+                        return Evaluation.EXCLUDE_AND_CONTINUE;
+                    }
+                }
+                return Evaluation.INCLUDE_AND_CONTINUE;
+            }
+        };
+        expectPaths( Traversal.description().uniqueness( Uniqueness.NODE_PATH ).relationships(
+                TO, Direction.OUTGOING ).evaluator( notViaD ).traverse( node( "a" ),
+                node( "e" ) ), "a,b,e", "a,b,c,e" );
+    }
+
+    @Test
+    public void joinedPathsDontVisitANodeTwice()
+    {
+        // In both directions c can be reached from b, going a,b,c,b,e
+        // is a valid path for each of the two halves but not as a whole.
+        expectPaths( Traversal.description().uniqueness( Uniqueness.NODE_PATH ).traverse(
+                node( "a" ), node( "b" ) ), "a,b", "a,d,c,b", "a,d,c,e,b" );
+    }
+
+    @Test
+    public void pathFromANodeToItself()
+    {
+        expectPaths( Traversal.description().traverse( node( "a" ), node( "a" ) ), "a" );
+    }
+
+    @Test
+    public void findsShortestPathsInRandomGraph()
+    {
+        TraversalDescription description = Traversal.description().breadthFirst().relationships(
+                RANDOM, Direction.OUTGOING );
+        Random random = new Random( 1234 );
+        for ( int i = 0; i < 20; i++ )
+        {
+            Node start = randomNodes[random.nextInt( randomNodes.length )];
+            Node end = randomNodes[random.nextInt( randomNodes.length )];
+            int shortest = shortestLength( description, start, end );
+            int found = Integer.MAX_VALUE;
+            for ( Path path : description.traverse( start, end ) )
+            {
+                assertEquals( start, path.startNode() );
+                assertEquals( end, path.endNode() );
+                found = Math.min( found, path.length() );
+            }
+            assertEquals( shortest, found );
+        }
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void cantBeParallel()
+    {
+        Traversal.description().breadthFirst().parallel( 2 ).traverse( node( "a" ), node( "e" ) );
+    }
+
+    @Test
+    public void pathsEqualSingleSidedPaths()
+    {
+        TraversalDescription description = Traversal.description().uniqueness(
+                Uniqueness.NODE_PATH ).relationships( TO, Direction.OUTGOING );
+        Path joined = description.evaluator( Evaluators.toDepth( 1 ) ).traverse( node( "a" ),
+                node( "e" ) ).iterator().next();
+        boolean found = false;
+        for ( Path path : description.evaluator( Evaluators.toDepth( 2 ) ).traverse(
+                node( "a" ) ) )
+        {
+            if ( path.endNode().equals( node( "e" ) ) )
+            {
+                assertEquals( path, joined );
+                assertEquals( joined, path );
+                assertEquals( path.hashCode(), joined.hashCode() );
+                found = true;
+            }
+            else
+            {
+                assertFalse( joined.equals( path ) );
+            }
+        }
+        assertTrue( found );
+    }
+
+    private static int shortestLength( TraversalDescription description, Node start, Node end )
+    {
+        for ( Path path : description.traverse( start ) )
+        {
+            if ( path.endNode().equals( end ) )
+            {
+                return path.length();
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.traversal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Stack;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
+
+public class TestParallelTraversal extends AbstractTestBase
+{
+    private static final int RANDOM_NODES = 500;
+    private static Node randomStart;
+
+    /*
+     *                     (1)
+     *               ------ | ------
+     *             /        |        \
+     *           (2)       (3)       (4)
+     *          / | \     / | \     / | \
+     *        (5)(6)(7) (8)(9)(A) (B)(C)(D)
+     */
+    @BeforeClass
+    public static void setupGraph()
+    {
+        createGraph( "1 TO 2", "1 TO 3", "1 TO 4", "2 TO 5", "2 TO 6", "2 TO 7",
+                "3 TO 8", "3 TO 9", "3 TO A", "4 TO B", "4 TO C", "4 TO D" );
+
+        // A random graph with lots of different paths between nodes
+        GraphDatabaseService db = node( "1" ).getGraphDatabase();
+        Transaction tx = beginTx();
+        try
+        {
+            Node[] nodes = new Node[RANDOM_NODES];
+            for ( int i = 0; i < nodes.length; i++ )
+            {
+                nodes[i] = db.createNode();
+            }
+            Random random = new Random( 1234 );
+            for ( int i = 0; i < nodes.length * 3; i++ )
+            {
+                nodes[random.nextInt( nodes.length )].createRelationshipTo(
+                        nodes[random.nextInt( nodes.length )],
+                        DynamicRelationshipType.withName( "RANDOM" ) );
+            }
+            randomStart = nodes[0];
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void returnsOneDepthAtATime()
+    {
+        Stack<Set<String>> levels = new Stack<Set<String>>();
+        levels.push( new HashSet<String>( Arrays.asList( "5", "6", "7", "8",
+                "9", "A", "B", "C", "D" ) ) );
+        levels.push( new HashSet<String>( Arrays.asList( "2", "3", "4" ) ) );
+        levels.push( new HashSet<String>( Arrays.asList( "1" ) ) );
+        assertLevels( Traversal.description().breadthFirst().parallel( 4 ).traverse(
+                node( "1" ) ), levels );
+    }
+
+    @Test
+    public void nodeGlobalFindsSameNodesOnSameDepthsAsSequential()
+    {
+        TraversalDescription description = Traversal.description().breadthFirst();
+        assertEquals( depths( description ), depths( description.parallel( 4 ) ) );
+    }
+
+    @Test
+    public void relationshipGlobalTraversesSameRelationshipsAsSequential()
+    {
+        TraversalDescription description = Traversal.description().breadthFirst().uniqueness(
+                Uniqueness.RELATIONSHIP_GLOBAL );
+        assertEquals( relationships( description ),
+                relationships( description.parallel( 3 ) ) );
+    }
+
+    @Test
+    public void pathUniquenessFindsSamePathsAsSequential()
+    {
+        TraversalDescription description = Traversal.description().breadthFirst().uniqueness(
+                Uniqueness.NODE_PATH ).evaluator( Evaluators.toDepth( 3 ) );
+        assertEquals( count( description ), count( description.parallel( 4 ) ) );
+    }
+
+    @Test
+    public void excludedPositionsAreStillExpanded()
+    {
+        TraversalDescription description = Traversal.description().breadthFirst().evaluator(
+                Evaluators.atDepth( 2 ) );
+        assertEquals( depths( description ), depths( description.parallel( 2 ) ) );
+    }
+
+    @Test
+    public void onlyBreadthFirstCanBeParallel()
+    {
+        try
+        {
+            Traversal.description().depthFirst().parallel( 2 ).traverse( randomStart );
+            fail( "Depth first traversals shouldn't be parallel" );
+        }
+        catch ( IllegalStateException e )
+        {   // Good
+        }
+    }
+
+    @Test
+    public void failureInEvaluatorIsThrownToCaller()
+    {
+        final RuntimeException failure = new IllegalArgumentException( "Evaluator failure" );
+        TraversalDescription description = Traversal.description().breadthFirst().parallel( 2 )
+                .evaluator( new Evaluator()
+                {
+                    public Evaluation evaluate( Path path )
+                    {
+                        if ( path.length() == 2 )
+                        {
+                            throw failure;
+                        }
+                        return Evaluation.INCLUDE_AND_CONTINUE;
+                    }
+                } );
+        try
+        {
+            count( description );
+            fail( "Should have thrown the failure of the evaluator" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertEquals( failure, e );
+        }
+    }
+
+    private static Map<Node,Integer> depths( TraversalDescription description )
+    {
+        Map<Node,Integer> depths = new HashMap<Node,Integer>();
+        int lastDepth = 0;
+        for ( Path path : description.traverse( randomStart ) )
+        {
+            assertEquals( "Depths should be returned in order", true, path.length() >= lastDepth );
+            lastDepth = path.length();
+            assertEquals( null, depths.put( path.endNode(), path.length() ) );
+        }
+        return depths;
+    }
+
+    private static Set<Long> relationships( TraversalDescription description )
+    {
+        Set<Long> relationships = new HashSet<Long>();
+        for ( Path path : description.traverse( randomStart ) )
+        {
+            if ( path.lastRelationship() != null )
+            {
+                assertEquals( true, relationships.add( path.lastRelationship().getId() ) );
+            }
+        }
+        return relationships;
+    }
+
+    private static int count( TraversalDescription description )
+    {
+        int count = 0;
+        for ( @SuppressWarnings( "unused" ) Path path : description.traverse( randomStart ) )
+        {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.traversal.TraversalBranch;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.graphdb.traversal.UniquenessFactory;
+import org.neo4j.graphdb.traversal.UniquenessFilter;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
+import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
+
+public class TestPrimitiveLongCollections
+{
+    @Test
+    public void setBehavesLikeHashSet()
+    {
+        PrimitiveLongSet set = new PrimitiveLongSet();
+        Set<Long> expected = new HashSet<Long>();
+        Random random = new Random( 1234 );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            // Small range to get lots of collisions and removals of present values
+            long value = random.nextInt( 5000 ) - 10;
+            switch ( random.nextInt( 3 ) )
+            {
+            case 0:
+                assertEquals( expected.add( value ), set.add( value ) );
+                break;
+            case 1:
+                assertEquals( expected.remove( value ), set.remove( value ) );
+                break;
+            default:
+                assertEquals( expected.contains( value ), set.contains( value ) );
+            }
+            assertEquals( expected.size(), set.size() );
+        }
+        long[] values = set.toArray();
+        Arrays.sort( values );
+        assertEquals( expected.size(), values.length );
+        for ( long value : values )
+        {
+            assertTrue( expected.contains( value ) );
+        }
+    }
+
+    @Test
+    public void setHandlesExtremeValues()
+    {
+        PrimitiveLongSet set = new PrimitiveLongSet( 2 );
+        long[] values = { Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, 1L << 35 };
+        for ( long value : values )
+        {
+            assertFalse( set.contains( value ) );
+            assertTrue( set.add( value ) );
+            assertFalse( set.add( value ) );
+        }
+        assertEquals( values.length, set.size() );
+        for ( long value : values )
+        {
+            assertTrue( set.remove( value ) );
+            assertFalse( set.contains( value ) );
+        }
+        assertTrue( set.isEmpty() );
+    }
+
+    @Test
+    public void mapBehavesLikeHashMap()
+    {
+        PrimitiveLongIntMap map = new PrimitiveLongIntMap();
+        Map<Long,Integer> expected = new HashMap<Long,Integer>();
+        Random random = new Random( 4321 );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long key = random.nextInt( 5000 ) * 1000003L;
+            int value = random.nextInt( Integer.MAX_VALUE );
+            Integer previous;
+            switch ( random.nextInt( 3 ) )
+            {
+            case 0:
+                previous = expected.put( key, value );
+                assertEquals( previous == null ? -1 : previous.intValue(), map.put( key, value ) );
+                break;
+            case 1:
+                previous = expected.remove( key );
+                assertEquals( previous == null ? -1 : previous.intValue(), map.remove( key ) );
+                break;
+            default:
+                previous = expected.get( key );
+                assertEquals( previous == null ? -1 : previous.intValue(), map.get( key ) );
+            }
+            assertEquals( expected.size(), map.size() );
+        }
+        map.clear();
+        assertEquals( PrimitiveLongIntMap.NO_VALUE, map.get( expected.keySet().iterator().next() ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void mapDoesntAcceptNegativeValues()
+    {
+        new PrimitiveLongIntMap().put( 1, -1 );
+    }
+
+    @Test
+    public void lruSetEvictsLeastRecentlyUsed()
+    {
+        final int maxSize = 100;
+        PrimitiveLongLruSet set = new PrimitiveLongLruSet( maxSize );
+        Map<Long,Object> expected = new LinkedHashMap<Long,Object>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Long,Object> eldest )
+            {
+                return size() > maxSize;
+            }
+        };
+        Random random = new Random( 5678 );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            long value = random.nextInt( 300 );
+            boolean absent = expected.get( value ) == null;
+            if ( absent )
+            {
+                expected.put( value, value );
+            }
+            assertEquals( absent, set.add( value ) );
+            assertEquals( expected.size(), set.size() );
+        }
+        for ( long value = 0; value < 300; value++ )
+        {
+            assertEquals( expected.containsKey( value ), set.contains( value ) );
+        }
+    }
+
+    // === Benchmarking ===
+
+    private static final int BENCHMARK_NODES = 1000000;
+    private static final RelationshipType CHILD = DynamicRelationshipType.withName( "CHILD" );
+    private static final RelationshipType LINK = DynamicRelationshipType.withName( "LINK" );
+
+    /**
+     * Compares a breadth first traversal of a million nodes using the
+     * {@link HashSet} based global uniqueness it used to have with the one
+     * using {@link PrimitiveLongSet}. The graph is a binary tree where every
+     * node also links to a random other node, so that the uniqueness filter
+     * rejects about a third of the branches.
+     */
+    public static void main( String[] args )
+    {
+        String path = args.length > 0 ? args[0] :
+                AbstractNeo4jTestCase.getStorePath( "bfs-benchmark" );
+        if ( !new File( path, "neostore" ).exists() )
+        {
+            createBenchmarkGraph( path );
+        }
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( path, MapUtil.stringMap(
+                Config.CACHE_TYPE, "strong" ) );
+        try
+        {
+            TraversalDescription base = Traversal.description().breadthFirst().relationships(
+                    CHILD, Direction.OUTGOING ).relationships( LINK, Direction.OUTGOING );
+            TraversalDescription boxed = base.uniqueness( new BoxedGlobalUniqueness() );
+            TraversalDescription primitive = base.uniqueness( Uniqueness.NODE_GLOBAL );
+            Node start = db.getReferenceNode();
+            // First rounds load the graph into the cache and warm up the jit
+            for ( int i = 0; i < 3; i++ )
+            {
+                bfs( "HashSet<Long>", boxed, start );
+                bfs( "PrimitiveLongSet", primitive, start );
+            }
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    private static void bfs( String name, TraversalDescription description, Node start )
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes( threads );
+        long time = System.currentTimeMillis();
+        int count = 0;
+        for ( @SuppressWarnings( "unused" ) Path path : description.traverse( start ) )
+        {
+            count++;
+        }
+        time = System.currentTimeMillis() - time;
+        long allocated = allocatedBytes( threads ) - allocatedBefore;
+        System.out.printf( "%-16s %d nodes in %d ms, %.0f nodes/s, %s%n", name, count, time,
+                count * 1000d / Math.max( time, 1 ), allocated < 0 ? "allocation unknown" :
+                String.format( "%.1f bytes allocated per node", allocated / (double) count ) );
+    }
+
+    private static long allocatedBytes( ThreadMXBean threads )
+    {
+        if ( threads instanceof com.sun.management.ThreadMXBean )
+        {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+                    Thread.currentThread().getId() );
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private static void createBenchmarkGraph( String path )
+    {
+        AbstractNeo4jTestCase.deleteFileOrDirectory( new File( path ) );
+        BatchInserter inserter = new BatchInserterImpl( path );
+        try
+        {
+            Map<String,Object> noProperties = MapUtil.map();
+            long[] nodes = new long[BENCHMARK_NODES];
+            nodes[0] = inserter.getReferenceNode();
+            for ( int i = 1; i < nodes.length; i++ )
+            {
+                nodes[i] = inserter.createNode( noProperties );
+            }
+            Random random = new Random( 1 );
+            for ( int i = 0; i < nodes.length; i++ )
+            {
+                for ( int child = i * 2 + 1; child <= i * 2 + 2 && child < nodes.length; child++ )
+                {
+                    inserter.createRelationship( nodes[i], nodes[child], CHILD, noProperties );
+                }
+                inserter.createRelationship( nodes[i], nodes[random.nextInt( nodes.length )],
+                        LINK, noProperties );
+            }
+        }
+        finally
+        {
+            inserter.shutdown();
+        }
+    }
+
+    private static class BoxedGlobalUniqueness implements UniquenessFactory
+    {
+        public UniquenessFilter create( Object optionalParameter )
+        {
+            return new UniquenessFilter()
+            {
+                private final Set<Long> visited = new HashSet<Long>();
+
+                public boolean checkFirst( TraversalBranch branch )
+                {
+                    return check( branch );
+                }
+
+                public boolean check( TraversalBranch branch )
+                {
+                    return visited.add( branch.node().getId() );
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import static org.neo4j.index.impl.lucene.LuceneDataSource.LUCENE_VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * Adds documents to a {@link LuceneBatchInserterIndex} from a number of
+ * worker threads, each with an {@link IndexWriter} of its own writing to a
+ * temporary directory next to the index. Documents are handed over to the
+ * workers through a bounded queue, so a caller adding faster than the
+ * workers can index waits for them. The segments of the workers are added
+ * to the index when it's {@link #mergeInto(IndexWriter) merged}.
+ */
+class BulkIndexer
+{
+    private static final int QUEUE_SIZE_PER_THREAD = 1000;
+    private static final Entry DONE = new Entry( null, null );
+    
+    private final LuceneBatchInserterIndex index;
+    private final File[] directories;
+    private final IndexWriter[] writers;
+    private final BlockingQueue<Entry> queue;
+    private final ExecutorService workers;
+    private final Object idle = new Object();
+    private int pending;
+    private volatile Throwable failure;
+    
+    BulkIndexer( LuceneBatchInserterIndex index, File indexDirectory, IndexType type, int threads,
+            double ramBufferSizeMB )
+    {
+        this.index = index;
+        this.directories = new File[threads];
+        this.writers = new IndexWriter[threads];
+        this.queue = new ArrayBlockingQueue<Entry>( threads * QUEUE_SIZE_PER_THREAD );
+        try
+        {
+            for ( int i = 0; i < threads; i++ )
+            {
+                directories[i] = new File( indexDirectory.getParentFile(),
+                        indexDirectory.getName() + ".bulk-" + i );
+                deleteFileOrDirectory( directories[i] );
+                IndexWriterConfig config = new IndexWriterConfig( LUCENE_VERSION, type.analyzer );
+                config.setRAMBufferSizeMB( ramBufferSizeMB );
+                writers[i] = new IndexWriter( FSDirectory.open( directories[i] ), config );
+            }
+        }
+        catch ( IOException e )
+        {
+            rollbackWriters();
+            throw new RuntimeException( e );
+        }
+        
+        final String name = "Bulk indexer for " + indexDirectory.getName();
+        this.workers = Executors.newFixedThreadPool( threads, new ThreadFactory()
+        {
+            private final AtomicInteger number = new AtomicInteger();
+            
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, name + " worker " + number.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        for ( IndexWriter writer : writers )
+        {
+            workers.execute( new Worker( writer ) );
+        }
+    }
+    
+    /**
+     * Queues a document to be completed with {@code properties} and added
+     * by one of the workers. {@code properties} must not be modified after
+     * this call.
+     */
+    void add( Document document, Map<String, Object> properties )
+    {
+        checkFailure();
+        synchronized ( idle )
+        {
+            pending++;
+        }
+        try
+        {
+            queue.put( new Entry( document, properties ) );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            done();
+            throw new RuntimeException( "Interrupted while queueing document", e );
+        }
+    }
+    
+    /**
+     * Waits until the workers have added all queued documents to their
+     * writers.
+     */
+    void awaitIdle()
+    {
+        synchronized ( idle )
+        {
+            while ( pending > 0 )
+            {
+                try
+                {
+                    idle.wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException( "Interrupted while waiting for bulk indexing", e );
+                }
+            }
+        }
+        checkFailure();
+    }
+    
+    void deleteDocuments( Query query ) throws IOException
+    {
+        awaitIdle();
+        for ( IndexWriter writer : writers )
+        {
+            writer.deleteDocuments( query );
+        }
+    }
+    
+    /**
+     * @return near real-time readers of what the workers have indexed so far.
+     */
+    Collection<IndexReader> openReaders() throws IOException
+    {
+        awaitIdle();
+        List<IndexReader> readers = new ArrayList<IndexReader>();
+        for ( IndexWriter writer : writers )
+        {
+            readers.add( IndexReader.open( writer, true ) );
+        }
+        return readers;
+    }
+    
+    /**
+     * Stops the workers, closes their writers and adds their segments to
+     * {@code writer}. The temporary directories are deleted afterwards, and
+     * the writers of the workers are closed even if a worker has failed.
+     */
+    void mergeInto( IndexWriter writer )
+    {
+        try
+        {
+            try
+            {
+                awaitIdle();
+            }
+            finally
+            {
+                stopWorkers();
+            }
+            Directory[] segments = new Directory[writers.length];
+            for ( int i = 0; i < writers.length; i++ )
+            {
+                writers[i].close();
+                writers[i] = null;
+                segments[i] = FSDirectory.open( directories[i] );
+            }
+            writer.addIndexes( segments );
+            for ( Directory directory : segments )
+            {
+                directory.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+        finally
+        {
+            rollbackWriters();
+            for ( File directory : directories )
+            {
+                deleteFileOrDirectory( directory );
+            }
+        }
+    }
+    
+    /**
+     * Closes the writers which haven't been closed without committing what
+     * they have indexed, since their segments won't be used.
+     */
+    private void rollbackWriters()
+    {
+        for ( int i = 0; i < writers.length; i++ )
+        {
+            if ( writers[i] != null )
+            {
+                try
+                {
+                    writers[i].rollback();
+                }
+                catch ( IOException e )
+                {
+                    // Its directory is deleted anyway
+                }
+                writers[i] = null;
+            }
+        }
+    }
+    
+    private void stopWorkers()
+    {
+        try
+        {
+            for ( int i = 0; i < writers.length; i++ )
+            {
+                queue.put( DONE );
+            }
+            workers.shutdown();
+            workers.awaitTermination( Long.MAX_VALUE, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while stopping bulk indexing", e );
+        }
+    }
+    
+    private void checkFailure()
+    {
+        Throwable cause = failure;
+        if ( cause != null )
+        {
+            throw new RuntimeException( "Bulk indexing failed", cause );
+        }
+    }
+    
+    private void done()
+    {
+        synchronized ( idle )
+        {
+            if ( --pending == 0 )
+            {
+                idle.notifyAll();
+            }
+        }
+    }
+    
+    private static void deleteFileOrDirectory( File file )
+    {
+        if ( file.exists() )
+        {
+            if ( file.isDirectory() )
+            {
+                for ( File child : file.listFiles() )
+                {
+                    deleteFileOrDirectory( child );
+                }
+            }
+            file.delete();
+        }
+    }
+    
+    private class Worker implements Runnable
+    {
+        private final IndexWriter writer;
+        
+        Worker( IndexWriter writer )
+        {
+            this.writer = writer;
+        }
+        
+        public void run()
+        {
+            try
+            {
+                for ( Entry entry = queue.take(); entry != DONE; entry = queue.take() )
+                {
+                    try
+                    {
+                        // Keep taking entries after a failure, so that callers
+                        // waiting for room in the queue or for idle get released
+                        if ( failure == null )
+                        {
+                            index.addFields( entry.document, entry.properties );
+                            writer.addDocument( entry.document );
+                            index.indexed();
+                        }
+                    }
+                    catch ( Throwable e )
+                    {
+                        failure = e;
+                    }
+                    finally
+                    {
+                        done();
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private static class Entry
+    {
+        private final Document document;
+        private final Map<String, Object> properties;
+        
+        Entry( Document document, Map<String, Object> properties )
+        {
+            this.document = document;
+            this.properties = properties;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.neo4j.graphdb.index.IndexHits;
+
+/**
+ * The ids of a cached exact lookup, sorted and stored as variable length
+ * encoded deltas. Ids of entities created close to each other take a byte or
+ * two each. It's immutable, so readers iterate over the encoded ids without
+ * copying them or holding any lock.
+ */
+final class CachedIds
+{
+    // Object header, the fields and the header of the array
+    private static final int OVERHEAD = 48;
+
+    private final byte[] data;
+    private final int size;
+
+    private CachedIds( byte[] data, int size )
+    {
+        this.data = data;
+        this.size = size;
+    }
+
+    static CachedIds of( long[] ids )
+    {
+        long[] sorted = ids.clone();
+        Arrays.sort( sorted );
+        byte[] buffer = new byte[Math.max( 16, sorted.length * 2 )];
+        int position = 0;
+        int size = 0;
+        long previous = 0;
+        for ( int i = 0; i < sorted.length; i++ )
+        {
+            if ( i > 0 && sorted[i] == previous )
+            {
+                continue;
+            }
+            if ( buffer.length - position < 10 )
+            {
+                buffer = Arrays.copyOf( buffer, buffer.length * 2 );
+            }
+            long delta = sorted[i] - previous;
+            while ( (delta & ~0x7FL) != 0 )
+            {
+                buffer[position++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            buffer[position++] = (byte) delta;
+            previous = sorted[i];
+            size++;
+        }
+        return new CachedIds( Arrays.copyOf( buffer, position ), size );
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    long sizeInBytes()
+    {
+        return data.length + OVERHEAD;
+    }
+
+    /**
+     * @param exclude ids which aren't returned, i.e. ones removed in the
+     * transaction of the caller.
+     */
+    IndexHits<Long> hits( final Collection<Long> exclude )
+    {
+        return new AbstractIndexHits<Long>()
+        {
+            private int position;
+            private long previous;
+
+            @Override
+            protected Long fetchNextOrNull()
+            {
+                while ( position < data.length )
+                {
+                    long delta = 0;
+                    int shift = 0;
+                    byte b;
+                    do
+                    {
+                        b = data[position++];
+                        delta |= (b & 0x7FL) << shift;
+                        shift += 7;
+                    }
+                    while ( (b & 0x80) != 0 );
+                    previous += delta;
+                    Long id = previous;
+                    if ( exclude.isEmpty() || !exclude.contains( id ) )
+                    {
+                        return id;
+                    }
+                }
+                return null;
+            }
+
+            public int size()
+            {
+                return Math.max( 0, size - exclude.size() );
+            }
+
+            public float currentScore()
+            {
+                return 0;
+            }
+        };
+    }
+}
@@ -57,7 +57,7 @@ class CommitContext
         if ( writer == null )
         {
             writer = dataSource.getIndexWriter( identifier );
-            searcher = dataSource.getIndexSearcher( identifier, false ).getSearcher();
+            searcher = dataSource.getFreshIndexSearcher( identifier );
         }
     }
     
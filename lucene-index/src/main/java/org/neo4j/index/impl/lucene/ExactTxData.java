@@ -22,19 +22,66 @@ package org.neo4j.index.impl.lucene;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.WildcardQuery;
 import org.neo4j.index.lucene.QueryContext;
 import org.neo4j.index.lucene.ValueContext;
 
 public class ExactTxData extends TxData
 {
-    private Map<String, Map<Object, Set<Object>>> data;
+    /**
+     * Orders the values of a key so that the string values, which are the
+     * terms of an exact index, are sorted like Lucene sorts terms and can be
+     * matched by prefix and range queries without looking at all of them.
+     * Numeric values are ordered by type and then by value.
+     */
+    private static final Comparator<Object> VALUE_ORDER = new Comparator<Object>()
+    {
+        @SuppressWarnings( { "unchecked", "rawtypes" } )
+        public int compare( Object value1, Object value2 )
+        {
+            int rank1 = rank( value1 );
+            int rank2 = rank( value2 );
+            if ( rank1 != rank2 )
+            {
+                return rank1 - rank2;
+            }
+            switch ( rank1 )
+            {
+            case 0:
+                return 0;
+            case 1:
+                int types = value1.getClass().getName().compareTo( value2.getClass().getName() );
+                return types != 0 ? types : ((Comparable) value1).compareTo( value2 );
+            default:
+                return value1.toString().compareTo( value2.toString() );
+            }
+        }
+
+        private int rank( Object value )
+        {
+            return value == null ? 0 : value instanceof Number ? 1 : 2;
+        }
+    };
+
+    private Map<String, TreeMap<Object, Set<Object>>> data;
     private boolean hasOrphans;
 
     ExactTxData( LuceneIndex index )
@@ -69,13 +116,13 @@ public class ExactTxData extends TxData
         return ids;
     }
 
-    private Map<Object, Set<Object>> keyMap( String key, boolean create )
+    private TreeMap<Object, Set<Object>> keyMap( String key, boolean create )
     {
         if ( data == null )
         {
             if ( create )
             {
-                data = new HashMap<String, Map<Object,Set<Object>>>();
+                data = new HashMap<String, TreeMap<Object,Set<Object>>>();
             }
             else
             {
@@ -83,10 +130,10 @@ public class ExactTxData extends TxData
             }
         }
 
-        Map<Object, Set<Object>> inner = data.get( key );
+        TreeMap<Object, Set<Object>> inner = data.get( key );
         if ( inner == null && create )
         {
-            inner = new HashMap<Object, Set<Object>>();
+            inner = new TreeMap<Object, Set<Object>>( VALUE_ORDER );
             data.put( key, inner );
             if ( key == null )
             {
@@ -101,7 +148,7 @@ public class ExactTxData extends TxData
         FullTxData data = new FullTxData( index );
         if ( this.data != null )
         {
-            for ( Map.Entry<String, Map<Object, Set<Object>>> entry : this.data.entrySet() )
+            for ( Map.Entry<String, TreeMap<Object, Set<Object>>> entry : this.data.entrySet() )
             {
                 String key = entry.getKey();
                 for ( Map.Entry<Object, Set<Object>> valueEntry : entry.getValue().entrySet() )
@@ -130,11 +177,346 @@ public class ExactTxData extends TxData
             return Collections.<Long>emptyList();
         }
 
+        if ( contextOrNull == null || contextOrNull.getSorting() == null )
+        {
+            Collection<Long> ids = queryWithoutSearcher( query );
+            if ( ids != null )
+            {
+                return ids;
+            }
+        }
         TxData fullTxData = toFullTxData();
         holder.set( fullTxData );
         return fullTxData.query( holder, query, contextOrNull );
     }
 
+    @Override
+    Collection<Long> queryWithoutSearcher( Query query )
+    {
+        if ( hasOrphans || !index.type.indexesValuesAsTerms() )
+        {
+            return null;
+        }
+        return data == null ? new PrimitiveIdSet() : match( query );
+    }
+
+    /**
+     * Matches the common kinds of queries against the sorted values of each
+     * key, like Lucene would have matched them against the terms of a full
+     * transaction index.
+     * 
+     * @return the matching ids, or {@code null} if {@code query} is of a kind
+     * which can't be matched this way.
+     */
+    private PrimitiveIdSet match( Query query )
+    {
+        if ( query instanceof TermQuery )
+        {
+            Term term = ((TermQuery) query).getTerm();
+            if ( term.field().equals( LuceneIndex.KEY_START_NODE_ID ) ||
+                    term.field().equals( LuceneIndex.KEY_END_NODE_ID ) )
+            {
+                return matchNode( term );
+            }
+            if ( term.field().equals( LuceneIndex.KEY_DOC_ID ) )
+            {
+                return null;
+            }
+            PrimitiveIdSet result = new PrimitiveIdSet();
+            addIds( result, idCollection( term.field(), term.text(), false ) );
+            return result;
+        }
+        else if ( query instanceof PrefixQuery )
+        {
+            Term prefix = ((PrefixQuery) query).getPrefix();
+            return matchStrings( prefix.field(), prefix.text(), null );
+        }
+        else if ( query instanceof WildcardQuery )
+        {
+            Term term = ((WildcardQuery) query).getTerm();
+            String text = term.text();
+            int firstWildcard = firstWildcard( text );
+            return firstWildcard == -1 ? matchStrings( term.field(), text, Pattern.compile( Pattern.quote( text ) ) ) :
+                    matchStrings( term.field(), text.substring( 0, firstWildcard ), wildcardPattern( text ) );
+        }
+        else if ( query instanceof TermRangeQuery )
+        {
+            return matchRange( (TermRangeQuery) query );
+        }
+        else if ( query instanceof NumericRangeQuery )
+        {
+            return matchRange( (NumericRangeQuery<?>) query );
+        }
+        else if ( query instanceof MatchAllDocsQuery )
+        {
+            PrimitiveIdSet result = new PrimitiveIdSet();
+            for ( TreeMap<Object, Set<Object>> values : data.values() )
+            {
+                for ( Set<Object> ids : values.values() )
+                {
+                    addIds( result, ids );
+                }
+            }
+            return result;
+        }
+        else if ( query instanceof BooleanQuery )
+        {
+            return matchBoolean( (BooleanQuery) query );
+        }
+        return null;
+    }
+
+    private PrimitiveIdSet matchBoolean( BooleanQuery query )
+    {
+        if ( query.getMinimumNumberShouldMatch() > 0 )
+        {
+            return null;
+        }
+        PrimitiveIdSet must = null;
+        PrimitiveIdSet should = null;
+        PrimitiveIdSet mustNot = null;
+        for ( BooleanClause clause : query.clauses() )
+        {
+            PrimitiveIdSet ids = match( clause.getQuery() );
+            if ( ids == null )
+            {
+                return null;
+            }
+            switch ( clause.getOccur() )
+            {
+            case MUST:
+                must = must == null ? ids : must.intersection( ids );
+                break;
+            case SHOULD:
+                if ( should == null )
+                {
+                    should = ids;
+                }
+                else
+                {
+                    should.addAll( ids );
+                }
+                break;
+            default:
+                if ( mustNot == null )
+                {
+                    mustNot = ids;
+                }
+                else
+                {
+                    mustNot.addAll( ids );
+                }
+            }
+        }
+        // Optional clauses only affect the score when there are required ones,
+        // and a query with only prohibited clauses doesn't match anything
+        PrimitiveIdSet result = must != null ? must : should != null ? should : new PrimitiveIdSet();
+        if ( mustNot != null )
+        {
+            result.removeAll( mustNot );
+        }
+        return result;
+    }
+
+    private PrimitiveIdSet matchNode( Term term )
+    {
+        PrimitiveIdSet result = new PrimitiveIdSet();
+        long nodeId;
+        try
+        {
+            nodeId = Long.parseLong( term.text() );
+        }
+        catch ( NumberFormatException e )
+        {
+            return result;
+        }
+        boolean start = term.field().equals( LuceneIndex.KEY_START_NODE_ID );
+        for ( TreeMap<Object, Set<Object>> values : data.values() )
+        {
+            for ( Set<Object> ids : values.values() )
+            {
+                for ( Object id : ids )
+                {
+                    if ( id instanceof RelationshipId )
+                    {
+                        RelationshipId relId = (RelationshipId) id;
+                        if ( (start ? relId.startNode : relId.endNode) == nodeId )
+                        {
+                            result.add( relId.id );
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Matches the string values of {@code key} starting with {@code prefix}
+     * and, if a pattern is given, matching it as well.
+     */
+    private PrimitiveIdSet matchStrings( String key, String prefix, Pattern patternOrNull )
+    {
+        PrimitiveIdSet result = new PrimitiveIdSet();
+        TreeMap<Object, Set<Object>> values = keyMap( key, false );
+        if ( values == null )
+        {
+            return result;
+        }
+        for ( Map.Entry<Object, Set<Object>> entry : values.tailMap( prefix, true ).entrySet() )
+        {
+            String value = entry.getKey().toString();
+            if ( !value.startsWith( prefix ) )
+            {
+                break;
+            }
+            if ( patternOrNull == null || patternOrNull.matcher( value ).matches() )
+            {
+                addIds( result, entry.getValue() );
+            }
+        }
+        return result;
+    }
+
+    private static int firstWildcard( String text )
+    {
+        int star = text.indexOf( '*' );
+        int question = text.indexOf( '?' );
+        return star == -1 ? question : question == -1 ? star : Math.min( star, question );
+    }
+
+    private static Pattern wildcardPattern( String text )
+    {
+        StringBuilder regex = new StringBuilder();
+        int start = 0;
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            char c = text.charAt( i );
+            if ( c == '*' || c == '?' )
+            {
+                if ( i > start )
+                {
+                    regex.append( Pattern.quote( text.substring( start, i ) ) );
+                }
+                regex.append( c == '*' ? ".*" : "." );
+                start = i + 1;
+            }
+        }
+        if ( start < text.length() )
+        {
+            regex.append( Pattern.quote( text.substring( start ) ) );
+        }
+        return Pattern.compile( regex.toString(), Pattern.DOTALL );
+    }
+
+    private PrimitiveIdSet matchRange( TermRangeQuery query )
+    {
+        if ( query.getCollator() != null )
+        {
+            return null;
+        }
+        PrimitiveIdSet result = new PrimitiveIdSet();
+        TreeMap<Object, Set<Object>> values = keyMap( query.getField(), false );
+        if ( values == null )
+        {
+            return result;
+        }
+        String lower = query.getLowerTerm();
+        String upper = query.getUpperTerm();
+        Map<Object, Set<Object>> range = values.tailMap( lower != null ? lower : "",
+                lower == null || query.includesLower() );
+        for ( Map.Entry<Object, Set<Object>> entry : range.entrySet() )
+        {
+            if ( upper != null )
+            {
+                int comparison = entry.getKey().toString().compareTo( upper );
+                if ( comparison > 0 || (comparison == 0 && !query.includesUpper()) )
+                {
+                    break;
+                }
+            }
+            addIds( result, entry.getValue() );
+        }
+        return result;
+    }
+
+    private PrimitiveIdSet matchRange( NumericRangeQuery<?> query )
+    {
+        PrimitiveIdSet result = new PrimitiveIdSet();
+        TreeMap<Object, Set<Object>> values = keyMap( query.getField(), false );
+        if ( values == null )
+        {
+            return result;
+        }
+        Number min = query.getMin();
+        Number max = query.getMax();
+        for ( Map.Entry<Object, Set<Object>> entry : values.entrySet() )
+        {
+            if ( !(entry.getKey() instanceof Number) )
+            {
+                // Numbers are ordered before strings
+                break;
+            }
+            Number value = (Number) entry.getKey();
+            // Lucene only matches numeric values indexed with the same type
+            // as the range, since their terms are encoded differently
+            if ( (min != null && !sameNumericType( value, min )) ||
+                    (max != null && !sameNumericType( value, max )) )
+            {
+                continue;
+            }
+            if ( min != null )
+            {
+                int comparison = compareNumbers( value, min );
+                if ( comparison < 0 || (comparison == 0 && !query.includesMin()) )
+                {
+                    continue;
+                }
+            }
+            if ( max != null )
+            {
+                int comparison = compareNumbers( value, max );
+                if ( comparison > 0 || (comparison == 0 && !query.includesMax()) )
+                {
+                    continue;
+                }
+            }
+            addIds( result, entry.getValue() );
+        }
+        return result;
+    }
+
+    private static boolean sameNumericType( Number value1, Number value2 )
+    {
+        return numericType( value1 ) == numericType( value2 );
+    }
+
+    private static int numericType( Number value )
+    {
+        // The types IndexType#instantiateField indexes numbers as
+        return value instanceof Long ? 1 : value instanceof Float ? 2 : value instanceof Double ? 3 : 0;
+    }
+
+    private static int compareNumbers( Number value1, Number value2 )
+    {
+        return value1 instanceof Float || value1 instanceof Double ?
+                Double.compare( value1.doubleValue(), value2.doubleValue() ) :
+                value1.longValue() < value2.longValue() ? -1 :
+                value1.longValue() == value2.longValue() ? 0 : 1;
+    }
+
+    private static void addIds( PrimitiveIdSet result, Set<Object> ids )
+    {
+        if ( ids == null )
+        {
+            return;
+        }
+        for ( Object id : ids )
+        {
+            result.add( id instanceof Long ? (Long) id : ((RelationshipId) id).id );
+        }
+    }
+
     @Override
     void remove( TxDataHolder holder, Object entityId, String key, Object value )
     {
@@ -185,6 +185,12 @@ class FullTxData extends TxData
         return internalQuery( query, contextOrNull );
     }
 
+    @Override
+    Collection<Long> queryWithoutSearcher( Query query )
+    {
+        return null;
+    }
+
     private Collection<Long> internalQuery( Query query, QueryContext contextOrNull )
     {
         if ( this.directory == null )
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import javax.management.NotCompliantMBeanException;
+
+import org.neo4j.helpers.Service;
+import org.neo4j.index.lucene.management.IndexResultCache;
+import org.neo4j.jmx.impl.ManagementBeanProvider;
+import org.neo4j.jmx.impl.ManagementData;
+import org.neo4j.jmx.impl.Neo4jMBean;
+import org.neo4j.kernel.impl.transaction.XaDataSourceManager;
+
+@Service.Implementation( ManagementBeanProvider.class )
+public final class IndexResultCacheBean extends ManagementBeanProvider
+{
+    public IndexResultCacheBean()
+    {
+        super( IndexResultCache.class );
+    }
+
+    @Override
+    protected Neo4jMBean createMBean( ManagementData management ) throws NotCompliantMBeanException
+    {
+        return new IndexResultCacheImpl( management );
+    }
+
+    private static class IndexResultCacheImpl extends Neo4jMBean implements IndexResultCache
+    {
+        IndexResultCacheImpl( ManagementData management ) throws NotCompliantMBeanException
+        {
+            super( management );
+            this.dataSources = management.getKernelData().getConfig().getTxModule().getXaDataSourceManager();
+        }
+
+        private final XaDataSourceManager dataSources;
+
+        // The data source is registered with the first use of the lucene index provider
+        private ResultCache cache()
+        {
+            LuceneDataSource dataSource = (LuceneDataSource) dataSources.getXaDataSource(
+                    LuceneIndexImplementation.DATA_SOURCE_NAME );
+            return dataSource != null ? dataSource.getResultCache() : null;
+        }
+
+        public long getHits()
+        {
+            ResultCache cache = cache();
+            return cache != null ? cache.getHits() : 0;
+        }
+
+        public long getMisses()
+        {
+            ResultCache cache = cache();
+            return cache != null ? cache.getMisses() : 0;
+        }
+
+        public long getEvictions()
+        {
+            ResultCache cache = cache();
+            return cache != null ? cache.getEvictions() : 0;
+        }
+
+        public long getInvalidations()
+        {
+            ResultCache cache = cache();
+            return cache != null ? cache.getInvalidations() : 0;
+        }
+
+        public long getSizeInBytes()
+        {
+            ResultCache cache = cache();
+            return cache != null ? cache.getSizeInBytes() : 0;
+        }
+
+        public long getMaxSizeInBytes()
+        {
+            ResultCache cache = cache();
+            return cache != null ? cache.getMaxSizeInBytes() : 0;
+        }
+
+        public int getNumberOfEntries()
+        {
+            ResultCache cache = cache();
+            return cache != null ? cache.getNumberOfEntries() : 0;
+        }
+    }
+}
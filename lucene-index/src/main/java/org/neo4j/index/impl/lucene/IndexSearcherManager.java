@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * Keeps the current {@link IndexSearcherRef} of an index and replaces it with
+ * one reopened from the {@link IndexWriter} when commits have made it stale.
+ * Acquiring the current searcher is only a reference count increment, readers
+ * holding on to a replaced searcher keep using it until they close it.
+ */
+class IndexSearcherManager
+{
+    private final IndexIdentifier identifier;
+    private volatile IndexSearcherRef current;
+    
+    /**
+     * Counts commits to the index. The searcher is stale as long as
+     * {@link #searcherGeneration} lags behind, which is only brought up to
+     * date once the refreshed searcher is in place so that a reader never
+     * sees an up to date generation together with an old searcher.
+     */
+    private final AtomicLong commitGeneration = new AtomicLong();
+    private volatile long searcherGeneration;
+    private volatile boolean closed;
+    
+    IndexSearcherManager( IndexIdentifier identifier, IndexWriter writer ) throws IOException
+    {
+        this.identifier = identifier;
+        this.current = new IndexSearcherRef( identifier,
+                new IndexSearcher( IndexReader.open( writer, true ) ) );
+    }
+    
+    /**
+     * Returns the current searcher with its reference count incremented, the
+     * caller is responsible for closing it.
+     * 
+     * @param refresh whether or not to first refresh the searcher if it's
+     * stale, otherwise changes committed since the last refresh may not be
+     * visible.
+     */
+    IndexSearcherRef acquire( boolean refresh )
+    {
+        if ( refresh )
+        {
+            refreshIfStale();
+        }
+        while ( true )
+        {
+            IndexSearcherRef searcher = current;
+            if ( searcher.tryIncRef() )
+            {
+                return searcher;
+            }
+            if ( closed )
+            {
+                throw new IllegalStateException( "Index has been shut down" );
+            }
+            // It got replaced by a refreshed searcher after we read it,
+            // the refreshed one is in place by now.
+        }
+    }
+    
+    /**
+     * Returns the current searcher, refreshed if it was stale, without
+     * touching its reference count. Only for callers holding the write
+     * lock of the data source, which keeps it from being replaced.
+     */
+    IndexSearcherRef getFresh()
+    {
+        refreshIfStale();
+        return current;
+    }
+    
+    /**
+     * Marks the searcher as stale after a commit to the index.
+     * 
+     * @return the number of commits since the searcher was last refreshed.
+     */
+    long committed()
+    {
+        return commitGeneration.incrementAndGet() - searcherGeneration;
+    }
+    
+    boolean isCurrentAndFresh( IndexSearcherRef searcher )
+    {
+        return searcher == current && !isStale();
+    }
+    
+    boolean isStale()
+    {
+        return commitGeneration.get() != searcherGeneration;
+    }
+    
+    void refreshIfStale()
+    {
+        if ( isStale() )
+        {
+            refresh();
+        }
+    }
+    
+    private synchronized void refresh()
+    {
+        long generation = commitGeneration.get();
+        if ( closed || generation == searcherGeneration )
+        {
+            return;
+        }
+        
+        try
+        {
+            IndexReader reader = current.getSearcher().getIndexReader();
+            IndexReader reopened = reader.reopen();
+            if ( reopened != reader )
+            {
+                IndexSearcherRef old = current;
+                current = new IndexSearcherRef( identifier, new IndexSearcher( reopened ) );
+                old.detachOrClose();
+            }
+            searcherGeneration = generation;
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+    
+    synchronized void close() throws IOException
+    {
+        closed = true;
+        current.dispose();
+    }
+}
@@ -20,16 +20,19 @@
 package org.neo4j.index.impl.lucene;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.search.IndexSearcher;
 
 class IndexSearcherRef
 {
+    private static final int DISPOSED = -1;
+    
     private final IndexIdentifier identifier;
     private final IndexSearcher searcher;
     private final AtomicInteger refCount = new AtomicInteger( 0 );
-    private volatile boolean isClosed;
+    private final AtomicBoolean isClosed = new AtomicBoolean();
     
     /**
      * We need this because we only want to close the reader/searcher if
@@ -55,42 +58,60 @@ class IndexSearcherRef
         return identifier;
     }
 
-    void incRef()
+    /**
+     * Increments the reference count, unless this searcher has already been
+     * closed, i.e. been replaced by a refreshed searcher after the caller got
+     * hold of it.
+     * 
+     * @return whether or not a reference was acquired.
+     */
+    boolean tryIncRef()
     {
-        this.refCount.incrementAndGet();
+        while ( true )
+        {
+            int count = this.refCount.get();
+            if ( count == DISPOSED )
+            {
+                return false;
+            }
+            if ( this.refCount.compareAndSet( count, count + 1 ) )
+            {
+                return true;
+            }
+        }
     }
     
     public void dispose() throws IOException
     {
-        if ( !this.isClosed )
+        this.refCount.set( DISPOSED );
+        if ( this.isClosed.compareAndSet( false, true ) )
         {
             this.searcher.close();
             this.searcher.getIndexReader().close();
-            this.isClosed = true;
         }
     }
     
     public void detachOrClose() throws IOException
     {
-        if ( this.refCount.get() == 0 )
+        // Detach before looking at the count so that a concurrent close()
+        // bringing it down to zero sees it and closes instead
+        this.detached = true;
+        if ( this.refCount.compareAndSet( 0, DISPOSED ) )
         {
             dispose();
         }
-        else
-        {
-            this.detached = true;
-        }
     }
     
     public boolean close() throws IOException
     {
-        if ( this.isClosed || this.refCount.get() == 0 )
+        if ( this.isClosed.get() || this.refCount.get() <= 0 )
         {
             return true;
         }
         
         boolean reallyClosed = false;
-        if ( this.refCount.decrementAndGet() <= 0 && this.detached )
+        if ( this.refCount.decrementAndGet() == 0 && this.detached &&
+                this.refCount.compareAndSet( 0, DISPOSED ) )
         {
             dispose();
             reallyClosed = true;
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * Refreshes the stale searchers of a {@link LuceneDataSource} in the
+ * background, every {@code interval} milliseconds and as soon as an index has
+ * had {@code commits} commits since its searcher was last refreshed. A zero
+ * interval or commit count disables that trigger.
+ */
+class IndexSearcherRefresher extends Thread
+{
+    private final LuceneDataSource dataSource;
+    private final long interval;
+    private final long commits;
+    private final StringLogger msgLog;
+    private final Object signal = new Object();
+    private boolean wakeUp;
+    private volatile boolean halted;
+    
+    IndexSearcherRefresher( LuceneDataSource dataSource, long interval, long commits,
+            StringLogger msgLog )
+    {
+        super( "Lucene searcher refresher" );
+        this.dataSource = dataSource;
+        this.interval = interval;
+        this.commits = commits;
+        this.msgLog = msgLog;
+        setDaemon( true );
+    }
+    
+    void committed( long commitsSinceRefresh )
+    {
+        if ( commits > 0 && commitsSinceRefresh >= commits )
+        {
+            synchronized ( signal )
+            {
+                wakeUp = true;
+                signal.notify();
+            }
+        }
+    }
+    
+    @Override
+    public void run()
+    {
+        while ( !halted )
+        {
+            try
+            {
+                synchronized ( signal )
+                {
+                    if ( !wakeUp )
+                    {
+                        // Waiting zero milliseconds means waiting until notified
+                        signal.wait( interval );
+                    }
+                    wakeUp = false;
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.interrupted();
+            }
+            if ( !halted )
+            {
+                try
+                {
+                    dataSource.refreshStaleSearchers();
+                }
+                catch ( RuntimeException e )
+                {
+                    // The searcher stays stale and gets another try next time
+                    msgLog.logMessage( "Unable to refresh stale index searchers", e );
+                }
+            }
+        }
+    }
+    
+    void halt()
+    {
+        halted = true;
+        synchronized ( signal )
+        {
+            wakeUp = true;
+            signal.notify();
+        }
+        try
+        {
+            join();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.interrupted();
+        }
+    }
+}
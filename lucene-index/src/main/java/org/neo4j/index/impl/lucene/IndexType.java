@@ -90,6 +90,12 @@ abstract class IndexType
             }
         }
 
+        @Override
+        boolean indexesValuesAsTerms()
+        {
+            return true;
+        }
+
         @Override
         public String toString()
         {
@@ -370,4 +376,13 @@ abstract class IndexType
     {
         return null;
     }
+    
+    /**
+     * @return whether or not values are indexed under their key as they are,
+     * so that queries can be matched against the values themselves.
+     */
+    boolean indexesValuesAsTerms()
+    {
+        return false;
+    }
 }
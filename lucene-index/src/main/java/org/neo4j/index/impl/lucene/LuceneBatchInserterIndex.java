@@ -21,6 +21,7 @@ package org.neo4j.index.impl.lucene;
 
 import static org.neo4j.index.impl.lucene.LuceneDataSource.LUCENE_VERSION;
 import static org.neo4j.index.impl.lucene.LuceneDataSource.getDirectory;
+import static org.neo4j.index.impl.lucene.LuceneDataSource.getFileDirectory;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -28,7 +29,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Fieldable;
@@ -36,6 +39,7 @@ import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
@@ -47,6 +51,7 @@ import org.neo4j.kernel.impl.batchinsert.BatchInserter;
 import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
 import org.neo4j.kernel.impl.cache.LruCache;
 import org.neo4j.kernel.impl.util.IoPrimitiveUtils;
+import org.neo4j.kernel.impl.util.StringLogger;
 
 class LuceneBatchInserterIndex implements BatchInserterIndex
 {
@@ -60,6 +65,12 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
     private Map<String, LruCache<String, Collection<Long>>> cache;
     private int updateCount;
     private int commitBatchSize = 500000;
+    private final BulkIndexer bulk;
+    
+    private final StringLogger msgLog;
+    private final long progressInterval;
+    private final AtomicLong indexedCount = new AtomicLong();
+    private final long startTime = System.currentTimeMillis();
 
     LuceneBatchInserterIndex( LuceneBatchInserterIndexProvider provider,
             BatchInserter inserter, IndexIdentifier identifier, Map<String, String> config )
@@ -69,7 +80,21 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         this.createdNow = storeDir.other();
         this.identifier = identifier;
         this.type = IndexType.getIndexType( identifier, config );
-        this.writer = instantiateWriter( storeDir.first() );
+        this.msgLog = StringLogger.getLogger( dbStoreDir );
+        this.progressInterval = provider.progressInterval;
+        if ( provider.bulkThreads > 1 )
+        {
+            // The documents go to the writers of the workers, the writer
+            // of the index only gets their segments at shutdown
+            this.writer = instantiateWriter( storeDir.first(), IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB );
+            this.bulk = new BulkIndexer( this, getFileDirectory( storeDir.first(), identifier ), type,
+                    provider.bulkThreads, ramBufferSizeMB( provider.ramBufferSize ) / provider.bulkThreads );
+        }
+        else
+        {
+            this.writer = instantiateWriter( storeDir.first(), ramBufferSizeMB( provider.ramBufferSize ) );
+            this.bulk = null;
+        }
     }
     
     /**
@@ -87,27 +112,31 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
     {
         try
         {
+            // The base document is created here since it may have to look up
+            // the relationship in the batch inserter, which isn't thread safe
             Document document = identifier.entityType.newDocument( entityId );
-            for ( Map.Entry<String, Object> entry : properties.entrySet() )
+            if ( createdNow && this.cache != null )
             {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                boolean isValueContext = value instanceof ValueContext;
-                value = isValueContext ? ((ValueContext) value).getCorrectValue() : value;
-                for ( Object oneValue : IoPrimitiveUtils.asArray( value ) )
+                // If we know that the index was created this session
+                // then we can go ahead and add stuff to the cache directly
+                // when adding to the index.
+                for ( Map.Entry<String, Object> entry : properties.entrySet() )
                 {
-                    oneValue = isValueContext ? oneValue : oneValue.toString();
-                    type.addToDocument( document, key, oneValue );
-                    if ( createdNow )
+                    for ( Object oneValue : values( entry.getValue() ) )
                     {
-                        // If we know that the index was created this session
-                        // then we can go ahead and add stuff to the cache directly
-                        // when adding to the index.
-                        addToCache( entityId, key, oneValue );
+                        addToCache( entityId, entry.getKey(), oneValue );
                     }
                 }
             }
+            if ( bulk != null )
+            {
+                bulk.add( document, new HashMap<String, Object>( properties ) );
+                return;
+            }
+            
+            addFields( document, properties );
             writer.addDocument( document );
+            indexed();
             if ( ++updateCount == commitBatchSize )
             {
                 writer.commit();
@@ -120,6 +149,53 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         }
     }
     
+    void addFields( Document document, Map<String, Object> properties )
+    {
+        for ( Map.Entry<String, Object> entry : properties.entrySet() )
+        {
+            for ( Object oneValue : values( entry.getValue() ) )
+            {
+                type.addToDocument( document, entry.getKey(), oneValue );
+            }
+        }
+    }
+    
+    private static Object[] values( Object value )
+    {
+        if ( value instanceof ValueContext )
+        {
+            return IoPrimitiveUtils.asArray( ((ValueContext) value).getCorrectValue() );
+        }
+        Object[] values = IoPrimitiveUtils.asArray( value );
+        for ( int i = 0; i < values.length; i++ )
+        {
+            values[i] = values[i].toString();
+        }
+        return values;
+    }
+    
+    /**
+     * Counts a document added to a writer and reports the progress and
+     * throughput every {@link LuceneBatchInserterIndexProvider#PROGRESS_INTERVAL}
+     * documents. Called from the workers in bulk mode.
+     */
+    void indexed()
+    {
+        long count = indexedCount.incrementAndGet();
+        if ( progressInterval > 0 && count % progressInterval == 0 )
+        {
+            logProgress( "Indexed " + count );
+        }
+    }
+    
+    private void logProgress( String message )
+    {
+        long count = indexedCount.get();
+        long time = Math.max( System.currentTimeMillis() - startTime, 1 );
+        msgLog.logMessage( message + " entities into " + identifier + " in " + time / 1000 + "s, " +
+                count * 1000 / time + " entities/s" );
+    }
+    
     private void addToCache( long entityId, String key, Object value )
     {
         if ( this.cache == null )
@@ -181,7 +257,12 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         try
         {
             removeFromCache( entityId );
-            writer.deleteDocuments( type.idTermQuery( entityId ) );
+            Query query = type.idTermQuery( entityId );
+            if ( bulk != null )
+            {
+                bulk.deleteDocuments( query );
+            }
+            writer.deleteDocuments( query );
             add( entityId, properties );
         }
         catch ( IOException e )
@@ -226,12 +307,12 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         }
     }
 
-    private IndexWriter instantiateWriter( String directory )
+    private IndexWriter instantiateWriter( String directory, double ramBufferSizeMB )
     {
         try
         {
             IndexWriterConfig writerConfig = new IndexWriterConfig( LUCENE_VERSION, type.analyzer );
-            writerConfig.setRAMBufferSizeMB( determineGoodBufferSize( writerConfig.getRAMBufferSizeMB() ) );
+            writerConfig.setRAMBufferSizeMB( ramBufferSizeMB );
             IndexWriter writer = new IndexWriter( getDirectory( directory, identifier ), writerConfig );
             return writer;
         }
@@ -241,6 +322,19 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
         }
     }
     
+    /**
+     * @return {@code bytes} in MB, or a size based on the heap if not
+     * configured. Lucene doesn't accept 2048 MB or more for a writer.
+     */
+    private double ramBufferSizeMB( long bytes )
+    {
+        if ( bytes <= 0 )
+        {
+            return determineGoodBufferSize( IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB );
+        }
+        return Math.min( bytes / (1024d * 1024d), 2047 );
+    }
+    
     private double determineGoodBufferSize( double atLeast )
     {
         double heapHint = (double)(Runtime.getRuntime().maxMemory()/(1024*1024*14));
@@ -252,8 +346,16 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
     {
         try
         {
+            if ( this.searcher != null )
+            {
+                this.searcher.getIndexReader().close();
+            }
             LuceneUtil.close( this.searcher );
         }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
         finally
         {
             this.searcher = null;
@@ -273,6 +375,12 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
                     result.close();
                 }
                 IndexReader newReader = IndexReader.open( writer, true );
+                if ( bulk != null )
+                {
+                    List<IndexReader> readers = new ArrayList<IndexReader>( bulk.openReaders() );
+                    readers.add( 0, newReader );
+                    newReader = new MultiReader( readers.toArray( new IndexReader[readers.size()] ) );
+                }
                 result = new IndexSearcher( newReader );
                 writerModified = false;
             }
@@ -369,11 +477,29 @@ class LuceneBatchInserterIndex implements BatchInserterIndex
     public void shutdown()
     {
         closeSearcher();
-        closeWriter();
+        try
+        {
+            if ( bulk != null )
+            {
+                bulk.mergeInto( writer );
+            }
+        }
+        finally
+        {
+            closeWriter();
+        }
+        if ( progressInterval > 0 && indexedCount.get() > 0 )
+        {
+            logProgress( "Done, indexed " + indexedCount.get() );
+        }
     }
     
     public void flush()
     {
+        if ( bulk != null )
+        {
+            bulk.awaitIdle();
+        }
         writerModified = true;
 //        try
 //        {
@@ -33,6 +33,7 @@ import org.neo4j.graphdb.index.BatchInserterIndexProvider;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexManager;
 import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.Config;
 import org.neo4j.kernel.impl.batchinsert.BatchInserter;
 import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
 import org.neo4j.kernel.impl.batchinsert.SimpleRelationship;
@@ -42,19 +43,62 @@ import org.neo4j.kernel.impl.index.IndexStore;
  * The {@link BatchInserter} version of {@link LuceneIndexImplementation}. Indexes
  * created and populated using {@link BatchInserterIndex}s from this provider
  * are compatible with {@link Index}s from {@link LuceneIndexImplementation}.
+ * <p>
+ * With {@link #BULK_THREADS} configured to more than one thread, documents
+ * are built and indexed by that many worker threads per index, each into
+ * segments of its own, which are added to the index at {@link #shutdown()}.
+ * Queries and {@link BatchInserterIndex#updateOrAdd(long, Map)} wait for the
+ * workers to catch up first, so bulk indexing is for adding lots of entities
+ * with few lookups in between.
  */
 public class LuceneBatchInserterIndexProvider implements BatchInserterIndexProvider
 {
+    /**
+     * The number of worker threads indexing documents for each index, more
+     * than one enables bulk indexing. Default is to index on the calling
+     * thread.
+     */
+    public static final String BULK_THREADS = "lucene_batch_threads";
+    
+    /**
+     * The RAM buffered by the writers of each index before they write a
+     * segment, shared by the workers when bulk indexing, f.ex. "512M".
+     * Default depends on the heap size.
+     */
+    public static final String RAM_BUFFER_SIZE = "lucene_batch_ram_buffer_size";
+    
+    /**
+     * The number of documents an index adds between reporting its progress
+     * and throughput in the messages log of the store, 0 turns it off.
+     */
+    public static final String PROGRESS_INTERVAL = "lucene_batch_progress_interval";
+    private static final long DEFAULT_PROGRESS_INTERVAL = 1000000;
+    
     private final BatchInserter inserter;
     private final Map<IndexIdentifier, LuceneBatchInserterIndex> indexes =
             new HashMap<IndexIdentifier, LuceneBatchInserterIndex>();
     final IndexStore indexStore;
     final EntityType nodeEntityType;
     final EntityType relationshipEntityType;
+    final int bulkThreads;
+    final long ramBufferSize;
+    final long progressInterval;
 
     public LuceneBatchInserterIndexProvider( final BatchInserter inserter )
+    {
+        this( inserter, new HashMap<String, String>() );
+    }
+    
+    /**
+     * @param config {@link #BULK_THREADS}, {@link #RAM_BUFFER_SIZE} and
+     * {@link #PROGRESS_INTERVAL}.
+     */
+    public LuceneBatchInserterIndexProvider( final BatchInserter inserter, Map<String, String> config )
     {
         this.inserter = inserter;
+        this.bulkThreads = (int) Config.parseLong( config, BULK_THREADS, 1 );
+        this.ramBufferSize = Config.parseSize( config, RAM_BUFFER_SIZE, 0 );
+        this.progressInterval = Config.parseLong( config, PROGRESS_INTERVAL, DEFAULT_PROGRESS_INTERVAL );
         this.indexStore = ((BatchInserterImpl) inserter).getIndexStore();
         this.nodeEntityType = new EntityType()
         {
@@ -32,7 +32,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -44,7 +44,6 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.Fieldable;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.SnapshotDeletionPolicy;
@@ -64,7 +63,6 @@ import org.neo4j.helpers.Pair;
 import org.neo4j.helpers.UTF8;
 import org.neo4j.helpers.collection.ClosableIterable;
 import org.neo4j.kernel.Config;
-import org.neo4j.kernel.impl.cache.LruCache;
 import org.neo4j.kernel.impl.index.IndexProviderStore;
 import org.neo4j.kernel.impl.index.IndexStore;
 import org.neo4j.kernel.impl.transaction.xaframework.LogBackedXaDataSource;
@@ -76,6 +74,7 @@ import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
 import org.neo4j.kernel.impl.transaction.xaframework.XaLogicalLog;
 import org.neo4j.kernel.impl.transaction.xaframework.XaTransaction;
 import org.neo4j.kernel.impl.transaction.xaframework.XaTransactionFactory;
+import org.neo4j.kernel.impl.util.StringLogger;
 
 /**
  * An {@link XaDataSource} optimized for the {@link LuceneIndexImplementation}.
@@ -123,10 +122,42 @@ public class LuceneDataSource extends LogBackedXaDataSource
     
     public static final Analyzer KEYWORD_ANALYZER = new KeywordAnalyzer();
     
-    private final Map<IndexIdentifier,Pair<IndexWriter, AtomicBoolean>> indexWriters = 
-        new HashMap<IndexIdentifier,Pair<IndexWriter, AtomicBoolean>>();
-    private final Map<IndexIdentifier,IndexSearcherRef> indexSearchers = 
-        new HashMap<IndexIdentifier,IndexSearcherRef>();
+    /**
+     * Config key for the number of milliseconds between refreshes of stale
+     * index searchers in the background. If neither this nor
+     * {@link #SEARCHER_REFRESH_COMMITS} is set the first reader after a
+     * commit refreshes the searcher, so that readers always see the latest
+     * committed changes.
+     * <p>
+     * With either of them set, committed changes aren't visible to queries
+     * until the next background refresh of the searcher of that index. This
+     * includes the changes of the committing thread itself: a transaction
+     * that commits and then queries the index may not find what it just
+     * added, or still find what it just removed.
+     */
+    public static final String SEARCHER_REFRESH_INTERVAL = "lucene_searcher_refresh_interval";
+    
+    /**
+     * Config key for the number of commits to an index after which its
+     * searcher is refreshed in the background. As with
+     * {@link #SEARCHER_REFRESH_INTERVAL}, committed changes, including those
+     * of the committing thread, aren't visible until that refresh.
+     */
+    public static final String SEARCHER_REFRESH_COMMITS = "lucene_searcher_refresh_commits";
+    
+    /**
+     * Config key for the maximum size of the cached results of exact lookups
+     * on keys with a cache capacity set, in bytes or with a "k", "M" or "G"
+     * suffix. Defaults to {@link #DEFAULT_RESULT_CACHE_SIZE}.
+     */
+    public static final String RESULT_CACHE_SIZE = "lucene_result_cache_size";
+    public static final long DEFAULT_RESULT_CACHE_SIZE = 10 * 1024 * 1024;
+    
+    private final Map<IndexIdentifier,IndexWriter> indexWriters = 
+        new HashMap<IndexIdentifier,IndexWriter>();
+    private final Map<IndexIdentifier,IndexSearcherManager> searcherManagers = 
+        new ConcurrentHashMap<IndexIdentifier,IndexSearcherManager>();
+    private final IndexSearcherRefresher searcherRefresher;
 
     private final XaContainer xaContainer;
     private final String baseStorePath;
@@ -135,7 +166,7 @@ public class LuceneDataSource extends LogBackedXaDataSource
     final IndexProviderStore providerStore;
     private final IndexTypeCache typeCache;
     private boolean closed;
-    private final Cache caching;
+    private final ResultCache caching;
     EntityType nodeEntityType;
     EntityType relationshipEntityType;
     final Map<IndexIdentifier, LuceneIndex<? extends PropertyContainer>> indexes =
@@ -152,7 +183,7 @@ public class LuceneDataSource extends LogBackedXaDataSource
         throws InstantiationException
     {
         super( params );
-        caching = new Cache();
+        caching = new ResultCache( Config.parseSize( params, RESULT_CACHE_SIZE, DEFAULT_RESULT_CACHE_SIZE ) );
         String storeDir = (String) params.get( "store_dir" );
         this.baseStorePath = getStoreDir( storeDir ).first();
         cleanWriteLocks( baseStorePath );
@@ -172,6 +203,18 @@ public class LuceneDataSource extends LogBackedXaDataSource
                 isReadOnly = Boolean.parseBoolean( (String) readOnly );
             }
         }
+        long refreshInterval = parseLong( params.get( SEARCHER_REFRESH_INTERVAL ) );
+        long refreshCommits = parseLong( params.get( SEARCHER_REFRESH_COMMITS ) );
+        if ( refreshInterval > 0 || refreshCommits > 0 )
+        {
+            searcherRefresher = new IndexSearcherRefresher( this, refreshInterval, refreshCommits,
+                    StringLogger.getLogger( storeDir ) );
+            searcherRefresher.start();
+        }
+        else
+        {
+            searcherRefresher = null;
+        }
                 
         nodeEntityType = new EntityType()
         {
@@ -226,6 +269,16 @@ public class LuceneDataSource extends LogBackedXaDataSource
         }
     }
     
+    private static long parseLong( Object value )
+    {
+        if ( value == null )
+        {
+            return 0;
+        }
+        return value instanceof Number ? ((Number) value).longValue() :
+                Long.parseLong( value.toString() );
+    }
+    
     IndexType getType( IndexIdentifier identifier )
     {
         return typeCache.getIndexType( identifier );
@@ -287,24 +340,29 @@ public class LuceneDataSource extends LogBackedXaDataSource
             return;
         }
         
-        for ( IndexSearcherRef searcher : indexSearchers.values() )
+        if ( searcherRefresher != null )
+        {
+            searcherRefresher.halt();
+        }
+        
+        for ( IndexSearcherManager searcherManager : searcherManagers.values() )
         {
             try
             {
-                searcher.dispose();
+                searcherManager.close();
             }
             catch ( IOException e )
             {
                 e.printStackTrace();
             }
         }
-        indexSearchers.clear();
+        searcherManagers.clear();
         
-        for ( Map.Entry<IndexIdentifier, Pair<IndexWriter, AtomicBoolean>> entry : indexWriters.entrySet() )
+        for ( Map.Entry<IndexIdentifier, IndexWriter> entry : indexWriters.entrySet() )
         {
             try
             {
-                entry.getValue().first().close( true );
+                entry.getValue().close( true );
             }
             catch ( IOException e )
             {
@@ -354,11 +412,11 @@ public class LuceneDataSource extends LogBackedXaDataSource
         @Override
         public void flushAll()
         {
-            for ( Map.Entry<IndexIdentifier, Pair<IndexWriter, AtomicBoolean>> entry : indexWriters.entrySet() )
+            for ( Map.Entry<IndexIdentifier, IndexWriter> entry : indexWriters.entrySet() )
             {
                 try
                 {
-                    entry.getValue().first().commit();
+                    entry.getValue().commit();
                 }
                 catch ( IOException e )
                 {
@@ -406,38 +464,6 @@ public class LuceneDataSource extends LogBackedXaDataSource
         lock.writeLock().unlock();
     }
     
-    /**
-     * If nothing has changed underneath (since the searcher was last created
-     * or refreshed) {@code null} is returned. But if something has changed a
-     * refreshed searcher is returned. It makes use if the
-     * {@link IndexReader#reopen()} which faster than opening an index from
-     * scratch.
-     * 
-     * @param searcher the {@link IndexSearcher} to refresh.
-     * @return a refreshed version of the searcher or, if nothing has changed,
-     * {@code null}.
-     * @throws IOException if there's a problem with the index.
-     */
-    private IndexSearcherRef refreshSearcher( IndexSearcherRef searcher )
-    {
-        try
-        {
-            IndexReader reader = searcher.getSearcher().getIndexReader();
-            IndexReader reopened = reader.reopen();
-            if ( reopened != reader )
-            {
-                IndexSearcher newSearcher = new IndexSearcher( reopened );
-                searcher.detachOrClose();
-                return new IndexSearcherRef( searcher.getIdentifier(), newSearcher );
-            }
-            return null;
-        }
-        catch ( IOException e )
-        {
-            throw new RuntimeException( e );
-        }
-    }
-    
     static File getFileDirectory( String storeDir, byte entityType )
     {
         File path = new File( storeDir, "lucene" );
@@ -474,40 +500,76 @@ public class LuceneDataSource extends LogBackedXaDataSource
         return TopFieldCollector.create( sorting, n, false, true, false, true );
     }
     
-    synchronized IndexSearcherRef getIndexSearcher( IndexIdentifier identifier, boolean incRef )
+    /**
+     * Returns the current searcher of the index with its reference count
+     * incremented, the caller must close it when done. Unless searchers are
+     * refreshed in the background a stale searcher is refreshed first.
+     */
+    IndexSearcherRef getIndexSearcher( IndexIdentifier identifier )
     {
-        try
+        return getSearcherManager( identifier ).acquire( searcherRefresher == null );
+    }
+    
+    /**
+     * Returns a searcher which sees all committed changes to the index, for
+     * use while holding the write lock, which keeps it from being replaced.
+     */
+    IndexSearcher getFreshIndexSearcher( IndexIdentifier identifier )
+    {
+        return getSearcherManager( identifier ).getFresh().getSearcher();
+    }
+    
+    /**
+     * @return whether or not {@code searcher} sees all committed changes to
+     * the index. It stays that way while the caller holds the read lock.
+     */
+    boolean isFresh( IndexIdentifier identifier, IndexSearcherRef searcher )
+    {
+        return getSearcherManager( identifier ).isCurrentAndFresh( searcher );
+    }
+    
+    private IndexSearcherManager getSearcherManager( IndexIdentifier identifier )
+    {
+        IndexSearcherManager searcherManager = searcherManagers.get( identifier );
+        if ( searcherManager != null )
         {
-            IndexSearcherRef searcher = indexSearchers.get( identifier );
-            if ( searcher == null )
-            {
-                IndexWriter writer = getIndexWriter( identifier );
-                IndexReader reader = IndexReader.open( writer, true );
-                IndexSearcher indexSearcher = new IndexSearcher( reader );
-                searcher = new IndexSearcherRef( identifier, indexSearcher );
-                indexSearchers.put( identifier, searcher );
-            }
-            else
+            return searcherManager;
+        }
+        synchronized ( this )
+        {
+            searcherManager = searcherManagers.get( identifier );
+            if ( searcherManager == null )
             {
-                Pair<IndexWriter, AtomicBoolean> writer = indexWriters.get( identifier );
-                if ( writer != null && writer.other().compareAndSet( true, false ) )
+                try
                 {
-                    searcher = refreshSearcher( searcher );
-                    if ( searcher != null )
-                    {
-                        indexSearchers.put( identifier, searcher );
-                    }
+                    searcherManager = new IndexSearcherManager( identifier, getIndexWriter( identifier ) );
                 }
+                catch ( IOException e )
+                {
+                    throw new RuntimeException( e );
+                }
+                searcherManagers.put( identifier, searcherManager );
             }
-            if ( incRef )
-            {
-                searcher.incRef();
-            }
-            return searcher;
+            return searcherManager;
         }
-        catch ( IOException e )
+    }
+    
+    void refreshStaleSearchers()
+    {
+        for ( IndexSearcherManager searcherManager : searcherManagers.values() )
         {
-            throw new RuntimeException( e );
+            if ( searcherManager.isStale() )
+            {
+                getReadLock();
+                try
+                {
+                    searcherManager.refreshIfStale();
+                }
+                finally
+                {
+                    releaseReadLock();
+                }
+            }
         }
     }
 
@@ -517,12 +579,16 @@ public class LuceneDataSource extends LogBackedXaDataSource
         return new LuceneTransaction( identifier, logicalLog, this );
     }
 
-    synchronized void invalidateIndexSearcher( IndexIdentifier identifier )
+    void invalidateIndexSearcher( IndexIdentifier identifier )
     {
-        Pair<IndexWriter, AtomicBoolean> writer = indexWriters.get( identifier );
-        if ( writer != null )
+        IndexSearcherManager searcherManager = searcherManagers.get( identifier );
+        if ( searcherManager != null )
         {
-            writer.other().set( true );
+            long commits = searcherManager.committed();
+            if ( searcherRefresher != null )
+            {
+                searcherRefresher.committed( commits );
+            }
         }
     }
 
@@ -567,10 +633,10 @@ public class LuceneDataSource extends LogBackedXaDataSource
     {
         if ( closed ) throw new IllegalStateException( "Index has been shut down" );
 
-        Pair<IndexWriter, AtomicBoolean> writer = indexWriters.get( identifier );
+        IndexWriter writer = indexWriters.get( identifier );
         if ( writer != null )
         {
-            return writer.first();
+            return writer;
         }
         
         try
@@ -585,8 +651,7 @@ public class LuceneDataSource extends LogBackedXaDataSource
             {
                 writerConfig.setSimilarity( similarity );
             }
-            IndexWriter indexWriter = new IndexWriter( dir, writerConfig );
-            writer = Pair.of( indexWriter, new AtomicBoolean() );
+            writer = new IndexWriter( dir, writerConfig );
             
             // TODO We should tamper with this value and see how it affects the
             // general performance. Lucene docs says rather <10 for mixed
@@ -594,7 +659,7 @@ public class LuceneDataSource extends LogBackedXaDataSource
 //            writer.setMergeFactor( 8 );
             
             indexWriters.put( identifier, writer );
-            return writer.first();
+            return writer;
         }
         catch ( IOException e )
         {
@@ -662,15 +727,15 @@ public class LuceneDataSource extends LogBackedXaDataSource
     {
         try
         {
-            IndexSearcherRef searcher = indexSearchers.remove( identifier );
-            Pair<IndexWriter, AtomicBoolean> writer = indexWriters.remove( identifier );
-            if ( searcher != null )
+            IndexSearcherManager searcherManager = searcherManagers.remove( identifier );
+            IndexWriter writer = indexWriters.remove( identifier );
+            if ( searcherManager != null )
             {
-                searcher.dispose();
+                searcherManager.close();
             }
             if ( writer != null )
             {
-                writer.first().close();
+                writer.close();
             }
         }
         catch ( IOException e )
@@ -679,9 +744,9 @@ public class LuceneDataSource extends LogBackedXaDataSource
         }
     }
 
-    LruCache<String,Collection<Long>> getFromCache( IndexIdentifier identifier, String key )
+    ResultCache getResultCache()
     {
-        return caching.get( identifier, key );
+        return caching;
     }
 
     void setCacheCapacity( IndexIdentifier identifier, String key, int maxNumberOfCachedEntries )
@@ -691,17 +756,12 @@ public class LuceneDataSource extends LogBackedXaDataSource
     
     Integer getCacheCapacity( IndexIdentifier identifier, String key )
     {
-        LruCache<String, Collection<Long>> cache = this.caching.get( identifier, key );
-        return cache != null ? cache.maxSize() : null;
+        return this.caching.getCapacity( identifier, key );
     }
     
     void invalidateCache( IndexIdentifier identifier, String key, Object value )
     {
-        LruCache<String,Collection<Long>> cache = caching.get( identifier, key );
-        if ( cache != null )
-        {
-            cache.remove( value.toString() );
-        }
+        caching.invalidate( identifier, key, value );
     }
     
     void invalidateCache( IndexIdentifier identifier )
@@ -749,10 +809,10 @@ public class LuceneDataSource extends LogBackedXaDataSource
     {
         final Collection<File> files = new ArrayList<File>();
         final Collection<SnapshotDeletionPolicy> snapshots = new ArrayList<SnapshotDeletionPolicy>();
-        for ( Map.Entry<IndexIdentifier, Pair<IndexWriter, AtomicBoolean>> writer : indexWriters.entrySet() )
+        for ( Map.Entry<IndexIdentifier, IndexWriter> writer : indexWriters.entrySet() )
         {
             SnapshotDeletionPolicy deletionPolicy = (SnapshotDeletionPolicy)
-                    writer.getValue().first().getConfig().getIndexDeletionPolicy();
+                    writer.getValue().getConfig().getIndexDeletionPolicy();
             File indexDirectory = getFileDirectory( baseStorePath, writer.getKey() );
             for ( String fileName : deletionPolicy.snapshot( SNAPSHOT_ID ).getFileNames() )
             {
@@ -21,18 +21,26 @@ package org.neo4j.index.impl.lucene;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TermQuery;
 import org.neo4j.graphdb.Node;
@@ -40,8 +48,8 @@ import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.helpers.Pair;
 import org.neo4j.index.lucene.QueryContext;
-import org.neo4j.kernel.impl.cache.LruCache;
 import org.neo4j.kernel.impl.core.ReadOnlyDbException;
 import org.neo4j.kernel.impl.util.IoPrimitiveUtils;
 
@@ -228,51 +236,75 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
         IndexSearcher additionsSearcher = null;
         if ( luceneTx != null )
         {
+            Collection<Long> addedIds = null;
             if ( keyForDirectLookup != null )
             {
                 ids.addAll( luceneTx.getAddedIds( this, keyForDirectLookup, valueForDirectLookup ) );
             }
             else
             {
-                additionsSearcher = luceneTx.getAdditionsAsSearcher( this, additionalParametersOrNull );
+                // Unless the hits must be sorted or limited together with the
+                // committed ones the additions are merged in as ids, which
+                // saves building a searcher over them
+                if ( canMergeAddedIds( additionalParametersOrNull ) )
+                {
+                    addedIds = luceneTx.getAddedIdsWithoutSearcher( this, query );
+                }
+                if ( addedIds != null )
+                {
+                    ids.addAll( addedIds );
+                }
+                else
+                {
+                    additionsSearcher = luceneTx.getAdditionsAsSearcher( this, additionalParametersOrNull );
+                }
             }
             removedIds = keyForDirectLookup != null ?
                     luceneTx.getRemovedIds( this, keyForDirectLookup, valueForDirectLookup ) :
                     luceneTx.getRemovedIds( this, query );
+            if ( addedIds != null && !removedIds.isEmpty() )
+            {
+                removedIds.removeAll( addedIds );
+            }
         }
         service.dataSource().getReadLock();
         IndexHits<Long> idIterator = null;
         IndexSearcherRef searcher = null;
         try
         {
-            searcher = service.dataSource().getIndexSearcher( identifier, true );
+            searcher = service.dataSource().getIndexSearcher( identifier );
             if ( searcher != null )
             {
-                boolean foundInCache = false;
-                LruCache<String, Collection<Long>> cachedIdsMap = null;
+                CachedIds cachedIds = null;
                 if ( keyForDirectLookup != null )
                 {
-                    cachedIdsMap = service.dataSource().getFromCache(
-                            identifier, keyForDirectLookup );
-                    foundInCache = fillFromCache( cachedIdsMap, ids,
-                            keyForDirectLookup, valueForDirectLookup.toString(), removedIds );
+                    cachedIds = getFromCache( searcher, query, keyForDirectLookup,
+                            valueForDirectLookup.toString() );
                 }
                 
-                if ( !foundInCache )
+                IndexHits<Long> committedIds = null;
+                if ( cachedIds == null )
                 {
-                    DocToIdIterator searchedIds = new DocToIdIterator( search( searcher,
+                    committedIds = new DocToIdIterator( search( searcher,
                             query, additionalParametersOrNull, additionsSearcher, removedIds ), removedIds, searcher );
-                    if ( ids.isEmpty() )
-                    {
-                        idIterator = searchedIds;
-                    }
-                    else
-                    {
-                        Collection<IndexHits<Long>> iterators = new ArrayList<IndexHits<Long>>();
-                        iterators.add( searchedIds );
-                        iterators.add( new ConstantScoreIterator<Long>( ids, Float.NaN ) );
-                        idIterator = new CombinedIndexHits<Long>( iterators );
-                    }
+                }
+                else
+                {
+                    // Nothing holds on to the searcher, so that it can be
+                    // closed when it gets replaced by a refreshed one
+                    searcher.closeStrict();
+                    committedIds = cachedIds.hits( removedIds );
+                }
+                if ( ids.isEmpty() )
+                {
+                    idIterator = committedIds;
+                }
+                else
+                {
+                    Collection<IndexHits<Long>> iterators = new ArrayList<IndexHits<Long>>();
+                    iterators.add( committedIds );
+                    iterators.add( new ConstantScoreIterator<Long>( ids, Float.NaN ) );
+                    idIterator = new CombinedIndexHits<Long>( iterators );
                 }
             }
         }
@@ -304,28 +336,47 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
         };
     }
     
-    private boolean fillFromCache(
-            LruCache<String, Collection<Long>> cachedNodesMap,
-            List<Long> ids, String key, String valueAsString,
-            Collection<Long> deletedNodes )
+    /**
+     * Looks up the committed ids of an exact lookup in the result cache, if
+     * caching is enabled for {@code key}. On a miss they're read from
+     * {@code searcher} and cached, unless there are too many of them or the
+     * searcher doesn't see the latest commits. Called with the read lock held,
+     * so that no commit gets in between reading the ids and caching them.
+     */
+    private CachedIds getFromCache( IndexSearcherRef searcher, Query query, String key, String value )
     {
-        boolean found = false;
-        if ( cachedNodesMap != null )
+        ResultCache cache = service.dataSource().getResultCache();
+        if ( !cache.isEnabled( identifier, key ) )
+        {
+            return null;
+        }
+        CachedIds ids = cache.get( identifier, key, value );
+        if ( ids != null || !service.dataSource().isFresh( identifier, searcher ) )
+        {
+            return ids;
+        }
+        
+        IndexHits<Document> hits = search( searcher, query, null, null, Collections.<Long>emptySet() );
+        try
         {
-            Collection<Long> cachedNodes = cachedNodesMap.get( valueAsString );
-            if ( cachedNodes != null )
+            if ( !cache.fits( hits.size() ) )
             {
-                found = true;
-                for ( Long cachedNodeId : cachedNodes )
-                {
-                    if ( !deletedNodes.contains( cachedNodeId ) )
-                    {
-                        ids.add( cachedNodeId );
-                    }
-                }
+                return null;
+            }
+            long[] idArray = new long[hits.size()];
+            int count = 0;
+            while ( hits.hasNext() && count < idArray.length )
+            {
+                idArray[count++] = Long.parseLong( hits.next().get( KEY_DOC_ID ) );
             }
+            ids = CachedIds.of( count == idArray.length ? idArray : Arrays.copyOf( idArray, count ) );
         }
-        return found;
+        finally
+        {
+            hits.close();
+        }
+        cache.put( identifier, key, value, ids );
+        return ids;
     }
     
     private IndexHits<Document> search( IndexSearcherRef searcherRef, Query query,
@@ -341,10 +392,15 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
             IndexSearcher searcher = additionsSearcher == null ? searcherRef.getSearcher() :
                     new IndexSearcher( new MultiReader( searcherRef.getSearcher().getIndexReader(),
                             additionsSearcher.getIndexReader() ) );
+            // Filters are cached per segment, so only the committed index is optimized
+            Pair<Query, Filter> optimized = additionsSearcher == null ? optimize( searcher, query ) :
+                    Pair.of( query, (Filter) null );
+            query = optimized.first();
+            Filter filter = optimized.other();
             IndexHits<Document> result = null;
             if ( additionalParametersOrNull != null && additionalParametersOrNull.getTop() > 0 )
             {
-                result = new TopDocsIterator( query, additionalParametersOrNull, searcher );
+                result = new TopDocsIterator( query, filter, additionalParametersOrNull, searcher );
             }
             else
             {
@@ -352,7 +408,7 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
                         additionalParametersOrNull.getSorting() : null;
                 boolean forceScore = additionalParametersOrNull == null ||
                         !additionalParametersOrNull.getTradeCorrectnessForSpeed();
-                Hits hits = new Hits( searcher, query, null, sorting, forceScore );
+                Hits hits = new Hits( searcher, query, filter, sorting, forceScore );
                 result = new HitsIterator( hits );
             }
             return result;
@@ -364,6 +420,24 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
         }
     }
     
+    private static boolean canMergeAddedIds( QueryContext contextOrNull )
+    {
+        return contextOrNull == null || (contextOrNull.getSorting() == null &&
+                contextOrNull.getTop() <= 0 && !contextOrNull.getTradeCorrectnessForSpeed());
+    }
+    
+    /**
+     * Lets an index type move parts of {@code query} into a filter, which is
+     * cheaper to apply than to search with them.
+     * 
+     * @return the query to search with and the filter to apply to its hits,
+     * or {@code null} for none.
+     */
+    Pair<Query, Filter> optimize( IndexSearcher searcher, Query query ) throws IOException
+    {
+        return Pair.of( query, (Filter) null );
+    }
+    
     private void letThroughAdditions( IndexSearcher additionsSearcher, Query query, Collection<Long> removed )
             throws IOException
     {
@@ -467,6 +541,105 @@ public abstract class LuceneIndex<T extends PropertyContainer> implements Index<
             
         }
 
+        /**
+         * Relationships of nodes having more than this many of them in the
+         * index, and at least {@link #HUB_FRACTION} of all of them, are hubs.
+         */
+        private static final int HUB_MIN_RELATIONSHIPS = 1000;
+        private static final int HUB_FRACTION = 32;
+        private static final int MAX_CACHED_HUB_FILTERS = 32;
+        
+        /**
+         * Caches which documents of each index segment belong to a hub node,
+         * as a bit set per segment. Segments which are left untouched by a
+         * commit keep theirs, so repeated queries on the relationships of a
+         * hub don't go through its whole posting list again.
+         */
+        private final Map<Term, Filter> hubFilters = new LinkedHashMap<Term, Filter>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Term, Filter> eldest )
+            {
+                return size() > MAX_CACHED_HUB_FILTERS;
+            }
+        };
+        
+        /**
+         * Searches the relationships of a hub start or end node through a
+         * cached filter instead of intersecting with the posting list of its
+         * node id term. The term of a node with few relationships stays in the
+         * query, since intersecting a short posting list is cheaper than
+         * building a bit set over the index for it.
+         */
+        @Override
+        Pair<Query, Filter> optimize( IndexSearcher searcher, Query query ) throws IOException
+        {
+            if ( !(query instanceof BooleanQuery) )
+            {
+                return super.optimize( searcher, query );
+            }
+            
+            BooleanClause hubClause = null;
+            int hubFrequency = Integer.MAX_VALUE;
+            int maxDoc = searcher.maxDoc();
+            for ( BooleanClause clause : ((BooleanQuery) query).clauses() )
+            {
+                Term term = nodeTerm( clause );
+                if ( term != null )
+                {
+                    int frequency = searcher.docFreq( term );
+                    if ( frequency >= HUB_MIN_RELATIONSHIPS && (long) frequency * HUB_FRACTION >= maxDoc &&
+                            frequency < hubFrequency )
+                    {
+                        hubClause = clause;
+                        hubFrequency = frequency;
+                    }
+                }
+            }
+            if ( hubClause == null )
+            {
+                return super.optimize( searcher, query );
+            }
+            
+            BooleanQuery rest = new BooleanQuery();
+            for ( BooleanClause clause : ((BooleanQuery) query).clauses() )
+            {
+                if ( clause != hubClause )
+                {
+                    rest.add( clause );
+                }
+            }
+            return Pair.of( rest.clauses().isEmpty() ? new MatchAllDocsQuery() : (Query) rest,
+                    hubFilter( nodeTerm( hubClause ) ) );
+        }
+        
+        private static Term nodeTerm( BooleanClause clause )
+        {
+            if ( clause.getOccur() != Occur.MUST || !(clause.getQuery() instanceof TermQuery) )
+            {
+                return null;
+            }
+            Term term = ((TermQuery) clause.getQuery()).getTerm();
+            return term.field().equals( KEY_START_NODE_ID ) || term.field().equals( KEY_END_NODE_ID ) ?
+                    term : null;
+        }
+        
+        private Filter hubFilter( Term term )
+        {
+            synchronized ( hubFilters )
+            {
+                Filter filter = hubFilters.get( term );
+                if ( filter == null )
+                {
+                    filter = new CachingWrapperFilter( new QueryWrapperFilter( new TermQuery( term ) ) );
+                    hubFilters.put( term, filter );
+                }
+                return filter;
+            }
+        }
+        
         public IndexHits<Relationship> get( String key, Object valueOrNull, Node startNodeOrNull,
                 Node endNodeOrNull )
         {
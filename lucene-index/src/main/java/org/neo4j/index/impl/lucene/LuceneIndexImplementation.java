@@ -53,7 +53,7 @@ public class LuceneIndexImplementation extends IndexImplementation
                     KEY_TO_LOWER_CASE, "true" ) );
 
     public static final int DEFAULT_LAZY_THRESHOLD = 100;
-    private static final String DATA_SOURCE_NAME = "lucene-index";
+    static final String DATA_SOURCE_NAME = "lucene-index";
 
     private final IndexConnectionBroker<LuceneXaConnection> broker;
     private final LuceneDataSource dataSource;
@@ -24,7 +24,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -153,8 +152,7 @@ class LuceneTransaction extends XaTransaction
         {
             return Collections.emptySet();
         }
-        Collection<Long> ids = removed.query( query, null );
-        return ids != null ? ids : Collections.<Long>emptySet();
+        return idSet( removed.query( query, null ) );
     }
     
     <T extends PropertyContainer> Collection<Long> getRemovedIds( LuceneIndex<T> index,
@@ -167,7 +165,21 @@ class LuceneTransaction extends XaTransaction
         }
         Collection<Long> ids = removed.get( key, value );
         Collection<Long> orphanIds = removed.getOrphans( key );
-        return merge( ids, orphanIds );
+        return idSet( merge( ids, orphanIds ) );
+    }
+    
+    /**
+     * Removed ids are looked up for every hit from the committed index, so
+     * they're kept in a set which does that without boxing. It's a copy as
+     * well, since the caller lets through ids added back in the transaction.
+     */
+    private static Collection<Long> idSet( Collection<Long> ids )
+    {
+        if ( ids == null || ids.isEmpty() )
+        {
+            return Collections.emptySet();
+        }
+        return ids instanceof PrimitiveIdSet ? ids : new PrimitiveIdSet( ids );
     }
     
     static Collection<Long> merge( Collection<Long> c1, Collection<Long> c2 )
@@ -178,7 +190,7 @@ class LuceneTransaction extends XaTransaction
         }
         else if ( c1 != null && c2 != null )
         {
-            Collection<Long> result = new HashSet<Long>( c1 );
+            PrimitiveIdSet result = new PrimitiveIdSet( c1 );
             result.addAll( c2 );
             return result;
         }
@@ -200,6 +212,22 @@ class LuceneTransaction extends XaTransaction
         return ids != null ? ids : Collections.<Long>emptySet();
     }
     
+    /**
+     * @return the ids added in this transaction which match {@code query},
+     * or {@code null} if a searcher over the additions is needed to find them,
+     * see {@link #getAdditionsAsSearcher(LuceneIndex, QueryContext)}.
+     */
+    <T extends PropertyContainer> Collection<Long> getAddedIdsWithoutSearcher( LuceneIndex<T> index,
+            Query query )
+    {
+        TxDataHolder added = addedTxDataOrNull( index );
+        if ( added == null )
+        {
+            return Collections.emptySet();
+        }
+        return added.queryWithoutSearcher( query );
+    }
+    
     <T extends PropertyContainer> Collection<Long> getAddedIds( LuceneIndex<T> index,
             String key, Object value )
     {
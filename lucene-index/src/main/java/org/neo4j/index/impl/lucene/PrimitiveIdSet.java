@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.neo4j.kernel.impl.util.PrimitiveLongSet;
+
+/**
+ * A set of entity ids backed by a {@link PrimitiveLongSet}, so that checking
+ * whether or not a hit has been removed in the transaction neither boxes the
+ * id nor walks through a list.
+ */
+class PrimitiveIdSet extends AbstractSet<Long>
+{
+    private final PrimitiveLongSet ids;
+
+    PrimitiveIdSet()
+    {
+        this.ids = new PrimitiveLongSet();
+    }
+
+    PrimitiveIdSet( Collection<Long> ids )
+    {
+        this.ids = new PrimitiveLongSet( ids.size() );
+        for ( Long id : ids )
+        {
+            this.ids.add( id );
+        }
+    }
+
+    boolean add( long id )
+    {
+        return ids.add( id );
+    }
+
+    @Override
+    public boolean add( Long id )
+    {
+        return ids.add( id );
+    }
+
+    @Override
+    public boolean contains( Object id )
+    {
+        return id instanceof Long && ids.contains( (Long) id );
+    }
+
+    @Override
+    public boolean remove( Object id )
+    {
+        return id instanceof Long && ids.remove( (Long) id );
+    }
+
+    @Override
+    public int size()
+    {
+        return ids.size();
+    }
+
+    @Override
+    public void clear()
+    {
+        ids.clear();
+    }
+
+    void addAll( PrimitiveIdSet other )
+    {
+        for ( long id : other.ids.toArray() )
+        {
+            ids.add( id );
+        }
+    }
+
+    void removeAll( PrimitiveIdSet other )
+    {
+        for ( long id : other.ids.toArray() )
+        {
+            ids.remove( id );
+        }
+    }
+
+    PrimitiveIdSet intersection( PrimitiveIdSet other )
+    {
+        PrimitiveIdSet smaller = size() <= other.size() ? this : other;
+        PrimitiveIdSet larger = smaller == this ? other : this;
+        PrimitiveIdSet result = new PrimitiveIdSet();
+        for ( long id : smaller.ids.toArray() )
+        {
+            if ( larger.ids.contains( id ) )
+            {
+                result.ids.add( id );
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<Long> iterator()
+    {
+        final long[] values = ids.toArray();
+        return new Iterator<Long>()
+        {
+            private int next;
+
+            public boolean hasNext()
+            {
+                return next < values.length;
+            }
+
+            public Long next()
+            {
+                if ( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                return values[next++];
+            }
+
+            public void remove()
+            {
+                if ( next == 0 )
+                {
+                    throw new IllegalStateException();
+                }
+                ids.remove( values[next - 1] );
+            }
+        };
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the ids of exact lookups, {@code index.get( key, value )}, for the
+ * keys which have caching enabled with {@link #setCapacity}. Each key holds
+ * at most its capacity of values and all keys together at most
+ * {@code maxSizeInBytes} of {@link CachedIds}, evicting the least recently
+ * used values of the key taking the most space when full. Entries are
+ * invalidated per value when a transaction touching them commits.
+ */
+class ResultCache
+{
+    private final Map<IndexIdentifier, Map<String, KeyCache>> caches =
+            new HashMap<IndexIdentifier, Map<String, KeyCache>>();
+    private final long maxSizeInBytes;
+    private long sizeInBytes;
+    private int numberOfEntries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    ResultCache( long maxSizeInBytes )
+    {
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    private class KeyCache extends LinkedHashMap<String, CachedIds>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private long sizeInBytes;
+
+        KeyCache( int capacity )
+        {
+            super( 16, 0.75f, true );
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, CachedIds> eldest )
+        {
+            if ( size() > capacity )
+            {
+                removed( this, eldest.getValue() );
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    synchronized void setCapacity( IndexIdentifier identifier, String key, int capacity )
+    {
+        Map<String, KeyCache> keys = caches.get( identifier );
+        if ( keys == null )
+        {
+            keys = new HashMap<String, KeyCache>();
+            caches.put( identifier, keys );
+        }
+        clear( keys.put( key, new KeyCache( capacity ) ) );
+    }
+
+    synchronized Integer getCapacity( IndexIdentifier identifier, String key )
+    {
+        KeyCache cache = keyCache( identifier, key );
+        return cache != null ? cache.capacity : null;
+    }
+
+    synchronized boolean isEnabled( IndexIdentifier identifier, String key )
+    {
+        return keyCache( identifier, key ) != null;
+    }
+
+    /**
+     * @return whether or not a lookup with {@code numberOfIds} hits is worth
+     * reading in full to cache it, at most a quarter of the cache is spent on
+     * one entry.
+     */
+    boolean fits( int numberOfIds )
+    {
+        return numberOfIds <= maxSizeInBytes / 4;
+    }
+
+    synchronized CachedIds get( IndexIdentifier identifier, String key, String value )
+    {
+        KeyCache cache = keyCache( identifier, key );
+        CachedIds ids = cache != null ? cache.get( value ) : null;
+        if ( ids != null )
+        {
+            hits++;
+        }
+        else
+        {
+            misses++;
+        }
+        return ids;
+    }
+
+    synchronized void put( IndexIdentifier identifier, String key, String value, CachedIds ids )
+    {
+        KeyCache cache = keyCache( identifier, key );
+        if ( cache == null || ids.sizeInBytes() * 4 > maxSizeInBytes )
+        {
+            return;
+        }
+        CachedIds previous = cache.put( value, ids );
+        if ( previous != null )
+        {
+            removed( cache, previous );
+        }
+        cache.sizeInBytes += ids.sizeInBytes();
+        sizeInBytes += ids.sizeInBytes();
+        numberOfEntries++;
+        while ( sizeInBytes > maxSizeInBytes )
+        {
+            evictFromLargest();
+        }
+    }
+
+    private void evictFromLargest()
+    {
+        KeyCache largest = null;
+        for ( Map<String, KeyCache> keys : caches.values() )
+        {
+            for ( KeyCache cache : keys.values() )
+            {
+                if ( largest == null || cache.sizeInBytes > largest.sizeInBytes )
+                {
+                    largest = cache;
+                }
+            }
+        }
+        Iterator<CachedIds> eldest = largest.values().iterator();
+        removed( largest, eldest.next() );
+        eldest.remove();
+        evictions++;
+    }
+
+    private void removed( KeyCache cache, CachedIds ids )
+    {
+        cache.sizeInBytes -= ids.sizeInBytes();
+        sizeInBytes -= ids.sizeInBytes();
+        numberOfEntries--;
+    }
+
+    /**
+     * Invalidates the cached ids of {@code value}, or of all the values of
+     * {@code key} if {@code value} is {@code null}, or of all keys of the
+     * index if {@code key} is {@code null} as well.
+     */
+    synchronized void invalidate( IndexIdentifier identifier, String key, Object value )
+    {
+        Map<String, KeyCache> keys = caches.get( identifier );
+        if ( keys == null )
+        {
+            return;
+        }
+        if ( key == null )
+        {
+            for ( KeyCache cache : keys.values() )
+            {
+                clear( cache );
+            }
+            return;
+        }
+        KeyCache cache = keys.get( key );
+        if ( cache == null )
+        {
+            return;
+        }
+        if ( value == null )
+        {
+            clear( cache );
+        }
+        else
+        {
+            CachedIds ids = cache.remove( value.toString() );
+            if ( ids != null )
+            {
+                removed( cache, ids );
+                invalidations++;
+            }
+        }
+    }
+
+    private void clear( KeyCache cache )
+    {
+        if ( cache == null )
+        {
+            return;
+        }
+        invalidations += cache.size();
+        sizeInBytes -= cache.sizeInBytes;
+        numberOfEntries -= cache.size();
+        cache.sizeInBytes = 0;
+        cache.clear();
+    }
+
+    synchronized void disable( IndexIdentifier identifier )
+    {
+        Map<String, KeyCache> keys = caches.remove( identifier );
+        if ( keys != null )
+        {
+            for ( KeyCache cache : keys.values() )
+            {
+                clear( cache );
+            }
+        }
+    }
+
+    private KeyCache keyCache( IndexIdentifier identifier, String key )
+    {
+        Map<String, KeyCache> keys = caches.get( identifier );
+        return keys != null ? keys.get( key ) : null;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations()
+    {
+        return invalidations;
+    }
+
+    public synchronized long getSizeInBytes()
+    {
+        return sizeInBytes;
+    }
+
+    public long getMaxSizeInBytes()
+    {
+        return maxSizeInBytes;
+    }
+
+    public synchronized int getNumberOfEntries()
+    {
+        return numberOfEntries;
+    }
+}
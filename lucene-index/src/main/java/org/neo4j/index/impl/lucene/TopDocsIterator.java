@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.Iterator;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -39,21 +40,23 @@ class TopDocsIterator extends AbstractIndexHits<Document>
     private final int size;
     private final IndexSearcher searcher;
     
-    TopDocsIterator( Query query, QueryContext context, IndexSearcher searcher ) throws IOException
+    TopDocsIterator( Query query, Filter filterOrNull, QueryContext context, IndexSearcher searcher )
+            throws IOException
     {
-        TopDocs docs = toTopDocs( query, context, searcher );
+        TopDocs docs = toTopDocs( query, filterOrNull, context, searcher );
         this.size = docs.scoreDocs.length;
         this.iterator = new ArrayIterator<ScoreDoc>( docs.scoreDocs );
         this.searcher = searcher;
     }
 
-    private TopDocs toTopDocs( Query query, QueryContext context, IndexSearcher searcher ) throws IOException
+    private TopDocs toTopDocs( Query query, Filter filterOrNull, QueryContext context,
+            IndexSearcher searcher ) throws IOException
     {
         Sort sorting = context != null ? context.getSorting() : null;
         TopDocs topDocs = null;
         if ( sorting == null )
         {
-            topDocs = searcher.search( query, context.getTop() );
+            topDocs = searcher.search( query, filterOrNull, context.getTop() );
         }
         else
         {
@@ -61,12 +64,12 @@ class TopDocsIterator extends AbstractIndexHits<Document>
             if ( forceScore )
             {
                 TopFieldCollector collector = LuceneDataSource.scoringCollector( sorting, context.getTop() );
-                searcher.search( query, collector );
+                searcher.search( query, filterOrNull, collector );
                 topDocs = collector.topDocs();
             }
             else
             {
-                topDocs = searcher.search( query, null, context.getTop(), sorting );
+                topDocs = searcher.search( query, filterOrNull, context.getTop(), sorting );
             }
         }
         return topDocs;
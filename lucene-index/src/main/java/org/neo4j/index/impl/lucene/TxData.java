@@ -40,6 +40,12 @@ abstract class TxData
 
     abstract Collection<Long> query( TxDataHolder holder, Query query, QueryContext contextOrNull );
 
+    /**
+     * @return the ids matching {@code query}, or {@code null} if they can't
+     * be found without a Lucene searcher over the transaction data.
+     */
+    abstract Collection<Long> queryWithoutSearcher( Query query );
+
     abstract Collection<Long> get( TxDataHolder holder, String key, Object value );
     
     abstract Collection<Long> getOrphans( String key );
@@ -51,6 +51,11 @@ class TxDataHolder
         return this.data.query( this, query, contextOrNull );
     }
 
+    Collection<Long> queryWithoutSearcher( Query query )
+    {
+        return this.data.queryWithoutSearcher( query );
+    }
+
     Collection<Long> get( String key, Object value )
     {
         return this.data.get( this, key, value );
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.lucene.management;
+
+import org.neo4j.jmx.Description;
+import org.neo4j.jmx.ManagementInterface;
+
+@ManagementInterface( name = IndexResultCache.NAME )
+@Description( "Statistics about the cached results of exact lookups in the Lucene indexes of this Neo4j instance" )
+public interface IndexResultCache
+{
+    final String NAME = "Index result cache";
+
+    @Description( "The number of exact lookups that were answered from the cache" )
+    long getHits();
+
+    @Description( "The number of exact lookups on cached keys that had to search the index" )
+    long getMisses();
+
+    @Description( "The number of cached results evicted to stay within the max size" )
+    long getEvictions();
+
+    @Description( "The number of cached results dropped because of committed changes" )
+    long getInvalidations();
+
+    @Description( "The number of bytes the cached ids take" )
+    long getSizeInBytes();
+
+    @Description( "The max number of bytes the cached ids may take" )
+    long getMaxSizeInBytes();
+
+    @Description( "The number of cached lookup results" )
+    int getNumberOfEntries();
+}
@@ -31,6 +31,7 @@ import static org.neo4j.index.impl.lucene.LuceneIndexImplementation.EXACT_CONFIG
 import static org.neo4j.index.lucene.ValueContext.numeric;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -39,6 +40,9 @@ import java.util.Map;
 
 import junit.framework.Assert;
 
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.FSDirectory;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -326,6 +330,105 @@ public class TestLuceneBatchInsert
         inserter.shutdown();
     }
 
+    @Test
+    public void bulkIndexingAddsSegmentsOfWorkersAtShutdown()
+    {
+        String path = new File( PATH, "9" ).getAbsolutePath();
+        BatchInserter inserter = new BatchInserterImpl( path );
+        BatchInserterIndexProvider provider = new LuceneBatchInserterIndexProvider( inserter, stringMap(
+                LuceneBatchInserterIndexProvider.BULK_THREADS, "4",
+                LuceneBatchInserterIndexProvider.RAM_BUFFER_SIZE, "4M",
+                LuceneBatchInserterIndexProvider.PROGRESS_INTERVAL, "1000" ) );
+        BatchInserterIndex nodes = provider.nodeIndex( "bulk", EXACT_CONFIG );
+        BatchInserterIndex relationships = provider.relationshipIndex( "bulk", EXACT_CONFIG );
+        
+        int count = 10000;
+        long[] ids = new long[count];
+        long relationship = -1;
+        for ( int i = 0; i < count; i++ )
+        {
+            ids[i] = inserter.createNode( null );
+            nodes.add( ids[i], map( "name", "Joe" + i, "group", "" + i % 10, "number", numeric( i ) ) );
+            if ( i > 0 )
+            {
+                relationship = inserter.createRelationship( ids[i - 1], ids[i], EdgeType.KNOWS, null );
+                relationships.add( relationship, map( "since", "" + i ) );
+            }
+        }
+        nodes.updateOrAdd( ids[0], map( "name", "Jack" ) );
+        nodes.flush();
+        relationships.flush();
+        
+        assertEquals( 0, nodes.get( "name", "Joe0" ).size() );
+        assertContains( nodes.get( "name", "Jack" ), ids[0] );
+        assertContains( nodes.get( "name", "Joe" + (count - 1) ), ids[count - 1] );
+        assertEquals( count / 10 - 1, nodes.get( "group", "0" ).size() );
+        assertEquals( 10, nodes.query( "number", newIntRange( "number", 100, 109, true, true ) ).size() );
+        assertContains( relationships.get( "since", "" + (count - 1) ), relationship );
+        provider.shutdown();
+        inserter.shutdown();
+        assertEquals( 0, new File( path, "index/lucene/node" ).list( new FilenameFilter()
+        {
+            public boolean accept( File dir, String name )
+            {
+                return name.contains( ".bulk-" );
+            }
+        } ).length );
+        
+        GraphDatabaseService db = new EmbeddedGraphDatabase( path );
+        Index<Node> index = db.index().forNodes( "bulk" );
+        assertContains( index.get( "name", "Jack" ), db.getNodeById( ids[0] ) );
+        assertEquals( count / 10 - 1, index.get( "group", "0" ).size() );
+        assertEquals( count - 1, index.query( "name", "Joe*" ).size() );
+        assertContains( db.index().forRelationships( "bulk" ).get( "since", "" + (count - 1) ),
+                db.getRelationshipById( relationship ) );
+        db.shutdown();
+    }
+    
+    @Test
+    public void failedBulkIndexingClosesAndDeletesTheSegmentsOfWorkers() throws Exception
+    {
+        String path = new File( PATH, "10" ).getAbsolutePath();
+        BatchInserter inserter = new BatchInserterImpl( path );
+        BatchInserterIndexProvider provider = new LuceneBatchInserterIndexProvider( inserter, stringMap(
+                LuceneBatchInserterIndexProvider.BULK_THREADS, "4",
+                LuceneBatchInserterIndexProvider.PROGRESS_INTERVAL, "not a number" ) );
+        BatchInserterIndex nodes = provider.nodeIndex( "failing", EXACT_CONFIG );
+        for ( int i = 0; i < 100; i++ )
+        {
+            nodes.add( inserter.createNode( null ), map( "name", "Joe" + i ) );
+        }
+        nodes.add( inserter.createNode( null ), map( "name", new Object()
+        {
+            @Override
+            public String toString()
+            {
+                throw new IllegalStateException( "Can't be indexed" );
+            }
+        } ) );
+        
+        try
+        {
+            provider.shutdown();
+            Assert.fail( "Expected the failure of a worker" );
+        }
+        catch ( RuntimeException e )
+        {
+            assertEquals( "Can't be indexed", e.getCause().getMessage() );
+        }
+        inserter.shutdown();
+        assertEquals( 0, new File( path, "index/lucene/node" ).list( new FilenameFilter()
+        {
+            public boolean accept( File dir, String name )
+            {
+                return name.contains( ".bulk-" );
+            }
+        } ).length );
+        // The writer of the index has been closed as well
+        new IndexWriter( FSDirectory.open( new File( path, "index/lucene/node/failing" ) ),
+                new IndexWriterConfig( LuceneDataSource.LUCENE_VERSION, null ) ).close();
+    }
+
     private enum EdgeType implements RelationshipType
     {
         KNOWS
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.index.Neo4jTestCase.assertContains;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.graphdb.index.RelationshipIndex;
+
+public class TestRelationshipIndexNodeFilter extends AbstractLuceneIndexTest
+{
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+    private static final int HUB_RELATIONSHIPS = 1500;
+
+    private int size( IndexHits<Relationship> hits )
+    {
+        try
+        {
+            return hits.size();
+        }
+        finally
+        {
+            hits.close();
+        }
+    }
+
+    @Test
+    public void findsRelationshipsOfHubNodes()
+    {
+        RelationshipIndex index = relationshipIndex( "hub", LuceneIndexImplementation.EXACT_CONFIG );
+        Node hub = graphDb.createNode();
+        Node friend = graphDb.createNode();
+        List<Relationship> hubRelationships = new ArrayList<Relationship>();
+        for ( int i = 0; i < HUB_RELATIONSHIPS; i++ )
+        {
+            Node other = i == 0 ? friend : graphDb.createNode();
+            Relationship relationship = hub.createRelationshipTo( other, KNOWS );
+            index.add( relationship, "since", i % 2 == 0 ? "even" : "odd" );
+            hubRelationships.add( relationship );
+            if ( i % 100 == 0 )
+            {
+                restartTx();
+            }
+        }
+        Relationship toHub = friend.createRelationshipTo( hub, KNOWS );
+        index.add( toHub, "since", "even" );
+        Relationship elsewhere = friend.createRelationshipTo( graphDb.createNode(), KNOWS );
+        index.add( elsewhere, "since", "even" );
+        restartTx();
+
+        assertEquals( HUB_RELATIONSHIPS / 2, size( index.get( "since", "even", hub, null ) ) );
+        assertEquals( HUB_RELATIONSHIPS, size( index.query( "since:*", hub, null ) ) );
+        assertContains( index.get( "since", "even", null, hub ), toHub );
+        assertContains( index.get( "since", "even", hub, friend ), hubRelationships.get( 0 ) );
+        assertContains( index.get( "since", "even", friend, null ), toHub, elsewhere );
+        assertEquals( HUB_RELATIONSHIPS, size( index.query( "since", "*", hub, null ) ) );
+
+        // The cached filter has to see commits made after it was built
+        index.remove( hubRelationships.get( 0 ) );
+        restartTx();
+        assertEquals( HUB_RELATIONSHIPS / 2 - 1, size( index.get( "since", "even", hub, null ) ) );
+        assertContains( index.get( "since", "even", hub, friend ) );
+        Relationship added = hub.createRelationshipTo( friend, KNOWS );
+        index.add( added, "since", "even" );
+        restartTx();
+        assertEquals( HUB_RELATIONSHIPS / 2, size( index.get( "since", "even", hub, null ) ) );
+        assertContains( index.get( "since", "even", hub, friend ), added );
+
+        // And changes in the transaction
+        index.remove( added );
+        Relationship uncommitted = hub.createRelationshipTo( friend, KNOWS );
+        index.add( uncommitted, "since", "even" );
+        assertContains( index.get( "since", "even", hub, friend ), uncommitted );
+        assertEquals( HUB_RELATIONSHIPS / 2, size( index.get( "since", "even", hub, null ) ) );
+    }
+}
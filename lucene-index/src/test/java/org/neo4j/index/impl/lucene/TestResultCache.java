@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.index.Neo4jTestCase.assertContains;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.index.lucene.management.IndexResultCache;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+
+public class TestResultCache extends AbstractLuceneIndexTest
+{
+    private static final IndexIdentifier IDENTIFIER =
+            new IndexIdentifier( LuceneCommand.NODE, null, "cached" );
+
+    @Test
+    public void cachedIdsRoundTrip()
+    {
+        Random random = new Random( 1234 );
+        long[] ids = new long[1000];
+        Set<Long> expected = new HashSet<Long>();
+        for ( int i = 0; i < ids.length; i++ )
+        {
+            ids[i] = i % 3 == 0 ? random.nextInt( 100 ) : Math.abs( random.nextLong() );
+            expected.add( ids[i] );
+        }
+        CachedIds cached = CachedIds.of( ids );
+        assertEquals( expected.size(), cached.size() );
+        assertEquals( expected, IteratorUtil.addToCollection(
+                (Iterator<Long>) cached.hits( Collections.<Long>emptySet() ), new HashSet<Long>() ) );
+
+        Long removed = ids[0];
+        expected.remove( removed );
+        assertEquals( expected, IteratorUtil.addToCollection(
+                (Iterator<Long>) cached.hits( Collections.singleton( removed ) ), new HashSet<Long>() ) );
+    }
+
+    @Test
+    public void cachedIdsOfCloseEntitiesAreSmall()
+    {
+        long[] ids = new long[10000];
+        for ( int i = 0; i < ids.length; i++ )
+        {
+            ids[i] = 1000000 + i * 3;
+        }
+        assertTrue( CachedIds.of( ids ).sizeInBytes() < ids.length + 100 );
+    }
+
+    @Test
+    public void evictsWhenFullAndInvalidatesPerValue()
+    {
+        ResultCache cache = new ResultCache( 1000 );
+        assertNull( cache.get( IDENTIFIER, "key", "value" ) );
+        assertFalse( cache.isEnabled( IDENTIFIER, "key" ) );
+        cache.setCapacity( IDENTIFIER, "key", 100 );
+        assertEquals( Integer.valueOf( 100 ), cache.getCapacity( IDENTIFIER, "key" ) );
+
+        for ( int i = 0; i < 20; i++ )
+        {
+            cache.put( IDENTIFIER, "key", "value" + i, CachedIds.of( new long[] { i, i + 1, i + 2 } ) );
+            assertTrue( cache.getSizeInBytes() <= cache.getMaxSizeInBytes() );
+        }
+        assertTrue( cache.getEvictions() > 0 );
+        assertEquals( 20 - cache.getEvictions(), cache.getNumberOfEntries() );
+        assertNull( cache.get( IDENTIFIER, "key", "value0" ) );
+        assertNotNull( cache.get( IDENTIFIER, "key", "value19" ) );
+
+        cache.invalidate( IDENTIFIER, "key", "value19" );
+        assertNull( cache.get( IDENTIFIER, "key", "value19" ) );
+        assertEquals( 1, cache.getInvalidations() );
+        cache.invalidate( IDENTIFIER, "key", null );
+        assertEquals( 0, cache.getNumberOfEntries() );
+        assertEquals( 0, cache.getSizeInBytes() );
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverCapacity()
+    {
+        ResultCache cache = new ResultCache( 1000000 );
+        cache.setCapacity( IDENTIFIER, "key", 2 );
+        cache.put( IDENTIFIER, "key", "a", CachedIds.of( new long[] { 1 } ) );
+        cache.put( IDENTIFIER, "key", "b", CachedIds.of( new long[] { 2 } ) );
+        cache.get( IDENTIFIER, "key", "a" );
+        cache.put( IDENTIFIER, "key", "c", CachedIds.of( new long[] { 3 } ) );
+        assertNotNull( cache.get( IDENTIFIER, "key", "a" ) );
+        assertNull( cache.get( IDENTIFIER, "key", "b" ) );
+        assertEquals( 2, cache.getNumberOfEntries() );
+        assertEquals( 1, cache.getEvictions() );
+    }
+
+    @Test
+    public void lookupsAreCachedAndInvalidatedOnCommit()
+    {
+        Index<Node> index = nodeIndex( "cached", LuceneIndexImplementation.EXACT_CONFIG );
+        ((LuceneIndex<Node>) index).setCacheCapacity( "email", 100 );
+        Node alice = graphDb.createNode();
+        index.add( alice, "email", "alice@example.org" );
+        restartTx();
+
+        ResultCache cache = ((LuceneIndex<Node>) index).service.dataSource().getResultCache();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        assertContains( index.get( "email", "alice@example.org" ), alice );
+        assertEquals( misses + 1, cache.getMisses() );
+        assertContains( index.get( "email", "alice@example.org" ), alice );
+        assertEquals( hits + 1, cache.getHits() );
+
+        // Changes in the transaction are seen together with cached hits
+        Node bob = graphDb.createNode();
+        index.add( bob, "email", "alice@example.org" );
+        index.remove( alice, "email", "alice@example.org" );
+        assertContains( index.get( "email", "alice@example.org" ), bob );
+        restartTx();
+
+        assertContains( index.get( "email", "alice@example.org" ), bob );
+        assertEquals( hits + 2, cache.getHits() );
+        assertContains( index.get( "email", "alice@example.org" ), bob );
+        assertEquals( hits + 3, cache.getHits() );
+
+        IndexResultCache bean = ((EmbeddedGraphDatabase) graphDb).getManagementBean( IndexResultCache.class );
+        assertEquals( cache.getHits(), bean.getHits() );
+        assertEquals( cache.getMisses(), bean.getMisses() );
+        assertEquals( cache.getNumberOfEntries(), bean.getNumberOfEntries() );
+    }
+}
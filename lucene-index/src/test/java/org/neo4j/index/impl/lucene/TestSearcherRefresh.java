@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.index.Neo4jTestCase;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+
+public class TestSearcherRefresh
+{
+    private GraphDatabaseService graphDb;
+    
+    private Index<Node> startDb( String key, String value )
+    {
+        String storeDir = "target/var/searcherrefresh";
+        Neo4jTestCase.deleteFileOrDirectory( new File( storeDir ) );
+        graphDb = new EmbeddedGraphDatabase( storeDir, MapUtil.stringMap( key, value ) );
+        return graphDb.index().forNodes( "refresh" );
+    }
+    
+    @After
+    public void shutdownDb()
+    {
+        if ( graphDb != null )
+        {
+            graphDb.shutdown();
+            graphDb = null;
+        }
+    }
+    
+    private Node createIndexedNode( Index<Node> index, String value )
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            Node node = graphDb.createNode();
+            index.add( node, "key", value );
+            tx.success();
+            return node;
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+    
+    private void awaitHits( Index<Node> index, String value, int expectedSize ) throws Exception
+    {
+        long end = System.currentTimeMillis() + 10000;
+        while ( size( index, value ) != expectedSize )
+        {
+            assertTrue( "Searcher wasn't refreshed in time", System.currentTimeMillis() < end );
+            Thread.sleep( 10 );
+        }
+    }
+    
+    private int size( Index<Node> index, String value )
+    {
+        IndexHits<Node> hits = index.get( "key", value );
+        try
+        {
+            return hits.size();
+        }
+        finally
+        {
+            hits.close();
+        }
+    }
+    
+    @Test
+    public void readersSeeCommitsRightAwayWithoutBackgroundRefresh()
+    {
+        Index<Node> index = startDb( "index", "lucene" );
+        for ( int i = 0; i < 10; i++ )
+        {
+            createIndexedNode( index, "value" );
+            assertEquals( i + 1, size( index, "value" ) );
+        }
+    }
+    
+    @Test
+    public void refreshesAfterNumberOfCommits() throws Exception
+    {
+        Index<Node> index = startDb( LuceneDataSource.SEARCHER_REFRESH_COMMITS, "1" );
+        createIndexedNode( index, "first" );
+        awaitHits( index, "first", 1 );
+        createIndexedNode( index, "second" );
+        awaitHits( index, "second", 1 );
+    }
+    
+    @Test
+    public void refreshesOnInterval() throws Exception
+    {
+        Index<Node> index = startDb( LuceneDataSource.SEARCHER_REFRESH_INTERVAL, "20" );
+        for ( int i = 0; i < 5; i++ )
+        {
+            createIndexedNode( index, "value" );
+        }
+        awaitHits( index, "value", 5 );
+    }
+    
+    @Test
+    public void openHitsSurviveRefresh() throws Exception
+    {
+        Index<Node> index = startDb( LuceneDataSource.SEARCHER_REFRESH_COMMITS, "1" );
+        Node first = createIndexedNode( index, "value" );
+        awaitHits( index, "value", 1 );
+        IndexHits<Node> hits = index.get( "key", "value" );
+        createIndexedNode( index, "value" );
+        awaitHits( index, "value", 2 );
+        
+        // The replaced searcher is only closed when these hits are done with it
+        assertTrue( hits.hasNext() );
+        assertEquals( first, hits.next() );
+        hits.close();
+    }
+}
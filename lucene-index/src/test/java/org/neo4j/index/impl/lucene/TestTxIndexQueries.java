@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.index.impl.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.index.Neo4jTestCase.assertContains;
+import static org.neo4j.index.lucene.QueryContext.numericRange;
+
+import java.io.File;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.graphdb.index.RelationshipIndex;
+import org.neo4j.index.Neo4jTestCase;
+import org.neo4j.index.lucene.QueryContext;
+import org.neo4j.index.lucene.ValueContext;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+
+public class TestTxIndexQueries extends AbstractLuceneIndexTest
+{
+    @Test
+    public void queriesSeeAdditionsInTheTransaction()
+    {
+        Index<Node> index = nodeIndex( "additions", LuceneIndexImplementation.EXACT_CONFIG );
+        Node alice = graphDb.createNode();
+        Node bob = graphDb.createNode();
+        Node carol = graphDb.createNode();
+        index.add( alice, "name", "alice" );
+        index.add( bob, "name", "bob" );
+        index.add( carol, "name", "carol" );
+        index.add( carol, "nick", "caro" );
+
+        assertContains( index.query( "name", "alice" ), alice );
+        assertContains( index.query( "name", "ca*" ), carol );
+        assertContains( index.query( "name", "b?b" ), bob );
+        assertContains( index.query( "name", "*o*" ), bob, carol );
+        assertContains( index.query( "name", "[alice TO bob]" ), alice, bob );
+        assertContains( index.query( "name", "{alice TO carol}" ), bob );
+        assertContains( index.query( "name:carol AND nick:caro" ), carol );
+        assertContains( index.query( "name:alice OR nick:caro" ), alice, carol );
+        assertContains( index.query( "name:(alice bob) -name:bob" ), alice );
+        assertContains( index.query( "name", "dave" ) );
+        assertContains( index.query( "*:*" ), alice, bob, carol );
+    }
+
+    @Test
+    public void queriesSeeNumericAdditionsInTheTransaction()
+    {
+        Index<Node> index = nodeIndex( "numeric", LuceneIndexImplementation.EXACT_CONFIG );
+        Node young = graphDb.createNode();
+        Node old = graphDb.createNode();
+        Node other = graphDb.createNode();
+        index.add( young, "age", new ValueContext( 15 ).indexNumeric() );
+        index.add( old, "age", new ValueContext( 80 ).indexNumeric() );
+        index.add( other, "age", "40" );
+
+        assertContains( index.query( numericRange( "age", 10, 20 ) ), young );
+        assertContains( index.query( numericRange( "age", 15, 80, false, true ) ), old );
+        assertContains( index.query( numericRange( "age", null, 100 ) ), young, old );
+        assertContains( index.query( "age", "4*" ), other );
+    }
+
+    @Test
+    public void queriesMergeAdditionsWithCommittedHits()
+    {
+        Index<Node> index = nodeIndex( "merged", LuceneIndexImplementation.EXACT_CONFIG );
+        Node committed = graphDb.createNode();
+        Node removed = graphDb.createNode();
+        index.add( committed, "name", "committed" );
+        index.add( removed, "name", "cowboy" );
+        restartTx();
+
+        Node added = graphDb.createNode();
+        index.add( added, "name", "cool" );
+        index.remove( removed, "name", "cowboy" );
+        assertContains( index.query( "name", "co*" ), committed, added );
+        assertContains( index.query( new PrefixQuery( new Term( "name", "co" ) ) ), committed, added );
+        restartTx();
+        assertContains( index.query( "name", "co*" ), committed, added );
+    }
+
+    @Test
+    public void sortedQueriesStillSeeAdditions()
+    {
+        Index<Node> index = nodeIndex( "sorted", LuceneIndexImplementation.EXACT_CONFIG );
+        Node b = graphDb.createNode();
+        Node a = graphDb.createNode();
+        index.add( b, "name", "b" );
+        index.add( a, "name", "a" );
+        IndexHits<Node> hits = index.query( "name", new QueryContext( "*" ).sort( "name" ) );
+        assertEquals( a, hits.next() );
+        assertEquals( b, hits.next() );
+        hits.close();
+    }
+
+    @Test
+    public void relationshipQueriesByNodeSeeAdditions()
+    {
+        RelationshipIndex index = relationshipIndex( "byNode", LuceneIndexImplementation.EXACT_CONFIG );
+        Node start = graphDb.createNode();
+        Node end = graphDb.createNode();
+        Relationship rel1 = RELATIONSHIP_CREATOR.create();
+        Relationship rel2 = start.createRelationshipTo( end, rel1.getType() );
+        index.add( rel1, "name", "friend" );
+        index.add( rel2, "name", "friend" );
+
+        assertContains( index.query( "name", "fr*", start, null ), rel2 );
+        assertContains( index.query( "name", "fr*", null, end ), rel2 );
+        assertContains( index.get( "name", "friend", start, end ), rel2 );
+        assertContains( index.query( "name", "fr*", end, null ) );
+    }
+
+    // === Benchmarking ===
+
+    private static final int BENCHMARK_ADDS = 100000;
+
+    /**
+     * Adds {@link #BENCHMARK_ADDS} entries to an exact index and then queries
+     * the index, all inside one transaction. The queries are first run against
+     * the sorted transaction state and then, by asking for hits in index order,
+     * against the in-memory Lucene index built from it.
+     */
+    public static void main( String[] args )
+    {
+        String path = args.length > 0 ? args[0] : "target/var/tx-query-benchmark";
+        Neo4jTestCase.deleteFileOrDirectory( new File( path ) );
+        EmbeddedGraphDatabase db = new EmbeddedGraphDatabase( path );
+        try
+        {
+            Index<Node> index = db.index().forNodes( "benchmark", LuceneIndexImplementation.EXACT_CONFIG );
+            Transaction tx = db.beginTx();
+            try
+            {
+                long time = System.currentTimeMillis();
+                for ( int i = 0; i < BENCHMARK_ADDS; i++ )
+                {
+                    Node node = db.createNode();
+                    index.add( node, "name", "name" + i );
+                    index.add( node, "group", "group" + (i % 100) );
+                }
+                System.out.println( BENCHMARK_ADDS + " adds in " +
+                        (System.currentTimeMillis() - time) + " ms" );
+
+                BooleanQuery both = new BooleanQuery();
+                both.add( new TermQuery( new Term( "group", "group7" ) ), Occur.MUST );
+                both.add( new PrefixQuery( new Term( "name", "name1" ) ), Occur.MUST );
+                Object[] queries = { new TermQuery( new Term( "name", "name4711" ) ),
+                        new PrefixQuery( new Term( "name", "name999" ) ),
+                        new TermRangeQuery( "name", "name5", "name6", true, false ), both };
+                for ( boolean viaSearcher : new boolean[] { false, true } )
+                {
+                    for ( Object query : queries )
+                    {
+                        Object queryObject = viaSearcher ?
+                                new QueryContext( query ).sort( Sort.INDEXORDER ) : query;
+                        time = System.currentTimeMillis();
+                        int count = 0;
+                        for ( int i = 0; i < 10; i++ )
+                        {
+                            count = index.query( queryObject ).size();
+                        }
+                        System.out.printf( "%-22s %-45s %6d hits, %.1f ms/query%n",
+                                viaSearcher ? "in-memory Lucene index" : "sorted tx state", query,
+                                count, (System.currentTimeMillis() - time) / 10d );
+                    }
+                }
+            }
+            finally
+            {
+                tx.finish();
+            }
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+}